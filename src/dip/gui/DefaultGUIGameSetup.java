@@ -39,6 +39,7 @@ import dip.world.World;
 */
 public class DefaultGUIGameSetup implements GUIGameSetup
 {
+	private static final long serialVersionUID = 1L;
 	
 	/** Setup the game. */
 	@Override
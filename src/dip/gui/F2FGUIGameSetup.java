@@ -40,6 +40,8 @@ import dip.world.World;
 */
 public class F2FGUIGameSetup implements GUIGameSetup
 {
+	private static final long serialVersionUID = 1L;
+	
 	// serialized data
 	private boolean[] enabledTabs = null;	// only null if never saved
 	private Power selectedPower = null;		// may be null
@@ -22,35 +22,208 @@
 //
 package dip.gui;
 
+import java.io.File;
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+
+import dip.misc.Log;
+import dip.net.message.LogPressStore;
+import dip.world.BinaryWorldFormat;
+import dip.world.World;
+
 /**
-*
-*
-*
-*
-*
-*
+*	Writes game files in the background.
+*	<p>
+*	When a write is requested, a snapshot of the World is taken (on the 
+*	calling thread); the snapshot is then written by a WriteGameThread. 
+*	Writes are performed in the order requested. If more than one write
+*	to the same file is waiting, only the most recent is performed, so a
+*	burst of requests results in a single write. A file may also be 
+*	deleted, in order with the writes.
+*	<p>
+*	WriteGameThreads are created in the given ThreadGroup (typically the 
+*	PersistenceManager ThreadGroup, so that writes complete before exit),
+*	and exit when no writes are waiting.
 */
 public class GameIO
 {
+	// instance variables
+	private final ThreadGroup threadGroup;
+	private final LinkedHashMap<File, Request> pending = new LinkedHashMap<File, Request>();
+	private boolean isWriting = false;
+	
 	
+	/** Creates a GameIO object */
+	public GameIO(ThreadGroup threadGroup)
+	{
+		this.threadGroup = threadGroup;
+	}// GameIO()
 	
 	
+	/**
+	*	Takes a snapshot of the World and queues it to be written to the
+	*	given file. This must be called on the thread that modifies the World
+	*	(the event dispatch thread). The Listener (which may be null) is 
+	*	notified on the writing thread; it is not notified for writes 
+	*	replaced by a later request for the same file.
+	*	<p>
+	*	The press log (see LogPressStore) is prepared on the calling thread.
+	*	Nothing else is written on the calling thread: a snapshot whose 
+	*	turns cannot be written in the binary format is written in the JSX
+	*	format by the writing thread (see BinaryWorldFormat.Snapshot). A 
+	*	NotSerializableException is thrown if the World (other than its 
+	*	turns) cannot be written in the binary format.
+	*/
+	public void write(World world, File file, Listener listener)
+	throws IOException
+	{
+		LogPressStore.prepareSave(world.getPressStore(), file);
+		enqueue(new Request(file, BinaryWorldFormat.Snapshot.create(world), listener));
+	}// write()
 	
-	public static class WriteGameThread implements Runnable
+	
+	/**
+	*	As write(), but the press is written into the game file (see 
+	*	BinaryWorldFormat.Snapshot.createWithPress()), rather than kept in a 
+	*	log next to it. The World continues to use its current press log;
+	*	this is used to save a copy of the game under another name.
+	*/
+	public void writeCopy(World world, File file, Listener listener)
+	throws IOException
+	{
+		enqueue(new Request(file, BinaryWorldFormat.Snapshot.createWithPress(world), listener));
+	}// writeCopy()
+	
+	
+	/**
+	*	Deletes the file, after the writes already queued have completed.
+	*	A queued write to the file is not performed.
+	*/
+	public void delete(File file)
 	{
+		enqueue(new Request(file, null, null));
+	}// delete()
+	
+	
+	/** Queues a Request, replacing any Request for the same file. */
+	private synchronized void enqueue(Request request)
+	{
+		pending.remove(request.file);
+		pending.put(request.file, request);
 		
-		/** run() */
-		@Override
-		public void run()
+		if(!isWriting)
 		{
-			
-			
-		}// run()
+			isWriting = true;
+			Thread thread = new Thread(threadGroup, new WriteGameThread(this), "jdipWriteGame");
+			thread.start();
+		}
+	}// enqueue()
+	
+	
+	/** Waits until all queued writes have completed. */
+	public synchronized void flush()
+	throws InterruptedException
+	{
+		while(isWriting)
+		{
+			wait();
+		}
+	}// flush()
+	
+	
+	/** Removes the next Request; null if none (in which case, writing stops). */
+	private synchronized Request next()
+	{
+		final Iterator<Request> iter = pending.values().iterator();
+		if(!iter.hasNext())
+		{
+			isWriting = false;
+			notifyAll();
+			return null;
+		}
 		
+		final Request request = iter.next();
+		iter.remove();
+		return request;
+	}// next()
+	
+	
+	/** Notified when a write completes or fails; called on the writing thread. */
+	public interface Listener
+	{
+		/** The file has been written. */
+		public void writeCompleted(File file);
+		
+		/** The file could not be written; the existing file is unchanged. */
+		public void writeFailed(File file, Exception e);
+	}// interface Listener
+	
+	
+	/** A queued write; or a deletion, if the snapshot is null */
+	private static class Request
+	{
+		private final File file;
+		private final BinaryWorldFormat.Snapshot snapshot;
+		private final Listener listener;
 		
+		public Request(File file, BinaryWorldFormat.Snapshot snapshot, Listener listener)
+		{
+			this.file = file;
+			this.snapshot = snapshot;
+			this.listener = listener;
+		}// Request()
+	}// nested class Request
+	
+	
+	/** Performs queued writes, until none are waiting. */
+	public static class WriteGameThread implements Runnable
+	{
+		private final GameIO gameIO;
 		
+		/** Create a WriteGameThread */
+		public WriteGameThread(GameIO gameIO)
+		{
+			this.gameIO = gameIO;
+		}// WriteGameThread()
 		
 		
+		/** run() */
+		@Override
+		public void run()
+		{
+			Request request = gameIO.next();
+			while(request != null)
+			{
+				if(request.snapshot == null)
+				{
+					Log.println("GameIO: deleting ", request.file);
+					request.file.delete();
+					request = gameIO.next();
+					continue;
+				}
+				
+				try
+				{
+					Log.println("GameIO: writing ", request.file);
+					request.snapshot.writeTo(request.file);
+					if(request.listener != null)
+					{
+						request.listener.writeCompleted(request.file);
+					}
+				}
+				catch(Exception e)
+				{
+					Log.println("GameIO: write failed: ", e);
+					if(request.listener != null)
+					{
+						request.listener.writeFailed(request.file, e);
+					}
+				}
+				
+				request = gameIO.next();
+			}
+		}// run()
 	}// nested class WriteGameThread
 	
 	public static class ReadGameThread implements Runnable
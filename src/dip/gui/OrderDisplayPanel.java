@@ -354,7 +354,7 @@ public class OrderDisplayPanel extends JPanel
 		
 		try
 		{
-			order.validate(turnState, valOpts, world.getRuleOptions());
+			turnState.getValidationCache().validate(order, turnState, valOpts, world.getRuleOptions());
 		}
 		catch(OrderWarning ow)
 		{
@@ -452,7 +452,7 @@ public class OrderDisplayPanel extends JPanel
 			boolean failed = false;
 			
 			try {
-				order.validate(turnState, valOpts, world.getRuleOptions());
+				turnState.getValidationCache().validate(order, turnState, valOpts, world.getRuleOptions());
 				checkAdjustments(order.getPower());
 			} catch(OrderWarning ow) {
 				map.put(order, ow);
@@ -1289,7 +1289,7 @@ public class OrderDisplayPanel extends JPanel
 					
 					try
 					{
-						displayOrder.getOrder().validate(turnState, valOpts, world.getRuleOptions());
+						turnState.getValidationCache().validate(displayOrder.getOrder(), turnState, valOpts, world.getRuleOptions());
 						displayOrder.setInvalid(false);
 					}
 					catch(OrderException e)
@@ -1337,7 +1337,7 @@ public class OrderDisplayPanel extends JPanel
 			// validate
 			try
 			{
-				order.validate(turnState, valOpts, world.getRuleOptions());
+				turnState.getValidationCache().validate(order, turnState, valOpts, world.getRuleOptions());
 			}
 			catch(OrderException e)
 			{
@@ -23,6 +23,8 @@
 package dip.gui;
 
 import java.awt.Dimension;
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
 import java.beans.PropertyChangeEvent;
 import java.beans.PropertyChangeListener;
 import java.io.File;
@@ -30,6 +32,8 @@ import java.util.LinkedList;
 
 import javax.swing.Box;
 import javax.swing.JOptionPane;
+import javax.swing.SwingUtilities;
+import javax.swing.Timer;
 
 import dip.gui.dialog.ErrorDialog;
 import dip.gui.dialog.newgame.NewGameDialog;
@@ -41,6 +45,7 @@ import dip.judge.parser.JudgeImport;
 import dip.misc.Log;
 import dip.misc.SimpleFileFilter;
 import dip.misc.Utils;
+import dip.net.message.LogPressStore;
 import dip.world.Phase;
 import dip.world.TurnState;
 import dip.world.World;
@@ -54,6 +59,13 @@ import dip.world.variant.data.Variant;
  *	that cannot be undone.
  *	<p>
  *	Also sets the main frame title.
+ *	<p>
+ *	Game files are written in the background (see GameIO). Once a game has
+ *	a file name, changes are also autosaved, a short time after the last 
+ *	change, to a file next to the game file (with an ".autosave" suffix);
+ *	the autosave file is deleted when the game is saved, or its changes
+ *	are discarded. When a game file is opened and its autosave file is 
+ *	more recent, the user may open the autosave file instead.
  */
 public class PersistenceManager {
     // i18n constants
@@ -69,6 +81,10 @@ public class PersistenceManager {
     private static final String CONFIRM_REWIND_TITLE = "PM.dialog.confirm.rewind.title";
     private static final String CONFIRM_LOAD_TEXT = "PM.dialog.confirm.load.text";
     private static final String CONFIRM_LOAD_TITLE = "PM.dialog.confirm.load.title";
+    private static final String RECOVER_TEXT = "PM.dialog.recover.text";
+    private static final String RECOVER_TITLE = "PM.dialog.recover.title";
+    private static final String RECOVER_BUTTON_OPEN = "PM.dialog.recover.open";
+    private static final String RECOVER_BUTTON_DISCARD = "PM.dialog.recover.discard";
     private static final String UNSAVED_NAME = "PM.noname";
     //private static final String OVERWRITE_TEXT = "PM.dialog.overwrite.text.location";
     //private static final String OVERWRITE_TITLE = "PM.dialog.overwrite.title";
@@ -79,12 +95,15 @@ public class PersistenceManager {
     // internal constants
     private final static String WINDOW_MODIFIED = "windowModified";
     private final static long THREAD_WAIT = 7500L;
+    private final static int AUTOSAVE_DELAY = 5000;
     // instance variables
     private ClientFrame clientFrame = null;
     private boolean isChanged = false;
     private File fileName = null;
     private PropertyChangeListener modListener = null;
     private final ThreadGroup persistTG;
+    private final GameIO gameIO;
+    private final Timer autoSaveTimer;
 
     /** Creates a new PersistenceManager object. */
     public PersistenceManager(ClientFrame clientFrame) {
@@ -92,6 +111,17 @@ public class PersistenceManager {
 
         // create the persistance-manager threadgroup
         persistTG = new ThreadGroup(Thread.currentThread().getThreadGroup(), "jdipPMGroup");
+        gameIO = new GameIO(persistTG);
+
+        // autosave after changes stop; restarted on each change
+        autoSaveTimer = new Timer(AUTOSAVE_DELAY, new ActionListener() {
+
+            @Override
+            public void actionPerformed(ActionEvent e) {
+                autoSave();
+            }// actionPerformed()
+        });
+        autoSaveTimer.setRepeats(false);
 
         // by default, disable Save/Save As until we open/new something.
         setSaveEnabled(false);
@@ -105,6 +135,8 @@ public class PersistenceManager {
                 if (!isChanged()) {
                     setChanged(true);
                 }
+
+                autoSaveTimer.restart();
             }// propertyChange()
         };
         clientFrame.addPropertyChangeListener(ClientFrame.EVT_MODIFIED_STATE, modListener);
@@ -113,6 +145,7 @@ public class PersistenceManager {
     /** Cleanup	*/
     public void close() {
         clientFrame.removePropertyChangeListener(modListener);
+        autoSaveTimer.stop();
     }// close()
 
     /** 
@@ -151,6 +184,14 @@ public class PersistenceManager {
 
             clientFrame.setVisible(false);
 
+            // game file writes must complete, however long they take
+            autoSaveTimer.stop();
+            try {
+                gameIO.flush();
+            } catch (InterruptedException e) {
+                Log.println("PM::exit(): interrupted waiting for writes");
+            }
+
             // wait for any active threads in persistTG; if there are none,
             final int activeCount = persistTG.activeCount();
             Log.println("PM::exit(): threads pending: ", activeCount);
@@ -179,19 +220,11 @@ public class PersistenceManager {
 
     /** Opens a World from the given File, after confirmation */
     public World open(File file) {
-        World world = null;
         if (confirmDialog()) {
-            try {
-                world = readGameFile(file);
-            } catch (Exception e) {
-                ErrorDialog.displayFileIO(clientFrame, e, file.toString());
-            }
-
-            openWorld(world, file);
-            return world;
+            return openGameFile(file);
         }
 
-        return world;
+        return null;
     }// open()
 
     /** Opens a world, displaying a FileChooser dialog. 
@@ -209,20 +242,47 @@ public class PersistenceManager {
 
             // get file name
             if (file != null) {
-                World world = null;
+                return openGameFile(file);
+            }
+        }
+        return null;
+    }// open()
 
-                try {
-                    world = readGameFile(file);
-                } catch (Exception e) {
-                    ErrorDialog.displayFileIO(clientFrame, e, file.toString());
+    /** 
+     *	Reads a game file, or (if the user chooses) its more recent autosave
+     *	file, and opens the World. A World read from the autosave file is
+     *	marked as changed. Returns null if an error occurs.
+     */
+    private World openGameFile(File file) {
+        World world = null;
+        boolean isRecovered = false;
+
+        try {
+            final File autoSaveFile = getAutoSaveFile(file);
+            if (autoSaveFile.lastModified() > file.lastModified()) {
+                final int result = recoverDialog(file);
+                if (result == 0) {
+                    world = readGameFile(autoSaveFile);
+                    isRecovered = true;
+                } else if (result == 2) {
+                    gameIO.delete(autoSaveFile);
                 }
+            }
 
-                openWorld(world, file);
-                return world;
+            if (!isRecovered) {
+                world = readGameFile(file);
             }
+        } catch (Exception e) {
+            ErrorDialog.displayFileIO(clientFrame, e, file.toString());
         }
-        return null;
-    }// open()
+
+        openWorld(world, file);
+        if (world != null && isRecovered) {
+            setChanged(true);
+        }
+
+        return world;
+    }// openGameFile()
 
     /** 
      *	Basic operations performed whenever we read in a World. 
@@ -368,7 +428,18 @@ public class PersistenceManager {
                 File saveToFile = file;
 
                 try {
-                    World.save(saveToFile, clientFrame.getWorld());
+                    // a copy, with its press: the open game keeps its press log
+                    gameIO.writeCopy(clientFrame.getWorld(), saveToFile, new GameIO.Listener() {
+
+                        @Override
+                        public void writeCompleted(File file) {
+                        }// writeCompleted()
+
+                        @Override
+                        public void writeFailed(File file, Exception e) {
+                            displayWriteError(file, e, false);
+                        }// writeFailed()
+                    });
                     // DO NOT clear changed flag, though. 
                     // Update recent file name list
                     GeneralPreferencePanel.setRecentFileName(saveToFile);
@@ -555,11 +626,24 @@ public class PersistenceManager {
                 ggs.save(clientFrame);
             }
 
-            // save data, update saved flags
+            // save data (in the background), update saved flags
             Log.println("PM::writeGameFile(): saving world....");
-            World.save(fileName, w);
-
-            Log.println("PM::writeGameFile(): world saved ok.");
+            final File autoSaveFile = getAutoSaveFile();
+            gameIO.write(w, fileName, new GameIO.Listener() {
+
+                @Override
+                public void writeCompleted(File file) {
+                    Log.println("PM::writeGameFile(): world saved ok.");
+                    autoSaveFile.delete();
+                }// writeCompleted()
+
+                @Override
+                public void writeFailed(File file, Exception e) {
+                    displayWriteError(file, e, true);
+                }// writeFailed()
+            });
+
+            autoSaveTimer.stop();
             setChanged(false);
             return true;
         } catch (Exception e) {
@@ -569,6 +653,47 @@ public class PersistenceManager {
         return false;
     }// writeGameFile()
 
+    /** Autosaves the current world, if it has a file name and has changed. */
+    private void autoSave() {
+        final World w = clientFrame.getWorld();
+        if (w != null && fileName != null && isChanged()) {
+            final File autoSaveFile = getAutoSaveFile();
+            try {
+                Log.println("PM::autoSave(): ", autoSaveFile);
+                gameIO.write(w, autoSaveFile, null);
+            } catch (Exception e) {
+                Log.println("PM::autoSave(): failed: ", e);
+            }
+        }
+    }// autoSave()
+
+    /** The autosave file for the current file name; null if none. */
+    private File getAutoSaveFile() {
+        return (fileName == null) ? null : getAutoSaveFile(fileName);
+    }// getAutoSaveFile()
+
+    /** The autosave file for the given game file. */
+    private static File getAutoSaveFile(File gameFile) {
+        return new File(gameFile.getPath() + LogPressStore.AUTOSAVE_SUFFIX);
+    }// getAutoSaveFile()
+
+    /** 
+     *	Reports a failed background write, on the event dispatch thread. 
+     *	If the write was a save, the game is marked as changed (unsaved).
+     */
+    private void displayWriteError(final File file, final Exception e, final boolean isSave) {
+        SwingUtilities.invokeLater(new Runnable() {
+
+            @Override
+            public void run() {
+                ErrorDialog.displayFileIO(clientFrame, e, file.toString());
+                if (isSave && file.equals(fileName)) {
+                    setChanged(true);
+                }
+            }// run()
+        });
+    }// displayWriteError()
+
     private void setTitle() {
         setTitle(null);
     }// setTitle()
@@ -653,6 +778,13 @@ public class PersistenceManager {
             if (result == 2) {
                 // save; however, if save is cancelled, cancel
                 return save();
+            } else if (result == 0) {
+                // don't save: the autosaved changes are discarded too
+                autoSaveTimer.stop();
+                if (fileName != null) {
+                    gameIO.delete(getAutoSaveFile());
+                }
+                return true;
             } else {
                 return !(result == 3 || result == JOptionPane.CLOSED_OPTION);
             }
@@ -681,6 +813,26 @@ public class PersistenceManager {
         return (result == 0);
     }
 
+    /** 
+     *	Asks whether to open the more recent autosave file of the given game
+     *	file. Returns 0 (open the autosave file), 2 (discard the autosave 
+     *	file), or JOptionPane.CLOSED_OPTION.
+     */
+    private int recoverDialog(File file) {
+        Object[] dlgOptions = {
+            Utils.getLocalString(RECOVER_BUTTON_OPEN), // 0 
+            Box.createRigidArea(new Dimension(25, 5)), // 1 
+            Utils.getLocalString(RECOVER_BUTTON_DISCARD) // 2 
+        };
+
+        String message = Utils.getText(Utils.getLocalString(RECOVER_TEXT), file.getName());
+        String title = Utils.getLocalString(RECOVER_TITLE);
+
+        return JOptionPane.showOptionDialog(clientFrame, message, title,
+                JOptionPane.YES_NO_OPTION, JOptionPane.QUESTION_MESSAGE,
+                null, dlgOptions, dlgOptions[0]);
+    }// recoverDialog()
+
     private boolean loadDialog(String gameInfo) {
         Object[] dlgOptions = {
             Utils.getLocalString(CONFIRM_BUTTON_LOAD), // 0 
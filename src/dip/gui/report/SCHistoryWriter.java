@@ -36,8 +36,10 @@ import dip.gui.dialog.TextViewer;
 import dip.gui.map.MapMetadata;
 import dip.gui.map.SVGColorParser;
 import dip.misc.Utils;
+import dip.world.CompactPosition;
 import dip.world.Phase;
 import dip.world.Position;
+import dip.world.PositionHistory;
 import dip.world.Power;
 import dip.world.Province;
 import dip.world.TurnState;
@@ -70,6 +72,9 @@ public class SCHistoryWriter
 	final Power[] allPowers;
 	final Province[] scProvs;	// provinces with SCs
 	final MapMetadata mmd;
+	final PositionHistory history;
+	final int[] reportTurns;			// history indices of reported turns; first is the initial turn
+	final Position[] reportPositions;	// positions of reported turns
 	
 	/**
 	*	Returns the HTML-encoded Supply Center History for
@@ -148,9 +153,95 @@ public class SCHistoryWriter
 		});
 		
 		this.scProvs = scList.toArray(new Province[scList.size()]);
+		
+		// positions are streamed from the history; TurnStates are only used
+		// for turns that the history cannot represent
+		this.history = w.getPositionHistory();
+		final int[] turns = makeReportTurns();
+		final Position[] positions = new Position[turns.length];
+		
+		final Iterator<CompactPosition> iter = history.positions();
+		for(int turn=0, i=0; i<turns.length; turn++)
+		{
+			Position pos = iter.next();
+			if(pos == null && i < turns.length && turns[i] == turn)
+			{
+				// not representable in the history; use the TurnState
+				final TurnState ts = w.getTurnState(history.getPhase(turn));
+				pos = (ts == null) ? null : ts.getPosition();
+			}
+			
+			while(i < turns.length && turns[i] == turn)
+			{
+				positions[i++] = pos;
+			}
+		}
+		
+		// turns without any Position are not reported
+		int count = 0;
+		for(int i=0; i<turns.length; i++)
+		{
+			if(positions[i] != null)
+			{
+				turns[count] = turns[i];
+				positions[count] = positions[i];
+				count++;
+			}
+		}
+		
+		this.reportTurns = new int[count];
+		this.reportPositions = new Position[count];
+		System.arraycopy(turns, 0, reportTurns, 0, count);
+		System.arraycopy(positions, 0, reportPositions, 0, count);
 	}// SCHistoryWriter()
 	
 	
+	/** 
+	*	Returns the history indices of the turns reported: the initial turn, 
+	*	then one turn for each Fall season.
+	*/
+	private int[] makeReportTurns()
+	{
+		final List<Integer> turnList = new ArrayList<Integer>(100);
+		
+		// add initial phase
+		turnList.add(Integer.valueOf(0));
+		
+		for(int i=0; i<history.size(); i++)
+		{
+			// we want the RETREAT or MOVE phase for a fall season, 
+			// but not both (a unit could retreat into a SC; thus we need to check)
+			//
+			int turn = i;
+			final Phase phase = history.getPhase(i);
+			if(phase.getSeasonType() == Phase.SeasonType.FALL)
+			{
+				if(phase.getPhaseType() == Phase.PhaseType.MOVEMENT)
+				{
+					if(i + 1 < history.size())
+					{
+						i++;
+						if(history.getPhase(i).getPhaseType() == Phase.PhaseType.RETREAT)
+						{
+							turn = i;
+						}
+					}
+					
+					turnList.add(Integer.valueOf(turn));
+				}
+			}
+		}
+		
+		final int[] turns = new int[turnList.size()];
+		for(int i=0; i<turns.length; i++)
+		{
+			turns[i] = turnList.get(i).intValue();
+		}
+		
+		return turns;
+	}// makeReportTurns()
+	
+	
 	
 	/** Write SC History as HTML */
 	private String getAsHTML()
@@ -245,40 +336,9 @@ public class SCHistoryWriter
 	{
 		// cols: # of appropriate turns + 1 (first column is the province name)
 		//
-		final ArrayList<TurnState> turnList = new ArrayList<TurnState>(100);	// array of TurnStates
-		
-		// add initial phase
-		turnList.add(world.getInitialTurnState());
-		                
-		final Iterator<TurnState> iter = world.getAllTurnStates().iterator();
-		while(iter.hasNext())
-		{
-			// we want the RETREAT or MOVE phase for a fall season, 
-			// but not both (a unit could retreat into a SC; thus we need to check)
-			//
-			TurnState ts = iter.next();
-			Phase phase = ts.getPhase();
-			if(phase.getSeasonType() == Phase.SeasonType.FALL)
-			{
-				if(phase.getPhaseType() == Phase.PhaseType.MOVEMENT)
-				{
-					if(iter.hasNext())
-					{
-						TurnState nextTS = iter.next();
-						if(nextTS.getPhase().getPhaseType() == Phase.PhaseType.RETREAT)
-						{
-							ts = nextTS;
-						}
-					}
-					
-					turnList.add(ts);
-				}
-			}
-		}
-		
 		// rows: == # of SC + 1 (first row is the 'header' row)
 		// make the array (rectangular)
-		final int cols = turnList.size() + 1;	// easier; cols == array[0].length
+		final int cols = reportTurns.length + 1;	// easier; cols == array[0].length
 		Object[][] array = new Object[scProvs.length + 1][cols];
 		
 		// fill the array
@@ -294,15 +354,14 @@ public class SCHistoryWriter
 		array[0][1] = Utils.getLocalString(LABEL_INITIAL);
 		for(int i=2; i<cols; i++)
 		{
-			array[0][i] = turnList.get(i-1).getPhase().getYearType();
+			array[0][i] = history.getPhase(reportTurns[i-1]).getYearType();
 		}
 		
 		// 'the rest': fill in with power or null (un-owned)
 		// we will fill by columns.
 		for(int i=1; i<cols; i++)
 		{
-			final TurnState ts = turnList.get(i-1);
-			final Position pos = ts.getPosition();
+			final Position pos = reportPositions[i-1];
 			
 			for(int scIdx=0; scIdx<scProvs.length; scIdx++)
 			{
@@ -345,35 +404,10 @@ public class SCHistoryWriter
 		
 		sb.append("</tr>");
 		
-		// First make the Start (Initial Row).
-		sb.append(makeSCCountTableRow(world.getInitialTurnState()));
-		
-		// make all other rows.
-		Iterator<TurnState> iter = world.getAllTurnStates().iterator();
-		while(iter.hasNext())
+		// First row is the Start (Initial Row).
+		for(int i=0; i<reportTurns.length; i++)
 		{
-			// we want the RETREAT or MOVE phase for a fall season, 
-			// but not both.
-			// (a unit could retreat into a SC; thus we need to check)
-			//
-			TurnState ts = iter.next();
-			Phase phase = ts.getPhase();
-			if(phase.getSeasonType() == Phase.SeasonType.FALL)
-			{
-				if(phase.getPhaseType() == Phase.PhaseType.MOVEMENT)
-				{
-					if(iter.hasNext())
-					{
-						TurnState nextTS = iter.next();
-						if(nextTS.getPhase().getPhaseType() == Phase.PhaseType.RETREAT)
-						{
-							ts = nextTS;
-						}
-					}
-					
-					sb.append(makeSCCountTableRow(ts));
-				}
-			}
+			sb.append(makeSCCountTableRow(history.getPhase(reportTurns[i]), reportPositions[i], (reportTurns[i] == 0)));
 		}
 		
 		sb.append("</table>");
@@ -382,9 +416,8 @@ public class SCHistoryWriter
 	
 	
 	/** Make a row for the SC Summary table, including the Index. */
-	private String makeSCCountTableRow(TurnState ts)
+	private String makeSCCountTableRow(Phase phase, Position position, boolean isInitial)
 	{
-		final Phase phase = ts.getPhase();
 		StringBuffer sb = new StringBuffer(64);
 		
 		sb.append("<tr>");
@@ -392,7 +425,7 @@ public class SCHistoryWriter
 		// year, unless initial turnstate.
 		sb.append(TD_HEADER);
 		sb.append("<b>");
-		if(world.getInitialTurnState() == ts)
+		if(isInitial)
 		{
 			sb.append(Utils.getLocalString(LABEL_INITIAL));
 		}
@@ -405,7 +438,7 @@ public class SCHistoryWriter
 		int sumOfSquares = 0;
 		for(int i=0; i<allPowers.length; i++)
 		{
-			Province[] ownedSC = ts.getPosition().getOwnedSupplyCenters(allPowers[i]);
+			Province[] ownedSC = position.getOwnedSupplyCenters(allPowers[i]);
 			final int count = ownedSC.length;
 			
 			sumOfSquares += (count * count);
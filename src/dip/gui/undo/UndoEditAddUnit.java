@@ -38,6 +38,7 @@ import dip.world.Unit;
 */	
 public class UndoEditAddUnit extends XAbstractUndoableEdit
 {
+	private static final long serialVersionUID = 1L;
 	private static final String PRESENTATION_NAME = "Undo.edit.addunit";
 	
 	// instance variables
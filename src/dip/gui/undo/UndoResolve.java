@@ -44,6 +44,7 @@ import dip.world.World;
 */	
 public class UndoResolve extends XAbstractUndoableEdit
 {
+	private static final long serialVersionUID = 1L;
 	// instance variables
 	private final static String PRESENTATION_NAME_PREFIX = "Undo.resolve";
 	private TurnState resolvedTS;
@@ -254,11 +254,9 @@ public class AdjustmentParser {
         ownerList = new LinkedList<OwnerInfo>();
         adjustList = new LinkedList<AdjustInfo>();
 
-        // create patterns
-        regexAdjust = Pattern.compile(ADJUST_REGEX);
-
-        // Create HEADER_REGEX pattern
-        Pattern header = Pattern.compile(HEADER_REGEX);
+        // get patterns
+        regexAdjust = JudgePatterns.ADJUSTMENT;
+        Pattern header = JudgePatterns.ADJUSTMENT_HEADER;
 
         // search for HEADER_REGEX
         // create a block of text                      
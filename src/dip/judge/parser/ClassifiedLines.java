@@ -0,0 +1,102 @@
+//
+//  @(#)ClassifiedLines.java	1.00	10/2004
+//
+//  Copyright 2004 the jDip development team. All rights reserved.
+//  Use is subject to license terms.
+//
+//
+//  This program is free software; you can redistribute it and/or modify
+//  it under the terms of the GNU General Public License as published by
+//  the Free Software Foundation; either version 2 of the License, or
+//  (at your option) any later version.
+//
+//  This program is distributed in the hope that it will be useful,
+//  but WITHOUT ANY WARRANTY; without even the implied warranty of
+//  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+//  GNU General Public License for more details.
+//
+//  You should have received a copy of the GNU General Public License
+//  along with this program; if not, write to the Free Software
+//  Foundation, Inc., 675 Mass Ave, Cambridge, MA 02139, USA.
+//  Or from http://www.gnu.org/
+//
+package dip.judge.parser;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ *	The long lines (see ParserUtils.SHORT_LINE) of a block of judge text, 
+ *	trimmed, each classified once by JudgePatterns.classify(). 
+ *	<p>
+ *	A Turn's text is parsed for orders several times during a history 
+ *	import; with ClassifiedLines the text is split and classified only once.
+ */
+final class ClassifiedLines {
+
+    private final String[] lines;
+    private final byte[] types;
+
+    /** Split and classify the given text. */
+    ClassifiedLines(final String text) {
+        final List<String> lineList = new ArrayList<String>(64);
+
+        int start = 0;
+        final int len = text.length();
+        while (start < len) {
+            // line terminators as for BufferedReader.readLine()
+            int end = start;
+            while (end < len && text.charAt(end) != '\n' && text.charAt(end) != '\r') {
+                end++;
+            }
+
+            if (end - start > ParserUtils.SHORT_LINE) {
+                lineList.add(text.substring(start, end).trim());
+            }
+
+            if (end < len - 1 && text.charAt(end) == '\r' && text.charAt(end + 1) == '\n') {
+                end++;
+            }
+
+            start = end + 1;
+        }
+
+        lines = lineList.toArray(new String[lineList.size()]);
+        types = new byte[lines.length];
+        for (int i = 0; i < lines.length; i++) {
+            types[i] = (byte) JudgePatterns.classify(lines[i]);
+        }
+    }// ClassifiedLines()
+
+    /** The number of lines. */
+    int size() {
+        return lines.length;
+    }// size()
+
+    /** The given line, trimmed. */
+    String getLine(final int index) {
+        return lines[index];
+    }// getLine()
+
+    /** The type of the given line; a JudgePatterns.LINE_ constant. */
+    int getType(final int index) {
+        return types[index];
+    }// getType()
+
+    /** 
+     *	Index of the first order block header (movement, retreat, or 
+     *	adjustment); -1 if there is none. 
+     */
+    int indexOfOrderHeader() {
+        for (int i = 0; i < types.length; i++) {
+            final int type = types[i];
+            if (type == JudgePatterns.LINE_MOVE_HEADER
+                    || type == JudgePatterns.LINE_RETREAT_HEADER
+                    || type == JudgePatterns.LINE_ADJUSTMENT_HEADER) {
+                return i;
+            }
+        }
+
+        return -1;
+    }// indexOfOrderHeader()
+}// class ClassifiedLines
@@ -208,9 +208,9 @@ public class DislodgedParser
 	private void parseInput(String input)
 	throws IOException
 	{
-		// Create HEADER_REGEX pattern, HEADER_END_REGEX pattern 
-		Pattern header = Pattern.compile(HEADER_REGEX);
-		Pattern endHeader = Pattern.compile(HEADER_END_REGEX);
+		// HEADER_REGEX pattern, HEADER_END_REGEX pattern 
+		Pattern header = JudgePatterns.DISLODGED_HEADER;
+		Pattern endHeader = JudgePatterns.DISLODGED_HEADER_END;
 		
 		// search for HEADER_REGEX
 		// keep searching until we find an empty line, or HEADER_END_REGEX.
@@ -291,9 +291,9 @@ public class DislodgedParser
 		// create a list of Dislodged units
 		final List<DislodgedInfo> disList = new LinkedList<DislodgedInfo>();
 		
-		// Create patterns
-		Pattern destroyed = Pattern.compile(DESTROYED_REGEX);
-		Pattern dislodged = Pattern.compile(DISLODGED_REGEX);
+		// get patterns
+		Pattern destroyed = JudgePatterns.DESTROYED;
+		Pattern dislodged = JudgePatterns.DISLODGED;
 		
 		
 		// parse accum line-by-line, looking for DESTROYED_REGEX and
@@ -321,7 +321,7 @@ public class DislodgedParser
 				if(m.lookingAt())
 				{
 					// parse location-list predicate
-					String[] retreatLocs = m.group(4).split(DISLODGED_SPLIT_REGEX);
+					String[] retreatLocs = JudgePatterns.DISLODGED_SPLIT.split(m.group(4));
 					for(int i=0; i<retreatLocs.length; i++)
 					{
 						retreatLocs[i] = ParserUtils.filter(retreatLocs[i]);
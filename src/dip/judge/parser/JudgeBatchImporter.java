@@ -0,0 +1,412 @@
+//
+//  @(#)JudgeBatchImporter.java	1.00	10/2004
+//
+//  Copyright 2004 the jDip development team. All rights reserved.
+//  Use is subject to license terms.
+//
+//
+//  This program is free software; you can redistribute it and/or modify
+//  it under the terms of the GNU General Public License as published by
+//  the Free Software Foundation; either version 2 of the License, or
+//  (at your option) any later version.
+//
+//  This program is distributed in the hope that it will be useful,
+//  but WITHOUT ANY WARRANTY; without even the implied warranty of
+//  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+//  GNU General Public License for more details.
+//
+//  You should have received a copy of the GNU General Public License
+//  along with this program; if not, write to the Free Software
+//  Foundation, Inc., 675 Mass Ave, Cambridge, MA 02139, USA.
+//  Or from http://www.gnu.org/
+//
+package dip.judge.parser;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import dip.misc.Log;
+import dip.misc.Utils;
+import dip.order.OrderFactory;
+import dip.world.World;
+import dip.world.variant.VariantManager;
+
+/**
+ *	Imports many judge game histories (or listings) concurrently, writing
+ *	each as a jDip save game.
+ *	<p>
+ *	Each file is imported by its own JudgeImport, into its own World, on a
+ *	thread supplied by an ExecutorService; files therefore share no mutable
+ *	objects. A failure to import one file does not affect the others; it is
+ *	reported by that file's ImportResult.
+ *	<p>
+ *	VariantManager must be initialized before importing. As with the 
+ *	BatchAdjudicator, logging (see dip.misc.Log) is not MT safe, and should 
+ *	be disabled.
+ *	<p>
+ *	This may also be run from the command line; see {@link #main(String[])}.
+ */
+public class JudgeBatchImporter {
+
+    /** Name of the report file written by the command-line importer */
+    public static final String REPORT_FILE_NAME = "import-report.txt";
+    private static final String VARIANT_DIR = "variants";
+    private static final String SAVE_EXT_KEY = "SimpleFileFilter.savegame.extension";
+
+    private final OrderFactory orderFactory;
+    private final ExecutorService executor;
+    private final boolean isOwnExecutor;
+    private final String saveExtension;
+
+    /** 
+     *	Create a JudgeBatchImporter with the given number of threads. Call
+     *	{@link #shutdown()} when finished.
+     */
+    public JudgeBatchImporter(OrderFactory orderFactory, int nThreads) {
+        this(orderFactory, Executors.newFixedThreadPool(nThreads), true);
+    }// JudgeBatchImporter()
+
+    /** 
+     *	Create a JudgeBatchImporter that uses the given ExecutorService. The
+     *	ExecutorService is not shut down by {@link #shutdown()}.
+     */
+    public JudgeBatchImporter(OrderFactory orderFactory, ExecutorService executor) {
+        this(orderFactory, executor, false);
+    }// JudgeBatchImporter()
+
+    private JudgeBatchImporter(OrderFactory orderFactory, ExecutorService executor, boolean isOwnExecutor) {
+        if (orderFactory == null || executor == null) {
+            throw new IllegalArgumentException();
+        }
+
+        this.orderFactory = orderFactory;
+        this.executor = executor;
+        this.isOwnExecutor = isOwnExecutor;
+        this.saveExtension = "." + Utils.getLocalString(SAVE_EXT_KEY);
+    }// JudgeBatchImporter()
+
+    /**
+     *	Submit a single file for import. The World is saved to outputDir, 
+     *	with the name of the input file and a save game extension.
+     */
+    public Future<ImportResult> submit(final File input, final File outputDir) {
+        if (input == null || outputDir == null) {
+            throw new IllegalArgumentException();
+        }
+
+        return executor.submit(new Callable<ImportResult>() {
+
+            @Override
+            public ImportResult call() {
+                return process(input, outputDir);
+            }
+        });
+    }// submit()
+
+    /**
+     *	Imports all given files concurrently, and waits until all have been 
+     *	imported. Results are returned in the order of the given List. An 
+     *	exception while importing one file is reported by its ImportResult;
+     *	an Error (for example, OutOfMemoryError) is rethrown.
+     *
+     *	@throws InterruptedException if interrupted while waiting
+     */
+    public List<ImportResult> importFiles(final List<File> inputs, final File outputDir)
+            throws InterruptedException {
+        final List<Future<ImportResult>> futures = new ArrayList<Future<ImportResult>>(inputs.size());
+        for (final File input : inputs) {
+            futures.add(submit(input, outputDir));
+        }
+
+        final List<ImportResult> results = new ArrayList<ImportResult>(futures.size());
+        for (int i = 0; i < futures.size(); i++) {
+            try {
+                results.add(futures.get(i).get());
+            } catch (ExecutionException e) {
+                // process() catches all exceptions; only an Error gets here.
+                if (e.getCause() instanceof Error) {
+                    throw (Error) e.getCause();
+                }
+
+                throw new IllegalStateException(e.getCause());
+            }
+        }
+
+        return results;
+    }// importFiles()
+
+    /**
+     *	Imports all files in the given directory (subdirectories and hidden
+     *	files are ignored), in name order. See {@link #importFiles(List, File)}.
+     */
+    public List<ImportResult> importDirectory(final File inputDir, final File outputDir)
+            throws IOException, InterruptedException {
+        final File[] files = inputDir.listFiles();
+        if (files == null) {
+            throw new IOException("cannot read directory: " + inputDir);
+        }
+
+        Arrays.sort(files);
+
+        final List<File> inputs = new ArrayList<File>(files.length);
+        for (final File file : files) {
+            if (file.isFile() && !file.isHidden()) {
+                inputs.add(file);
+            }
+        }
+
+        return importFiles(inputs, outputDir);
+    }// importDirectory()
+
+    /** 
+     *	Shuts down the executor, if it was created by this JudgeBatchImporter.
+     *	Already-submitted files are still imported.
+     */
+    public void shutdown() {
+        if (isOwnExecutor) {
+            executor.shutdown();
+        }
+    }// shutdown()
+
+    /** Import and save a single file; called from an executor thread. */
+    private ImportResult process(final File input, final File outputDir) {
+        final long startTime = System.nanoTime();
+
+        Reader reader = null;
+        try {
+            reader = new BufferedReader(new FileReader(input), 8192);
+            final JudgeImport ji = new JudgeImport(orderFactory, reader, null);
+            final World world = ji.getWorld();
+            if (ji.getResult() != JudgeImport.JI_RESULT_NEWWORLD || world == null) {
+                // e.g., adjudication results, which require an existing game
+                throw new IOException("not a game history or listing: " + ji.getGameInfo());
+            }
+
+            final File output = new File(outputDir, getSaveName(input));
+            World.save(output, world);
+
+            return new ImportResult(input, output, world.getPhaseSet().size(),
+                    null, System.nanoTime() - startTime);
+        } catch (Exception e) {
+            return new ImportResult(input, null, 0, e, System.nanoTime() - startTime);
+        } finally {
+            if (reader != null) {
+                try {
+                    reader.close();
+                } catch (IOException e) {
+                    // ignore
+                }
+            }
+        }
+    }// process()
+
+    /** Name of the save game for an input file; any extension is replaced. */
+    private String getSaveName(final File input) {
+        final String name = input.getName();
+        final int idx = name.lastIndexOf('.');
+        return ((idx > 0) ? name.substring(0, idx) : name) + saveExtension;
+    }// getSaveName()
+
+    /**
+     *	Writes a report of the given results: a line per file, with tab-separated
+     *	file name, status (OK or FAILED), import time in milliseconds, and the 
+     *	number of phases imported or the failure message; followed by totals.
+     */
+    public static void writeReport(final PrintWriter pw, final List<ImportResult> results) {
+        int nFailed = 0;
+        long totalTime = 0L;
+
+        for (final ImportResult result : results) {
+            pw.print(result.getInput().getName());
+            pw.print('\t');
+            pw.print(result.isSuccessful() ? "OK" : "FAILED");
+            pw.print('\t');
+            pw.print(result.getTime() / 1000000L);
+            pw.print('\t');
+            if (result.isSuccessful()) {
+                pw.println(result.getPhaseCount());
+            } else {
+                final Exception failure = result.getFailure();
+                final String message = failure.getMessage();
+                pw.println((message == null) ? failure.toString() : message.replace('\n', ' '));
+                nFailed++;
+            }
+
+            totalTime += result.getTime();
+        }
+
+        pw.print("# files: ");
+        pw.print(results.size());
+        pw.print("  failed: ");
+        pw.print(nFailed);
+        pw.print("  total import time (ms): ");
+        pw.println(totalTime / 1000000L);
+    }// writeReport()
+
+    /** Command-line entry point */
+    public static void main(String args[]) {
+        int nThreads = Runtime.getRuntime().availableProcessors();
+        File variantDir = (System.getProperty("user.dir") == null)
+                ? new File(".", VARIANT_DIR) : new File(System.getProperty("user.dir"), VARIANT_DIR);
+
+        int argIdx = 0;
+        while (argIdx < args.length && args[argIdx].startsWith("-")) {
+            final String arg = args[argIdx].trim().toLowerCase();
+            if (arg.startsWith("-threads:")) {
+                try {
+                    nThreads = Integer.parseInt(arg.substring(arg.indexOf(':') + 1));
+                } catch (NumberFormatException e) {
+                    nThreads = -1;
+                }
+
+                if (nThreads <= 0) {
+                    System.err.println("ERROR: invalid argument: " + args[argIdx]);
+                    printUsageAndExit();
+                }
+            } else if (arg.startsWith("-variants:")) {
+                variantDir = new File(args[argIdx].substring(arg.indexOf(':') + 1));
+            } else {
+                printUsageAndExit();
+            }
+
+            argIdx++;
+        }
+
+        if (args.length - argIdx != 2) {
+            printUsageAndExit();
+        }
+
+        final File inputDir = new File(args[argIdx]);
+        final File outputDir = new File(args[argIdx + 1]);
+        if (!inputDir.isDirectory()) {
+            System.err.println("ERROR: not a directory: " + inputDir);
+            printUsageAndExit();
+        }
+
+        if (!outputDir.isDirectory() && !outputDir.mkdirs()) {
+            System.err.println("ERROR: cannot create directory: " + outputDir);
+            System.exit(1);
+        }
+
+        Log.setLogging(false);
+
+        JudgeBatchImporter importer = null;
+        try {
+            final List<File> searchPaths = new ArrayList<File>(1);
+            searchPaths.add(variantDir);
+            VariantManager.init(searchPaths, false);
+
+            importer = new JudgeBatchImporter(OrderFactory.getDefault(), nThreads);
+
+            final long startTime = System.currentTimeMillis();
+            final List<ImportResult> results = importer.importDirectory(inputDir, outputDir);
+            final long elapsed = System.currentTimeMillis() - startTime;
+
+            final File reportFile = new File(outputDir, REPORT_FILE_NAME);
+            final PrintWriter pw = new PrintWriter(new OutputStreamWriter(new FileOutputStream(reportFile), "UTF-8"));
+            try {
+                writeReport(pw, results);
+                pw.print("# threads: ");
+                pw.print(nThreads);
+                pw.print("  elapsed time (ms): ");
+                pw.println(elapsed);
+            } finally {
+                pw.close();
+            }
+
+            int nFailed = 0;
+            for (final ImportResult result : results) {
+                if (!result.isSuccessful()) {
+                    nFailed++;
+                }
+            }
+
+            System.out.println("Imported " + (results.size() - nFailed) + " of " + results.size()
+                    + " files in " + elapsed + " ms; report: " + reportFile);
+            System.exit((nFailed == 0) ? 0 : 2);
+        } catch (Exception e) {
+            System.err.println("ERROR: " + e);
+            e.printStackTrace();
+            System.exit(1);
+        } finally {
+            if (importer != null) {
+                importer.shutdown();
+            }
+        }
+    }// main()
+
+    private static void printUsageAndExit() {
+        System.out.println("USAGE: JudgeBatchImporter [-threads:n] [-variants:dir] <input-dir> <output-dir>");
+        System.out.println("  Imports each judge history or listing file in input-dir, and writes it");
+        System.out.println("  as a save game to output-dir, along with a report (" + REPORT_FILE_NAME + ").");
+        System.out.println("  -threads:n      import n files at a time (default: one per processor)");
+        System.out.println("  -variants:dir   variant directory (default: ./" + VARIANT_DIR + ")");
+        System.out.println("");
+        System.out.println("  Examples:");
+        System.out.println("      java dip.judge.parser.JudgeBatchImporter histories saves");
+        System.out.println("      java dip.judge.parser.JudgeBatchImporter -threads:16 histories saves");
+        System.exit(1);
+    }// printUsageAndExit()
+
+    /** The result of importing a single file in a batch. */
+    public static final class ImportResult {
+
+        private final File input;
+        private final File output;
+        private final int phaseCount;
+        private final Exception failure;
+        private final long time;
+
+        private ImportResult(File input, File output, int phaseCount, Exception failure, long time) {
+            this.input = input;
+            this.output = output;
+            this.phaseCount = phaseCount;
+            this.failure = failure;
+            this.time = time;
+        }// ImportResult()
+
+        /** The imported file. */
+        public File getInput() {
+            return input;
+        }
+
+        /** The save game written; null if the import failed. */
+        public File getOutput() {
+            return output;
+        }
+
+        /** The number of phases (TurnStates) in the imported game. */
+        public int getPhaseCount() {
+            return phaseCount;
+        }
+
+        /** Returns <code>true</code> if the file was imported and saved. */
+        public boolean isSuccessful() {
+            return (failure == null);
+        }
+
+        /** The exception thrown during import or save; null if successful. */
+        public Exception getFailure() {
+            return failure;
+        }
+
+        /** Import and save time, in nanoseconds. */
+        public long getTime() {
+            return time;
+        }
+    }// nested class ImportResult
+}// class JudgeBatchImporter
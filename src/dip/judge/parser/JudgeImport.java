@@ -83,6 +83,22 @@ public class JudgeImport
 	private World currentWorld = null;
 	private String importResult = JI_RESULT_NEWWORLD;
 	private String gameInfo; // e.g. "Game: test  Judge: USCA  Variant: Standard S1901M"
+	private TurnStateSink sink = null;
+	
+	
+	/**
+	*	Receives TurnStates as a game history is imported. Each TurnState is
+	*	passed once it has been completely processed, in phase order. 
+	*	<p>
+	*	When a sink is used, TurnStates passed to it (except for the final
+	*	few) are removed from the World, so that a long history may be 
+	*	imported without holding every TurnState in memory.
+	*/
+	public interface TurnStateSink
+	{
+		/** Called when the given TurnState has been completely processed. */
+		public void turnStateCompleted(TurnState ts) throws IOException;
+	}// nested interface TurnStateSink
 	
 	/** Creates a JudgeImport object from a File */
 	public JudgeImport(OrderFactory orderFactory, File file, World currentWorld)
@@ -102,10 +118,23 @@ public class JudgeImport
 	/** Creates a JudgeImport object from a generic Reader */
 	public JudgeImport(OrderFactory orderFactory, Reader reader, World currentWorld)
 	throws IOException, PatternSyntaxException
+	{
+		this(orderFactory, reader, currentWorld, null);
+	}// JudgeImport()
+	
+	
+	/** 
+	*	Creates a JudgeImport object from a generic Reader. Game histories
+	*	are read turn by turn from the Reader; if sink is not null, 
+	*	completed TurnStates are passed to it as they are processed.
+	*/
+	public JudgeImport(OrderFactory orderFactory, Reader reader, World currentWorld, TurnStateSink sink)
+	throws IOException, PatternSyntaxException
 	{
 		this.orderFactory = orderFactory;
 		this.currentWorld = currentWorld;
-		jp = new JudgeParser(orderFactory, reader);
+		this.sink = sink;
+		jp = new JudgeParser(orderFactory, reader, true);
 		procJudgeInput();
 	}// JudgeImport()
 	
@@ -212,7 +241,7 @@ public class JudgeImport
 		}
 		else if (jp.getType() == JudgeParser.JP_TYPE_HISTORY)
 		{
-			JudgeImportHistory jih = new JudgeImportHistory(orderFactory, world, jp, position);
+			JudgeImportHistory jih = new JudgeImportHistory(orderFactory, world, jp, position, sink);
 			world = jih.getWorld();
 		}
 		else if (jp.getType() == JudgeParser.JP_TYPE_RESULTS)
@@ -223,7 +252,7 @@ public class JudgeImport
 		{
 			jp.prependText("Subject: "+jp.getJudgeName()+":"+jp.getGameName()+" - "+
 						   jp.getPhase().getBriefName()+" Game Starting\n");
-			JudgeImportHistory jih = new JudgeImportHistory(orderFactory, world, jp, position);
+			JudgeImportHistory jih = new JudgeImportHistory(orderFactory, world, jp, position, sink);
 			world = jih.getWorld();
 		}
 		else {
@@ -22,7 +22,9 @@
 //
 package dip.judge.parser;
 
+import java.io.FilterReader;
 import java.io.IOException;
+import java.io.Reader;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.Iterator;
@@ -30,7 +32,6 @@ import java.util.LinkedList;
 import java.util.List;
 import java.util.ListIterator;
 import java.util.regex.Matcher;
-import java.util.regex.Pattern;
 import java.util.regex.PatternSyntaxException;
 
 import dip.judge.parser.TurnParser.Turn;
@@ -99,21 +100,33 @@ final class JudgeImportHistory {
     private final ValidationOptions valOpts;
     private HSCInfo[] homeSCInfo = null;
     private boolean finalTurn = false;
+    private final JudgeImport.TurnStateSink sink;
 
     /** Create a JudgeImportHistory */
     protected JudgeImportHistory(OrderFactory orderFactory, World world, JudgeParser jp, Position oldPosition)
             throws IOException, PatternSyntaxException {
+        this(orderFactory, world, jp, oldPosition, null);
+    }// JudgeImportHistory()
+
+    /** 
+     *	Create a JudgeImportHistory. If sink is not null, completed TurnStates are
+     *	passed to it as the history is processed; see JudgeImport.TurnStateSink.
+     */
+    protected JudgeImportHistory(OrderFactory orderFactory, World world, JudgeParser jp, Position oldPosition,
+            JudgeImport.TurnStateSink sink)
+            throws IOException, PatternSyntaxException {
         this.orderFactory = orderFactory;
         this.world = world;
         this.jp = jp;
         this.oldPosition = oldPosition;
         this.map = world.getMap();
+        this.sink = sink;
 
         // create a very strict validation object, loose seems to have some weird problems when importing.
         valOpts = new ValidationOptions();
         valOpts.setOption(ValidationOptions.KEY_GLOBAL_PARSING, ValidationOptions.OPTION_GLOBAL_PARSING_STRICT);
 
-        processTurns();
+        processTurns(jp.getTextReader());
     }// JudgeImportHistory()
 
     /** Create a JudgeImportHistory and process a single turn */
@@ -124,6 +137,7 @@ final class JudgeImportHistory {
         this.jp = jp;
         this.oldPosition = world.getLastTurnState().getPosition();
         this.map = world.getMap();
+        this.sink = null;
 
         // create a very strict validation object, loose seems to have some weird problems when importing.
         valOpts = new ValidationOptions();
@@ -140,30 +154,38 @@ final class JudgeImportHistory {
     /** 
      *	Processes the Turn data, starting with the first Movement phase. An exception is
      *	thrown if no Movement phase exists. 
+     *	<p>
+     *	Turns are parsed from the input one at a time, and each is processed as soon 
+     *	as the following Turn has been parsed (so that the final Turn is known). 
+     *	Only the Turns required for processing (the current turn, and the two 
+     *	preceding it) are held. If there is a sink, TurnStates that can no longer 
+     *	change are passed to it and removed from the World.
      *
      */
-    private void processTurns()
+    private void processTurns(Reader input)
             throws IOException, PatternSyntaxException {
-        // break data up into turns
-        Turn[] turns = new TurnParser(jp.getText()).getTurns();
-        //System.out.println("# of turns: "+turns.length);
+        // the text is retained only until the first movement phase is found;
+        // it is needed if there is none.
+        final TextRecorder recorder = new TextRecorder(input);
+        final TurnParser turnParser = new TurnParser(recorder);
 
         // find first movement phase, if any
-        int firstMovePhase = -1;
-        for (int i = 0; i < turns.length; i++) {
-            if (turns[i].getPhase() != null) {
-                if (turns[i].getPhase().getPhaseType() == Phase.PhaseType.MOVEMENT) {
-                    firstMovePhase = i;
-                    break;
-                }
-            }
+        Turn turn = turnParser.next();
+        Turn prevTurn = null;
+        Turn thirdTurn = null;
+        while (turn != null && (turn.getPhase() == null
+                || turn.getPhase().getPhaseType() != Phase.PhaseType.MOVEMENT)) {
+            thirdTurn = prevTurn;
+            prevTurn = turn;
+            turn = turnParser.next();
         }
 
         // If we couldn't find the first movement phase... perhaps the game is just starting
-        if (firstMovePhase == -1) {
+        if (turn == null) {
             // Try to use the text info to create the game at its starting positions
             try {
-                createStartingPositions();
+                createStartingPositions(recorder.getText());
+                flushTurnStates();
                 // Don't do the rest of this method, it will all fail.
                 return;
             } catch (IOException e) {
@@ -171,7 +193,7 @@ final class JudgeImportHistory {
             }
         }
 
-        //System.out.println("First move phase: "+firstMovePhase);	
+        recorder.stopRecording();
 
         // get home supply center information from the oldPosition object
         // and store it in HSCInfo object array, so that it can be set during each successive 
@@ -187,51 +209,43 @@ final class JudgeImportHistory {
         homeSCInfo = hscList.toArray(new HSCInfo[hscList.size()]);
 
         // process all but the final phase
-        for (int i = firstMovePhase; i < turns.length - 1; i++) {
-            //System.out.println("processing turn: "+i+"; phase = "+turns[i].getPhase());
-            if (i == 0) {
-                procTurn(turns[i], null, null, false);
-            } else if (i == 1) {
-                procTurn(turns[i], turns[i - 1], null, false);
-            } else {
-                procTurn(turns[i], turns[i - 1], turns[i - 2], false);
-            }
+        Turn fourthTurn = null;
+        Turn nextTurn = turnParser.next();
+        while (nextTurn != null) {
+            procTurn(turn, prevTurn, thirdTurn, false);
+
+            // processing a turn may revisit the two turns before it, and 
+            // copies from the turn before those; older turns are complete.
+            retireTurnState(fourthTurn);
+
+            fourthTurn = thirdTurn;
+            thirdTurn = prevTurn;
+            prevTurn = turn;
+            turn = nextTurn;
+            nextTurn = turnParser.next();
         }
+
         // process the last turn once more, but as the final turn, to allow proper positioning.
         finalTurn = true;
-        if (turns.length == 1) {
-            procTurn(turns[turns.length - 1], null, null, true);
-        } else if (turns.length == 2) {
-            procTurn(turns[turns.length - 1], turns[turns.length - 2], null, true);
-        } else if (turns.length >= 3) {
-            procTurn(turns[turns.length - 1], turns[turns.length - 2], turns[turns.length - 3], true);
-        }
+        procTurn(turn, prevTurn, thirdTurn, true);
 
-        Pattern endofgame = Pattern.compile(END_FOF_GAME);
-
-        Matcher e = endofgame.matcher(turns[turns.length - 1].getText());
+        Matcher e = JudgePatterns.END_OF_GAME.matcher(turn.getText());
 
         if (!e.find()) {
 
             // create last (un-resolved) turnstate
-            makeLastTurnState(turns[turns.length - 1]);
+            makeLastTurnState(turn);
 
             // reprocess the last turn, again, not as final, so it looks right for viewing.
             finalTurn = false;
-            if (turns.length == 1) {
-                procTurn(turns[turns.length - 1], null, null, false);
-            } else if (turns.length == 2) {
-                procTurn(turns[turns.length - 1], turns[turns.length - 2], null, false);
-            } else if (turns.length >= 3) {
-                procTurn(turns[turns.length - 1], turns[turns.length - 2], turns[turns.length - 3], false);
-            }
+            procTurn(turn, prevTurn, thirdTurn, false);
         } else {
             // The imported game has ended
             // Reprocess the last turn, again, not as final, so it looks right for viewing.
             finalTurn = false;
-            procTurn(turns[turns.length - 1], turns[turns.length - 2], turns[turns.length - 3], false);
+            procTurn(turn, prevTurn, thirdTurn, false);
             // Set the game as ended.
-            TurnState ts = world.getTurnState(turns[turns.length - 1].getPhase());
+            TurnState ts = world.getTurnState(turn.getPhase());
             VictoryConditions vc = world.getVictoryConditions();
             RuleOptions ruleOpts = world.getRuleOptions();
             Adjustment.AdjustmentInfoMap adjMap = Adjustment.getAdjustmentInfo(ts, ruleOpts, world.getMap().getPowers());
@@ -245,8 +259,39 @@ final class JudgeImportHistory {
         }
 
         // all phases have been processed; perform post-processing here.
+        flushTurnStates();
     }// processTurns()
 
+    /**
+     *	If there is a sink, passes the TurnState for the given Turn (if any)
+     *	to the sink, and removes it from the World.
+     */
+    private void retireTurnState(Turn turn)
+            throws IOException {
+        if (sink == null || turn == null || turn.getPhase() == null) {
+            return;
+        }
+
+        final TurnState ts = world.getTurnState(turn.getPhase());
+        if (ts != null) {
+            world.removeTurnState(ts);
+            sink.turnStateCompleted(ts);
+        }
+    }// retireTurnState()
+
+    /**
+     *	If there is a sink, passes all TurnStates remaining in the World to 
+     *	the sink, in order. These remain in the World.
+     */
+    private void flushTurnStates()
+            throws IOException {
+        if (sink != null) {
+            for (final TurnState ts : world.getAllTurnStates()) {
+                sink.turnStateCompleted(ts);
+            }
+        }
+    }// flushTurnStates()
+
     /** 
      *	Processes a single turn. 
      *
@@ -419,7 +464,7 @@ final class JudgeImportHistory {
         copyPreviousLastOccupierInfo(ts);
 
         // parse orders, and create orders for each unit
-        final JudgeOrderParser jop = new JudgeOrderParser(map, orderFactory, turn.getText());
+        final JudgeOrderParser jop = new JudgeOrderParser(map, orderFactory, turn.getClassifiedLines());
         final NJudgeOrder[] nJudgeOrders = jop.getNJudgeOrders();
 
         // get Position
@@ -649,7 +694,7 @@ final class JudgeImportHistory {
         Log.println("JIH::procRetreat(): ", ts.getPhase(), "; positionPlacement: ", String.valueOf(positionPlacement));
 
         // parse orders, and create orders for each unit
-        JudgeOrderParser jop = new JudgeOrderParser(map, orderFactory, turn.getText());
+        JudgeOrderParser jop = new JudgeOrderParser(map, orderFactory, turn.getClassifiedLines());
         NJudgeOrder[] nJudgeOrders = jop.getNJudgeOrders();
 
         // Copy previous phase positions
@@ -783,7 +828,7 @@ final class JudgeImportHistory {
         Log.println("JIH::procAdjust(): ", ts.getPhase());
 
         // parse orders, and create orders for each unit
-        final JudgeOrderParser jop = new JudgeOrderParser(map, orderFactory, turn.getText());
+        final JudgeOrderParser jop = new JudgeOrderParser(map, orderFactory, turn.getClassifiedLines());
         final NJudgeOrder[] nJudgeOrders = jop.getNJudgeOrders();
 
         // Copy previous phase positions
@@ -1177,12 +1222,11 @@ final class JudgeImportHistory {
         }
     }// makeDislodgedResults()
 
-    private void createStartingPositions() throws IOException {
+    private void createStartingPositions(String text) throws IOException {
         Phase phase = null;
 
         // determine the next phase by reading through the turn text.
-        Pattern pattern = Pattern.compile(START_POSITIONS);
-        Matcher m = pattern.matcher(jp.getText());
+        Matcher m = JudgePatterns.START_POSITIONS.matcher(text);
 
         if (m.find()) {
             StringBuffer sb = new StringBuffer(64);
@@ -1232,9 +1276,7 @@ final class JudgeImportHistory {
         Phase phase = null;
 
         // determine the next phase by reading through the turn text.
-        Pattern pattern = Pattern.compile(PARSE_REGEX);
-
-        Matcher m = pattern.matcher(lastTurn.getText());
+        Matcher m = JudgePatterns.NEXT_PHASE.matcher(lastTurn.getText());
 
         if (m.find()) {
             StringBuffer sb = new StringBuffer(64);
@@ -1307,4 +1349,57 @@ final class JudgeImportHistory {
             return power;
         }
     }// inner class HSCInfo
+
+    /**
+     *	A Reader that keeps a copy of the text read, until recording is stopped.
+     */
+    private static class TextRecorder extends FilterReader {
+
+        private StringBuffer text = new StringBuffer(4096);
+
+        public TextRecorder(Reader in) {
+            super(in);
+        }// TextRecorder()
+
+        @Override
+        public int read() throws IOException {
+            final int c = super.read();
+            if (c >= 0 && text != null) {
+                text.append((char) c);
+            }
+            return c;
+        }// read()
+
+        @Override
+        public int read(char[] cbuf, int off, int len) throws IOException {
+            final int n = super.read(cbuf, off, len);
+            if (n > 0 && text != null) {
+                text.append(cbuf, off, n);
+            }
+            return n;
+        }// read()
+
+        @Override
+        public long skip(long n) throws IOException {
+            // skipped text must be recorded as well
+            final char[] buffer = new char[(int) Math.min(n, 1024)];
+            final int count = read(buffer, 0, buffer.length);
+            return (count < 0) ? 0 : count;
+        }// skip()
+
+        @Override
+        public boolean markSupported() {
+            return false;
+        }// markSupported()
+
+        /** Returns the text read so far; null if recording was stopped. */
+        public String getText() {
+            return (text == null) ? null : text.toString();
+        }// getText()
+
+        /** Stops recording, and discards the recorded text. */
+        public void stopRecording() {
+            text = null;
+        }// stopRecording()
+    }// nested class TextRecorder
 }// class JudgeImportHistory
@@ -22,13 +22,9 @@
 //
 package dip.judge.parser;
 
-import java.io.BufferedReader;
 import java.io.IOException;
-import java.io.StringReader;
 import java.util.ArrayList;
 import java.util.List;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
 import java.util.regex.PatternSyntaxException;
 
 import dip.misc.Log;
@@ -61,7 +57,7 @@ public class JudgeOrderParser {
     /** 
      *	Recognize an order line; all orders must begin with this.
      */
-    private static final String ORDER_PREFIX = "^\\s*[\\p{Alnum}\\-\\_]+:\\s+";
+    static final String ORDER_PREFIX = "^\\s*[\\p{Alnum}\\-\\_]+:\\s+";
     /** 
      *	Header for recognizing the retreat order block.<br>
      *	Note that older nJudge versions use "retreat orders for" while newer
@@ -85,6 +81,13 @@ public class JudgeOrderParser {
     public JudgeOrderParser(final dip.world.Map map,
             final OrderFactory orderFactory, final String input)
             throws IOException, PatternSyntaxException {
+        this(map, orderFactory, new ClassifiedLines(input));
+    }// JudgeOrderParser
+
+    /** Create a JudgeOrderParser from previously classified input */
+    JudgeOrderParser(final dip.world.Map map,
+            final OrderFactory orderFactory, final ClassifiedLines input)
+            throws IOException {
         this.map = map;
         this.parser = new NJudgeOrderParser();
         this.orderFactory = orderFactory;
@@ -103,79 +106,57 @@ public class JudgeOrderParser {
 
     /**
      *	Looks for the header line. When the appropriate phase header is found, this method 
-     *	sets the PhaseType and calls the phase-specific parser. This analyzes input line-by-line.
+     *	sets the PhaseType and parses the order lines that follow it. This analyzes 
+     *	input line-by-line; lines have already been classified.
      *
      */
-    private void parseInput(String input)
-            throws IOException, PatternSyntaxException {
-        // search for header input. once found, shuttle all input to the appropriate 
-        // handler type.
-        Pattern hm = Pattern.compile(MOVE_ORDER_HEADER);
-        Pattern hr = Pattern.compile(RETREAT_ORDER_HEADER);
-        Pattern ha = Pattern.compile(ADJUSTMENT_ORDER_HEADER);
-
+    private void parseInput(ClassifiedLines lines)
+            throws IOException {
         // create List
         final List<NJudgeOrder> orderList = new ArrayList<NJudgeOrder>(64);
 
-        BufferedReader br = new BufferedReader(new StringReader(input));
-        String line = ParserUtils.getNextLongLine(br);
-        while (line != null) {
-            Matcher m = hm.matcher(line);
-            if (m.lookingAt()) {
-                phaseType = PhaseType.MOVEMENT;
-                break;
-            }
-
-            m = hr.matcher(line);
-            if (m.lookingAt()) {
-                phaseType = PhaseType.RETREAT;
-                break;
-            }
-
-            m = ha.matcher(line);
-            if (m.lookingAt()) {
-                phaseType = PhaseType.ADJUSTMENT;
-                break;
+        // search for header input. once found, shuttle all input to the appropriate 
+        // handler type.
+        final int headerIndex = lines.indexOfOrderHeader();
+        if (headerIndex >= 0) {
+            switch (lines.getType(headerIndex)) {
+                case JudgePatterns.LINE_MOVE_HEADER:
+                    phaseType = PhaseType.MOVEMENT;
+                    break;
+                case JudgePatterns.LINE_RETREAT_HEADER:
+                    phaseType = PhaseType.RETREAT;
+                    break;
+                default:
+                    phaseType = PhaseType.ADJUSTMENT;
+                    break;
             }
 
-            line = ParserUtils.getNextLongLine(br);
+            // parse based on type
+            parseOrders(lines, headerIndex + 1, phaseType, orderList);
         }
 
-        // parse based on type
-        parseOrders(br, phaseType, orderList);
-
-        // cleanup
-        br.close();
-
         // create array
         nJudgeOrders = orderList.toArray(new NJudgeOrder[orderList.size()]);
     }// parseInput()
 
-    /** Parse move and retreat orders */
-    private void parseOrders(BufferedReader br,
+    /** Parse orders, starting at the given line, until a line is not an order line. */
+    private void parseOrders(ClassifiedLines lines, int start,
             PhaseType phaseType, List<NJudgeOrder> orderList)
-            throws IOException, PatternSyntaxException {
-        final Pattern prefix = Pattern.compile(ORDER_PREFIX);
-
-        String line = ParserUtils.getNextLongLine(br).trim();
-
+            throws IOException {
         try {
-            while (line != null) {
+            for (int i = start; i < lines.size(); i++) {
                 // only parse lines starting with ORDER_PREFIX
-                Matcher m = prefix.matcher(line);
-                if (m.lookingAt()) {
-                    orderList.add(parser.parse(map, orderFactory, phaseType, line));
+                if (lines.getType(i) == JudgePatterns.LINE_ORDER) {
+                    orderList.add(parser.parse(map, orderFactory, phaseType, lines.getLine(i)));
                 } else {
-                    Log.println("parseOrders() stopped at line: ", line);
+                    Log.println("parseOrders() stopped at line: ", lines.getLine(i));
                     break;
                 }
-
-                line = ParserUtils.getNextLongLine(br);
             }
         } catch (OrderException oe) {
             IOException ioe = new IOException(oe.getMessage());
             ioe.initCause(oe);
             throw ioe;
         }
-    }// moveAndRetreatParser()
+    }// parseOrders()
 }// class JudgeOrderParser
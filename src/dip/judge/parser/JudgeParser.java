@@ -24,7 +24,9 @@ package dip.judge.parser;
 
 import java.io.BufferedReader;
 import java.io.IOException;
+import java.io.PushbackReader;
 import java.io.Reader;
+import java.io.StringReader;
 import java.util.LinkedList;
 import java.util.StringTokenizer;
 import java.util.regex.Matcher;
@@ -44,7 +46,9 @@ import dip.world.Phase;
 *	if it is a game listing, returns the rest of the text. Determines if it is a 
 *	game history by looking for a consecutive Date: / Subject: line pair
 *	<p>
-*	Parses the rest of the file into a String for sub-parsing.
+*	Parses the rest of the file into a String for sub-parsing. If streaming
+*	is enabled, the rest of a history is not read; it is instead available
+*	(once) from getTextReader(), so that it may be parsed turn by turn.
 *
 */
 public class JudgeParser
@@ -67,6 +71,8 @@ public class JudgeParser
 	
 	private String text = null;
 	private String initialText = null;
+	private final boolean streaming;
+	private String pendingText = null;	// if streaming, text preceding the unread rest of a history
 	
 	public static final String JP_TYPE_LISTING = "Listing";
 	public static final String JP_TYPE_HISTORY = "History";
@@ -79,8 +85,21 @@ public class JudgeParser
 	/** Create a JudgeParser, and start parsing. */
 	public JudgeParser(OrderFactory orderFactory, Reader r)
 	throws IOException, PatternSyntaxException
+	{
+		this(orderFactory, r, false);
+	}// JudgeParser()
+	
+	
+	/** 
+	*	Create a JudgeParser, and start parsing. If streaming is true, and
+	*	the input is a history, the rest of the text is left unread, and 
+	*	must be obtained from getTextReader() rather than getText().
+	*/
+	public JudgeParser(OrderFactory orderFactory, Reader r, boolean streaming)
+	throws IOException, PatternSyntaxException
 	{
 		this.orderFactory = orderFactory;
+		this.streaming = streaming;
 		reader = new BufferedReader(r, 8192);
 		
 		findDoubleColonLine();
@@ -113,12 +132,59 @@ public class JudgeParser
 	*	<p>
 	*	This the "rest" of the text after parsing judge/player info; <br>
 	*	if it is a history, it is every line INCLUDING and AFTER the first Date: line.
+	*	<p>
+	*	If the rest of a history was not read (see getTextReader()), an 
+	*	IllegalStateException is thrown.
 	*
 	*/
-	public String getText()				{ return text; }
+	public String getText()
+	{
+		if(text == null && pendingText != null)
+		{
+			throw new IllegalStateException("streaming; use getTextReader()");
+		}
+		
+		return text; 
+	}// getText()
+	
+	
+	/** 
+	*	Returns a Reader for the rest of the text; the same text as 
+	*	getText(). If streaming, the text is read from the original input, 
+	*	and this method may only be called once.
+	*/
+	public Reader getTextReader()
+	throws IOException
+	{
+		if(text != null || pendingText == null)
+		{
+			return new StringReader((text == null) ? "" : text);
+		}
+		
+		if(reader == null)
+		{
+			throw new IllegalStateException("text already read");
+		}
+		
+		final PushbackReader pr = new PushbackReader(reader, Math.max(1, pendingText.length()));
+		pr.unread(pendingText.toCharArray());
+		reader = null;
+		return pr;
+	}// getTextReader()
+	
 	
 	/** Prepend the given string in front of the stored text */
-	public String prependText(String s) { text = s + text; return text; }
+	public String prependText(String s) 
+	{ 
+		if(text == null && pendingText != null)
+		{
+			pendingText = s + pendingText;
+			return pendingText;
+		}
+		
+		text = s + text; 
+		return text; 
+	}// prependText()
 	
 	/**
 	*	For Listings, this is null. For Histories, this is the text after parsing game & player 
@@ -143,7 +209,7 @@ public class JudgeParser
 		// regex is case-insensitive
 		// capture groups are in order
 		// double () on last capture group because of buggy behavior!? WTF?
-		Pattern pattern = Pattern.compile("\\W*judge\\W*(\\S*)\\W*game\\W*(\\S*)\\W*variant\\W*((\\S*))", Pattern.CASE_INSENSITIVE);
+		Pattern pattern = JudgePatterns.GAME_INFO;
 		
 		// find :: line
 		String line = reader.readLine();
@@ -178,7 +244,7 @@ public class JudgeParser
 	throws IOException, PatternSyntaxException
 	{
 		// our pattern for finding the player list
-		Pattern pattern = Pattern.compile("(?i)following players");
+		Pattern pattern = JudgePatterns.FOLLOWING_PLAYERS;
 		
 		reader.mark(READ_AHEAD_LENGTH);
 		int count = 0;
@@ -296,7 +362,15 @@ public class JudgeParser
 					// set the rest of the text.
 					// prepend the already-parsed Date: and Subject: lines
 					initialText = initSB.toString();
-					makeRestOfText(sb.toString());
+					if(streaming)
+					{
+						sb.append('\n');
+						pendingText = sb.toString();
+					}
+					else
+					{
+						makeRestOfText(sb.toString());
+					}
 					return;
 				}
 			}
@@ -313,10 +387,6 @@ public class JudgeParser
 		
 		// we are not a history. 
 		// Next we try to find a result header.
-		Pattern hm = Pattern.compile(JudgeOrderParser.MOVE_ORDER_HEADER);
-		Pattern hr = Pattern.compile(JudgeOrderParser.RETREAT_ORDER_HEADER);
-		Pattern ha = Pattern.compile(JudgeOrderParser.ADJUSTMENT_ORDER_HEADER);
-		
 		reader.reset();
 		count = 0;
 		line = reader.readLine();
@@ -324,12 +394,10 @@ public class JudgeParser
 		{
 			count += line.length();
 			line = line.trim();	// needed for Patterns to work properly
-			Matcher m_hm = hm.matcher(line);
-			Matcher m_hr = hr.matcher(line);
-			Matcher m_ha = ha.matcher(line);
-			if(m_hm.lookingAt() || 
-			   m_hr.lookingAt() ||
-			   m_ha.lookingAt())
+			final int lineType = JudgePatterns.classify(line);
+			if(lineType == JudgePatterns.LINE_MOVE_HEADER || 
+			   lineType == JudgePatterns.LINE_RETREAT_HEADER ||
+			   lineType == JudgePatterns.LINE_ADJUSTMENT_HEADER)
 			{
 				type = JP_TYPE_RESULTS;
 				phase = Phase.parse(line.substring(0,line.indexOf(".")));
@@ -347,8 +415,8 @@ public class JudgeParser
 		}
 		
 		// Try to find a game starting message
-		Pattern gs = Pattern.compile(JudgeOrderParser.GAME_STARTING_HEADER);
-		Pattern sp = Pattern.compile(JudgeOrderParser.STARTING_POSITION_REGEX);
+		Pattern gs = JudgePatterns.GAME_STARTING_HEADER;
+		Pattern sp = JudgePatterns.STARTING_POSITION;
 
 		reader.reset();
 		count = 0;
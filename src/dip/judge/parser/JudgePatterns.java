@@ -0,0 +1,158 @@
+//
+//  @(#)JudgePatterns.java	1.00	10/2004
+//
+//  Copyright 2004 the jDip development team. All rights reserved.
+//  Use is subject to license terms.
+//
+//
+//  This program is free software; you can redistribute it and/or modify
+//  it under the terms of the GNU General Public License as published by
+//  the Free Software Foundation; either version 2 of the License, or
+//  (at your option) any later version.
+//
+//  This program is distributed in the hope that it will be useful,
+//  but WITHOUT ANY WARRANTY; without even the implied warranty of
+//  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+//  GNU General Public License for more details.
+//
+//  You should have received a copy of the GNU General Public License
+//  along with this program; if not, write to the Free Software
+//  Foundation, Inc., 675 Mass Ave, Cambridge, MA 02139, USA.
+//  Or from http://www.gnu.org/
+//
+package dip.judge.parser;
+
+import java.util.regex.Pattern;
+
+/**
+ *	Precompiled Patterns used by the judge parsers, and a line classifier.
+ *	<p>
+ *	The regular expressions themselves remain defined (as String constants)
+ *	by the parser that uses them; they are compiled here, once. Patterns are
+ *	immutable and may be shared between threads; Matchers may not.
+ */
+final class JudgePatterns {
+
+    // JudgeParser
+    static final Pattern GAME_INFO = 
+            Pattern.compile("\\W*judge\\W*(\\S*)\\W*game\\W*(\\S*)\\W*variant\\W*((\\S*))", Pattern.CASE_INSENSITIVE);
+    static final Pattern FOLLOWING_PLAYERS = Pattern.compile("(?i)following players");
+
+    // TurnParser
+    static final Pattern SUBJ_PHASE = Pattern.compile(TurnParser.SUBJ_PHASE_REGEX);
+    static final Pattern SUBJ_PHASE_OLD = Pattern.compile(TurnParser.SUBJ_PHASE_REGEX_OLD);
+    static final Pattern RESULT_SUBJ = Pattern.compile(TurnParser.RESULT_SUBJ_REGEX);
+
+    // JudgeOrderParser
+    static final Pattern GAME_STARTING_HEADER = Pattern.compile(JudgeOrderParser.GAME_STARTING_HEADER);
+    static final Pattern STARTING_POSITION = Pattern.compile(JudgeOrderParser.STARTING_POSITION_REGEX);
+    static final Pattern MOVE_ORDER_HEADER = Pattern.compile(JudgeOrderParser.MOVE_ORDER_HEADER);
+    static final Pattern RETREAT_ORDER_HEADER = Pattern.compile(JudgeOrderParser.RETREAT_ORDER_HEADER);
+    static final Pattern ADJUSTMENT_ORDER_HEADER = Pattern.compile(JudgeOrderParser.ADJUSTMENT_ORDER_HEADER);
+    static final Pattern ORDER_PREFIX = Pattern.compile(JudgeOrderParser.ORDER_PREFIX);
+
+    // PositionParser
+    static final Pattern POSITION_HEADER_1 = Pattern.compile(PositionParser.HEADER_REGEX_1);
+    static final Pattern POSITION_HEADER_2 = Pattern.compile(PositionParser.HEADER_REGEX_2);
+    static final Pattern POSITION = Pattern.compile(PositionParser.PARSE_REGEX);
+
+    // AdjustmentParser
+    static final Pattern ADJUSTMENT_HEADER = Pattern.compile(AdjustmentParser.HEADER_REGEX);
+    static final Pattern ADJUSTMENT = Pattern.compile(AdjustmentParser.ADJUST_REGEX);
+
+    // DislodgedParser
+    static final Pattern DISLODGED_HEADER = Pattern.compile(DislodgedParser.HEADER_REGEX);
+    static final Pattern DISLODGED_HEADER_END = Pattern.compile(DislodgedParser.HEADER_END_REGEX);
+    static final Pattern DISLODGED = Pattern.compile(DislodgedParser.DISLODGED_REGEX);
+    static final Pattern DESTROYED = Pattern.compile(DislodgedParser.DESTROYED_REGEX);
+    static final Pattern DISLODGED_SPLIT = Pattern.compile(DislodgedParser.DISLODGED_SPLIT_REGEX);
+
+    // JudgeImportHistory
+    static final Pattern NEXT_PHASE = Pattern.compile(JudgeImportHistory.PARSE_REGEX);
+    static final Pattern END_OF_GAME = Pattern.compile(JudgeImportHistory.END_FOF_GAME);
+    static final Pattern START_POSITIONS = Pattern.compile(JudgeImportHistory.START_POSITIONS);
+
+    // line types; see classify()
+    /** A line of no interest to the order parser */
+    static final int LINE_OTHER = 0;
+    /** The movement order block header */
+    static final int LINE_MOVE_HEADER = 1;
+    /** The retreat order block header */
+    static final int LINE_RETREAT_HEADER = 2;
+    /** The adjustment order block header */
+    static final int LINE_ADJUSTMENT_HEADER = 3;
+    /** A line beginning with an order prefix (e.g., "France: ") */
+    static final int LINE_ORDER = 4;
+
+    private JudgePatterns() {
+    }// JudgePatterns()
+
+    /**
+     *	Classifies a trimmed line. At most one order header Pattern is tried,
+     *	selected by the first character of the line; headers never match the
+     *	order prefix, and vice versa.
+     */
+    static int classify(final String line) {
+        if (line.length() == 0) {
+            return LINE_OTHER;
+        }
+
+        switch (line.charAt(0)) {
+            case 'm':
+            case 'M':
+                if (MOVE_ORDER_HEADER.matcher(line).lookingAt()) {
+                    return LINE_MOVE_HEADER;
+                }
+                break;
+            case 'r':
+            case 'R':
+                if (RETREAT_ORDER_HEADER.matcher(line).lookingAt()) {
+                    return LINE_RETREAT_HEADER;
+                }
+                break;
+            case 'a':
+            case 'A':
+                if (ADJUSTMENT_ORDER_HEADER.matcher(line).lookingAt()) {
+                    return LINE_ADJUSTMENT_HEADER;
+                }
+                break;
+            default:
+                break;
+        }
+
+        // cheap test: an order prefix requires a colon
+        if (line.indexOf(':') > 0 && ORDER_PREFIX.matcher(line).lookingAt()) {
+            return LINE_ORDER;
+        }
+
+        return LINE_OTHER;
+    }// classify()
+
+    /** 
+     *	Returns <code>true</code> if the line is an email "Date:" line; that is,
+     *	if "date:" (in any case) appears within the first 10 characters.
+     */
+    static boolean isDateLine(final String line) {
+        return indexOfIgnoreCase(line, "date:", 10) >= 0;
+    }// isDateLine()
+
+    /** Returns <code>true</code> if the line contains "subject:" (in any case). */
+    static boolean isSubjectLine(final String line) {
+        return indexOfIgnoreCase(line, "subject:", line.length()) >= 0;
+    }// isSubjectLine()
+
+    /** 
+     *	Index of the lower-case String s in line, ignoring case, starting 
+     *	before the given position; -1 if not found. 
+     */
+    private static int indexOfIgnoreCase(final String line, final String s, final int before) {
+        final int max = Math.min(before, line.length() - s.length() + 1);
+        for (int i = 0; i < max; i++) {
+            if (line.regionMatches(true, i, s, 0, s.length())) {
+                return i;
+            }
+        }
+
+        return -1;
+    }// indexOfIgnoreCase()
+}// class JudgePatterns
@@ -185,8 +185,8 @@ public class PositionParser {
             throws IOException, PatternSyntaxException {
         // search for header input. once found, shuttle all input to the appropriate 
         // handler type.
-        Pattern pp1 = Pattern.compile(HEADER_REGEX_1);
-        Pattern pp2 = Pattern.compile(HEADER_REGEX_2);
+        Pattern pp1 = JudgePatterns.POSITION_HEADER_1;
+        Pattern pp2 = JudgePatterns.POSITION_HEADER_2;
 
         // init
         final List<PositionInfo> posList = new LinkedList<PositionInfo>();
@@ -220,7 +220,7 @@ public class PositionParser {
     /** Parses the positions. */
     private void parsePositions(BufferedReader br, final List<PositionInfo> posList)
             throws IOException, PatternSyntaxException {
-        Pattern mrp = Pattern.compile(PARSE_REGEX);
+        Pattern mrp = JudgePatterns.POSITION;
 
         String line = ParserUtils.getNextLongLine(br);
         while (line != null) {
@@ -24,10 +24,10 @@ package dip.judge.parser;
 
 import java.io.BufferedReader;
 import java.io.IOException;
+import java.io.Reader;
 import java.io.StringReader;
 import java.util.LinkedList;
 import java.util.regex.Matcher;
-import java.util.regex.Pattern;
 import java.util.regex.PatternSyntaxException;
 
 import dip.misc.Utils;
@@ -72,16 +72,38 @@ public class TurnParser
 	// instance variables
 	private Turn[] turns = null;
 	
+	// streaming state
+	private BufferedReader reader;		// null when input is exhausted
+	private StringBuffer sb = null;		// text of lastTurn
+	private Turn turn = new Turn();		// current turn
+	private Turn lastTurn = null;		// previous turn
+	
 	
 	/** Create the TurnParser and perform parsing. */
 	public TurnParser(String input)
 	throws IOException, PatternSyntaxException
 	{
-		parseTurns(input);
+		this(new StringReader(input));
+		parseTurns();
 	}// TurnParser()
 	
 	
-	/** Returns the turns. If not parsed, or an error occured, it may return null. */
+	/** 
+	*	Create a TurnParser that parses Turns from the given Reader, one at
+	*	a time, as next() is called. Only the Turn being read is held in memory.
+	*	The Reader is not closed.
+	*/
+	public TurnParser(Reader input)
+	throws PatternSyntaxException
+	{
+		reader = (input instanceof BufferedReader) ? (BufferedReader) input : new BufferedReader(input);
+	}// TurnParser()
+	
+	
+	/** 
+	*	Returns the turns. If not parsed, or an error occured, it may return null.
+	*	This is always null for a TurnParser created from a Reader.
+	*/
 	public Turn[] getTurns()
 	{
 		return turns;
@@ -90,49 +112,57 @@ public class TurnParser
 	
 	/**
 	*	Creates Turn objects.
-	*
-	*
-	*
-	*
-	*
 	*/
-	private void parseTurns(String input)
-	throws IOException, PatternSyntaxException
+	private void parseTurns()
+	throws IOException
 	{
-		// patterns
-		Pattern subjPhasePattern = Pattern.compile(SUBJ_PHASE_REGEX);
-		Pattern subjPhasePatternOld = Pattern.compile(SUBJ_PHASE_REGEX_OLD);
-		Pattern isResultsPattern = Pattern.compile(RESULT_SUBJ_REGEX);
+		final LinkedList<Turn> turnList = new LinkedList<Turn>();
 		
+		Turn t = next();
+		while(t != null)
+		{
+			turnList.add(t);
+			t = next();
+		}
 		
-		final LinkedList<Turn> turnList = new LinkedList<Turn>();
-		BufferedReader reader = new BufferedReader(new StringReader(input));
+		// convert to array
+		turns = turnList.toArray(new Turn[turnList.size()]);
+	}// parseTurns()
+	
+	
+	/**
+	*	Returns the next Turn, or null if there are no more Turns. A Turn 
+	*	is complete (and thus returned) when the Date: line of the following
+	*	Turn, or the end of input, is read.
+	*/
+	public Turn next()
+	throws IOException
+	{
+		if(reader == null)
+		{
+			return null;
+		}
 		
 		String line = reader.readLine();
-		StringBuffer sb = null;			
-		Turn turn = new Turn();			// current turn
-		Turn lastTurn = null;			// previous turn
-
 		while(line != null)
 		{
-			int pos = line.toLowerCase().indexOf("date:");
-			if(pos >= 0 && pos < 10)
+			if(JudgePatterns.isDateLine(line))
 			{
 				turn.setDateLine(line);
 				
 				// set the subject line; if not present, throw an error (shouldn't occur)
 				String nextLine = reader.readLine();
-				if( nextLine.toLowerCase().indexOf("subject:") == -1 )
+				if( nextLine == null || !JudgePatterns.isSubjectLine(nextLine) )
 				{
 					throw new IOException(Utils.getLocalString(TP_NO_SUBJECT));
 				}
-				else if(isResultsPattern.matcher(nextLine).find())
+				else if(JudgePatterns.RESULT_SUBJ.matcher(nextLine).find())
 				{
 					turn.setSubjectLine(nextLine);
 					
 					// regex parse the subject line
-					Matcher m = subjPhasePattern.matcher(nextLine);
-					Matcher m_o = subjPhasePatternOld.matcher(nextLine);
+					Matcher m = JudgePatterns.SUBJ_PHASE.matcher(nextLine);
+					Matcher m_o = JudgePatterns.SUBJ_PHASE_OLD.matcher(nextLine);
 					if(m.find())
 					{
 						Phase phase = Phase.parse(m.group(0).trim());
@@ -158,16 +188,21 @@ public class TurnParser
 						throw new IOException(Utils.getLocalString(TP_BAD_SUBJECT, nextLine));
 					}
 					
+					Turn completed = null;
 					if(lastTurn != null)
 					{
 						lastTurn.setText(sb.toString());
-						turnList.add(lastTurn);
-						lastTurn = null;
+						completed = lastTurn;
 					}
 					
 					lastTurn = turn;
 					turn = new Turn();
 					sb = new StringBuffer(512);
+					
+					if(completed != null)
+					{
+						return completed;
+					}
 				}
 			}
 			else if(sb != null)
@@ -180,16 +215,19 @@ public class TurnParser
 			line = reader.readLine();
 		}
 		
-		// add last turn
+		// end of input: return last turn
+		reader = null;
 		if(lastTurn != null)
 		{
 			lastTurn.setText(sb.toString());
-			turnList.add(lastTurn);
+			final Turn completed = lastTurn;
+			lastTurn = null;
+			sb = null;
+			return completed;
 		}
 		
-		// convert to array
-		turns = turnList.toArray(new Turn[turnList.size()]);
-	}// parseTurns()
+		return null;
+	}// next()
 	
 	
 	/** A Turn object is created for each Turn detected in the History file. */
@@ -199,6 +237,7 @@ public class TurnParser
 		private String subjectLine;
 		private String text;
 		private Phase phase;
+		private ClassifiedLines lines;
 		
 		public Turn() {}
 		
@@ -213,7 +252,7 @@ public class TurnParser
 		public void setPhase(Phase value)					{ phase = value; }
 		
 		/** Sets the text between Subject: and upto (but not including) the next Date: line */
-		public void setText(String value)					{ text = value; } 
+		public void setText(String value)					{ text = value; lines = null; } 
 		
 		
 		
@@ -229,6 +268,17 @@ public class TurnParser
 		/** Returns the text between Subject: upto (but not including) the next Date: line */
 		public String getText()					{ return text; } 
 		
+		/** Returns the classified lines of the text; these are created once, when first needed. */
+		ClassifiedLines getClassifiedLines()
+		{
+			if(lines == null)
+			{
+				lines = new ClassifiedLines(text);
+			}
+			
+			return lines;
+		}// getClassifiedLines()
+		
 		
 	}// nested class Turn
 	
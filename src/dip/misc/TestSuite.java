@@ -26,7 +26,10 @@ import java.io.BufferedReader;
 import java.io.File;
 import java.io.FileReader;
 import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.Date;
 import java.util.HashMap;
@@ -36,6 +39,7 @@ import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.TreeMap;
 
 import dip.order.DefineState;
 import dip.order.Move;
@@ -48,6 +52,9 @@ import dip.order.result.ConvoyPathResult;
 import dip.order.result.OrderResult;
 import dip.order.result.Result;
 import dip.process.StdAdjudicator;
+import dip.world.BinaryWorldFormat;
+import dip.world.ConvoyRouteIndex;
+import dip.world.GameArchive;
 import dip.world.Location;
 import dip.world.Phase;
 import dip.world.Position;
@@ -73,6 +80,31 @@ import dip.world.variant.data.Variant;
  *	comparison-checking is not performed; the goal is testing adjudicator code
  *	only.
  *	<p>
+ *	Benchmark mode (<code>-benchmark:n</code>) is a more careful version of
+ *	performance-testing mode. Cases are parsed once; each case is then warmed
+ *	up and adjudicated n times, with only <code>StdAdjudicator</code> creation
+ *	and <code>process()</code> inside the timed region. Per-case ns/op and
+ *	bytes allocated/op are reported, along with totals by phase type and
+ *	paradox class (none, circular, Szykman, unresolved), and the number of
+ *	sea path searches answered by the convoy route index.
+ *	<p>
+ *	Worklist check mode (<code>-worklist</code>) adjudicates each case with
+ *	the default evaluator and with the worklist evaluator (see 
+ *	<code>StdAdjudicator.setWorklistEvaluation()</code>), and reports each 
+ *	case whose outcome (results, next phase, unit positions, supply center
+ *	owners) differs. The exit code is the number of such cases. Cases where
+ *	only the paradox class differs are listed, but not counted.
+ *	<p>
+ *	Round-trip mode (<code>-roundtrip</code>) adjudicates each case, saves
+ *	the World as a binary game file and opens it again, then saves and opens
+ *	the opened World (so that unchanged turns are copied from the first 
+ *	file). Each case whose turns (orders, results, unit positions, supply
+ *	center owners) differ after either step, or that cannot be written in 
+ *	the binary format, is reported. Each case is also added to a game 
+ *	archive, from the World and from the saved file; the archived games, 
+ *	and their Positions (read without decoding turns), are compared in the
+ *	same way. The exit code is the number of such cases.
+ *	<p>
  *	All output is printed to stdout
  *	<p>
  *	<b>Case File Format Notes:</b>
@@ -205,6 +237,9 @@ public final class TestSuite {
     private static boolean isLogging = true;
     private static boolean isPerfTest = false;
     private static boolean isRegression = false;
+    private static boolean isBenchmark = false;
+    private static boolean isWorklistCheck = false;
+    private static boolean isRoundTrip = false;
     private static String inFileName = null;
     private final List<Case> cases = new ArrayList<Case>(10);
     private World world = null;
@@ -234,6 +269,23 @@ public final class TestSuite {
                 } else {
                     printUsageAndExit();
                 }
+            } else if (firstArg.startsWith("-benchmark")) {
+                isLogging = false;
+                isAdjudicatorLogged = false;
+                isBenchmark = true;
+                if (firstArg.indexOf(":") != -1) {
+                    benchTimes = getTimes(firstArg);
+                } else {
+                    printUsageAndExit();
+                }
+            } else if (firstArg.equals("-worklist")) {
+                isLogging = false;
+                isAdjudicatorLogged = false;
+                isWorklistCheck = true;
+            } else if (firstArg.equals("-roundtrip")) {
+                isLogging = false;
+                isAdjudicatorLogged = false;
+                isRoundTrip = true;
             } else if (firstArg.equals("-brief")) {
                 isAdjudicatorLogged = false;
             } else if (firstArg.equals("-statsonly")) {
@@ -274,10 +326,13 @@ public final class TestSuite {
     }// main()
 
     private static void printUsageAndExit() {
-        System.out.println("USAGE: TestSuite [-statsonly | -perftest | -brief] <test-input-file>");
+        System.out.println("USAGE: TestSuite [-statsonly | -perftest | -benchmark | -worklist | -roundtrip | -brief] <test-input-file>");
         System.out.println("  All log output to stdout");
         System.out.println("  -statsonly      disable all logging; only show statistics");
         System.out.println("  -perftest:n     no logging or statistics; repeat all cases n times");
+        System.out.println("  -benchmark:n    per-case ns/op and bytes/op; each case warmed up, then run n times");
+        System.out.println("  -worklist       adjudicate with the default and worklist evaluators; report differences");
+        System.out.println("  -roundtrip      save and reopen each adjudicated case in the binary format; report differences");
         System.out.println("  -brief          disable internal adjudicator logging");
         System.out.println("  -regress        run test cases in infinite loop; no logging or stats.");
         System.out.println("");
@@ -285,6 +340,9 @@ public final class TestSuite {
         System.out.println("      java dip.misc.TestSuite datc.txt >out");
         System.out.println("      java dip.misc.TestSuite -brief datc.txt >out");
         System.out.println("      java dip.misc.TestSuite -perftest:1000 case.txt >out");
+        System.out.println("      java dip.misc.TestSuite -benchmark:1000 datc.txt >out");
+        System.out.println("      java dip.misc.TestSuite -worklist datc.txt >out");
+        System.out.println("      java dip.misc.TestSuite -roundtrip datc.txt >out");
         System.exit(1);
     }
 
@@ -361,6 +419,22 @@ public final class TestSuite {
         // all cases in an array
         final Case[] allCases = cases.toArray(new Case[cases.size()]);
 
+        if (isBenchmark) {
+            // benchmark mode has its own timing and reporting
+            benchmark(allCases);
+            System.exit(0);
+        }
+
+        if (isWorklistCheck) {
+            // evaluator comparison has its own reporting
+            System.exit(worklistCheck(allCases));
+        }
+
+        if (isRoundTrip) {
+            // save / open check has its own reporting
+            System.exit(roundTrip(allCases));
+        }
+
         if (isRegression) {
             // no stats are kept in regression mode, because we're in an
             // infinite loop.
@@ -563,6 +637,537 @@ public final class TestSuite {
         System.exit(nFail);
     }// evaluate()
 
+    /**
+     *	Benchmark mode. Each case is adjudicated benchTimes times (untimed) to
+     *	warm up the JIT, then benchTimes times with only StdAdjudicator creation
+     *	and process() inside the timed region. World setup and result-list
+     *	cleanup are excluded from both time and allocation figures.
+     */
+    private void benchmark(final Case[] allCases) {
+        final BenchStat[] caseStats = new BenchStat[allCases.length];
+        final Map<String, BenchStat> phaseStats = new TreeMap<String, BenchStat>();
+        final Map<String, BenchStat> paradoxStats = new TreeMap<String, BenchStat>();
+
+        // warmup
+        for (int i = 0; i < benchTimes; i++) {
+            for (int ccn = 0; ccn < allCases.length; ccn++) {
+                benchAdjudicate(allCases[ccn], null);
+            }
+        }
+
+        // measure
+        ConvoyRouteIndex.resetLookupCounts();
+        for (int ccn = 0; ccn < allCases.length; ccn++) {
+            final Case currentCase = allCases[ccn];
+            final BenchStat stat = new BenchStat(currentCase.getName());
+            for (int i = 0; i < benchTimes; i++) {
+                benchAdjudicate(currentCase, stat);
+            }
+            caseStats[ccn] = stat;
+
+            getBenchStat(phaseStats, stat.phaseType).add(stat);
+            getBenchStat(paradoxStats, stat.paradoxClass).add(stat);
+        }
+
+        // report
+        System.out.println("\nBenchmark results for \"" + inFileName + "\" (" + benchTimes + " iterations per case):");
+        System.out.println("  allocation measurement: "
+                + ((getAllocatedBytes() < 0) ? "not supported by this VM" : "enabled"));
+        System.out.println("\nPer Case:");
+        System.out.println("=========");
+        System.out.println("  ns/op\tmin ns\tbytes/op\torders\tphase\tparadox\tcase");
+        for (int i = 0; i < caseStats.length; i++) {
+            printBenchStat(caseStats[i], true);
+        }
+
+        System.out.println("\nBy Phase Type:");
+        System.out.println("==============");
+        for (final BenchStat stat : phaseStats.values()) {
+            printBenchStat(stat, false);
+        }
+
+        System.out.println("\nBy Paradox Class:");
+        System.out.println("=================");
+        for (final BenchStat stat : paradoxStats.values()) {
+            printBenchStat(stat, false);
+        }
+
+        // sea path (convoy route) searches, during measurement
+        System.out.println("\nConvoy Route Index:");
+        System.out.println("===================");
+        System.out.println("  " + ConvoyRouteIndex.getIndexedLookups() + " sea path searches answered by the index; "
+                + ConvoyRouteIndex.getSearchedLookups() + " searched directly");
+    }// benchmark()
+
+    /**
+     *	Worklist check mode. Each case is adjudicated with the default 
+     *	evaluator, then (as a fresh copy) with the worklist evaluator; cases 
+     *	with different outcomes are printed, with the lines of the outcome 
+     *	found only with the default evaluator (-) or only with the worklist 
+     *	evaluator (+). Returns the number of cases that differ.
+     *	<p>
+     *	The paradox class is reported, but not compared: the default evaluator
+     *	counts a full pass that resolves no order as a paradox, even if that 
+     *	pass narrowed the strength of some orders. The worklist evaluator keeps
+     *	evaluating while any order changes, and may thus need no paradox-breaking
+     *	attempt where the default evaluator makes one that finds nothing to 
+     *	break. If a paradox rule changes the adjudication, the outcome differs.
+     */
+    private int worklistCheck(final Case[] allCases) {
+        int nDiffer = 0;
+        int nParadoxDiffer = 0;
+        for (int ccn = 0; ccn < allCases.length; ccn++) {
+            final Case currentCase = allCases[ccn];
+            final List<String> standard = getOutcome(currentCase, false);
+            final String standardParadox = getParadoxClass(stdJudge);
+            final List<String> worklist = getOutcome(currentCase.copy(), true);
+            final String worklistParadox = getParadoxClass(stdJudge);
+            if (!standard.equals(worklist)) {
+                nDiffer++;
+                System.out.println("DIFFERS: " + currentCase.getName());
+                printMissing(standard, worklist, "-");
+                printMissing(worklist, standard, "+");
+            } else if (!standardParadox.equals(worklistParadox)) {
+                nParadoxDiffer++;
+                System.out.println("PARADOX CLASS ONLY: " + currentCase.getName()
+                        + " (default: " + standardParadox + "; worklist: " + worklistParadox + ")");
+            }
+        }
+
+        System.out.println("\nWorklist evaluation check for \"" + inFileName + "\":");
+        System.out.println("    " + allCases.length + " cases adjudicated with both evaluators; "
+                + (allCases.length - nDiffer) + " identical, " + nDiffer + " differ.");
+        System.out.println("    " + nParadoxDiffer + " identical cases differ in paradox class only.");
+        return nDiffer;
+    }// worklistCheck()
+
+    /** 
+     *	Adjudicates a case once, and returns its outcome as a sorted list 
+     *	of lines; results are thus compared regardless of their order.
+     *	The adjudicator is left in stdJudge.
+     */
+    private List<String> getOutcome(Case currentCase, boolean isWorklist) {
+        // world: setup
+        world.setTurnState(currentCase.getCurrentTurnState());
+        world.setTurnState(currentCase.getPreviousTurnState());
+
+        stdJudge = new StdAdjudicator(OrderFactory.getDefault(), currentCase.getCurrentTurnState());
+        stdJudge.setWorklistEvaluation(isWorklist);
+        stdJudge.process();
+
+        final List<String> outcome = new ArrayList<String>();
+        for (final Result r : stdJudge.getTurnState().getResultList()) {
+            outcome.add("result: " + r);
+        }
+
+        final TurnState next = stdJudge.getNextTurnState();
+        if (next == null) {
+            outcome.add("next phase: none");
+        } else {
+            outcome.add("next phase: " + next.getPhase());
+
+            final Position pos = next.getPosition();
+            for (final Province province : pos.getUnitProvinces()) {
+                outcome.add("unit: " + new UnitPos(pos, province, false));
+            }
+
+            for (final Province province : pos.getDislodgedUnitProvinces()) {
+                outcome.add("dislodged: " + new UnitPos(pos, province, true));
+            }
+
+            for (final Province province : world.getMap().getProvinces()) {
+                final Power owner = pos.getSupplyCenterOwner(province);
+                if (owner != null) {
+                    outcome.add("owner: " + province.getShortName() + " " + owner.getName());
+                }
+            }
+        }
+
+        Collections.sort(outcome);
+
+        // cleanup: remove turnstates from world
+        world.removeAllTurnStates();
+
+        // cleanup: clear results in currentTurnSTate
+        // this is absolutely essential!! 
+        currentCase.getCurrentTurnState().getResultList().clear();
+        return outcome;
+    }// getOutcome()
+
+    /**
+     *	Round-trip mode. Each case is adjudicated, and the next TurnState (if
+     *	any) added to the World. The World is saved and opened, and the opened
+     *	World saved and opened again; the turns of each are compared with 
+     *	those of the original World. Returns the number of cases that differ,
+     *	or that could not be saved or opened.
+     */
+    private int roundTrip(final Case[] allCases) {
+        final boolean[] isDiffering = new boolean[allCases.length];
+        final List<Integer> archivedCases = new ArrayList<Integer>();
+        final List<List<String>> archivedTurns = new ArrayList<List<String>>();
+        final List<List<String>> archivedPositions = new ArrayList<List<String>>();
+        File dir = null;
+        try {
+            dir = Files.createTempDirectory("roundtrip").toFile();
+            final File archiveFile = new File(dir, "cases.jdipa");
+            GameArchive.Writer archive = new GameArchive.Writer(archiveFile);
+            for (int ccn = 0; ccn < allCases.length; ccn++) {
+                final Case currentCase = allCases[ccn];
+                world.setTurnState(currentCase.getCurrentTurnState());
+                world.setTurnState(currentCase.getPreviousTurnState());
+
+                stdJudge = new StdAdjudicator(OrderFactory.getDefault(), currentCase.getCurrentTurnState());
+                stdJudge.process();
+                if (stdJudge.getNextTurnState() != null) {
+                    world.setTurnState(stdJudge.getNextTurnState());
+                }
+
+                final List<String> expected = getTurns(world);
+                boolean isArchiving = false;
+                try {
+                    final File first = new File(dir, "first.jdip");
+                    final World opened = saveAndOpen(world, first);
+
+                    // saved before its turns are read, so they are copied
+                    final World reopened = saveAndOpen(opened, new File(dir, "second.jdip"));
+                    final List<String> firstTurns = getTurns(opened);
+                    final List<String> secondTurns = getTurns(reopened);
+
+                    if (!expected.equals(firstTurns) || !expected.equals(secondTurns)) {
+                        isDiffering[ccn] = true;
+                        System.out.println("DIFFERS: " + currentCase.getName());
+                        printMissing(expected, firstTurns, "-");
+                        printMissing(firstTurns, expected, "+");
+                        printMissing(expected, secondTurns, "- (second)");
+                        printMissing(secondTurns, expected, "+ (second)");
+                    }
+
+                    // archived twice: from the World, and from the game file
+                    if (archive != null) {
+                        isArchiving = true;
+                        archive.add(currentCase.getName(), world);
+                        archive.add(currentCase.getName(), first);
+                        archivedCases.add(Integer.valueOf(ccn));
+                        archivedTurns.add(expected);
+                        archivedPositions.add(getPositions(world));
+                    }
+                } catch (IOException e) {
+                    isDiffering[ccn] = true;
+                    System.out.println("FAILED: " + currentCase.getName() + ": " + e);
+                    if (isArchiving) {
+                        // the Writer cannot be used after a failed add
+                        archive.abort();
+                        archive = null;
+                    }
+                }
+
+                // cleanup, as in getOutcome()
+                world.removeAllTurnStates();
+                currentCase.getCurrentTurnState().getResultList().clear();
+            }
+
+            if (archive == null) {
+                System.out.println("ERROR: game archive not written");
+            } else {
+                archive.close();
+                checkArchive(archiveFile, allCases, isDiffering, archivedCases, archivedTurns, archivedPositions);
+            }
+        } catch (IOException e) {
+            System.out.println("ERROR: " + e);
+            return allCases.length;
+        } finally {
+            if (dir != null) {
+                final File[] files = dir.listFiles();
+                for (int i = 0; files != null && i < files.length; i++) {
+                    files[i].delete();
+                }
+                dir.delete();
+            }
+        }
+
+        int nDiffer = 0;
+        for (int i = 0; i < isDiffering.length; i++) {
+            if (isDiffering[i]) {
+                nDiffer++;
+            }
+        }
+
+        System.out.println("\nRound-trip check for \"" + inFileName + "\":");
+        System.out.println("    " + allCases.length + " cases saved and opened twice, and archived; "
+                + (allCases.length - nDiffer) + " identical, " + nDiffer + " differ or failed.");
+        return nDiffer;
+    }// roundTrip()
+
+    /**
+     *	Reads back the game archive written by roundTrip(): each archived 
+     *	case was added twice (from the World, then from its game file). Turns of the
+     *	Worlds read, and the Positions read without decoding turns, are 
+     *	compared with those of the original World. Cases that differ are 
+     *	marked in isDiffering.
+     */
+    private void checkArchive(File file, Case[] allCases, boolean[] isDiffering, List<Integer> archivedCases,
+            List<List<String>> archivedTurns, List<List<String>> archivedPositions) throws IOException {
+        final GameArchive archive = GameArchive.open(file);
+        try {
+            if (archive.size() != 2 * archivedCases.size()) {
+                throw new IOException("archive has " + archive.size() + " games; expected "
+                        + (2 * archivedCases.size()));
+            }
+
+            int game = 0;
+            for (int i = 0; i < archivedCases.size(); i++) {
+                final int ccn = archivedCases.get(i).intValue();
+                final List<String> expected = archivedTurns.get(i);
+                final List<String> expectedPositions = archivedPositions.get(i);
+                for (int copy = 0; copy < 2; copy++, game++) {
+                    final GameArchive.Game g = archive.getGame(game);
+                    final List<String> positions = new ArrayList<String>();
+                    for (int turn = 0; turn < g.getTurnCount(); turn++) {
+                        addPositionLines(positions, g.getPhase(turn) + ": ", g.getPosition(turn), g.getMap());
+                    }
+                    Collections.sort(positions);
+
+                    final List<String> turns = getTurns(g.getWorld());
+                    if (!allCases[ccn].getName().equals(g.getName()) || !expected.equals(turns)
+                            || !expectedPositions.equals(positions)) {
+                        isDiffering[ccn] = true;
+                        System.out.println("ARCHIVE DIFFERS: " + allCases[ccn].getName() + " (game " + game + ")");
+                        printMissing(expected, turns, "-");
+                        printMissing(turns, expected, "+");
+                        printMissing(expectedPositions, positions, "- (position)");
+                        printMissing(positions, expectedPositions, "+ (position)");
+                    }
+                }
+            }
+        } finally {
+            archive.close();
+        }
+    }// checkArchive()
+
+    /** 
+     *	Saves the World, and opens the saved file. An IOException is thrown
+     *	if the World was not written in the binary format.
+     */
+    private static World saveAndOpen(World w, File file) throws IOException {
+        World.save(file, w);
+        if (!BinaryWorldFormat.isBinaryFormat(file)) {
+            throw new IOException("not saved in the binary format");
+        }
+
+        return World.open(file);
+    }// saveAndOpen()
+
+    /** 
+     *	Returns the turns of a World as a list of lines: for each TurnState,
+     *	in Phase order, its orders, results, unit positions and supply center
+     *	owners. Orders and results are sorted within each TurnState.
+     */
+    private List<String> getTurns(World w) {
+        final List<String> lines = new ArrayList<String>();
+        for (final TurnState ts : w.getAllTurnStates()) {
+            final String phase = ts.getPhase() + ": ";
+            lines.add(phase + "resolved: " + ts.isResolved() + ", ended: " + ts.isEnded()
+                    + ", sc owner changed: " + ts.getSCOwnerChanged());
+
+            final List<String> turnLines = new ArrayList<String>();
+            for (final Orderable order : ts.getAllOrders()) {
+                turnLines.add(phase + "order: " + order);
+            }
+
+            for (final Result r : ts.getResultList()) {
+                turnLines.add(phase + "result: " + r);
+            }
+
+            addPositionLines(turnLines, phase, ts.getPosition(), w.getMap());
+            Collections.sort(turnLines);
+            lines.addAll(turnLines);
+        }
+
+        return lines;
+    }// getTurns()
+
+    /** Returns the unit positions and supply center owners of each turn of a World, sorted. */
+    private List<String> getPositions(World w) {
+        final List<String> lines = new ArrayList<String>();
+        for (final TurnState ts : w.getAllTurnStates()) {
+            addPositionLines(lines, ts.getPhase() + ": ", ts.getPosition(), w.getMap());
+        }
+
+        Collections.sort(lines);
+        return lines;
+    }// getPositions()
+
+    /** Adds the unit positions and supply center owners of a Position, with the given prefix. */
+    private void addPositionLines(List<String> lines, String prefix, Position pos, dip.world.Map map) {
+        for (final Province province : pos.getUnitProvinces()) {
+            lines.add(prefix + "unit: " + new UnitPos(pos, province, false));
+        }
+
+        for (final Province province : pos.getDislodgedUnitProvinces()) {
+            lines.add(prefix + "dislodged: " + new UnitPos(pos, province, true));
+        }
+
+        for (final Province province : map.getProvinces()) {
+            final Power owner = pos.getSupplyCenterOwner(province);
+            if (owner != null) {
+                lines.add(prefix + "owner: " + province.getShortName() + " " + owner.getName());
+            }
+        }
+    }// addPositionLines()
+
+    /** Print the lines of a that are not in b, with the given prefix */
+    private static void printMissing(List<String> a, List<String> b, String prefix) {
+        for (final String line : a) {
+            if (!b.contains(line)) {
+                System.out.println("  " + prefix + " " + line);
+            }
+        }
+    }// printMissing()
+
+    /**
+     *	Adjudicates a single case once. If stat is non-null, the time and
+     *	allocation of adjudication (only) are recorded.
+     */
+    private void benchAdjudicate(Case currentCase, BenchStat stat) {
+        // world: setup
+        world.setTurnState(currentCase.getCurrentTurnState());
+        world.setTurnState(currentCase.getPreviousTurnState());
+
+        final long startBytes = (stat == null) ? 0L : getAllocatedBytes();
+        final long startTime = System.nanoTime();
+
+        stdJudge = new StdAdjudicator(OrderFactory.getDefault(), currentCase.getCurrentTurnState());
+        stdJudge.process();
+
+        final long time = System.nanoTime() - startTime;
+        final long bytes = (stat == null) ? 0L : getAllocatedBytes() - startBytes;
+
+        if (stat != null) {
+            stat.record(time, bytes, currentCase.getOrders().size(),
+                    currentCase.getPhase().getPhaseType().getBriefName(),
+                    getParadoxClass(stdJudge));
+        }
+
+        // cleanup: remove turnstates from world
+        world.removeAllTurnStates();
+
+        // cleanup: clear results in currentTurnSTate
+        // this is absolutely essential!! 
+        currentCase.getCurrentTurnState().getResultList().clear();
+    }// benchAdjudicate()
+
+    /** Classifies how (or if) the adjudicator had to break a paradox. */
+    private static String getParadoxClass(StdAdjudicator adj) {
+        if (adj.isUnresolvedParadox()) {
+            return "unresolved";
+        } else if (adj.getParadoxBreakAttempts() > 1) {
+            return "szykman";
+        } else if (adj.getParadoxBreakAttempts() == 1) {
+            return "circular";
+        }
+
+        return "none";
+    }// getParadoxClass()
+
+    /**
+     *	Bytes allocated by the current thread, or -1 if the VM cannot
+     *	report per-thread allocation.
+     */
+    private static long getAllocatedBytes() {
+        final java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        if (bean instanceof com.sun.management.ThreadMXBean) {
+            final com.sun.management.ThreadMXBean sunBean = (com.sun.management.ThreadMXBean) bean;
+            if (sunBean.isThreadAllocatedMemorySupported() && sunBean.isThreadAllocatedMemoryEnabled()) {
+                return sunBean.getThreadAllocatedBytes(Thread.currentThread().getId());
+            }
+        }
+
+        return -1L;
+    }// getAllocatedBytes()
+
+    /** Get (creating if needed) the aggregate BenchStat for the given key. */
+    private static BenchStat getBenchStat(Map<String, BenchStat> map, String key) {
+        BenchStat stat = map.get(key);
+        if (stat == null) {
+            stat = new BenchStat(key);
+            map.put(key, stat);
+        }
+        return stat;
+    }// getBenchStat()
+
+    /** Print a BenchStat as a single tab-separated line */
+    private static void printBenchStat(BenchStat stat, boolean isCase) {
+        StringBuffer sb = new StringBuffer(128);
+        sb.append("  ");
+        sb.append(stat.getNanosPerOp());
+        sb.append('\t');
+        sb.append(stat.minNanos);
+        sb.append('\t');
+        sb.append((stat.totalBytes < 0) ? -1 : stat.getBytesPerOp());
+        sb.append('\t');
+        sb.append(stat.nOrders);
+        sb.append('\t');
+        if (isCase) {
+            sb.append(stat.phaseType);
+            sb.append('\t');
+            sb.append(stat.paradoxClass);
+            sb.append('\t');
+        } else {
+            sb.append(stat.nOps);
+            sb.append(" ops\t");
+        }
+        sb.append(stat.name);
+        System.out.println(sb);
+    }// printBenchStat()
+
+    /** 
+     *	Accumulates benchmark timings, for a single case or for a group
+     *	of cases (by phase type or paradox class).
+     */
+    private static final class BenchStat {
+
+        private final String name;
+        private String phaseType = "?";
+        private String paradoxClass = "none";
+        private long nOps = 0;
+        private long nOrders = 0;
+        private long totalNanos = 0;
+        private long minNanos = Long.MAX_VALUE;
+        private long totalBytes = 0;
+
+        public BenchStat(String name) {
+            this.name = name;
+        }// BenchStat()
+
+        /** Record a single adjudication */
+        public void record(long nanos, long bytes, int orders, String phaseType, String paradoxClass) {
+            this.phaseType = phaseType;
+            this.paradoxClass = paradoxClass;
+            nOps++;
+            nOrders = orders;
+            totalNanos += nanos;
+            minNanos = Math.min(minNanos, nanos);
+            totalBytes = (bytes < 0 || totalBytes < 0) ? -1 : totalBytes + bytes;
+        }// record()
+
+        /** Merge a per-case BenchStat into this (aggregate) BenchStat */
+        public void add(BenchStat stat) {
+            nOps += stat.nOps;
+            nOrders += stat.nOrders;
+            totalNanos += stat.totalNanos;
+            minNanos = Math.min(minNanos, stat.minNanos);
+            totalBytes = (stat.totalBytes < 0 || totalBytes < 0) ? -1 : totalBytes + stat.totalBytes;
+        }// add()
+
+        public long getNanosPerOp() {
+            return (nOps == 0) ? 0 : totalNanos / nOps;
+        }
+
+        public long getBytesPerOp() {
+            return (nOps == 0) ? 0 : totalBytes / nOps;
+        }
+    }// nested class BenchStat
+
     /** Briefly print performance stats for cut/paste */
     private void printPerfStatsBrief(int nIter, int nOrder, float timeTotal, float thruput) {
         StringBuffer sb = new StringBuffer();
@@ -852,24 +1457,30 @@ public final class TestSuite {
         private final List<DefineState> supplySCOwners = new ArrayList<DefineState>();	
         // all types are 'army'
         private List<OrderResult> results = new ArrayList<OrderResult>();
-        private List<Order> orders = null;
+        private List<Order> orders = new ArrayList<Order>();
         private String name;
         private Phase phase = null;
         private OrderParser of = null;
         private TurnState currentTS = null;
         private TurnState previousTS = null;
+        // case input, kept so the case can be parsed again (see copy())
+        private final String phaseName;
+        private final List<List<String>> input;
 
         // tsTemplate: template turnstate to create the current, and (if needed) previous
         // turnstates.
-        public Case(String name, String phaseName, 
-                final List<String> pre, 
+        public Case(String name, String phaseName,
+                final List<String> pre,
                 final List<String> ord,
-                final List<String> post, 
-                final List<String> supplySCOwnersList, 
+                final List<String> post,
+                final List<String> supplySCOwnersList,
                 final List<String> preDislodgedList,
-                final List<String> postDislodgedList, 
+                final List<String> postDislodgedList,
                 final List<String> orderResultList) {
             this.name = name;
+            this.phaseName = phaseName;
+            this.input = Arrays.asList(pre, ord, post, supplySCOwnersList,
+                    preDislodgedList, postDislodgedList, orderResultList);
             of = OrderParser.getInstance();
 
 
@@ -1058,6 +1669,17 @@ public final class TestSuite {
             }
         }// Case()
 
+        /**
+         *	Creates a new Case from the same input. Adjudication changes the
+         *	state of the case orders (for example, Move convoy intent), so
+         *	a case that must be adjudicated again exactly as it was first
+         *	adjudicated should be copied.
+         */
+        public Case copy() {
+            return new Case(name, phaseName, input.get(0), input.get(1), input.get(2),
+                    input.get(3), input.get(4), input.get(5), input.get(6));
+        }// copy()
+
         public String getName() {
             return name;
         }
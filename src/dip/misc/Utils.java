@@ -107,7 +107,7 @@ public class Utils {
     private static final Pattern REAL_COMMAS = Pattern.compile(",(?=([^\"]*\"[^\"]*\")*(?![^\"]*\"))");
     private static ClassLoader classLoader = null;
     private static Utils singleton = null;
-    private static ResourceBundle resourceBundle = null;
+    private static volatile ResourceBundle resourceBundle = null;	// volatile: may be read by adjudication threads
     private static ResourceBundle commonBundle = null;
     private static Toolkit toolkit = null;
     private final static Component component = new Component() {
@@ -118,7 +118,7 @@ public class Utils {
 		private static final long serialVersionUID = 1L;
     };
     private final static MediaTracker tracker = new MediaTracker(component);
-    private static Locale chosenLocale = null;
+    private static volatile Locale chosenLocale = null;
     private final static boolean isOSX;
     private final static boolean isWindows;
 
@@ -0,0 +1,1164 @@
+//
+//  @(#)LogPressStore.java	1.00	10/2004
+//
+//  Copyright 2004 the jDip development team. All rights reserved.
+//  Use is subject to license terms.
+//
+//
+//  This program is free software; you can redistribute it and/or modify
+//  it under the terms of the GNU General Public License as published by
+//  the Free Software Foundation; either version 2 of the License, or
+//  (at your option) any later version.
+//
+//  This program is distributed in the hope that it will be useful,
+//  but WITHOUT ANY WARRANTY; without even the implied warranty of
+//  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+//  GNU General Public License for more details.
+//
+//  You should have received a copy of the GNU General Public License
+//  along with this program; if not, write to the Free Software
+//  Foundation, Inc., 675 Mass Ave, Cambridge, MA 02139, USA.
+//  Or from http://www.gnu.org/
+//
+package dip.net.message;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.RandomAccessFile;
+import java.io.Serializable;
+import java.lang.ref.SoftReference;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.TreeMap;
+import java.util.zip.CRC32;
+
+import dip.misc.Log;
+import dip.world.Phase;
+import dip.world.Power;
+
+/**
+ *	A PressStore that keeps messages in an append-only log, next to the 
+ *	game file, rather than in the game file itself.
+ *	<p>
+ *	Only the name of the log is serialized with the World; saving a game 
+ *	therefore does not rewrite its press. (A store without a log, such as
+ *	that of a game not yet saved, serializes its messages; see 
+ *	{@link #createUnsavedCopy()}.) Each stored message (and each 
+ *	change to the read/replied-to flags of a stored message) is appended to 
+ *	the log as it occurs. 
+ *	<p>
+ *	The log consists of segment files named after the game file (for game
+ *	"game.jdip": "game.jdip.press.0", "game.jdip.press.1", ...). Each record
+ *	has a CRC; when a log is opened, a partially written record at the end 
+ *	of the last segment (as left by a crash) is discarded. 
+ *	<p>
+ *	When a log is opened, only message headers (sender, recipients, subject,
+ *	phase, flags, times) are read; message bodies are read when requested, 
+ *	and cached (softly).
+ *	<p>
+ *	Until the game is first saved, messages are kept in memory; see 
+ *	{@link #prepareSave(PressStore, File)}. As with DefaultPressStore, 
+ *	storing a message whose from/to/subject/body/phase fields match a 
+ *	stored message replaces it (at the same position). 
+ *	<p>
+ *	Messages are indexed by Phase, sender, and recipient. Query methods 
+ *	are paged: <code>offset</code> messages are skipped, and at most 
+ *	<code>count</code> messages are returned, in the order in which they
+ *	were first stored.
+ *	<p>
+ *	PressStore methods cannot throw an IOException; a log that cannot be
+ *	written or read results in an IllegalStateException.
+ */
+public class LogPressStore implements PressStore, Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    /** Suffix appended to the game file name to form the log name */
+    public static final String LOG_SUFFIX = ".press";
+
+    /** 
+     *	Suffix appended to the game file name to form the name of its 
+     *	autosave file, which shares the log of the game file.
+     */
+    public static final String AUTOSAVE_SUFFIX = ".autosave";
+
+    // log format constants
+    private static final int MAGIC = 0x4A44504C;	// "JDPL"
+    private static final int VERSION = 1;
+    private static final int SEGMENT_HEADER_SIZE = 8;
+    private static final int RECORD_HEADER_SIZE = 12;
+    private static final long SEGMENT_SIZE = 1L << 20;
+    private static final byte TYPE_MESSAGE = 1;
+    private static final byte TYPE_FLAGS = 2;
+    private static final int FLAG_READ = 1;
+    private static final int FLAG_REPLIED_TO = 2;
+    private static final String CHARSET = "UTF-8";
+
+    // serialized fields
+    /** The log name (relative to the game file directory); null if never saved. */
+    private String logName = null;
+
+    // transient fields
+    private transient dip.world.Map map;
+    private transient Segments segments;		// null if not yet saved
+    private transient List<LoggedMessage> messages;
+    private transient HashMap<Key, Integer> keys;
+    // indices: positions in messages
+    private transient TreeMap<Phase, List<Integer>> byPhase;
+    private transient List<Integer> noPhase;
+    private transient HashMap<MID, List<Integer>> bySender;
+    private transient HashMap<MID, List<Integer>> byRecipient;
+    private transient List<Integer> broadcasts;
+
+    /** 
+     *	Create a LogPressStore. Messages are kept in memory until the game 
+     *	is saved. The Map is used to identify Powers when a log is read.
+     */
+    public LogPressStore(dip.world.Map map) {
+        this.map = map;
+        init();
+    }// LogPressStore()
+
+    /** Create the (empty) in-memory index */
+    private void init() {
+        messages = new ArrayList<LoggedMessage>(100);
+        keys = new HashMap<Key, Integer>(128);
+        byPhase = new TreeMap<Phase, List<Integer>>();
+        noPhase = new ArrayList<Integer>();
+        bySender = new HashMap<MID, List<Integer>>(16);
+        byRecipient = new HashMap<MID, List<Integer>>(16);
+        broadcasts = new ArrayList<Integer>();
+    }// init()
+
+    /** The log file name for the given game file. */
+    public static File getLogFile(File gameFile) {
+        return new File(gameFile.getAbsoluteFile().getParentFile(), gameFile.getName() + LOG_SUFFIX);
+    }// getLogFile()
+
+    /**
+     *	If the given PressStore is a LogPressStore, prepares its log for a 
+     *	save of the World to the given file; this must be done before the 
+     *	World is serialized. 
+     *	<p>
+     *	On the first save, the log is created next to the game file. Saves 
+     *	to another game file (except the autosave file of the game file; see
+     *	{@link #AUTOSAVE_SUFFIX}) create a compacted copy of the log next to 
+     *	that file, which is used from then on. The log is synced to disk.
+     *	<p>
+     *	To write a game file without changing the log in use, write a 
+     *	World whose store is replaced by {@link #createUnsavedCopy()}.
+     */
+    public static void prepareSave(PressStore ps, File gameFile)
+            throws IOException {
+        if (ps instanceof LogPressStore) {
+            ((LogPressStore) ps).relocate(gameFile);
+        }
+    }// prepareSave()
+
+    /**
+     *	If the given PressStore is a LogPressStore, opens its log, which 
+     *	is expected next to the given (just read) game file. A missing log 
+     *	results in an empty PressStore.
+     */
+    public static void attach(PressStore ps, File gameFile, dip.world.Map map)
+            throws IOException {
+        if (ps instanceof LogPressStore) {
+            ((LogPressStore) ps).open(gameFile, map);
+        }
+    }// attach()
+
+    /**
+     *	Create a copy whose messages are kept in memory, as for a game not 
+     *	yet saved; the copy serializes its messages. This is used to write a
+     *	World somewhere other than a game file (e.g., into a GameArchive), 
+     *	where there is no log next to it.
+     */
+    public synchronized LogPressStore createUnsavedCopy() {
+        final LogPressStore copy = new LogPressStore(map);
+        for (final LoggedMessage lm : messages) {
+            final LoggedMessage copied = copy.new LoggedMessage(lm.from, lm.to, lm.subject, lm.phase,
+                    lm.timeSent, lm.timeReceived, lm.flags, lm.bodyHash);
+            copied.text = lm.getMessage();
+            copy.put(copied);
+        }
+
+        return copy;
+    }// createUnsavedCopy()
+
+    /** Get all Messages. */
+    @Override
+    public synchronized PressMessage[] getAllMessages() {
+        return messages.toArray(new PressMessage[messages.size()]);
+    }// getAllMessages()
+
+    /** The number of stored messages. */
+    public synchronized int getMessageCount() {
+        return messages.size();
+    }// getMessageCount()
+
+    /** Get stored messages, in order. */
+    public synchronized PressMessage[] getMessages(int offset, int count) {
+        checkPage(offset, count);
+        final int end = (int) Math.min((long) offset + count, messages.size());
+        if (offset >= end) {
+            return new PressMessage[0];
+        }
+
+        return messages.subList(offset, end).toArray(new PressMessage[end - offset]);
+    }// getMessages()
+
+    /** Get messages sent during the given Phase; null for messages without a Phase. */
+    public synchronized PressMessage[] getMessages(Phase phase, int offset, int count) {
+        return getPage((phase == null) ? noPhase : byPhase.get(phase), offset, count);
+    }// getMessages()
+
+    /** Get messages sent by the given sender. */
+    public synchronized PressMessage[] getMessagesFrom(MID from, int offset, int count) {
+        return getPage(bySender.get(from), offset, count);
+    }// getMessagesFrom()
+
+    /** 
+     *	Get messages explicitly addressed to the given recipient. 
+     *	Broadcast messages are not included; see {@link #getBroadcastMessages(int, int)}.
+     */
+    public synchronized PressMessage[] getMessagesTo(MID to, int offset, int count) {
+        return getPage(byRecipient.get(to), offset, count);
+    }// getMessagesTo()
+
+    /** Get broadcast messages (messages without recipients). */
+    public synchronized PressMessage[] getBroadcastMessages(int offset, int count) {
+        return getPage(broadcasts, offset, count);
+    }// getBroadcastMessages()
+
+    /** Get the Phases during which messages were sent, in order. */
+    public synchronized Phase[] getPhases() {
+        return byPhase.keySet().toArray(new Phase[byPhase.size()]);
+    }// getPhases()
+
+    /** Get a page of messages from an index, which may be null. */
+    private PressMessage[] getPage(List<Integer> index, int offset, int count) {
+        checkPage(offset, count);
+        if (index == null || offset >= index.size()) {
+            return new PressMessage[0];
+        }
+
+        final int end = (int) Math.min((long) offset + count, index.size());
+        final PressMessage[] page = new PressMessage[end - offset];
+        for (int i = offset; i < end; i++) {
+            page[i - offset] = messages.get(index.get(i).intValue());
+        }
+
+        return page;
+    }// getPage()
+
+    /** Check the arguments of a paged query. */
+    private static void checkPage(int offset, int count) {
+        if (offset < 0 || count < 0) {
+            throw new IllegalArgumentException();
+        }
+    }// checkPage()
+
+    /** 
+     *	Store a Message. 
+     *	<p>
+     *	This will replace a message already stored if the 
+     *	message fields from/to/subject/body/phase
+     *	match. The read/reply to flags are ignored (and thus
+     *	will be updated), as are sent/receive timestamps
+     *	<p>
+     *	If the game has been saved, the message is appended to the log.
+     *	The stored message is a copy; changes to its flags are logged.
+     */
+    @Override
+    public synchronized void storeMessage(PressMessage pm) {
+        if (pm == null) {
+            throw new IllegalArgumentException();
+        }
+
+        final String body = pm.getMessage();
+        final LoggedMessage lm = new LoggedMessage(pm.getFrom(), pm.getTo().clone(),
+                pm.getSubject(), pm.getPhase(), pm.getTimeSent(), pm.getTimeReceived(),
+                getFlags(pm.isRead(), pm.isRepliedTo()), body.hashCode());
+
+        try {
+            if (segments != null) {
+                append(segments, lm, body);
+            } else {
+                lm.text = body;
+            }
+        } catch (IOException e) {
+            throw failure(e);
+        }
+
+        put(lm);
+    }// storeMessage()
+
+    /** Flushes the log to disk. */
+    public synchronized void flush()
+            throws IOException {
+        if (segments != null) {
+            segments.sync();
+        }
+    }// flush()
+
+    /** 
+     *	Closes the log files. They are reopened if needed; this only 
+     *	releases file handles.
+     */
+    public synchronized void close()
+            throws IOException {
+        if (segments != null) {
+            segments.close();
+        }
+    }// close()
+
+    /** 
+     *	Add to the in-memory index; replaces an existing message with the same
+     *	key. A replaced message has the same Phase, sender and recipients, so
+     *	the Phase, sender and recipient indices are unchanged.
+     */
+    private void put(LoggedMessage lm) {
+        final Key key = new Key(lm);
+        final Integer index = keys.remove(key);
+        if (index == null) {
+            lm.index = messages.size();
+            messages.add(lm);
+
+            final Integer position = Integer.valueOf(lm.index);
+            if (lm.phase == null) {
+                noPhase.add(position);
+            } else {
+                getIndex(byPhase, lm.phase).add(position);
+            }
+
+            getIndex(bySender, lm.from).add(position);
+            if (lm.to.length == 0) {
+                broadcasts.add(position);
+            } else {
+                for (int i = 0; i < lm.to.length; i++) {
+                    // a recipient listed twice is indexed once
+                    if (indexOf(lm.to, lm.to[i]) == i) {
+                        getIndex(byRecipient, lm.to[i]).add(position);
+                    }
+                }
+            }
+        } else {
+            lm.index = index.intValue();
+            messages.set(lm.index, lm);
+        }
+
+        keys.put(key, Integer.valueOf(lm.index));
+    }// put()
+
+    /** Get (creating if needed) the index for the given key. */
+    private static <K> List<Integer> getIndex(java.util.Map<K, List<Integer>> indices, K key) {
+        List<Integer> index = indices.get(key);
+        if (index == null) {
+            index = new ArrayList<Integer>();
+            indices.put(key, index);
+        }
+
+        return index;
+    }// getIndex()
+
+    /** Create the log next to the game file (or move it), and sync it. */
+    private synchronized void relocate(File gameFile)
+            throws IOException {
+        final File base = getLogFile(gameFile);
+        if (segments != null) {
+            final File current = segments.getBase();
+            final String gameName = current.getName().substring(0, current.getName().length() - LOG_SUFFIX.length());
+            final String name = gameFile.getName();
+            if (current.getParentFile().equals(base.getParentFile())
+                    && (name.equals(gameName) || name.equals(gameName + AUTOSAVE_SUFFIX))) {
+                // the same game (or its autosave)
+                segments.sync();
+                return;
+            }
+        }
+
+        // write current messages to a new (compacted) log.
+        final Segments newSegments = new Segments(base);
+        newSegments.delete();	// a stale log, of a game previously saved under this name
+        for (final LoggedMessage lm : messages) {
+            final String body = lm.getMessage();
+            append(newSegments, lm, body);
+        }
+
+        newSegments.sync();
+
+        if (segments != null) {
+            segments.close();
+        }
+
+        segments = newSegments;
+        logName = base.getName();
+    }// relocate()
+
+    /** Open the log, if any, of a read game. */
+    private synchronized void open(File gameFile, dip.world.Map map)
+            throws IOException {
+        this.map = map;
+        if (logName == null) {
+            if (messages == null) {
+                // not read by an ObjectInputStream
+                init();
+            }
+            return;
+        }
+
+        if (segments != null) {
+            segments.close();
+        }
+
+        init();
+        segments = new Segments(new File(gameFile.getAbsoluteFile().getParentFile(), logName));
+        segments.load(this);
+    }// open()
+
+    /** Append a message record; the message's body location is set. */
+    private void append(Segments segs, LoggedMessage lm, String body)
+            throws IOException {
+        final ByteArrayOutputStream baos = new ByteArrayOutputStream(256);
+        final DataOutputStream out = new DataOutputStream(baos);
+        out.writeByte(TYPE_MESSAGE);
+        out.writeByte(lm.flags);
+        out.writeLong(lm.timeSent);
+        out.writeLong(lm.timeReceived);
+        writeMID(out, lm.from);
+        out.writeShort(lm.to.length);
+        for (int i = 0; i < lm.to.length; i++) {
+            writeMID(out, lm.to[i]);
+        }
+        writeString(out, lm.subject);
+        writePhase(out, lm.phase);
+        out.writeInt(lm.bodyHash);
+        out.flush();
+
+        final byte[] header = baos.toByteArray();
+        final byte[] bodyBytes = body.getBytes(CHARSET);
+        final long offset = segs.append(header, bodyBytes);
+
+        lm.segment = segs.getActiveIndex();
+        lm.bodyOffset = offset + RECORD_HEADER_SIZE + header.length;
+        lm.bodyLength = bodyBytes.length;
+        lm.text = null;
+        lm.cache = new SoftReference<String>(body);
+    }// append()
+
+    /** Append a flags record, if the game has been saved. */
+    private void appendFlags(LoggedMessage lm)
+            throws IOException {
+        if (segments == null) {
+            return;
+        }
+
+        final ByteArrayOutputStream baos = new ByteArrayOutputStream(8);
+        final DataOutputStream out = new DataOutputStream(baos);
+        out.writeByte(TYPE_FLAGS);
+        out.writeInt(lm.index);
+        out.writeByte(lm.flags);
+        out.flush();
+        segments.append(baos.toByteArray(), new byte[0]);
+    }// appendFlags()
+
+    /** Apply a record read from the log. */
+    private void apply(byte[] header, int segment, long bodyOffset, int bodyLength)
+            throws IOException {
+        final DataInputStream in = new DataInputStream(new ByteArrayInputStream(header));
+        final byte type = in.readByte();
+        if (type == TYPE_MESSAGE) {
+            final int flags = in.readByte();
+            final long timeSent = in.readLong();
+            final long timeReceived = in.readLong();
+            final MID from = readMID(in);
+            final MID[] to = new MID[in.readUnsignedShort()];
+            for (int i = 0; i < to.length; i++) {
+                to[i] = readMID(in);
+            }
+            final String subject = readString(in);
+            final Phase phase = readPhase(in);
+            final int bodyHash = in.readInt();
+
+            final LoggedMessage lm = new LoggedMessage(from, to, subject, phase,
+                    timeSent, timeReceived, flags, bodyHash);
+            lm.segment = segment;
+            lm.bodyOffset = bodyOffset;
+            lm.bodyLength = bodyLength;
+            put(lm);
+        } else if (type == TYPE_FLAGS) {
+            final int index = in.readInt();
+            final int flags = in.readByte();
+            if (index >= 0 && index < messages.size()) {
+                messages.get(index).flags = flags;
+            }
+        } else {
+            throw new IOException("unknown press log record type: " + type);
+        }
+    }// apply()
+
+    /** Read a message body */
+    private String readBody(LoggedMessage lm)
+            throws IOException {
+        final byte[] bytes = segments.read(lm.segment, lm.bodyOffset, lm.bodyLength);
+        return new String(bytes, CHARSET);
+    }// readBody()
+
+    /** Write an MID */
+    private static void writeMID(DataOutputStream out, MID mid)
+            throws IOException {
+        final Power power = mid.getPower();
+        out.writeBoolean(power != null);
+        out.writeUTF((power == null) ? mid.getNick() : power.getName());
+        writeString(out, mid.getName());
+    }// writeMID()
+
+    /** Read an MID. A Power not found in the Map is read as a nickname. */
+    private MID readMID(DataInputStream in)
+            throws IOException {
+        final boolean isPower = in.readBoolean();
+        final String nick = in.readUTF();
+        final String name = readString(in);
+
+        final Power power = (isPower && map != null) ? map.getPower(nick) : null;
+        return (power == null) ? new MID(nick, name) : new MID(power, name);
+    }// readMID()
+
+    /** Write a String, which may be null. */
+    private static void writeString(DataOutputStream out, String s)
+            throws IOException {
+        out.writeBoolean(s != null);
+        if (s != null) {
+            out.writeUTF(s);
+        }
+    }// writeString()
+
+    /** Read a String, which may be null. */
+    private static String readString(DataInputStream in)
+            throws IOException {
+        return in.readBoolean() ? in.readUTF() : null;
+    }// readString()
+
+    /** 
+     *	Write a Phase, which may be null, as the season and phase type 
+     *	indices and the year; a brief name cannot hold every year (BC, or 
+     *	after 9999).
+     */
+    private static void writePhase(DataOutputStream out, Phase phase)
+            throws IOException {
+        out.writeBoolean(phase != null);
+        if (phase != null) {
+            out.writeByte(indexOf(Phase.SeasonType.ALL, phase.getSeasonType()));
+            out.writeInt(phase.getYear());
+            out.writeByte(indexOf(Phase.PhaseType.ALL, phase.getPhaseType()));
+        }
+    }// writePhase()
+
+    /** Read a Phase, which may be null. */
+    private static Phase readPhase(DataInputStream in)
+            throws IOException {
+        if (!in.readBoolean()) {
+            return null;
+        }
+
+        final int season = in.readByte();
+        final int year = in.readInt();
+        final int phaseType = in.readByte();
+        try {
+            return new Phase(Phase.SeasonType.ALL[season], year, Phase.PhaseType.ALL[phaseType]);
+        } catch (RuntimeException e) {
+            // bad index, year 0, or invalid combination
+            throw new IOException("invalid phase in press log: " + season + "/" + year + "/" + phaseType);
+        }
+    }// readPhase()
+
+    private static int indexOf(Object[] array, Object obj) {
+        for (int i = 0; i < array.length; i++) {
+            if (array[i].equals(obj)) {
+                return i;
+            }
+        }
+
+        throw new IllegalArgumentException(String.valueOf(obj));
+    }// indexOf()
+
+    private static int getFlags(boolean isRead, boolean isRepliedTo) {
+        return (isRead ? FLAG_READ : 0) | (isRepliedTo ? FLAG_REPLIED_TO : 0);
+    }// getFlags()
+
+    /** Wrap an IOException, for PressStore methods that cannot throw one. */
+    private static IllegalStateException failure(IOException e) {
+        final IllegalStateException ise = new IllegalStateException("press log: " + e.getMessage());
+        ise.initCause(e);
+        return ise;
+    }// failure()
+
+    /** 
+     *	The log name is serialized; the log is opened by attach(). If there 
+     *	is no log, the messages are serialized instead.
+     */
+    private synchronized void writeObject(ObjectOutputStream out)
+            throws IOException {
+        out.defaultWriteObject();
+        if (logName == null) {
+            out.writeInt(messages.size());
+            for (final LoggedMessage lm : messages) {
+                writeMessage(out, lm);
+            }
+        }
+    }// writeObject()
+
+    private void readObject(ObjectInputStream in)
+            throws IOException, ClassNotFoundException {
+        in.defaultReadObject();
+        init();
+        if (logName == null) {
+            final int count = in.readInt();
+            for (int i = 0; i < count; i++) {
+                put(readMessage(in));
+            }
+        }
+    }// readObject()
+
+    /** 
+     *	Write a message, with its body, as objects; Powers are written as
+     *	objects so that the stream may replace them. 
+     */
+    private static void writeMessage(ObjectOutputStream out, LoggedMessage lm)
+            throws IOException {
+        writeMID(out, lm.from);
+        out.writeShort(lm.to.length);
+        for (int i = 0; i < lm.to.length; i++) {
+            writeMID(out, lm.to[i]);
+        }
+        out.writeObject(lm.subject);
+        out.writeObject(lm.phase);
+        out.writeLong(lm.timeSent);
+        out.writeLong(lm.timeReceived);
+        out.writeByte(lm.flags);
+        out.writeObject(lm.getMessage());
+    }// writeMessage()
+
+    /** Read a message written by writeMessage(); its body is kept in memory. */
+    private LoggedMessage readMessage(ObjectInputStream in)
+            throws IOException, ClassNotFoundException {
+        final MID from = readMID(in);
+        final MID[] to = new MID[in.readUnsignedShort()];
+        for (int i = 0; i < to.length; i++) {
+            to[i] = readMID(in);
+        }
+        final String subject = (String) in.readObject();
+        final Phase phase = (Phase) in.readObject();
+        final long timeSent = in.readLong();
+        final long timeReceived = in.readLong();
+        final int flags = in.readByte();
+        final String body = (String) in.readObject();
+
+        final LoggedMessage lm = new LoggedMessage(from, to, subject, phase,
+                timeSent, timeReceived, flags, body.hashCode());
+        lm.text = body;
+        return lm;
+    }// readMessage()
+
+    private static void writeMID(ObjectOutputStream out, MID mid)
+            throws IOException {
+        out.writeObject(mid.getPower());
+        out.writeObject(mid.getNick());
+        out.writeObject(mid.getName());
+    }// writeMID()
+
+    private static MID readMID(ObjectInputStream in)
+            throws IOException, ClassNotFoundException {
+        final Power power = (Power) in.readObject();
+        final String nick = (String) in.readObject();
+        final String name = (String) in.readObject();
+        return (power == null) ? new MID(nick, name) : new MID(power, name);
+    }// readMID()
+
+    /** 
+     *	A message in the log. The body is read when first needed. 
+     *	All state is guarded by the LogPressStore lock.
+     */
+    private final class LoggedMessage implements PressMessage {
+
+        private final MID from;
+        private final MID[] to;
+        private final String subject;
+        private final Phase phase;
+        private final long timeSent;
+        private final long timeReceived;
+        private final int bodyHash;
+        private int flags;
+        private int index;
+        // body: in memory (text), or in the log
+        private String text = null;
+        private SoftReference<String> cache = null;
+        private int segment;
+        private long bodyOffset;
+        private int bodyLength;
+
+        public LoggedMessage(MID from, MID[] to, String subject, Phase phase,
+                long timeSent, long timeReceived, int flags, int bodyHash) {
+            this.from = from;
+            this.to = to;
+            this.subject = subject;
+            this.phase = phase;
+            this.timeSent = timeSent;
+            this.timeReceived = timeReceived;
+            this.flags = flags;
+            this.bodyHash = bodyHash;
+        }// LoggedMessage()
+
+        @Override
+        public MID getFrom() {
+            return from;
+        }
+
+        @Override
+        public MID[] getTo() {
+            return to.clone();
+        }
+
+        @Override
+        public String getSubject() {
+            return subject;
+        }
+
+        @Override
+        public String getMessage() {
+            synchronized (LogPressStore.this) {
+                if (text != null) {
+                    return text;
+                }
+
+                String body = (cache == null) ? null : cache.get();
+                if (body == null) {
+                    try {
+                        body = readBody(this);
+                    } catch (IOException e) {
+                        throw failure(e);
+                    }
+
+                    cache = new SoftReference<String>(body);
+                }
+
+                return body;
+            }
+        }// getMessage()
+
+        @Override
+        public Phase getPhase() {
+            return phase;
+        }
+
+        @Override
+        public long getTimeReceived() {
+            return timeReceived;
+        }
+
+        @Override
+        public long getTimeSent() {
+            return timeSent;
+        }
+
+        @Override
+        public boolean isRead() {
+            synchronized (LogPressStore.this) {
+                return ((flags & FLAG_READ) != 0);
+            }
+        }
+
+        @Override
+        public boolean isRepliedTo() {
+            synchronized (LogPressStore.this) {
+                return ((flags & FLAG_REPLIED_TO) != 0);
+            }
+        }
+
+        @Override
+        public void setRead(boolean value) {
+            setFlags(value ? (flags | FLAG_READ) : (flags & ~FLAG_READ));
+        }
+
+        @Override
+        public void setRepliedTo(boolean value) {
+            setFlags(value ? (flags | FLAG_REPLIED_TO) : (flags & ~FLAG_REPLIED_TO));
+        }
+
+        /** Set and log the flags; a replaced message is not logged. */
+        private void setFlags(int value) {
+            synchronized (LogPressStore.this) {
+                if (value != flags) {
+                    flags = value;
+                    if (index < messages.size() && messages.get(index) == this) {
+                        try {
+                            appendFlags(this);
+                        } catch (IOException e) {
+                            throw failure(e);
+                        }
+                    }
+                }
+            }
+        }// setFlags()
+    }// nested class LoggedMessage
+
+    /** 
+     *	The fields of a message that determine if it replaces a stored 
+     *	message. Bodies are compared only if their hashes match.
+     */
+    private static final class Key {
+
+        private final LoggedMessage lm;
+        private final int hash;
+
+        public Key(LoggedMessage lm) {
+            this.lm = lm;
+
+            int h = lm.from.hashCode();
+            for (int i = 0; i < lm.to.length; i++) {
+                h = 31 * h + lm.to[i].hashCode();
+            }
+            h = 31 * h + ((lm.subject == null) ? 0 : lm.subject.hashCode());
+            hash = 31 * h + lm.bodyHash;
+        }// Key()
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }// hashCode()
+
+        @Override
+        public boolean equals(Object obj) {
+            if (obj == this) {
+                return true;
+            }
+
+            if (!(obj instanceof Key)) {
+                return false;
+            }
+
+            final LoggedMessage other = ((Key) obj).lm;
+            if (hash != ((Key) obj).hash
+                    || lm.bodyHash != other.bodyHash
+                    || !lm.from.equals(other.from)
+                    || lm.to.length != other.to.length) {
+                return false;
+            }
+
+            for (int i = 0; i < lm.to.length; i++) {
+                if (!lm.to[i].equals(other.to[i])) {
+                    return false;
+                }
+            }
+
+            if ((lm.subject == null) ? other.subject != null : !lm.subject.equals(other.subject)) {
+                return false;
+            }
+
+            if ((lm.phase == null) ? other.phase != null : (other.phase == null || !lm.phase.equals(other.phase))) {
+                return false;
+            }
+
+            // bodies last: they may need to be read.
+            return lm.getMessage().equals(other.getMessage());
+        }// equals()
+    }// nested class Key
+
+    /** The segment files of a log. */
+    private static final class Segments {
+
+        private final File base;
+        private int count = 0;
+        private RandomAccessFile active = null;	// last segment
+        private long activeLength = 0L;
+        private final List<RandomAccessFile> readers = new ArrayList<RandomAccessFile>();
+        private final CRC32 crc = new CRC32();
+
+        public Segments(File base) {
+            this.base = base;
+        }// Segments()
+
+        public File getBase() {
+            return base;
+        }// getBase()
+
+        /** The segment file with the given index */
+        private File getFile(int index) {
+            return new File(base.getPath() + "." + index);
+        }// getFile()
+
+        /** Index of the segment being appended to */
+        public int getActiveIndex() {
+            return count - 1;
+        }// getActiveIndex()
+
+        /** Delete all segments */
+        public void delete()
+                throws IOException {
+            close();
+            for (int i = 0; getFile(i).exists(); i++) {
+                if (!getFile(i).delete()) {
+                    throw new IOException("cannot delete " + getFile(i));
+                }
+            }
+            count = 0;
+        }// delete()
+
+        /** Append a record; returns its offset in the active segment. */
+        public long append(byte[] header, byte[] body)
+                throws IOException {
+            final long length = RECORD_HEADER_SIZE + header.length + body.length;
+            if (active == null && count > 0) {
+                // continue the last segment of an existing log
+                getReader(count - 1);
+            }
+
+            if (active == null || (activeLength > SEGMENT_HEADER_SIZE && activeLength + length > SEGMENT_SIZE)) {
+                startSegment();
+            }
+
+            crc.reset();
+            crc.update(header);
+            crc.update(body);
+
+            final ByteArrayOutputStream baos = new ByteArrayOutputStream((int) length);
+            final DataOutputStream out = new DataOutputStream(baos);
+            out.writeInt(header.length + body.length);
+            out.writeInt(header.length);
+            out.writeInt((int) crc.getValue());
+            out.write(header);
+            out.write(body);
+            out.flush();
+
+            // a single write, at the end of the segment
+            final long offset = activeLength;
+            active.seek(offset);
+            active.write(baos.toByteArray());
+            activeLength += length;
+            return offset;
+        }// append()
+
+        /** Start a new segment */
+        private void startSegment()
+                throws IOException {
+            if (active != null) {
+                active.getFD().sync();
+            }
+
+            final File file = getFile(count);
+            final RandomAccessFile raf = new RandomAccessFile(file, "rw");
+            raf.setLength(0L);
+            raf.writeInt(MAGIC);
+            raf.writeInt(VERSION);
+
+            if (active != null) {
+                setReader(count - 1, active);
+            }
+
+            active = raf;
+            activeLength = SEGMENT_HEADER_SIZE;
+            count++;
+        }// startSegment()
+
+        /** Read bytes from a segment */
+        public byte[] read(int segment, long offset, int length)
+                throws IOException {
+            final RandomAccessFile raf = getReader(segment);
+            final byte[] bytes = new byte[length];
+            raf.seek(offset);
+            raf.readFully(bytes);
+            return bytes;
+        }// read()
+
+        /** Get (opening if needed) the given segment */
+        private RandomAccessFile getReader(int segment)
+                throws IOException {
+            if (segment < 0 || segment >= count) {
+                throw new IOException("no press log segment " + segment);
+            }
+
+            if (segment == count - 1) {
+                if (active == null) {
+                    active = new RandomAccessFile(getFile(segment), "rw");
+                    activeLength = active.length();
+                }
+                return active;
+            }
+
+            RandomAccessFile raf = (segment < readers.size()) ? readers.get(segment) : null;
+            if (raf == null) {
+                raf = new RandomAccessFile(getFile(segment), "r");
+                setReader(segment, raf);
+            }
+
+            return raf;
+        }// getReader()
+
+        /** Set the reader of a (sealed) segment */
+        private void setReader(int segment, RandomAccessFile raf) {
+            while (readers.size() <= segment) {
+                readers.add(null);
+            }
+
+            readers.set(segment, raf);
+        }// setReader()
+
+        /** Sync the active segment to disk */
+        public void sync()
+                throws IOException {
+            if (active != null) {
+                active.getFD().sync();
+            }
+        }// sync()
+
+        /** Close all files */
+        public void close()
+                throws IOException {
+            for (final RandomAccessFile raf : readers) {
+                if (raf != null) {
+                    raf.close();
+                }
+            }
+            readers.clear();
+
+            if (active != null) {
+                active.close();
+                active = null;
+            }
+        }// close()
+
+        /** 
+         *	Read all record headers into the store. An incomplete or corrupt 
+         *	record at the end of the last segment is removed; appending then
+         *	continues at the end of the last complete record.
+         */
+        public void load(LogPressStore store)
+                throws IOException {
+            count = 0;
+            while (getFile(count).exists()) {
+                count++;
+            }
+
+            for (int i = 0; i < count; i++) {
+                final boolean isLast = (i == count - 1);
+                final File file = getFile(i);
+                final long fileLength = file.length();
+                long pos = SEGMENT_HEADER_SIZE;
+
+                final DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file), 8192));
+                try {
+                    if (fileLength < SEGMENT_HEADER_SIZE || in.readInt() != MAGIC || in.readInt() != VERSION) {
+                        if (isLast && fileLength < SEGMENT_HEADER_SIZE) {
+                            // crash while starting the segment
+                            pos = 0L;
+                        } else {
+                            throw new IOException("not a press log: " + file);
+                        }
+                    } else {
+                        while (pos < fileLength) {
+                            final long end = readRecord(store, in, i, pos, fileLength, isLast);
+                            if (end < 0L) {
+                                if (!isLast) {
+                                    throw new IOException("corrupt press log: " + file);
+                                }
+                                break;
+                            }
+
+                            pos = end;
+                        }
+                    }
+                } finally {
+                    in.close();
+                }
+
+                if (pos < fileLength) {
+                    // The store may have read a body from this segment while
+                    // loading, opening it as the active segment with its old
+                    // length; close it, so that it is reopened at the new length.
+                    if (active != null) {
+                        active.close();
+                        active = null;
+                        activeLength = 0L;
+                    }
+
+                    Log.println("LogPressStore: discarding incomplete record(s) at end of ", file);
+                    final RandomAccessFile raf = new RandomAccessFile(file, "rw");
+                    try {
+                        raf.setLength(pos);
+                    } finally {
+                        raf.close();
+                    }
+                }
+
+                if (pos == 0L) {
+                    // empty (unusable) segment; it will be rewritten.
+                    if (!file.delete()) {
+                        throw new IOException("cannot delete " + file);
+                    }
+                    count--;
+                }
+            }
+        }// load()
+
+        /** 
+         *	Read a record at the given position. Returns the position after the
+         *	record, or -1 if the record is incomplete or (when verifying) corrupt. 
+         *	Only the last segment is verified; bodies in other segments are skipped.
+         */
+        private long readRecord(LogPressStore store, DataInputStream in, int segment, 
+                long pos, long fileLength, boolean verify)
+                throws IOException {
+            if (pos + RECORD_HEADER_SIZE > fileLength) {
+                return -1L;
+            }
+
+            final int length = in.readInt();
+            final int headerLength = in.readInt();
+            final int checksum = in.readInt();
+            if (length < 0 || headerLength <= 0 || headerLength > length
+                    || pos + RECORD_HEADER_SIZE + length > fileLength) {
+                return -1L;
+            }
+
+            final byte[] header = new byte[headerLength];
+            in.readFully(header);
+
+            if (verify) {
+                final byte[] body = new byte[length - headerLength];
+                in.readFully(body);
+                crc.reset();
+                crc.update(header);
+                crc.update(body);
+                if ((int) crc.getValue() != checksum) {
+                    return -1L;
+                }
+            } else {
+                skipFully(in, length - headerLength);
+            }
+
+            store.apply(header, segment, pos + RECORD_HEADER_SIZE + headerLength, length - headerLength);
+            return pos + RECORD_HEADER_SIZE + length;
+        }// readRecord()
+
+        private static void skipFully(DataInputStream in, long n)
+                throws IOException {
+            while (n > 0) {
+                final long skipped = in.skip(n);
+                if (skipped <= 0) {
+                    throw new EOFException();
+                }
+                n -= skipped;
+            }
+        }// skipFully()
+    }// nested class Segments
+}// class LogPressStore
@@ -21,7 +21,16 @@
 //
 package dip.order;
 
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.StringTokenizer;
+import java.util.concurrent.ConcurrentHashMap;
 
 import dip.misc.Log;
 import dip.world.Coast;
@@ -34,9 +43,9 @@ import dip.world.Unit;
  *	OrderFormat formats orders according to the specified format string. 
  *	<p>
  *	While OrderFormat is more flexible than using Order.toBriefString() or
- *	Order.toFullString(), it is also considerably slower. This is should not 
- *	generally be a problem, unless one is doing multiple adjudications
- *	(e.g., for an AI).	
+ *	Order.toFullString(), it is also slower. Format strings are compiled 
+ *	once per Order class (fields and methods are looked up once), and the
+ *	compiled form is cached, so formatting does not use reflection.
  *	<p>
  *	OrderFormat uses keywords that are delimited by braces "{}". Valid keywords
  *	are described below. Any text (including whitespace) not in braces will be
@@ -130,6 +139,11 @@ public class OrderFormat {
     // misc. constants
     private final static String EMPTY = "";
     private final static String KEYWORD_ERROR = "!keyword_error!";
+    // compiled format cache
+    private final static int MAX_TEMPLATES = 512;
+    private final static ConcurrentHashMap<TemplateKey, Template> templates = new ConcurrentHashMap<TemplateKey, Template>();
+    private final static MethodHandles.Lookup LOOKUP = MethodHandles.lookup();
+    private final static MethodType ACCESSOR_TYPE = MethodType.methodType(Object.class, Orderable.class);
 
     /**
      *	For null values, when debugging, print the word "null"
@@ -423,65 +437,43 @@ public class OrderFormat {
     }// formatOrderName()
 
     /**
-     *	Process text within braces.
+     *	Compiles the text within braces into a Step.
      *	1) check if non-modifying keyword
      *	2) parse, check for method/variable, +/- boolean, +/- modifier
-     *	3) return resultant text
      */
-    private static String procBraceText(final OrderFormatOptions ofo,
-            final Orderable order, final String text) {
+    private static Step compileBraceText(final Class<?> cls, final String text) {
         if (text == null) {
             throw new IllegalArgumentException();
         }
 
-        Object out = null;
-
-        out = procStaticKeyword(ofo, order, text);
-        if (out == null) {
-            final String[] tokens = text.split(":", 3);
+        if (isStaticKeyword(text)) {
+            return new KeywordStep(text);
+        }
 
-            if (tokens.length == 0) {
-                Log.println("OrderFormat: cannot parse: {", text, "}");
-                return EMPTY;
-            }
+        final String[] tokens = text.split(":", 3);
+        if (tokens.length == 0) {
+            Log.println("OrderFormat: cannot parse: {", text, "}");
+            return new LiteralStep(EMPTY);
+        }
 
-            // proc first token
-            out = getViaReflection(order, tokens[0]);
-
-            // process modifier OR boolean
-            if (tokens.length > 1) {
-                // evaluate boolean expression
-                if (tokens[1].startsWith("?")) {
-                    boolean isTrue = false;
-                    if (out instanceof Boolean) {
-                        isTrue = ((Boolean) out).booleanValue();
-                    } else {
-                        isTrue = (out != null);
-                    }
+        // first token
+        final Accessor accessor = createAccessor(cls, tokens[0]);
 
-                    if (isTrue) {
-                        assert (tokens[1].length() > 0);
-                        final String tok = tokens[1].substring(1);
-                        final Object obj = procStaticKeyword(ofo, order, tok);
-                        return (obj == null) ? tok : obj.toString();
-                    } else {
-                        if (tokens.length == 2) {
-                            // {xxx:?true:} [empty 'false' clause]
-                            return EMPTY;
-                        } else {
-                            assert (tokens.length == 3);
-                            final Object obj = procStaticKeyword(ofo, order, tokens[2]);
-                            return (obj == null) ? tokens[2] : obj.toString();
-                        }
-                    }
-                } else {
-                    //process via modifier
-                    out = procModKeyword(ofo, order, out, tokens[1]);
-                }
+        // modifier OR boolean
+        if (tokens.length > 1) {
+            if (tokens[1].startsWith("?")) {
+                return new BooleanStep(accessor, tokens[1].substring(1),
+                        (tokens.length == 2) ? null : tokens[2]);
+            } else {
+                return new ModifierStep(accessor, tokens[1]);
             }
         }
 
-        // process Object into a (formatted) String
+        return new AccessorStep(accessor);
+    }// compileBraceText()
+
+    /** Process an Object into a (formatted) String */
+    private static String formatObject(final OrderFormatOptions ofo, final Object out) {
         if (out == null) {
             return EMPTY;
         } else if (out instanceof Power) {
@@ -498,37 +490,51 @@ public class OrderFormat {
             // convert object to a String
             return out.toString();
         }
-    }// procBraceText
+    }// formatObject()
 
     /**
-     *	Get the method or field via reflection. Returns null if an 
-     *	error occured.
+     *	Creates an Accessor for the method or field of the given class.
+     *	The method or field is looked up once; if it cannot be found or
+     *	accessed, the Accessor returns null.
      */
-    private static Object getViaReflection(final Orderable order, final String name) {
-        assert (order != null);
+    private static Accessor createAccessor(final Class<?> cls, final String name) {
+        assert (cls != null);
         assert (name != null);
 
-        final Class<? extends Orderable> cls = order.getClass();
         final boolean isMethod = (name.endsWith("()"));
 
-        if (isMethod) {
-            try {
-                return cls.getMethod(name.substring(0, name.length() - 2)).invoke(order);
-            } catch (Exception e) {
-                Log.println("OrderFormat::getViaReflection() cannot reflect method \"", name, "\"");
-                Log.println("OrderFormat::getViaReflection() exception details:\n", e);
+        try {
+            MethodHandle handle;
+            final int modifiers;
+            if (isMethod) {
+                final Method method = cls.getMethod(name.substring(0, name.length() - 2));
+                modifiers = method.getModifiers();
+                handle = LOOKUP.unreflect(method);
+            } else {
+                final Field field = cls.getDeclaredField(name);
+                modifiers = field.getModifiers();
+                handle = LOOKUP.unreflectGetter(field);
             }
-        } else {
-            try {
-                return cls.getDeclaredField(name).get(order);
-            } catch (Exception e) {
-                Log.println("OrderFormat::getViaReflection() cannot reflect field \"", name, "\"");
-                Log.println("OrderFormat::getViaReflection() exception details:\n", e);
+
+            // static members ignore the order
+            if (Modifier.isStatic(modifiers)) {
+                handle = MethodHandles.dropArguments(handle, 0, Orderable.class);
             }
+
+            return new Accessor(name, handle.asType(ACCESSOR_TYPE));
+        } catch (Exception e) {
+            Log.println("OrderFormat::createAccessor() cannot reflect " + (isMethod ? "method" : "field")
+                    + " \"", name, "\"");
+            Log.println("OrderFormat::createAccessor() exception details:\n", e);
         }
 
-        return null;
-    }// getViaReflection()
+        return new Accessor(name, null);
+    }// createAccessor()
+
+    /** Returns true if the text is a keyword that does NOT require any input. */
+    private static boolean isStaticKeyword(final String keyWord) {
+        return keyWord.equals(ARROW) || keyWord.equals(ORDERNAME);
+    }// isStaticKeyword()
 
     /**
      *	Process a keyword that does NOT require any input.
@@ -637,7 +643,47 @@ public class OrderFormat {
         }
 
 
-        StringBuffer output = new StringBuffer(256);
+        final StringBuffer output = new StringBuffer(256);
+        getTemplate(order.getClass(), format).append(ofo, order, output);
+
+        if (ofo.getEndWithDot()) {
+            // only append a dot if we think the order is complete; this means
+            // it should not end with a space or arrow.
+            //
+            final String str = output.toString();
+            if (str.endsWith(" ") || str.endsWith(ofo.getArrow())) {
+                return str;
+            } else {
+                output.append('.');
+            }
+        }
+
+        return output.toString();
+    }// format()
+
+    /** Gets the (cached) compiled Template for the given Order class and format String. */
+    private static Template getTemplate(final Class<?> cls, final String format) {
+        final TemplateKey key = new TemplateKey(cls, format);
+        Template template = templates.get(key);
+        if (template == null) {
+            if (templates.size() >= MAX_TEMPLATES) {
+                templates.clear();
+            }
+
+            template = compile(cls, format);
+            templates.put(key, template);
+        }
+
+        return template;
+    }// getTemplate()
+
+    /**
+     *	Compiles a format String into a Template: literal text and brace
+     *	text are split apart, and brace text is compiled into Steps.
+     */
+    private static Template compile(final Class<?> cls, final String format) {
+        final List<Step> steps = new ArrayList<Step>();
+        final StringBuffer literal = new StringBuffer(64);
         StringBuffer accum = new StringBuffer(32);
 
         boolean inBrace = false;
@@ -648,31 +694,27 @@ public class OrderFormat {
                 inBrace = true;
             } else if ("}".equals(tok) && inBrace) {
                 inBrace = false;
-                output.append(procBraceText(ofo, order, accum.toString()));
+                if (literal.length() > 0) {
+                    steps.add(new LiteralStep(literal.toString()));
+                    literal.setLength(0);
+                }
+                steps.add(compileBraceText(cls, accum.toString()));
                 accum = new StringBuffer();
             } else {
                 if (inBrace) {
                     accum.append(tok);
                 } else {
-                    output.append(tok);
+                    literal.append(tok);
                 }
             }
         }
 
-        if (ofo.getEndWithDot()) {
-            // only append a dot if we think the order is complete; this means
-            // it should not end with a space or arrow.
-            //
-            final String str = output.toString();
-            if (str.endsWith(" ") || str.endsWith(ofo.getArrow())) {
-                return str;
-            } else {
-                output.append('.');
-            }
+        if (literal.length() > 0) {
+            steps.add(new LiteralStep(literal.toString()));
         }
 
-        return output.toString();
-    }// format()
+        return new Template(steps.toArray(new Step[steps.size()]));
+    }// compile()
 
     /**
      *	Gets an example order, suitable for display in a user interface,
@@ -697,4 +739,156 @@ public class OrderFormat {
 
         return format(ofo, support);
     }// getFormatExample()
+
+    /** A compiled format String: a sequence of Steps. */
+    private static final class Template {
+        private final Step[] steps;
+
+        Template(final Step[] steps) {
+            this.steps = steps;
+        }// Template()
+
+        void append(final OrderFormatOptions ofo, final Orderable order, final StringBuffer output) {
+            for (int i = 0; i < steps.length; i++) {
+                steps[i].append(ofo, order, output);
+            }
+        }// append()
+    }// nested class Template
+
+    /** Template cache key */
+    private static final class TemplateKey {
+        private final Class<?> cls;
+        private final String format;
+
+        TemplateKey(final Class<?> cls, final String format) {
+            this.cls = cls;
+            this.format = format;
+        }// TemplateKey()
+
+        @Override
+        public int hashCode() {
+            return 31 * cls.hashCode() + format.hashCode();
+        }// hashCode()
+
+        @Override
+        public boolean equals(final Object obj) {
+            if (obj instanceof TemplateKey) {
+                final TemplateKey key = (TemplateKey) obj;
+                return (cls == key.cls && format.equals(key.format));
+            }
+            return false;
+        }// equals()
+    }// nested class TemplateKey
+
+    /** Gets the value of a method or field of an Order. */
+    private static final class Accessor {
+        private final String name;
+        private final MethodHandle handle;	// null if not accessible
+
+        Accessor(final String name, final MethodHandle handle) {
+            this.name = name;
+            this.handle = handle;
+        }// Accessor()
+
+        /** Returns null if an error occured. */
+        Object get(final Orderable order) {
+            if (handle != null) {
+                try {
+                    return (Object) handle.invokeExact(order);
+                } catch (Throwable t) {
+                    Log.println("OrderFormat::Accessor.get() cannot invoke \"", name, "\"");
+                    Log.println("OrderFormat::Accessor.get() exception details:\n", t);
+                }
+            }
+
+            return null;
+        }// get()
+    }// nested class Accessor
+
+    /** A step of a Template; appends formatted text to the output. */
+    private static abstract class Step {
+        abstract void append(OrderFormatOptions ofo, Orderable order, StringBuffer output);
+    }// nested class Step
+
+    /** Text outside of braces */
+    private static final class LiteralStep extends Step {
+        private final String text;
+
+        LiteralStep(final String text) {
+            this.text = text;
+        }// LiteralStep()
+
+        @Override
+        void append(final OrderFormatOptions ofo, final Orderable order, final StringBuffer output) {
+            output.append(text);
+        }// append()
+    }// nested class LiteralStep
+
+    /** {_keyword_} */
+    private static final class KeywordStep extends Step {
+        private final String keyword;
+
+        KeywordStep(final String keyword) {
+            this.keyword = keyword;
+        }// KeywordStep()
+
+        @Override
+        void append(final OrderFormatOptions ofo, final Orderable order, final StringBuffer output) {
+            output.append(formatObject(ofo, procStaticKeyword(ofo, order, keyword)));
+        }// append()
+    }// nested class KeywordStep
+
+    /** {field} or {method()} */
+    private static final class AccessorStep extends Step {
+        private final Accessor accessor;
+
+        AccessorStep(final Accessor accessor) {
+            this.accessor = accessor;
+        }// AccessorStep()
+
+        @Override
+        void append(final OrderFormatOptions ofo, final Orderable order, final StringBuffer output) {
+            output.append(formatObject(ofo, accessor.get(order)));
+        }// append()
+    }// nested class AccessorStep
+
+    /** {field:modifier} or {method():modifier} */
+    private static final class ModifierStep extends Step {
+        private final Accessor accessor;
+        private final String modifier;
+
+        ModifierStep(final Accessor accessor, final String modifier) {
+            this.accessor = accessor;
+            this.modifier = modifier;
+        }// ModifierStep()
+
+        @Override
+        void append(final OrderFormatOptions ofo, final Orderable order, final StringBuffer output) {
+            output.append(formatObject(ofo, procModKeyword(ofo, order, accessor.get(order), modifier)));
+        }// append()
+    }// nested class ModifierStep
+
+    /** {field:?TRUE:FALSE} or {method():?TRUE:FALSE}; clauses are not formatted. */
+    private static final class BooleanStep extends Step {
+        private final Accessor accessor;
+        private final String trueText;
+        private final String falseText;	// null if no 'false' clause
+
+        BooleanStep(final Accessor accessor, final String trueText, final String falseText) {
+            this.accessor = accessor;
+            this.trueText = trueText;
+            this.falseText = falseText;
+        }// BooleanStep()
+
+        @Override
+        void append(final OrderFormatOptions ofo, final Orderable order, final StringBuffer output) {
+            final Object out = accessor.get(order);
+            final boolean isTrue = (out instanceof Boolean) ? ((Boolean) out).booleanValue() : (out != null);
+            final String text = isTrue ? trueText : falseText;
+            if (text != null) {
+                final Object obj = procStaticKeyword(ofo, order, text);
+                output.append((obj == null) ? text : obj.toString());
+            }
+        }// append()
+    }// nested class BooleanStep
 }// class OrderFormat
@@ -22,6 +22,8 @@
 //
 package dip.order;
 
+import java.io.IOException;
+import java.io.Reader;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
@@ -103,7 +105,7 @@ import dip.world.Unit;
  */
 public class OrderParser {
 
-    private static OrderParser instance = null;
+    private static final OrderParser instance = new OrderParser();
     // il8n constants
     private static final String OF_POWER_NOT_RECOGNIZED = "OF_POWER_NOT_RECOGNIZED";
     private static final String OF_UNIT_NOT_RECOGNIZED = "OF_UNIT_NOT_RECOGNIZED";
@@ -219,14 +221,11 @@ public class OrderParser {
     }// OrderParser()
 
     /**
-     *	Gets an OrderParser instance
+     *	Gets an OrderParser instance. OrderParser has no mutable state,
+     *	so the instance may be shared between threads.
      *
      */
-    public static synchronized OrderParser getInstance() {
-        if (instance == null) {
-            instance = new OrderParser();
-        }
-
+    public static OrderParser getInstance() {
         return instance;
     }// getInstance()
 
@@ -267,6 +266,115 @@ public class OrderParser {
      */
     public Order parse(OrderFactory orderFactory, String text, Power power, TurnState turnState, boolean locked, boolean guess)
             throws OrderException {
+        checkArguments(orderFactory, power, turnState, locked, guess);
+
+        Position position = turnState.getPosition();
+        Map map = turnState.getWorld().getMap();
+        String preText = preprocess(text, map, new StringBuffer(text.length()));
+
+        Log.println("OP: Input:", text);
+        Log.println("OP: preprocessed:", preText);
+
+        return parse(preText, position, map, power, turnState, orderFactory, locked, guess);
+    }// parse()
+
+    /**
+     *	Parses an entire order submission, one order per line, from a Reader.
+     *	<p>
+     *	Options are as for parse(OrderFactory, String, Power, TurnState, boolean, boolean).
+     *	Blank lines are ignored. As each line is parsed, the Listener is 
+     *	notified of the Order or of the OrderException; a bad line does not 
+     *	stop parsing. Buffers are reused from line to line, and the Reader 
+     *	is read in blocks, so it need not be buffered. The Reader is not closed.
+     *	<p>
+     *	Returns the number of (non-blank) lines parsed.
+     */
+    public int parse(OrderFactory orderFactory, Reader in, Power power, TurnState turnState,
+            boolean locked, boolean guess, Listener listener)
+            throws IOException {
+        checkArguments(orderFactory, power, turnState, locked, guess);
+        if (in == null || listener == null) {
+            throw new IllegalArgumentException("null Reader or Listener");
+        }
+
+        final Position position = turnState.getPosition();
+        final Map map = turnState.getWorld().getMap();
+
+        final char[] buffer = new char[4096];
+        final StringBuffer line = new StringBuffer(128);
+        final StringBuffer work = new StringBuffer(128);
+        int lineNumber = 0;
+        int count = 0;
+        boolean afterCR = false;
+
+        int n = in.read(buffer);
+        while (n != -1) {
+            for (int i = 0; i < n; i++) {
+                final char c = buffer[i];
+                if (c == '\n' && afterCR) {
+                    // second half of a CRLF
+                    afterCR = false;
+                    continue;
+                }
+
+                afterCR = (c == '\r');
+                if (c == '\n' || c == '\r') {
+                    lineNumber++;
+                    count += parseLine(orderFactory, position, map, power, turnState, locked, guess,
+                            lineNumber, line, work, listener);
+                    line.setLength(0);
+                } else {
+                    line.append(c);
+                }
+            }
+
+            n = in.read(buffer);
+        }
+
+        if (line.length() > 0) {
+            lineNumber++;
+            count += parseLine(orderFactory, position, map, power, turnState, locked, guess,
+                    lineNumber, line, work, listener);
+        }
+
+        return count;
+    }// parse()
+
+    /**
+     *	Parses a single line for parse(OrderFactory, Reader, ...), using work
+     *	as the preprocessing buffer. Returns 0 if the line is blank, 1 otherwise.
+     */
+    private int parseLine(OrderFactory orderFactory, Position position, Map map, Power power,
+            TurnState turnState, boolean locked, boolean guess, int lineNumber,
+            StringBuffer line, StringBuffer work, Listener listener) {
+        // skip blank lines without creating a String
+        int i = 0;
+        while (i < line.length() && Character.isWhitespace(line.charAt(i))) {
+            i++;
+        }
+
+        if (i == line.length()) {
+            return 0;
+        }
+
+        final String text = line.toString().trim();
+        try {
+            final String preText = preprocess(text, map, work);
+            Log.println("OP: Input:", text);
+            Log.println("OP: preprocessed:", preText);
+
+            final Order order = parse(preText, position, map, power, turnState, orderFactory, locked, guess);
+            listener.orderParsed(lineNumber, text, order);
+        } catch (OrderException e) {
+            listener.orderFailed(lineNumber, text, e);
+        }
+
+        return 1;
+    }// parseLine()
+
+    /** Checks the parsing options; see parse(). */
+    private void checkArguments(OrderFactory orderFactory, Power power, TurnState turnState,
+            boolean locked, boolean guess) {
         if (orderFactory == null) {
             throw new IllegalArgumentException("null OrderFactory");
         }
@@ -279,35 +387,27 @@ public class OrderParser {
         if (guess && (power != null || locked || turnState == null)) {
             throw new IllegalArgumentException("if guess == true, conditions: turnState != null, power == null, and !locked must all be true");
         }
-
-        Position position = turnState.getPosition();
-        Map map = turnState.getWorld().getMap();
-        String preText = preprocess(text, map);
-
-        Log.println("OP: Input:", text);
-        Log.println("OP: preprocessed:", preText);
-
-        return parse(preText, position, map, power, turnState, orderFactory, locked, guess);
-    }// parse()
+    }// checkArguments()
 
     /**
      *	The preprocessor normalizes the orders, converting various order entry 
      *	formats to a single order entry format that is more easily parsed.
+     *	The given StringBuffer is cleared and used as working storage.
      */
-    private String preprocess(String ord, Map map) throws OrderException {
-        // create StringBuffer, after filtering the input string.
+    private String preprocess(String ord, Map map, StringBuffer sb) throws OrderException {
+        // fill StringBuffer, after filtering the input string.
         // note that this step includes lower-case conversion.
-        StringBuffer sb = filterInput(ord);
+        filterInput(ord, sb);
 
         // replace any long (2-word, via space or hyphen) province names
         // with shorter version. 
         // NOTE: this may be overkill, especially since it won't replace
         // *partial* province names, like "North-atl"
-        map.replaceProvinceNames(sb);
-
-        // filter out power names [required at beginning to filter out power names
+        //
+        // also filter out power names [required at beginning to filter out power names
         // with odd characters such as hyphens]. Excludes first token.
-        map.filterPowerNames(sb);
+        // Both are done in a single scan.
+        map.replaceNames(sb);
 
         // normalize coasts (Converts to /Xc format)
         //Log.println("OP: pre-coast normalization:", sb);
@@ -348,15 +448,13 @@ public class OrderParser {
         // delete unwanted characters
         delChars(sb, TODELETE);
 
-        // re-replace, after conversion
-        map.replaceProvinceNames(sb);
-
-        // filter out power names; often occurs in 'support' orders.
+        // re-replace, after conversion, and filter out power names; 
+        // power names often occur in 'support' orders.
         // could also appear in a convoy order as well
         // e.g.: France: F gas SUPPORT British F iri HOLD
         // or 						   "Britain's"   which would be converted to "Britain" by delChars()
         // this does NOT filter out the first power name!! (which may be required)
-        map.filterPowerNames(sb);
+        map.replaceNames(sb);
 
         return sb.toString();
     }// preprocess()
@@ -784,15 +882,15 @@ public class OrderParser {
     /**
      *	Filters out any ISO control characters; improves the
      *	robustness of pasted text parsing. Also replaces any
-     *	whitespace with a true space character. Returns a new
-     *	StringBuffer. 
+     *	whitespace with a true space character. The given
+     *	StringBuffer is cleared, and then holds the result.
      *	<p>
      *	Also trims and lowercases the input, too
      */
-    private StringBuffer filterInput(String input) {
+    private void filterInput(String input, StringBuffer sb) {
         input = input.trim();
 
-        StringBuffer sb = new StringBuffer(input.length());
+        sb.setLength(0);
 
         // delete control chars and whitespace conversion
         for (int i = 0; i < input.length(); i++) {
@@ -804,9 +902,7 @@ public class OrderParser {
                 sb.append(Character.toLowerCase(c));
             }
         }
-
-        return sb;
-    }// delChars()
+    }// filterInput()
 
     /**
      *	Some orders have the verb (command) at the beginning; e.g.:
@@ -937,4 +1033,17 @@ public class OrderParser {
             return orderFactory.createRemove(power, src, unitType);
         }
     }// createDisbandOrRemove()
+
+    /**
+     *	Receives the results of parse(OrderFactory, Reader, ...), line by line.
+     *	Line numbers start at 1; the text is the trimmed line.
+     */
+    public interface Listener {
+
+        /** A line was parsed into an Order. */
+        public void orderParsed(int lineNumber, String text, Order order);
+
+        /** A line could not be parsed. */
+        public void orderFailed(int lineNumber, String text, OrderException e);
+    }// interface Listener
 }// class OrderParser
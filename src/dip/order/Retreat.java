@@ -49,6 +49,7 @@ import dip.world.Unit;
 
 public class Retreat extends Move
 {
+	private static final long serialVersionUID = 1L;
 	// il8n constants
 	private static final String RETREAT_SRC_EQ_DEST = "RETREAT_SRC_EQ_DEST";
 	private static final String RETREAT_CANNOT = "RETREAT_CANNOT";
@@ -0,0 +1,212 @@
+//
+//  @(#)ValidationCache.java	1.00	10/2004
+//
+//  Copyright 2004 the jDip development team. All rights reserved.
+//  Use is subject to license terms.
+//
+//
+//  This program is free software; you can redistribute it and/or modify
+//  it under the terms of the GNU General Public License as published by
+//  the Free Software Foundation; either version 2 of the License, or
+//  (at your option) any later version.
+//
+//  This program is distributed in the hope that it will be useful,
+//  but WITHOUT ANY WARRANTY; without even the implied warranty of
+//  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+//  GNU General Public License for more details.
+//
+//  You should have received a copy of the GNU General Public License
+//  along with this program; if not, write to the Free Software
+//  Foundation, Inc., 675 Mass Ave, Cambridge, MA 02139, USA.
+//  Or from http://www.gnu.org/
+//
+package dip.order;
+
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+import dip.world.Phase;
+import dip.world.Position;
+import dip.world.RuleOptions;
+import dip.world.TurnState;
+
+/**
+*
+*	Caches the result of order validation, so that unchanged orders are not
+*	revalidated against an unchanged Position.
+*	<p>
+*	A cached result is used only if the order was last validated with the 
+*	same Position (and Position version; see Position.getVersion()), Phase,
+*	ValidationOptions and RuleOptions settings. Because validate() may set
+*	derived values within an order, only the most recent validation of each
+*	order is retained.
+*	<p>
+*	Each TurnState has a ValidationCache; see TurnState.getValidationCache().
+*	Thus, the adjudicator may reuse (strict) validation results that were
+*	computed while orders were entered.
+*	<p>
+*	This class is MT safe. Orders are weakly referenced.
+*/
+public class ValidationCache
+{
+	// instance variables
+	private final Map<Orderable, Entry> cache = new WeakHashMap<Orderable, Entry>(53);
+	private final List<Map<String, ValidationOptions.Option>> valOptsList = 
+		new ArrayList<Map<String, ValidationOptions.Option>>(2);
+	private final List<Map<RuleOptions.Option, RuleOptions.OptionValue>> ruleOptsList = 
+		new ArrayList<Map<RuleOptions.Option, RuleOptions.OptionValue>>(2);
+	
+	
+	/** Create a ValidationCache */
+	public ValidationCache()
+	{
+	}// ValidationCache()
+	
+	
+	/**
+	*	Validates the order, as Orderable.validate(), unless a cached result 
+	*	exists. OrderWarnings are cached and rethrown as well.
+	*/
+	public void validate(Orderable order, TurnState state, ValidationOptions valOpts, RuleOptions ruleOpts)
+	throws OrderException
+	{
+		final Position position = state.getPosition();
+		final Phase phase = state.getPhase();
+		final int version = position.getVersion();
+		final Object valKey;
+		final Object ruleKey;
+		
+		synchronized(this)
+		{
+			valKey = getValOptsKey(valOpts);
+			ruleKey = getRuleOptsKey(ruleOpts);
+			
+			final Entry entry = cache.get(order);
+			if(entry != null && entry.isMatch(order, position, version, phase, valKey, ruleKey))
+			{
+				if(entry.result != null)
+				{
+					throw entry.result;
+				}
+				
+				return;
+			}
+		}
+		
+		OrderException result = null;
+		try
+		{
+			order.validate(state, valOpts, ruleOpts);
+		}
+		catch(OrderException oe)
+		{
+			result = oe;
+		}
+		
+		synchronized(this)
+		{
+			cache.put(order, new Entry(order, position, version, phase, valKey, ruleKey, result));
+		}
+		
+		if(result != null)
+		{
+			throw result;
+		}
+	}// validate()
+	
+	
+	/** Remove the cached result (if any) for the given order */
+	public synchronized void remove(Orderable order)
+	{
+		cache.remove(order);
+	}// remove()
+	
+	
+	/** Remove all cached results */
+	public synchronized void clear()
+	{
+		cache.clear();
+	}// clear()
+	
+	
+	/** 
+	*	Returns a snapshot of the ValidationOptions settings. Equal settings
+	*	always return the same snapshot object.
+	*/
+	private Object getValOptsKey(ValidationOptions valOpts)
+	{
+		for(final Map<String, ValidationOptions.Option> snapshot: valOptsList)
+		{
+			if(snapshot.equals(valOpts.map))
+			{
+				return snapshot;
+			}
+		}
+		
+		final Map<String, ValidationOptions.Option> snapshot = 
+			new HashMap<String, ValidationOptions.Option>(valOpts.map);
+		valOptsList.add(snapshot);
+		return snapshot;
+	}// getValOptsKey()
+	
+	
+	/** As getValOptsKey(), but for RuleOptions */
+	private Object getRuleOptsKey(RuleOptions ruleOpts)
+	{
+		final Map<RuleOptions.Option, RuleOptions.OptionValue> current = 
+			new HashMap<RuleOptions.Option, RuleOptions.OptionValue>(31);
+		for(final RuleOptions.Option option: ruleOpts.getAllOptions())
+		{
+			current.put(option, ruleOpts.getOptionValue(option));
+		}
+		
+		for(final Map<RuleOptions.Option, RuleOptions.OptionValue> snapshot: ruleOptsList)
+		{
+			if(snapshot.equals(current))
+			{
+				return snapshot;
+			}
+		}
+		
+		ruleOptsList.add(current);
+		return current;
+	}// getRuleOptsKey()
+	
+	
+	/** A cached validation result */
+	private static class Entry
+	{
+		private final WeakReference<Orderable> order;
+		private final Position position;
+		private final int version;
+		private final Phase phase;
+		private final Object valKey;
+		private final Object ruleKey;
+		private final OrderException result;	// null if validation succeeded
+		
+		public Entry(Orderable order, Position position, int version, Phase phase, 
+			Object valKey, Object ruleKey, OrderException result)
+		{
+			this.order = new WeakReference<Orderable>(order);
+			this.position = position;
+			this.version = version;
+			this.phase = phase;
+			this.valKey = valKey;
+			this.ruleKey = ruleKey;
+			this.result = result;
+		}// Entry()
+		
+		/** Keys are snapshots, compared by reference. Orders are compared by reference. */
+		public boolean isMatch(Orderable order, Position position, int version, Phase phase, 
+			Object valKey, Object ruleKey)
+		{
+			return (this.order.get() == order && this.position == position 
+				&& this.version == version && this.phase.equals(phase)
+				&& this.valKey == valKey && this.ruleKey == ruleKey);
+		}// isMatch()
+	}// nested class Entry
+}// class ValidationCache
@@ -77,6 +77,25 @@ public class OrderResult extends Result
 		this.order = order;
 	}// OrderResult()
 	
+	
+	/** 
+	*	Create an OrderResult with the given Order and ResultType, whose
+	*	message is rendered from the given resource key and MessageFormat
+	*	arguments when first requested.
+	*	A null Order or ResultType is not permissable.
+	*/
+	public OrderResult(Orderable order, ResultType type, String messageKey, Object[] args)
+	{
+		super(order.getPower(), messageKey, args);
+		if(type == null)
+		{
+			throw new IllegalArgumentException("null type");
+		}
+		
+		this.resultType = type;
+		this.order = order;
+	}// OrderResult()
+	
 	/** Get the ResultType. Never returns null. */
 	public ResultType getResultType()
 	{
@@ -100,7 +119,7 @@ public class OrderResult extends Result
 		sb.append("] [order: ");
 		sb.append(order);
 		sb.append("] ");
-		sb.append(message);
+		sb.append(getMessageText());
 		return sb.toString();
 	}// toString()
 	
@@ -177,7 +196,7 @@ public class OrderResult extends Result
 			}
 			
 			// 4: compare message 
-			return this.message.compareTo(result.message);
+			return this.getMessageText().compareTo(result.getMessageText());
 		}
 		else
 		{
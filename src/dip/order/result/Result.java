@@ -21,8 +21,11 @@
 //
 package dip.order.result;
 
+import java.io.IOException;
+import java.io.ObjectOutputStream;
 import java.io.Serializable;
 
+import dip.misc.Utils;
 import dip.order.OrderFormatOptions;
 import dip.world.Power;
 
@@ -33,6 +36,11 @@ import dip.world.Power;
 *		Result and subclasses have a toString() method, which is intended
 *		for debugging. To obtain a properly-formatted localized message, use
 *		getMessage().
+*		<p>
+*		A Result may also be created from a resource key and MessageFormat
+*		arguments; the localized text is then not rendered until it is first
+*		requested, and is cached thereafter. This keeps bulk adjudication
+*		from formatting messages that nobody reads.
 */
 public class Result extends Object implements Serializable, Comparable<Result>
 {
@@ -44,8 +52,15 @@ public class Result extends Object implements Serializable, Comparable<Result>
 	// instance variables
 	/** The Power to whom this Result applies; null if it applies to everyone */
 	protected Power power = null;
-	/** The Message text; this must <b>never</b> be null */
+	/** 
+	*	The Message text; this must <b>never</b> be null, unless a message 
+	*	key has been set and the text has not yet been rendered.
+	*/
 	protected String message = "";	// message is never null
+	/** Resource key of a lazily-rendered message; null if none */
+	private transient String messageKey = null;
+	/** MessageFormat arguments for messageKey; null if none */
+	private transient Object[] messageArgs = null;
 	
 	/** no-arg constructor for subclasses */
 	protected Result()
@@ -77,6 +92,59 @@ public class Result extends Object implements Serializable, Comparable<Result>
 		this(null, message);
 	}// Result()
 	
+	
+	/**
+	*	Create a Result for the given Power (or all Powers, if null), 
+	*	whose message is the localized text for the given resource key, 
+	*	formatted with the given MessageFormat arguments. The text is 
+	*	rendered only when first requested.
+	*/
+	public Result(Power power, String messageKey, Object[] args)
+	{
+		this.power = power;
+		setMessage(messageKey, args);
+	}// Result()
+	
+	
+	/**
+	*	Sets the message to the localized text for the given resource key,
+	*	formatted with the given MessageFormat arguments (which may be null).
+	*	Rendering is deferred until the message is first requested.
+	*/
+	protected synchronized void setMessage(String messageKey, Object[] args)
+	{
+		if(messageKey == null)
+		{
+			throw new IllegalArgumentException("null messageKey");
+		}
+		
+		this.messageKey = messageKey;
+		this.messageArgs = args;
+		this.message = null;
+	}// setMessage()
+	
+	
+	/**
+	*	Returns the message text, rendering (and caching) it first if 
+	*	it was created from a message key. Subclasses should use this 
+	*	rather than accessing the <code>message</code> field directly.
+	*	<p>
+	*	This is synchronized, since a Result may be read by one thread 
+	*	(e.g., the GUI) while another writes it to a save file.
+	*/
+	protected final synchronized String getMessageText()
+	{
+		if(message == null && messageKey != null)
+		{
+			message = (messageArgs == null) ? Utils.getLocalString(messageKey) 
+				: Utils.getLocalString(messageKey, messageArgs);
+			messageKey = null;
+			messageArgs = null;
+		}
+		
+		return message;
+	}// getMessageText()
+	
 	/** Get the Power (or null if none) for whom this result is intended. */
 	public Power getPower() 			{ return power; }
 	
@@ -103,7 +171,7 @@ public class Result extends Object implements Serializable, Comparable<Result>
 	*/
 	public String getMessage(OrderFormatOptions ofo)
 	{
-		return message;
+		return getMessageText();
 	}// getMessage()
 	
 	/** For debugging. Use getPower() and getMessage() for general use. */
@@ -122,7 +190,7 @@ public class Result extends Object implements Serializable, Comparable<Result>
 		}
 		
 		sb.append(": ");
-		sb.append(message);
+		sb.append(getMessageText());
 		return sb.toString();
 	}// toString()
 	
@@ -158,8 +226,17 @@ public class Result extends Object implements Serializable, Comparable<Result>
 		}
 		
 		// finally: compare messages
-		return ((compareResult != 0) ? compareResult : message.compareTo(result.message));
+		return ((compareResult != 0) ? compareResult : getMessageText().compareTo(result.getMessageText()));
 	}// compareTo()
 	
 	
+	/** Renders any deferred message, so that only the text is serialized. */
+	private synchronized void writeObject(ObjectOutputStream out)
+	throws IOException
+	{
+		getMessageText();
+		out.defaultWriteObject();
+	}// writeObject()
+	
+	
 }// class Result
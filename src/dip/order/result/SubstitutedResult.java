@@ -68,6 +68,17 @@ public class SubstitutedResult extends OrderResult
 	}// SubstitutedResult()
 	
 	
+	/** 
+	*	Create a SubstitutedResult whose message is rendered from the given
+	*	resource key and MessageFormat arguments when first requested.
+	*/
+	public SubstitutedResult(Orderable oldOrder, Orderable newOrder, String messageKey, Object[] args)
+	{
+		this(oldOrder, newOrder, null);
+		setMessage(messageKey, args);
+	}// SubstitutedResult()
+	
+	
 	/**
 	*	Returns the substituted (new) order that replaces the 
 	*	old order (or no order, if an order was created).
@@ -90,7 +101,7 @@ public class SubstitutedResult extends OrderResult
 		sb.append("] [new order: ");
 		sb.append(newOrder);
 		sb.append("] ");
-		sb.append(message);
+		sb.append(getMessageText());
 		return sb.toString();
 	}// toString()
 }// class SubstitutedResult
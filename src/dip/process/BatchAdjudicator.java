@@ -0,0 +1,272 @@
+//
+//  @(#)BatchAdjudicator.java	1.00	10/2004
+//
+//  Copyright 2004 the jDip development team. All rights reserved.
+//  Use is subject to license terms.
+//
+//
+//  This program is free software; you can redistribute it and/or modify
+//  it under the terms of the GNU General Public License as published by
+//  the Free Software Foundation; either version 2 of the License, or
+//  (at your option) any later version.
+//
+//  This program is distributed in the hope that it will be useful,
+//  but WITHOUT ANY WARRANTY; without even the implied warranty of
+//  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+//  GNU General Public License for more details.
+//
+//  You should have received a copy of the GNU General Public License
+//  along with this program; if not, write to the Free Software
+//  Foundation, Inc., 675 Mass Ave, Cambridge, MA 02139, USA.
+//  Or from http://www.gnu.org/
+//
+package dip.process;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+import dip.order.OrderFactory;
+import dip.world.TurnState;
+import dip.world.World;
+
+/**
+ *	Adjudicates the current TurnStates of many independent games concurrently.
+ *	<p>
+ *	Each TurnState is adjudicated by its own StdAdjudicator, on a thread 
+ *	supplied by an ExecutorService. By default a ForkJoinPool, with one
+ *	thread per processor, is used; any other ExecutorService (for example,
+ *	a virtual-thread-per-task executor) may be supplied instead.
+ *	<p>
+ *	Games are independent only if they share no mutable objects. Therefore
+ *	every TurnState in a batch must belong to a different World; a batch 
+ *	containing two TurnStates of the same World is rejected. Worlds may share
+ *	a variant, since Map and Province data are not modified by adjudication.
+ *	<p>
+ *	If a next TurnState is created, it is added to its World (as the GUI
+ *	does after resolving orders), unless disabled via 
+ *	{@link #setWorldUpdating(boolean)}.
+ *	<p>
+ *	Note: adjudicator logging (see dip.misc.Log) is not MT safe, and should
+ *	be disabled when adjudicating batches.
+ */
+public class BatchAdjudicator {
+
+    private final OrderFactory orderFactory;
+    private final ExecutorService executor;
+    private final boolean isOwnExecutor;
+    private volatile boolean isPOCEnabled = false;
+    private volatile boolean statReporting = false;
+    private volatile boolean isWorklistEval = false;
+    private volatile boolean isWorldUpdating = true;
+
+    /** 
+     *	Create a BatchAdjudicator that uses a ForkJoinPool with a thread for
+     *	each available processor. Call {@link #shutdown()} when finished.
+     */
+    public BatchAdjudicator(OrderFactory orderFactory) {
+        this(orderFactory, new ForkJoinPool(), true);
+    }// BatchAdjudicator()
+
+    /** 
+     *	Create a BatchAdjudicator that uses the given ExecutorService. The
+     *	ExecutorService is not shut down by {@link #shutdown()}.
+     */
+    public BatchAdjudicator(OrderFactory orderFactory, ExecutorService executor) {
+        this(orderFactory, executor, false);
+    }// BatchAdjudicator()
+
+    private BatchAdjudicator(OrderFactory orderFactory, ExecutorService executor, boolean isOwnExecutor) {
+        if (orderFactory == null || executor == null) {
+            throw new IllegalArgumentException();
+        }
+
+        this.orderFactory = orderFactory;
+        this.executor = executor;
+        this.isOwnExecutor = isOwnExecutor;
+    }// BatchAdjudicator()
+
+    /** Enable or disable power order checking. See StdAdjudicator.setPowerOrderChecking(). */
+    public void setPowerOrderChecking(boolean value) {
+        isPOCEnabled = value;
+    }// setPowerOrderChecking()
+
+    /** Enable or disable reporting of failure statistics. */
+    public void setStatReporting(boolean value) {
+        statReporting = value;
+    }// setStatReporting()
+
+    /** Enable or disable worklist evaluation. See StdAdjudicator.setWorklistEvaluation(). */
+    public void setWorklistEvaluation(boolean value) {
+        isWorklistEval = value;
+    }// setWorklistEvaluation()
+
+    /** 
+     *	If enabled (the default), each next TurnState is added to the World 
+     *	of the adjudicated TurnState. 
+     */
+    public void setWorldUpdating(boolean value) {
+        isWorldUpdating = value;
+    }// setWorldUpdating()
+
+    /**
+     *	Submit a single TurnState for adjudication. The caller is responsible
+     *	for not submitting TurnStates of the same World concurrently.
+     */
+    public Future<BatchResult> submit(final TurnState turnState) {
+        if (turnState == null || turnState.getWorld() == null) {
+            throw new IllegalArgumentException("TurnState must belong to a World");
+        }
+
+        return executor.submit(new Callable<BatchResult>() {
+
+            @Override
+            public BatchResult call() {
+                return process(turnState);
+            }
+        });
+    }// submit()
+
+    /**
+     *	Adjudicates all given TurnStates concurrently, and waits until all have
+     *	been adjudicated. Results are returned in the iteration order of the
+     *	given Collection. An exception while adjudicating one TurnState does not
+     *	affect the others; it is reported by that TurnState's BatchResult. An
+     *	Error (for example, OutOfMemoryError) is rethrown.
+     *
+     *	@throws IllegalArgumentException if two TurnStates belong to the same World
+     *	@throws InterruptedException if interrupted while waiting
+     */
+    public List<BatchResult> adjudicate(final Collection<TurnState> turnStates)
+            throws InterruptedException {
+        // World does not override equals(), so this is an identity check.
+        final Set<World> worlds = new HashSet<World>(turnStates.size() * 2);
+        for (final TurnState ts : turnStates) {
+            if (ts == null || ts.getWorld() == null) {
+                throw new IllegalArgumentException("TurnState must belong to a World");
+            }
+
+            if (!worlds.add(ts.getWorld())) {
+                throw new IllegalArgumentException("multiple TurnStates from the same World: " + ts.getPhase());
+            }
+        }
+
+        final List<TurnState> tsList = new ArrayList<TurnState>(turnStates);
+        final List<Future<BatchResult>> futures = new ArrayList<Future<BatchResult>>(tsList.size());
+        for (final TurnState ts : tsList) {
+            futures.add(submit(ts));
+        }
+
+        final List<BatchResult> results = new ArrayList<BatchResult>(futures.size());
+        for (int i = 0; i < futures.size(); i++) {
+            try {
+                results.add(futures.get(i).get());
+            } catch (ExecutionException e) {
+                // process() catches all exceptions; only an Error gets here.
+                if (e.getCause() instanceof Error) {
+                    throw (Error) e.getCause();
+                }
+
+                throw new IllegalStateException(e.getCause());
+            }
+        }
+
+        return results;
+    }// adjudicate()
+
+    /** 
+     *	Shuts down the executor, if it was created by this BatchAdjudicator.
+     *	Already-submitted TurnStates are still adjudicated.
+     */
+    public void shutdown() {
+        if (isOwnExecutor) {
+            executor.shutdown();
+        }
+    }// shutdown()
+
+    /** Adjudicate a single TurnState; called from an executor thread. */
+    private BatchResult process(final TurnState turnState) {
+        final long startTime = System.nanoTime();
+
+        try {
+            final StdAdjudicator stdJudge = new StdAdjudicator(orderFactory, turnState);
+            stdJudge.setPowerOrderChecking(isPOCEnabled);
+            stdJudge.setStatReporting(statReporting);
+            stdJudge.setWorklistEvaluation(isWorklistEval);
+            stdJudge.process();
+
+            // this may be null, if the game has been won
+            final TurnState nextTurnState = stdJudge.getNextTurnState();
+            if (nextTurnState != null && isWorldUpdating) {
+                turnState.getWorld().setTurnState(nextTurnState);
+            }
+
+            return new BatchResult(turnState, nextTurnState, stdJudge.isUnresolvedParadox(),
+                    null, System.nanoTime() - startTime);
+        } catch (Exception e) {
+            return new BatchResult(turnState, null, false, e, System.nanoTime() - startTime);
+        }
+    }// process()
+
+    /** The result of adjudicating a single TurnState in a batch. */
+    public static final class BatchResult {
+
+        private final TurnState turnState;
+        private final TurnState nextTurnState;
+        private final boolean isUnRezParadox;
+        private final Exception failure;
+        private final long time;
+
+        private BatchResult(TurnState turnState, TurnState nextTurnState,
+                boolean isUnRezParadox, Exception failure, long time) {
+            this.turnState = turnState;
+            this.nextTurnState = nextTurnState;
+            this.isUnRezParadox = isUnRezParadox;
+            this.failure = failure;
+            this.time = time;
+        }// BatchResult()
+
+        /** 
+         *	The adjudicated TurnState. Adjudication results are in its
+         *	result list, as with StdAdjudicator.
+         */
+        public TurnState getTurnState() {
+            return turnState;
+        }
+
+        /** 
+         *	The next TurnState; null if the game has been won, or if
+         *	adjudication failed.
+         */
+        public TurnState getNextTurnState() {
+            return nextTurnState;
+        }
+
+        /** Returns <code>true</code> if an unresolved paradox was detected. */
+        public boolean isUnresolvedParadox() {
+            return isUnRezParadox;
+        }
+
+        /** Returns <code>true</code> if adjudication completed without an exception. */
+        public boolean isSuccessful() {
+            return (failure == null);
+        }
+
+        /** The exception thrown during adjudication; null if successful. */
+        public Exception getFailure() {
+            return failure;
+        }
+
+        /** Adjudication time, in nanoseconds. */
+        public long getTime() {
+            return time;
+        }
+    }// nested class BatchResult
+}// class BatchAdjudicator
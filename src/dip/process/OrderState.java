@@ -112,6 +112,9 @@ public final class OrderState
 	private boolean foundConvoyPath = false;	// if move found a convoy path
 	private boolean isVerified = false;			// has this order been verified() yet?
 	
+	private List<OrderState> changeList = null;	// change tracking (worklist evaluation)
+	private boolean isChanged = false;			// true if in changeList
+	
 	
 	/** 
 	*	Create an OrderState. This is protected, because only subclasses of 
@@ -180,25 +183,25 @@ public final class OrderState
 	/** Set the Order. NOTE: this may be eliminated/deprecated, as it must be used with extreme care.*/
 	protected void setOrder(Order value)					{ order = value; }	// consider eliminating
 	/** Set if this is part of a chain of circular movements. */
-	public void setCircular(boolean value)				{ isCircular = value; }
+	public void setCircular(boolean value)				{ if(isCircular != value) { isCircular = value; changed(); } }
 	/** Set the dislodged state. */
-	public void setDislodgedState(Tristate value) 		{ dislodged = value; }
+	public void setDislodgedState(Tristate value) 		{ if(dislodged != value) { dislodged = value; changed(); } }
 	/** Set the maximum defense. */
-	public void setDefMax(int value)					{ defense_max = value; }
+	public void setDefMax(int value)					{ if(defense_max != value) { defense_max = value; changed(); } }
 	/** Set the certain defense. */
-	public void setDefCertain(int value)				{ defense_certain = value; }
+	public void setDefCertain(int value)				{ if(defense_certain != value) { defense_certain = value; changed(); } }
 	/** Set the maximum attack value. */
-	public void setAtkMax(int value)					{ attack_max = value; }
+	public void setAtkMax(int value)					{ if(attack_max != value) { attack_max = value; changed(); } }
 	/** Set the certain attack value. */
-	public void setAtkCertain(int value)				{ attack_certain = value; }
+	public void setAtkCertain(int value)				{ if(attack_certain != value) { attack_certain = value; changed(); } }
 	/** Set the attack max including self-support */
-	public void setAtkSelfSupportMax(int value)			{ selfsupport_atk_max = value; }
+	public void setAtkSelfSupportMax(int value)			{ if(selfsupport_atk_max != value) { selfsupport_atk_max = value; changed(); } }
 	/** Set the attack certain including self-support */
-	public void setAtkSelfSupportCertain(int value) 	{ selfsupport_atk_certain = value; }
+	public void setAtkSelfSupportCertain(int value) 	{ if(selfsupport_atk_certain != value) { selfsupport_atk_certain = value; changed(); } }
 	/** Set if we have found a convoy path */
-	public void setFoundConvoyPath(boolean value)		{ foundConvoyPath = value; }
+	public void setFoundConvoyPath(boolean value)		{ if(foundConvoyPath != value) { foundConvoyPath = value; changed(); } }
 	/** Set the retreat strength */
-	public void setRetreatStrength(int value)			{ retreatStr = value; }
+	public void setRetreatStrength(int value)			{ if(retreatStr != value) { retreatStr = value; changed(); } }
 	/** Sets if an Order is legal. By default, orders are legal. */
 	public void setLegal(boolean value)					{ isLegal = value; }
 	/** Set if an order has been verified. Once set to true, cannot be set to false. */
@@ -224,7 +227,11 @@ public final class OrderState
 			throw new IllegalStateException("EvalState is irreversible, once set.");
 		}
 		
-		evalState = value; 
+		if(evalState != value)
+		{
+			evalState = value;
+			changed();
+		}
 	}// setEvalState()
 	
 	/** if move is a head-to-head move, set which move we are moving head-to-head against here. */
@@ -234,7 +241,11 @@ public final class OrderState
 		{
 			throw new IllegalArgumentException("h2h orderstate must be set with a Move order");
 		}
-		headToHead = os;
+		if(headToHead != os)
+		{
+			headToHead = os;
+			changed();
+		}
 	}// setHeadToHead()
 	
 	/**
@@ -245,7 +256,11 @@ public final class OrderState
 	public void setDislodger(OrderState os)
 	{
 		assert(os.order instanceof Move && dislodged != Tristate.NO);
-		dislodgedBy = os;
+		if(dislodgedBy != os)
+		{
+			dislodgedBy = os;
+			changed();
+		}
 	}// setDislodger()
 	
 	
@@ -304,6 +319,34 @@ public final class OrderState
 	
 	
 	
+	/**
+	*	Enables change tracking. While enabled, any setter that alters the
+	*	state of this OrderState adds it (once) to the given List. A null
+	*	List disables change tracking.
+	*/
+	void setChangeList(List<OrderState> list)
+	{
+		changeList = list;
+		isChanged = false;
+	}// setChangeList()
+	
+	/** Clears the changed flag, once this OrderState has been removed from the change list. */
+	void clearChanged()
+	{
+		isChanged = false;
+	}// clearChanged()
+	
+	/** Adds this OrderState to the change list, if change tracking is enabled. */
+	private void changed()
+	{
+		if(changeList != null && !isChanged)
+		{
+			isChanged = true;
+			changeList.add(this);
+		}
+	}// changed()
+	
+	
 	/** Convenicent method: get the order source Location */
 	public Location getSource()
 	{
@@ -22,7 +22,6 @@
 //
 package dip.process;
 
-import java.text.MessageFormat;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
@@ -112,11 +111,6 @@ public class StdAdjudicator implements Adjudicator {
     private static final String STDADJ_COMPLETED = "TimeResult.adjudication.complete";
     private static final String STDADJ_POWER_ORDER_LIST_CORRUPT = "STDADJ_POWER_ORDER_LIST_CORRUPT";
     private static final String STDADJ_INACTIVE_POWER_DISLODGED = "STDADJ_INACTIVE_POWER_DISLODGED";
-    // messageformat statics [for performance enhancement]
-    // these are complex Choice formats
-    // ?? will this be threadsafe ?? 
-    private static final MessageFormat MFRemove = new MessageFormat(Utils.getLocalString(STDADJ_PREADJ_TOREMOVE));
-    private static final MessageFormat MFBuild = new MessageFormat(Utils.getLocalString(STDADJ_PREADJ_TOBUILD));
     private static final OrderFormatOptions DEFAULT_OFO = OrderFormatOptions.createDefault();
     // instance variables
     private final OrderFactory orderFactory;
@@ -134,6 +128,8 @@ public class StdAdjudicator implements Adjudicator {
     private int syzkmanAppliedCount = 0;
     private boolean statReporting = false;
     private boolean isPOCEnabled = false;
+    private boolean isWorklistEval = false;
+    private WorklistEvaluator worklistEvaluator = null;
     private TurnState nextTurnState = null;
 
     /** 
@@ -182,6 +178,17 @@ public class StdAdjudicator implements Adjudicator {
         orderFormat = ofo;
     }// setOrderFormat()
 
+    /**
+     *	Enable or disable worklist evaluation. When enabled, each order is
+     *	evaluated once, and then only re-evaluated when an order it depends
+     *	upon changes state, instead of evaluating every order on every
+     *	iteration. This is faster for turns with many units. Disabled
+     *	by default.
+     */
+    public void setWorklistEvaluation(boolean value) {
+        isWorklistEval = value;
+    }// setWorklistEvaluation()
+
     /** Enable or disable reporting of failure statistics. */
     @Override
 	public void setStatReporting(boolean value) {
@@ -329,8 +336,8 @@ public class StdAdjudicator implements Adjudicator {
                     // create an informative result
                     // {0} power, {1} order (formatted)
                     String orderText = order.toFormattedString(orderFormat);
-                    addResult(new Result(Utils.getLocalString(
-                            STDADJ_POWER_ORDER_LIST_CORRUPT, power, orderText)));
+                    addResult(new Result(null, STDADJ_POWER_ORDER_LIST_CORRUPT,
+                            new Object[]{power, orderText}));
                 }
             }
         }
@@ -357,8 +364,8 @@ public class StdAdjudicator implements Adjudicator {
             if (position.hasUnit(province)) {
                 OrderState oldOS = osMap.get(province);
                 if (oldOS != null) {
-                    addResult(new OrderResult(oldOS.getOrder(),
-                            Utils.getLocalString(STDADJ_DUP_ORDER, os.getOrder())));
+                    addResult(new OrderResult(oldOS.getOrder(), ResultType.TEXT,
+                            STDADJ_DUP_ORDER, new Object[]{os.getOrder()}));
                     osList.remove(oldOS);	// we don't want duplicates in osList
                 }
 
@@ -386,7 +393,7 @@ public class StdAdjudicator implements Adjudicator {
                 addResult(new SubstitutedResult(
                         null,
                         hold,
-                        Utils.getLocalString(STDADJ_MV_NO_ORDER, province)));
+                        STDADJ_MV_NO_ORDER, new Object[]{province}));
             }
         }
 
@@ -409,7 +416,7 @@ public class StdAdjudicator implements Adjudicator {
 
             // validate order (Strict, No warnings)
             try {
-                order.validate(turnState, valOpts, ruleOpts);
+                turnState.getValidationCache().validate(order, turnState, valOpts, ruleOpts);
             } catch (OrderWarning ow) {
                 // just in case we didn't turn off all warnings; do nothing
             } catch (OrderException oe) {
@@ -417,9 +424,8 @@ public class StdAdjudicator implements Adjudicator {
                 // Then, replace the OrderState order with a Hold order. This prevents
                 // the adjudicator from using (or even knowing about) the invalid order
                 // 
-                addResult(os, ResultType.VALIDATION_FAILURE,
-                        Utils.getLocalString(STDADJ_MV_BAD,
-                        oe.getMessage()));
+                addResult(new OrderResult(os.getOrder(), ResultType.VALIDATION_FAILURE,
+                        STDADJ_MV_BAD, new Object[]{oe.getMessage()}));
 
                 Hold hold = orderFactory.createHold(order.getPower(), order.getSource(),
                         order.getSourceUnitType());
@@ -730,8 +736,8 @@ public class StdAdjudicator implements Adjudicator {
                         nextPosition.setDislodgedUnit(prov, null);
 
                         // create unit destroyed message
-                        addResult(new Result(unit.getPower(),
-                                Utils.getLocalString(STDADJ_MV_UNIT_DESTROYED, unit.getType().getFullName(), prov)));
+                        addResult(new Result(unit.getPower(), STDADJ_MV_UNIT_DESTROYED,
+                                new Object[]{unit.getType().getFullName(), prov}));
                     }
                 }
             }
@@ -779,8 +785,19 @@ public class StdAdjudicator implements Adjudicator {
      *		</li>
      *	</ol>
      *	'invalid' move orders are never ever counted!!
+     *	<p>
+     *	If worklist evaluation is enabled, evaluation is delegated to a 
+     *	WorklistEvaluator, which uses the same paradox criterion.
      */
     private boolean evaluateOrders(final int totalMoveOrderCount, final int totalNonMoveOrderCount) {
+        if (isWorklistEval) {
+            if (worklistEvaluator == null) {
+                worklistEvaluator = new WorklistEvaluator(this, orderStates);
+            }
+
+            return worklistEvaluator.evaluate(totalMoveOrderCount);
+        }
+
         int lastNumMovesEvaluated = 0;
         int lastNumNonMovesEvaluated = 0;
         int iterations = 0;
@@ -852,6 +869,16 @@ public class StdAdjudicator implements Adjudicator {
         return isUnRezParadox;
     }// isUnresolvedParadox()
 
+    /**
+     *	Returns the number of paradox-breaking attempts made during
+     *	adjudication; 0 if no paradox was encountered. The first attempt
+     *	is always circular-movement resolution; later attempts apply the
+     *	Szykman rule. This is mostly intended for benchmarking and debugging.
+     */
+    public int getParadoxBreakAttempts() {
+        return paradoxBreakAttempt;
+    }// getParadoxBreakAttempts()
+
     /**
      *	Returns true if we have a method to attempt to break a paradox.
      *	returns false if we have no further paradox-breaking ideas.
@@ -877,8 +904,8 @@ public class StdAdjudicator implements Adjudicator {
 
         // prevent infinite loop.....
         if (syzkmanAppliedCount > 10) {
-            addResult(new Result(null,
-                    Utils.getLocalString(STDADJ_MV_UNRESOLVED_PARADOX, new Integer(paradoxBreakAttempt))));
+            addResult(new Result(null, STDADJ_MV_UNRESOLVED_PARADOX,
+                    new Object[]{new Integer(paradoxBreakAttempt)}));
 
             if (Log.isLogging()) {
                 Log.println("paradox: order status:");
@@ -1041,8 +1068,8 @@ public class StdAdjudicator implements Adjudicator {
             if (position.hasDislodgedUnit(province)) {
                 OrderState oldOS = osMap.get(province);
                 if (oldOS != null) {
-                    addResult(new OrderResult(oldOS.getOrder(),
-                            Utils.getLocalString(STDADJ_DUP_ORDER, os.getOrder())));
+                    addResult(new OrderResult(oldOS.getOrder(), ResultType.TEXT,
+                            STDADJ_DUP_ORDER, new Object[]{os.getOrder()}));
                     osList.remove(oldOS);	// we don't want duplicates in osList
                 }
 
@@ -1064,8 +1091,8 @@ public class StdAdjudicator implements Adjudicator {
                 Unit unit = position.getDislodgedUnit(province);
                 Disband disband = orderFactory.createDisband(unit.getPower(), new Location(province, unit.getCoast()), unit.getType());
                 OrderState os = new OrderState(disband);
-                addResult(new Result(unit.getPower(),
-                        Utils.getLocalString(STDADJ_RET_NO_ORDER, province)));
+                addResult(new Result(unit.getPower(), STDADJ_RET_NO_ORDER,
+                        new Object[]{province}));
 
                 osList.add(os);
                 osMap.put(os.getSourceProvince(), os);
@@ -1091,13 +1118,13 @@ public class StdAdjudicator implements Adjudicator {
             final Orderable order = os.getOrder();
 
             try {
-                order.validate(turnState, valOpts, ruleOpts);
+                turnState.getValidationCache().validate(order, turnState, valOpts, ruleOpts);
             } catch (OrderWarning ow) {
                 // just in case we didn't turn off all warnings; do nothing
             } catch (OrderException oe) {
                 // all illegal orders are changed to Disband orders
-                addResult(os, ResultType.VALIDATION_FAILURE,
-                        Utils.getLocalString(STDADJ_RET_VAL_FAIL, oe.getMessage()));
+                addResult(new OrderResult(os.getOrder(), ResultType.VALIDATION_FAILURE,
+                        STDADJ_RET_VAL_FAIL, new Object[]{oe.getMessage()}));
                 os.setOrder(orderFactory.createDisband(order.getPower(), order.getSource(), order.getSourceUnitType()));
             }
         }
@@ -1282,7 +1309,7 @@ public class StdAdjudicator implements Adjudicator {
                     addResult(new OrderResult(order, Utils.getLocalString(STDADJ_ADJ_IGNORED_TOO_MANY)));
                 } else {
                     try {
-                        order.validate(turnState, valOpts, ruleOpts);
+                        turnState.getValidationCache().validate(order, turnState, valOpts, ruleOpts);
 
                         // we only add legal orders, that haven't *already* been added
                         if (osMap.get(order.getSource().getProvince()) == null && order instanceof Order) {
@@ -1294,14 +1321,14 @@ public class StdAdjudicator implements Adjudicator {
                             // duplicate or duplicate for space; we already have 
                             // a valid order.
                             addResult(new OrderResult(order, ResultType.FAILURE,
-                                    Utils.getLocalString(STDADJ_ADJ_IGNORED_DUPLICATE,
-                                    order.getSource().getProvince())));
+                                    STDADJ_ADJ_IGNORED_DUPLICATE,
+                                    new Object[]{order.getSource().getProvince()}));
                         }
                     } catch (OrderWarning ow) {
                         // just in case we didn't turn off all warnings; do nothing
                     } catch (OrderException oe) {
                         addResult(new OrderResult(order, ResultType.VALIDATION_FAILURE,
-                                Utils.getLocalString(STDADJ_ADJ_IGNORED_INVALID, oe.getMessage())));
+                                STDADJ_ADJ_IGNORED_INVALID, new Object[]{oe.getMessage()}));
                     }
                 }
             }// while(orders-for-power)
@@ -1309,8 +1336,8 @@ public class StdAdjudicator implements Adjudicator {
             // it is legal for a power to not use all the build orders, but if that occurs,
             // a result indicating that some builds were unused is created
             if (ai.getAdjustmentAmount() > 0 && orderCount < ai.getAdjustmentAmount()) {
-                addResult(new Result(power,
-                        Utils.getLocalString(STDADJ_ADJ_BUILDS_UNUSED, new Integer(adjAmount - orderCount))));
+                addResult(new Result(power, STDADJ_ADJ_BUILDS_UNUSED,
+                        new Object[]{new Integer(adjAmount - orderCount)}));
             }
 
             // While builds are optional (they may be waived), removes are not.
@@ -1438,7 +1465,7 @@ public class StdAdjudicator implements Adjudicator {
             // check for player elimination
             if (ai.getSupplyCenterCount() == 0) {
                 nextPosition.setEliminated(powers[i], true);
-                addResult(new Result(powers[i], Utils.getLocalString(STDADJ_ADJ_ELIMINATED, powers[i].getName())));
+                addResult(new Result(powers[i], STDADJ_ADJ_ELIMINATED, new Object[]{powers[i].getName()}));
             }
         }
 
@@ -1556,8 +1583,8 @@ public class StdAdjudicator implements Adjudicator {
         OrderState os = new OrderState(remove);
         osMap.put(province, os);
         osList.add(os);
-        addResult(new Result(unit.getPower(),
-                Utils.getLocalString(STDADJ_ADJ_DISBAND_ORDER, unit.getType().getFullName(), province)));
+        addResult(new Result(unit.getPower(), STDADJ_ADJ_DISBAND_ORDER,
+                new Object[]{unit.getType().getFullName(), province}));
     }// createDisbandOrder()
 
     /**
@@ -1610,7 +1637,6 @@ public class StdAdjudicator implements Adjudicator {
     private void checkAdjustmentPhase() {
         if (nextTurnState.getPhase().getPhaseType() == Phase.PhaseType.ADJUSTMENT) {
             boolean canSkipAdjustment = true;
-            Object[] args = new Object[1];
 
             Power[] powers = world.getMap().getPowers();
             for (int i = 0; i < powers.length; i++) {
@@ -1621,18 +1647,18 @@ public class StdAdjudicator implements Adjudicator {
                     canSkipAdjustment = false;
 
                     // write adjustment results
-                    // NOTE: it's difficult to believe, but 1/3 of the time (more, before
-                    // the patterns we cached as statics) of checkAdjustmentPhase() was spent
-                    // in MessageFormat. (MFRemove/MFBuild). 
+                    // NOTE: it's difficult to believe, but 1/3 of the time of 
+                    // checkAdjustmentPhase() was spent in MessageFormat. Results 
+                    // now render their text only when it is actually requested.
                     // 
                     // using String.valueOf() instead of new Integer() results in a MASSIVE
                     // speed improvment.
                     if (adjAmount < 0) {
-                        args[0] = String.valueOf(-adjAmount);	// 'abs'
-                        addResult(new Result(powers[i], MFRemove.format(args)));
+                        addResult(new Result(powers[i], STDADJ_PREADJ_TOREMOVE,
+                                new Object[]{String.valueOf(-adjAmount)}));	// 'abs'
                     } else if (adjAmount > 0) {
-                        args[0] = String.valueOf(adjAmount);
-                        addResult(new Result(powers[i], MFBuild.format(args)));
+                        addResult(new Result(powers[i], STDADJ_PREADJ_TOBUILD,
+                                new Object[]{String.valueOf(adjAmount)}));
                     } else {
                         addResult(new Result(powers[i], Utils.getLocalString(STDADJ_PREADJ_TONEITHER)));
                     }
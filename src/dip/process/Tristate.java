@@ -27,13 +27,14 @@ package dip.process;
 *
 *	Trinary state object. Immutable.
 *	<p>
-*	This class is not serializable; if this is required, 
-*	readResolve() must be implemented to preserve the integrity
-*	of referential equality.
+*	This class is serializable; readResolve() preserves the 
+*	integrity of referential equality.
 *
 */
-final public class Tristate
+final public class Tristate implements java.io.Serializable
 {
+	private static final long serialVersionUID = 1L;
+	
 	// constants
 	public static final Tristate TRUE		= new Tristate("True");
 	public static final Tristate FALSE		= new Tristate("False");
@@ -49,7 +50,7 @@ final public class Tristate
 	
 	
 	// instance variables
-	private transient String text = null;
+	private final String text;
 	
 	
 	/** Create a TriState object */
@@ -83,4 +84,24 @@ final public class Tristate
 		return ((value) ? TRUE : FALSE);
 	}// getTristate()
 	
+	/** Resolves the serialized Tristate to one of the constants */
+	protected Object readResolve()
+	throws java.io.ObjectStreamException
+	{
+		if(TRUE.text.equals(text))
+		{
+			return TRUE;
+		}
+		else if(FALSE.text.equals(text))
+		{
+			return FALSE;
+		}
+		else if(UNCERTAIN.text.equals(text))
+		{
+			return UNCERTAIN;
+		}
+		
+		throw new java.io.InvalidObjectException("unknown Tristate: "+text);
+	}// readResolve()
+	
 }// class Tristate
@@ -0,0 +1,331 @@
+//
+//  @(#)WorklistEvaluator.java	1.00	10/2004
+//
+//  Copyright 2004 the jDip development team. All rights reserved.
+//  Use is subject to license terms.
+//
+//
+//  This program is free software; you can redistribute it and/or modify
+//  it under the terms of the GNU General Public License as published by
+//  the Free Software Foundation; either version 2 of the License, or
+//  (at your option) any later version.
+//
+//  This program is distributed in the hope that it will be useful,
+//  but WITHOUT ANY WARRANTY; without even the implied warranty of
+//  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+//  GNU General Public License for more details.
+//
+//  You should have received a copy of the GNU General Public License
+//  along with this program; if not, write to the Free Software
+//  Foundation, Inc., 675 Mass Ave, Cambridge, MA 02139, USA.
+//  Or from http://www.gnu.org/
+//
+package dip.process;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import dip.misc.Log;
+import dip.order.Convoy;
+import dip.order.Move;
+import dip.order.Orderable;
+import dip.order.Support;
+import dip.world.Location;
+
+/**
+*	Evaluates OrderStates using a worklist, rather than by repeatedly
+*	evaluating every order until no further progress is made.
+*	<p>
+*	Every order is evaluated once. Thereafter, an order is only re-evaluated
+*	when an OrderState it may depend upon changes. Dependencies are taken from
+*	the dependent lists set by Order.determineDependencies() (supports, self
+*	supports, moves to source, moves to destination, head-to-head), and from
+*	the orders at the provinces an order refers to (move destination, supported
+*	source and destination, convoy source and destination). All relations are
+*	treated as symmetric.
+*	<p>
+*	Because Order.evaluate() implementations are free to examine any
+*	OrderState, an empty worklist is always confirmed by a single full pass
+*	over all orders. If that pass does not increase the number of evaluated
+*	move or non-move orders, a paradox exists; this is the same criterion used
+*	by StdAdjudicator for full-pass evaluation.
+*	<p>
+*	A worklist evaluator is only valid for the OrderState array it was created
+*	with, and only after all dependencies have been determined.
+*/
+class WorklistEvaluator
+{
+	/** 
+	*	Re-evaluations allowed without any order being resolved, as a multiple
+	*	of the number of orders, before falling back to a full pass. This guards
+	*	against orders that alternately change each other's state.
+	*/
+	private static final int MAX_STALLED_PASSES = 4;
+	
+	private final Adjudicator adjudicator;
+	private final OrderState[] orderStates;
+	private final Map<OrderState, OrderState[]> readerMap;
+	private final List<OrderState> changeList;
+	private final Set<OrderState> evaluated;
+	private int nMovesEvaluated = 0;
+	private int nNonMovesEvaluated = 0;
+	
+	
+	/** Create a WorklistEvaluator for the given OrderStates */
+	WorklistEvaluator(Adjudicator adjudicator, OrderState[] orderStates)
+	{
+		this.adjudicator = adjudicator;
+		this.orderStates = orderStates;
+		this.readerMap = createReaderMap();
+		this.changeList = new ArrayList<OrderState>(orderStates.length);
+		this.evaluated = new HashSet<OrderState>(orderStates.length * 2);
+	}// WorklistEvaluator()
+	
+	
+	/**
+	*	Evaluates orders until all move orders are evaluated (returns
+	*	<code>true</code>), or a paradox is detected (returns <code>false</code>).
+	*	This may be called again after a paradox has been broken.
+	*/
+	boolean evaluate(final int totalMoveOrderCount)
+	{
+		// count orders that were evaluated by a prior call, or by paradox-breaking.
+		evaluated.clear();
+		nMovesEvaluated = 0;
+		nNonMovesEvaluated = 0;
+		for(int i=0; i<orderStates.length; i++)
+		{
+			countEvaluated(orderStates[i]);
+		}
+		
+		final Set<OrderState> worklist = new LinkedHashSet<OrderState>(orderStates.length * 2);
+		for(int i=0; i<orderStates.length; i++)
+		{
+			worklist.add(orderStates[i]);
+			orderStates[i].setChangeList(changeList);
+		}
+		
+		try
+		{
+			int nEvaluations = 0;
+			int nPasses = 0;
+			
+			while(true)
+			{
+				// drain the worklist
+				int nStalled = 0;
+				final int maxStalled = orderStates.length * MAX_STALLED_PASSES;
+				
+				while(!worklist.isEmpty() && nStalled <= maxStalled)
+				{
+					final Iterator<OrderState> iter = worklist.iterator();
+					final OrderState os = iter.next();
+					iter.remove();
+					
+					os.getOrder().evaluate(adjudicator);
+					nEvaluations++;
+					nStalled = (processChanges(worklist)) ? 0 : (nStalled + 1);
+				}
+				
+				worklist.clear();
+				
+				if(nMovesEvaluated >= totalMoveOrderCount)
+				{
+					if(Log.isLogging())
+					{
+						Log.println("worklist evaluation complete; evaluations: ", nEvaluations);
+						Log.println("  confirmation passes: ", nPasses);
+					}
+					return true;
+				}
+				
+				// confirm with a full pass. 
+				nPasses++;
+				final int lastNumMovesEvaluated = nMovesEvaluated;
+				final int lastNumNonMovesEvaluated = nNonMovesEvaluated;
+				
+				for(int i=0; i<orderStates.length; i++)
+				{
+					orderStates[i].getOrder().evaluate(adjudicator);
+					nEvaluations++;
+					processChanges(worklist);
+				}
+				
+				if(nMovesEvaluated <= lastNumMovesEvaluated
+					&& nNonMovesEvaluated <= lastNumNonMovesEvaluated)
+				{
+					if(Log.isLogging())
+					{
+						Log.println("**** PARADOX (worklist) ****");
+						Log.println(" 	nMovesEvaluated = ", nMovesEvaluated);
+						Log.println(" 	nNonMovesEvaluated = ", nNonMovesEvaluated);
+						Log.println(" 	evaluations = ", nEvaluations);
+					}
+					
+					return false;
+				}
+			}
+		}
+		finally
+		{
+			for(int i=0; i<orderStates.length; i++)
+			{
+				orderStates[i].setChangeList(null);
+			}
+			changeList.clear();
+		}
+	}// evaluate()
+	
+	
+	/**
+	*	Adds the readers of all changed OrderStates to the worklist, and 
+	*	updates the evaluated-order counts. Returns <code>true</code> if
+	*	any order became evaluated.
+	*/
+	private boolean processChanges(Set<OrderState> worklist)
+	{
+		boolean isProgress = false;
+		
+		for(int i=0; i<changeList.size(); i++)
+		{
+			final OrderState os = changeList.get(i);
+			os.clearChanged();
+			
+			if(countEvaluated(os))
+			{
+				isProgress = true;
+			}
+			
+			final OrderState[] readers = readerMap.get(os);
+			if(readers != null)
+			{
+				for(int j=0; j<readers.length; j++)
+				{
+					worklist.add(readers[j]);
+				}
+			}
+		}
+		
+		changeList.clear();
+		return isProgress;
+	}// processChanges()
+	
+	
+	/** 
+	*	Counts the OrderState if it has been evaluated and was not
+	*	previously counted. Returns <code>true</code> if counted.
+	*/
+	private boolean countEvaluated(OrderState os)
+	{
+		if(os.getEvalState() != Tristate.UNCERTAIN && evaluated.add(os))
+		{
+			if(os.getOrder() instanceof Move)
+			{
+				nMovesEvaluated++;
+			}
+			else
+			{
+				nNonMovesEvaluated++;
+			}
+			return true;
+		}
+		
+		return false;
+	}// countEvaluated()
+	
+	
+	/** 
+	*	Creates the mapping of an OrderState to all OrderStates that may need
+	*	re-evaluation if it changes. An OrderState is always its own reader.
+	*/
+	private Map<OrderState, OrderState[]> createReaderMap()
+	{
+		final Map<OrderState, Set<OrderState>> map = new HashMap<OrderState, Set<OrderState>>(orderStates.length * 2);
+		
+		for(int i=0; i<orderStates.length; i++)
+		{
+			final OrderState os = orderStates[i];
+			relate(map, os, os);
+			relate(map, os, os.getDependentSupports());
+			relate(map, os, os.getDependentSelfSupports());
+			relate(map, os, os.getDependentMovesToSource());
+			relate(map, os, os.getDependentMovesToDestination());
+			relate(map, os, os.getHeadToHead());
+			
+			final Orderable order = os.getOrder();
+			if(order instanceof Move)
+			{
+				relate(map, os, ((Move) order).getDest());
+			}
+			else if(order instanceof Support)
+			{
+				relate(map, os, ((Support) order).getSupportedSrc());
+				relate(map, os, ((Support) order).getSupportedDest());
+			}
+			else if(order instanceof Convoy)
+			{
+				relate(map, os, ((Convoy) order).getConvoySrc());
+				relate(map, os, ((Convoy) order).getConvoyDest());
+			}
+		}
+		
+		final Map<OrderState, OrderState[]> readers = new HashMap<OrderState, OrderState[]>(map.size() * 2);
+		for(final Map.Entry<OrderState, Set<OrderState>> entry : map.entrySet())
+		{
+			final Set<OrderState> set = entry.getValue();
+			readers.put(entry.getKey(), set.toArray(new OrderState[set.size()]));
+		}
+		
+		return readers;
+	}// createReaderMap()
+	
+	
+	/** Relates an OrderState to the OrderState at the given Location, if any. */
+	private void relate(Map<OrderState, Set<OrderState>> map, OrderState os, Location loc)
+	{
+		if(loc != null)
+		{
+			relate(map, os, adjudicator.findOrderStateBySrc(loc));
+		}
+	}// relate()
+	
+	
+	/** Relates an OrderState to each of the given OrderStates. */
+	private void relate(Map<OrderState, Set<OrderState>> map, OrderState os, OrderState[] others)
+	{
+		for(int i=0; i<others.length; i++)
+		{
+			relate(map, os, others[i]);
+		}
+	}// relate()
+	
+	
+	/** Relates two OrderStates; each is a reader of the other. */
+	private void relate(Map<OrderState, Set<OrderState>> map, OrderState os1, OrderState os2)
+	{
+		if(os2 != null)
+		{
+			addReader(map, os1, os2);
+			addReader(map, os2, os1);
+		}
+	}// relate()
+	
+	
+	private void addReader(Map<OrderState, Set<OrderState>> map, OrderState os, OrderState reader)
+	{
+		Set<OrderState> set = map.get(os);
+		if(set == null)
+		{
+			set = new LinkedHashSet<OrderState>();
+			map.put(os, set);
+		}
+		set.add(reader);
+	}// addReader()
+	
+}// class WorklistEvaluator
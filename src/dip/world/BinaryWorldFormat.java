@@ -0,0 +1,1045 @@
+//
+//  @(#)BinaryWorldFormat.java	1.00	10/2004
+//
+//  Copyright 2004 the jDip development team. All rights reserved.
+//  Use is subject to license terms.
+//
+//
+//  This program is free software; you can redistribute it and/or modify
+//  it under the terms of the GNU General Public License as published by
+//  the Free Software Foundation; either version 2 of the License, or
+//  (at your option) any later version.
+//
+//  This program is distributed in the hope that it will be useful,
+//  but WITHOUT ANY WARRANTY; without even the implied warranty of
+//  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+//  GNU General Public License for more details.
+//
+//  You should have received a copy of the GNU General Public License
+//  along with this program; if not, write to the Free Software
+//  Foundation, Inc., 675 Mass Ave, Cambridge, MA 02139, USA.
+//  Or from http://www.gnu.org/
+//
+package dip.world;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InvalidClassException;
+import java.io.NotSerializableException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.ObjectStreamClass;
+import java.io.OutputStream;
+import java.io.Serializable;
+import java.io.StreamCorruptedException;
+import java.nio.ByteBuffer;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+
+import dip.misc.Log;
+import dip.net.message.LogPressStore;
+import dip.order.Orderable;
+
+/**
+ * Compact, versioned binary game file format.
+ * <p>
+ * The file is a sequence of independently deflated sections: the Map, one
+ * section per TurnState (in Phase order), and the remaining World state. An
+ * index of section offsets and the Phase of each turn section is written
+ * after the sections, and a fixed-size footer pointing at the index ends
+ * the file, so a reader can locate any single turn without reading the
+ * others.
+ * <p>
+ * Within sections, references to Provinces, Powers and the Map are written
+ * as indices, and Positions are stored as {@link CompactPosition} arrays
+ * rather than object graphs. Since version 2, the Positions of all turns
+ * are held in a single {@link PositionHistory} section, as keyframes and
+ * per-turn changes; turn sections refer to their Position in the history.
+ * In the World section, TurnStates, their
+ * Positions and their Orders (which may be referred to by undoable edits)
+ * are written as references into the turn sections, so object identity is
+ * preserved when the file is read back.
+ * <p>
+ * Turn sections are decoded lazily when a World is read; see
+ * {@link LazyTurnStateMap}.
+ * <p>
+ * Files written by earlier versions (JSX-serialized, gzipped XML) are not
+ * read here; see {@link World#open(File)}.
+ */
+public final class BinaryWorldFormat {
+    /** File magic number ("JDPB") */
+    static final int MAGIC = 0x4A445042;
+    /** Current format version */
+    public static final int VERSION = 2;
+
+    // section types
+    static final byte SECTION_MAP = 1;
+    static final byte SECTION_TURN = 2;
+    static final byte SECTION_WORLD = 3;
+    static final byte SECTION_HISTORY = 4;
+
+    // header: magic, version. footer: index offset, index length, magic
+    private static final int HEADER_LENGTH = 8;
+    private static final int FOOTER_LENGTH = 16;
+    private static final int BUFFER_SIZE = 8192;
+
+    private BinaryWorldFormat() {
+    }// BinaryWorldFormat()
+
+    /**
+     * Returns true if the file starts with the binary format magic number.
+     * Returns false for shorter files.
+     */
+    public static boolean isBinaryFormat(final File file) throws IOException {
+        final DataInputStream in = new DataInputStream(new FileInputStream(file));
+        try {
+            return in.readInt() == MAGIC;
+        } catch (EOFException e) {
+            return false;
+        } finally {
+            in.close();
+        }
+    }// isBinaryFormat()
+
+    /**
+     * Writes the World to the given file in the binary format. The file is
+     * replaced atomically; see {@link Snapshot#writeTo(File)}.
+     */
+    public static void write(final File file, final World world) throws IOException {
+        Snapshot.create(world).writeTo(file);
+    }// write()
+
+    /**
+     * Reads a World from a file in the binary format. Only the Map and the
+     * World section are decoded here; TurnStates are decoded on demand, as
+     * they are requested from the World (see LazyTurnStateMap).
+     */
+    public static World read(final File file) throws IOException {
+        return new Reader(file).readWorld();
+    }// read()
+
+    /** Serializes an object into a deflated byte array. */
+    private static byte[] deflate(final Object obj, final References refs, final Object turnStateMap)
+            throws IOException {
+        final ByteArrayOutputStream bos = new ByteArrayOutputStream(BUFFER_SIZE);
+        final Deflater deflater = new Deflater();
+        try {
+            final SectionOutputStream out = new SectionOutputStream(
+                    new DeflaterOutputStream(bos, deflater, BUFFER_SIZE), refs, turnStateMap);
+            out.writeObject(obj);
+            out.close();
+        } finally {
+            deflater.end();
+        }
+
+        return bos.toByteArray();
+    }// deflate()
+
+    /** Reads an object from a deflated section. */
+    private static Object inflate(final InputStream data, final dip.world.Map map, final TurnSource source,
+            final PositionHistory history) throws IOException {
+        final Inflater inflater = new Inflater();
+        try {
+            final SectionInputStream in = new SectionInputStream(new InflaterInputStream(data, inflater,
+                    BUFFER_SIZE), map, source, history);
+            return in.readObject();
+        } catch (ClassNotFoundException e) {
+            throw (IOException) new StreamCorruptedException(e.getMessage()).initCause(e);
+        } finally {
+            inflater.end();
+        }
+    }// inflate()
+
+    /**
+     * Creates a temporary file in the same directory as the given file, for
+     * use with {@link #replaceFile(File, File)}.
+     */
+    static File createTempFile(final File file) throws IOException {
+        final File dir = file.getAbsoluteFile().getParentFile();
+        return File.createTempFile(file.getName() + ".", ".tmp", dir);
+    }// createTempFile()
+
+    /**
+     * Replaces the target file with the (completely written) temporary
+     * file, atomically where the file system supports it. The temporary
+     * file is deleted if it cannot be renamed.
+     */
+    static void replaceFile(final File temp, final File target) throws IOException {
+        try {
+            try {
+                Files.move(temp.toPath(), target.toPath(), StandardCopyOption.ATOMIC_MOVE,
+                        StandardCopyOption.REPLACE_EXISTING);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            }
+        } catch (IOException e) {
+            temp.delete();
+            throw e;
+        }
+    }// replaceFile()
+
+    /**
+     * A copy of a World, taken so that it can be written to a file on
+     * another thread while the World continues to change.
+     * <p>
+     * Creating a Snapshot encodes the World section, and copies each
+     * TurnState that must be encoded (see TurnState.snapshot()); Positions
+     * are copy-on-write clones, and Orders and Results are shared, so this
+     * is cheap compared to writing. For a World read from a binary game
+     * file, turns that have not been modified are not copied (nor decoded,
+     * if they have not been read): their sections of the file are written
+     * as they are. The Snapshot must be created on the thread that modifies
+     * the World (in the GUI, the event dispatch thread). Writing, which
+     * encodes the Map, the Position history and the turn sections, may then
+     * happen on any thread. If any of these cannot be encoded, the JSX
+     * format is written instead, from a World decoded from the Snapshot;
+     * the World itself is not used.
+     */
+    public static final class Snapshot {
+        private final dip.world.Map map;
+        private final List<TurnEntry> turns;
+        private final Reader source;
+        private final byte[] worldSection;
+
+        private Snapshot(final dip.world.Map map, final List<TurnEntry> turns, final Reader source,
+                final byte[] worldSection) {
+            this.map = map;
+            this.turns = turns;
+            this.source = source;
+            this.worldSection = worldSection;
+        }// Snapshot()
+
+        /**
+         * Creates a Snapshot of the World. A NotSerializableException is
+         * thrown if the World contains objects that cannot be written.
+         */
+        public static Snapshot create(final World world) throws IOException {
+            return create(world, false);
+        }// create()
+
+        /**
+         * Creates a Snapshot of the World that includes its press. A World
+         * saved as a game file keeps its press in a log next to the file
+         * (see LogPressStore); this is used instead when the World is
+         * written elsewhere, such as into a GameArchive.
+         */
+        public static Snapshot createWithPress(final World world) throws IOException {
+            return create(world, true);
+        }// createWithPress()
+
+        private static Snapshot create(final World world, final boolean isPressIncluded) throws IOException {
+            final dip.world.Map map = world.getMap();
+            final List<TurnEntry> entries;
+            final Reader source;
+            if (world.getTurnStateMap() instanceof LazyTurnStateMap) {
+                final LazyTurnStateMap lazy = (LazyTurnStateMap) world.getTurnStateMap();
+                entries = lazy.getTurnEntries();
+                source = lazy.getReader();
+            } else {
+                entries = new ArrayList<TurnEntry>();
+                for (final TurnState ts : world.getAllTurnStates()) {
+                    entries.add(new TurnEntry(ts.getPhase(), ts, -1, null));
+                }
+                source = null;
+            }
+
+            // the World section refers to the original turns (those in memory)
+            final List<TurnState> turns = new ArrayList<TurnState>(entries.size());
+            for (final TurnEntry entry : entries) {
+                turns.add(entry.turnState);
+            }
+
+            final References refs = new References(map, turns, null);
+            if (isPressIncluded && world.getPressStore() instanceof LogPressStore) {
+                refs.press = world.getPressStore();
+                refs.pressCopy = ((LogPressStore) refs.press).createUnsavedCopy();
+            }
+
+            final byte[] worldSection = deflate(world, refs, world.getTurnStateMap());
+
+            final List<TurnEntry> copies = new ArrayList<TurnEntry>(entries.size());
+            for (final TurnEntry entry : entries) {
+                copies.add(entry.isCopied() ? entry
+                        : new TurnEntry(entry.phase, entry.turnState.snapshot(), -1, null));
+            }
+
+            return new Snapshot(map, copies, source, worldSection);
+        }// create()
+
+        /**
+         * Writes the Snapshot to the given file. The data is written to a
+         * temporary file in the same directory, which is synced and then
+         * renamed to the given file, so an interrupted write never leaves a
+         * partially written game file. If a section contains objects that
+         * cannot be written in the binary format, the file is written in the
+         * JSX format (see World.save()).
+         */
+        public void writeTo(final File file) throws IOException {
+            try {
+                writeBinary(file);
+            } catch (NotSerializableException e) {
+                Log.println("BinaryWorldFormat: binary format not possible, using JSX: ", e.getMessage());
+                World.saveLegacy(file, toWorld());
+            }
+        }// writeTo()
+
+        /** Writes the Snapshot to the given file, in the binary format. */
+        private void writeBinary(final File file) throws IOException {
+            final File temp = createTempFile(file);
+            boolean isWritten = false;
+            try {
+                final FileOutputStream fos = new FileOutputStream(temp);
+                final DataOutputStream out = new DataOutputStream(new BufferedOutputStream(fos, BUFFER_SIZE));
+                try {
+                    write(out);
+                    out.flush();
+                    fos.getFD().sync();
+                } finally {
+                    out.close();
+                }
+                isWritten = true;
+            } finally {
+                if (!isWritten) {
+                    temp.delete();
+                }
+            }
+
+            replaceFile(temp, file);
+        }// writeBinary()
+
+        /**
+         * Decodes the World section, with the turns of the Snapshot (turns
+         * copied from the source file are decoded from it). The World has no
+         * objects in common with the World the Snapshot was created from,
+         * other than the Map and the Orders and Results of its turns.
+         */
+        private World toWorld() throws IOException {
+            final List<TurnState> turnStates = new ArrayList<TurnState>(turns.size());
+            final SortedMap<Phase, TurnState> turnStateMap = Collections
+                    .<Phase, TurnState>synchronizedSortedMap(new TreeMap<Phase, TurnState>());
+            for (final TurnEntry entry : turns) {
+                final TurnState ts = entry.isCopied() ? source.readTurnState(map, entry.section)
+                        : entry.turnState;
+                turnStates.add(ts);
+                turnStateMap.put(entry.phase, ts);
+            }
+
+            final TurnSource turnSource = new TurnSource() {
+                @Override
+                public TurnState getTurn(final int turn) {
+                    return turnStates.get(turn);
+                }// getTurn()
+
+                @Override
+                public SortedMap<Phase, TurnState> getTurnStateMap() {
+                    return turnStateMap;
+                }// getTurnStateMap()
+            };
+
+            final World world = (World) inflate(new ByteArrayInputStream(worldSection), map, turnSource, null);
+            for (final TurnState ts : turnStates) {
+                ts.setWorld(world);
+            }
+
+            return world;
+        }// toWorld()
+
+        /**
+         * Writes the Snapshot, in the binary format, to the stream. Section
+         * offsets are relative to the start of the written data.
+         */
+        void write(final DataOutputStream out) throws IOException {
+            // turn sections copied from the source file refer to their Position
+            // in the history by index, which is unchanged
+            final PositionHistory history = new PositionHistory(map);
+            final List<TurnState> encoded = new ArrayList<TurnState>(turns.size());
+            for (final TurnEntry entry : turns) {
+                history.add(entry.phase, entry.isCopied() ? entry.position : entry.turnState.getPosition());
+                encoded.add(entry.isCopied() ? null : entry.turnState);
+            }
+
+            final References refs = new References(map, encoded, history);
+
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            long offset = HEADER_LENGTH;
+
+            final byte[] types = new byte[turns.size() + 3];
+            final long[] offsets = new long[types.length];
+            final int[] lengths = new int[types.length];
+            final Phase[] phases = new Phase[types.length];
+
+            for (int i = 0; i < types.length; i++) {
+                byte[] data = null;
+                if (i == 0) {
+                    types[i] = SECTION_MAP;
+                    data = deflate(map, null, null);
+                } else if (i == 1) {
+                    types[i] = SECTION_HISTORY;
+                    data = deflate(history, refs, null);
+                } else if (i <= turns.size() + 1) {
+                    final TurnEntry entry = turns.get(i - 2);
+                    types[i] = SECTION_TURN;
+                    phases[i] = entry.phase;
+                    if (entry.isCopied()) {
+                        lengths[i] = source.copyTurnSection(entry.section, out);
+                    } else {
+                        data = deflate(entry.turnState, refs, null);
+                    }
+                } else {
+                    types[i] = SECTION_WORLD;
+                    data = worldSection;
+                }
+
+                if (data != null) {
+                    out.write(data);
+                    lengths[i] = data.length;
+                }
+
+                offsets[i] = offset;
+                offset += lengths[i];
+            }
+
+            // index
+            final ByteArrayOutputStream bos = new ByteArrayOutputStream();
+            final ObjectOutputStream oos = new ObjectOutputStream(bos);
+            oos.writeInt(types.length);
+            for (int i = 0; i < types.length; i++) {
+                oos.writeByte(types[i]);
+                oos.writeLong(offsets[i]);
+                oos.writeInt(lengths[i]);
+                if (types[i] == SECTION_TURN) {
+                    oos.writeObject(phases[i]);
+                }
+            }
+            oos.close();
+            bos.writeTo(out);
+
+            // footer
+            out.writeLong(offset);
+            out.writeInt(bos.size());
+            out.writeInt(MAGIC);
+        }// write()
+    }// nested class Snapshot
+
+    /**
+     * A turn of a Snapshot. A turn written by copying its section of the
+     * source game file has the index of that section, and its Position (from
+     * the history of the file); its TurnState is null if it is not in
+     * memory. Other turns have a TurnState and section index -1.
+     */
+    static final class TurnEntry {
+        final Phase phase;
+        final TurnState turnState;
+        final int section;
+        final Position position;
+
+        TurnEntry(final Phase phase, final TurnState turnState, final int section, final Position position) {
+            this.phase = phase;
+            this.turnState = turnState;
+            this.section = section;
+            this.position = position;
+        }// TurnEntry()
+
+        /** True if the turn section is copied from the source file. */
+        boolean isCopied() {
+            return (section >= 0);
+        }// isCopied()
+    }// nested class TurnEntry
+
+    /**
+     * Source of the turns that objects in the World section refer to.
+     */
+    interface TurnSource {
+        /** Returns the TurnState of the given turn section. */
+        TurnState getTurn(int turn) throws IOException;
+
+        /** Returns the Phase to TurnState map for the World. */
+        SortedMap<Phase, TurnState> getTurnStateMap();
+    }// interface TurnSource
+
+    /**
+     * Random-access reader for binary game files. The file is read into
+     * memory (or, for archives, memory-mapped) and its index parsed when the
+     * Reader is created; sections are decoded on demand. Readers are
+     * thread-safe.
+     */
+    static final class Reader {
+        private final ByteBuffer data;
+        private final List<Phase> phases = new ArrayList<Phase>();
+        private final List<long[]> turnSections = new ArrayList<long[]>();
+        private long[] mapSection = null;
+        private long[] worldSection = null;
+        private long[] historySection = null;
+        private PositionHistory history = null;
+
+        /** Reads a binary game file and its index. */
+        Reader(final File file) throws IOException {
+            final long length = file.length();
+            if (length > Integer.MAX_VALUE) {
+                throw new IOException("game file too large: " + file);
+            }
+
+            final byte[] bytes = new byte[(int) length];
+            final DataInputStream in = new DataInputStream(new FileInputStream(file));
+            try {
+                in.readFully(bytes);
+            } finally {
+                in.close();
+            }
+
+            this.data = ByteBuffer.wrap(bytes);
+            readIndex();
+        }// Reader()
+
+        /**
+         * Reads the index of a binary game file held in the given buffer,
+         * from its position to its limit. The buffer must not be modified.
+         */
+        Reader(final ByteBuffer buffer) throws IOException {
+            this.data = buffer.slice();
+            readIndex();
+        }// Reader()
+
+        /** Number of turn sections. */
+        int getTurnCount() {
+            return phases.size();
+        }// getTurnCount()
+
+        /** Phase of the given turn section. */
+        Phase getPhase(final int turn) {
+            return phases.get(turn);
+        }// getPhase()
+
+        /** Reads the Map section. */
+        dip.world.Map readMap() throws IOException {
+            return (dip.world.Map) readSection(mapSection, null, null, null);
+        }// readMap()
+
+        /**
+         * Reads the Position history section; null for files without one
+         * (version 1). A new PositionHistory is returned for each call.
+         */
+        PositionHistory readHistory(final dip.world.Map map) throws IOException {
+            return (historySection == null) ? null
+                    : (PositionHistory) readSection(historySection, map, null, null);
+        }// readHistory()
+
+        /** Reads a single turn section. */
+        TurnState readTurnState(final dip.world.Map map, final int turn) throws IOException {
+            return (TurnState) readSection(turnSections.get(turn), map, null, getHistory(map));
+        }// readTurnState()
+
+        /**
+         * Writes the (still deflated) data of a turn section to the stream;
+         * returns its length.
+         */
+        int copyTurnSection(final int turn, final OutputStream out) throws IOException {
+            final long[] section = turnSections.get(turn);
+            final InputStream in = openStream(section[0], (int) section[1]);
+            final byte[] buffer = new byte[BUFFER_SIZE];
+            int n;
+            while ((n = in.read(buffer, 0, buffer.length)) > 0) {
+                out.write(buffer, 0, n);
+            }
+
+            return (int) section[1];
+        }// copyTurnSection()
+
+        /** The history used to resolve turn Positions; decoded once. Null for version 1 files. */
+        synchronized PositionHistory getHistory(final dip.world.Map map) throws IOException {
+            if (history == null) {
+                history = readHistory(map);
+            }
+            return history;
+        }// getHistory()
+
+        /**
+         * Reads the Map and the World section. The World's turns are read
+         * lazily, through this Reader.
+         */
+        World readWorld() throws IOException {
+            final dip.world.Map map = readMap();
+            final LazyTurnStateMap turns = new LazyTurnStateMap(this, map);
+            return (World) readSection(worldSection, map, turns, null);
+        }// readWorld()
+
+        private void readIndex() throws IOException {
+            final int length = data.limit();
+            if (length < HEADER_LENGTH + FOOTER_LENGTH) {
+                throw new StreamCorruptedException("truncated game file");
+            }
+
+            if (data.getInt(0) != MAGIC) {
+                throw new StreamCorruptedException("not a binary game file");
+            }
+
+            final int version = data.getInt(4);
+            if (version > VERSION) {
+                throw new IOException("unsupported game file version: " + version);
+            }
+
+            final int footer = length - FOOTER_LENGTH;
+            final long indexOffset = data.getLong(footer);
+            final int indexLength = data.getInt(footer + 8);
+            if (data.getInt(footer + 12) != MAGIC || indexOffset < HEADER_LENGTH || indexLength < 0
+                    || indexOffset + indexLength > footer) {
+                throw new StreamCorruptedException("invalid game file index");
+            }
+
+            final ObjectInputStream in = new CheckedInputStream(openStream(indexOffset, indexLength));
+            try {
+                final int count = in.readInt();
+                for (int i = 0; i < count; i++) {
+                    final byte type = in.readByte();
+                    final long[] section = { in.readLong(), in.readInt() };
+                    if (section[0] < HEADER_LENGTH || section[1] < 0 || section[0] + section[1] > indexOffset) {
+                        throw new StreamCorruptedException("invalid game file section");
+                    }
+
+                    if (type == SECTION_MAP) {
+                        mapSection = section;
+                    } else if (type == SECTION_TURN) {
+                        phases.add((Phase) in.readObject());
+                        turnSections.add(section);
+                    } else if (type == SECTION_WORLD) {
+                        worldSection = section;
+                    } else if (type == SECTION_HISTORY) {
+                        historySection = section;
+                    }
+                }
+            } catch (ClassNotFoundException e) {
+                throw (IOException) new StreamCorruptedException(e.getMessage()).initCause(e);
+            } finally {
+                in.close();
+            }
+
+            if (mapSection == null || worldSection == null) {
+                throw new StreamCorruptedException("missing game file section");
+            }
+        }// readIndex()
+
+        private Object readSection(final long[] section, final dip.world.Map map, final TurnSource source,
+                final PositionHistory history) throws IOException {
+            return inflate(openStream(section[0], (int) section[1]), map, source, history);
+        }// readSection()
+
+        /** An InputStream over part of the buffer; buffer position is unaffected. */
+        private InputStream openStream(final long offset, final int length) {
+            final ByteBuffer buffer = data.duplicate();
+            buffer.limit((int) offset + length);
+            buffer.position((int) offset);
+            return new ByteBufferInputStream(buffer);
+        }// openStream()
+    }// nested class Reader
+
+    /** InputStream that reads the remaining bytes of a ByteBuffer. */
+    static final class ByteBufferInputStream extends InputStream {
+        private final ByteBuffer buffer;
+
+        ByteBufferInputStream(final ByteBuffer buffer) {
+            this.buffer = buffer;
+        }// ByteBufferInputStream()
+
+        @Override
+        public int read() {
+            return buffer.hasRemaining() ? (buffer.get() & 0xFF) : -1;
+        }// read()
+
+        @Override
+        public int read(final byte[] b, final int off, final int len) {
+            if (len == 0) {
+                return 0;
+            }
+            if (!buffer.hasRemaining()) {
+                return -1;
+            }
+
+            final int n = Math.min(len, buffer.remaining());
+            buffer.get(b, off, n);
+            return n;
+        }// read()
+
+        @Override
+        public int available() {
+            return buffer.remaining();
+        }// available()
+    }// nested class ByteBufferInputStream
+
+    /**
+     * Index lookups used when writing: Provinces and Powers of the Map, the
+     * turn Positions held in the PositionHistory, and (for the World
+     * section) the TurnStates, Positions and Orders that have been written
+     * in turn sections.
+     */
+    private static final class References {
+        private final dip.world.Map map;
+        private final Province[] provinces;
+        private final IdentityHashMap<Power, Integer> powers = new IdentityHashMap<Power, Integer>();
+        private final IdentityHashMap<Object, Serializable> turnObjects = new IdentityHashMap<Object, Serializable>();
+        private final IdentityHashMap<Object, HistoryRef> historyPositions = new IdentityHashMap<Object, HistoryRef>();
+        // a press store written as a copy (with its messages); see Snapshot.createWithPress()
+        private Object press = null;
+        private Object pressCopy = null;
+
+        References(final dip.world.Map map, final List<TurnState> turns, final PositionHistory history) {
+            this.map = map;
+            this.provinces = map.getProvinces();
+
+            final Power[] mapPowers = map.getPowers();
+            for (int i = 0; i < mapPowers.length; i++) {
+                powers.put(mapPowers[i], i);
+            }
+
+            for (int i = 0; i < turns.size(); i++) {
+                final TurnState ts = turns.get(i);
+                if (ts == null) {
+                    // not in memory, or not encoded
+                    continue;
+                }
+
+                turnObjects.put(ts, new TurnStateRef(i));
+                if (ts.getPosition() != null) {
+                    turnObjects.put(ts.getPosition(), new PositionRef(i));
+                    if (history != null && history.hasPosition(i)) {
+                        historyPositions.put(ts.getPosition(), new HistoryRef(i));
+                    }
+                }
+
+                for (final java.util.Map.Entry<Power, List<Orderable>> entry : ts.getOrderMap().entrySet()) {
+                    final Integer powerIdx = powers.get(entry.getKey());
+                    final List<Orderable> orders = entry.getValue();
+                    if (powerIdx != null && orders != null) {
+                        for (int j = 0; j < orders.size(); j++) {
+                            turnObjects.put(orders.get(j), new OrderRef(i, powerIdx.intValue(), j));
+                        }
+                    }
+                }
+            }
+        }// References()
+    }// nested class References
+
+    /** ObjectOutputStream that replaces shared objects with index tokens. */
+    private static final class SectionOutputStream extends ObjectOutputStream {
+        private final References refs;
+        private final Object turnStateMap;
+        private final IdentityHashMap<Object, Object> recordData = new IdentityHashMap<Object, Object>();
+
+        SectionOutputStream(final OutputStream out, final References refs, final Object turnStateMap)
+                throws IOException {
+            super(out);
+            this.refs = refs;
+            this.turnStateMap = turnStateMap;
+            enableReplaceObject(refs != null);
+        }// SectionOutputStream()
+
+        @Override
+        protected Object replaceObject(final Object obj) throws IOException {
+            if (obj == refs.map) {
+                return new MapRef();
+            } else if (obj instanceof Province) {
+                final int idx = ((Province) obj).getIndex();
+                if (idx >= 0 && idx < refs.provinces.length && refs.provinces[idx] == obj) {
+                    return new ProvinceRef(idx);
+                }
+            } else if (obj instanceof Power) {
+                final Integer idx = refs.powers.get(obj);
+                if (idx != null) {
+                    return new PowerRef(idx.intValue());
+                }
+            } else if (obj == refs.press && obj != null) {
+                return refs.pressCopy;
+            } else if (obj == turnStateMap && turnStateMap != null) {
+                return new TurnStatesRef();
+            } else if (refs.turnObjects.containsKey(obj) && turnStateMap != null) {
+                return refs.turnObjects.get(obj);
+            } else if (refs.historyPositions.containsKey(obj)) {
+                return refs.historyPositions.get(obj);
+            } else if (obj instanceof Position && !recordData.containsKey(obj)) {
+                return createRecord((Position) obj);
+            }
+
+            return obj;
+        }// replaceObject()
+
+        /** Position subclasses other than CompactPosition are written as-is. */
+        private Object createRecord(final Position position) {
+            final boolean isCompact = (position.getClass() == CompactPosition.class);
+            if (!isCompact && position.getClass() != Position.class) {
+                return position;
+            }
+
+            try {
+                // a copy: the stream substitutes the record for any later
+                // reference to the position itself, including record.data
+                final CompactPosition data = isCompact ? (CompactPosition) position.clone()
+                        : new CompactPosition(position);
+                recordData.put(data, data);
+                return new PositionRecord(isCompact, data);
+            } catch (IllegalArgumentException e) {
+                // position refers to Powers not in the Map
+                return position;
+            }
+        }// createRecord()
+    }// nested class SectionOutputStream
+
+    /**
+     * ObjectInputStream that only creates the classes a game file may contain:
+     * jDip classes, the collections and value types they use, and the
+     * javax.swing.undo classes that UndoRedoManager extends. A game file is
+     * often received from another player, so any other class is rejected
+     * before it is loaded.
+     */
+    private static class CheckedInputStream extends ObjectInputStream {
+        private static final Set<String> ALLOWED_CLASSES = new HashSet<String>(Arrays.asList(
+                "java.lang.Boolean", "java.lang.Byte", "java.lang.Character", "java.lang.Double",
+                "java.lang.Enum", "java.lang.Float", "java.lang.Integer", "java.lang.Long",
+                "java.lang.Number", "java.lang.Short", "java.lang.String",
+                "java.net.URI",
+                "java.util.ArrayList", "java.util.Arrays$ArrayList", "java.util.BitSet",
+                "java.util.Date", "java.util.HashMap", "java.util.HashSet", "java.util.Hashtable",
+                "java.util.LinkedHashMap", "java.util.LinkedHashSet", "java.util.LinkedList",
+                "java.util.TreeMap", "java.util.TreeSet", "java.util.Vector",
+                "javax.swing.undo.AbstractUndoableEdit", "javax.swing.undo.CompoundEdit",
+                "javax.swing.undo.UndoManager"));
+
+        CheckedInputStream(final InputStream in) throws IOException {
+            super(in);
+        }// CheckedInputStream()
+
+        @Override
+        protected Class<?> resolveClass(final ObjectStreamClass desc) throws IOException, ClassNotFoundException {
+            if (!isAllowed(desc.getName())) {
+                throw new InvalidClassException(desc.getName(), "class not allowed in a game file");
+            }
+
+            return super.resolveClass(desc);
+        }// resolveClass()
+
+        /** True if the named class (or array class) may be read. */
+        private static boolean isAllowed(final String name) {
+            // arrays: "[I", "[[Ldip.world.Province;"; primitive arrays are allowed
+            int dims = 0;
+            while (dims < name.length() && name.charAt(dims) == '[') {
+                dims++;
+            }
+
+            if (dims > 0) {
+                if (dims == name.length()) {
+                    return false;
+                } else if (name.charAt(dims) != 'L') {
+                    return (name.length() == dims + 1);
+                }
+
+                return isAllowed(name.substring(dims + 1, name.length() - 1));
+            }
+
+            return name.startsWith("dip.") || ALLOWED_CLASSES.contains(name)
+                    || name.startsWith("java.util.Collections$");
+        }// isAllowed()
+    }// nested class CheckedInputStream
+
+    /** ObjectInputStream that resolves index tokens. */
+    private static final class SectionInputStream extends CheckedInputStream {
+        private final dip.world.Map map;
+        private final TurnSource source;
+        private final PositionHistory history;
+
+        SectionInputStream(final InputStream in, final dip.world.Map map, final TurnSource source,
+                final PositionHistory history) throws IOException {
+            super(in);
+            this.map = map;
+            this.source = source;
+            this.history = history;
+            enableResolveObject(map != null);
+        }// SectionInputStream()
+
+        @Override
+        protected Object resolveObject(final Object obj) throws IOException {
+            if (obj instanceof Token) {
+                return ((Token) obj).resolve(this);
+            }
+
+            return obj;
+        }// resolveObject()
+
+        private TurnState getTurn(final int idx) throws IOException {
+            if (source == null) {
+                throw new StreamCorruptedException("invalid turn reference: " + idx);
+            }
+
+            return source.getTurn(idx);
+        }// getTurn()
+    }// nested class SectionInputStream
+
+    /** An object written in place of another, resolved when read. */
+    private static abstract class Token implements Serializable {
+        private static final long serialVersionUID = 1L;
+
+        abstract Object resolve(SectionInputStream in) throws IOException;
+    }// nested class Token
+
+    private static final class MapRef extends Token {
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        Object resolve(final SectionInputStream in) {
+            return in.map;
+        }// resolve()
+    }// nested class MapRef
+
+    private static final class ProvinceRef extends Token {
+        private static final long serialVersionUID = 1L;
+        private final int idx;
+
+        ProvinceRef(final int idx) {
+            this.idx = idx;
+        }// ProvinceRef()
+
+        @Override
+        Object resolve(final SectionInputStream in) {
+            return in.map.getProvinces()[idx];
+        }// resolve()
+    }// nested class ProvinceRef
+
+    private static final class PowerRef extends Token {
+        private static final long serialVersionUID = 1L;
+        private final int idx;
+
+        PowerRef(final int idx) {
+            this.idx = idx;
+        }// PowerRef()
+
+        @Override
+        Object resolve(final SectionInputStream in) {
+            return in.map.getPowers()[idx];
+        }// resolve()
+    }// nested class PowerRef
+
+    private static final class TurnStatesRef extends Token {
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        Object resolve(final SectionInputStream in) throws IOException {
+            if (in.source == null) {
+                throw new StreamCorruptedException("unexpected turn map reference");
+            }
+
+            return in.source.getTurnStateMap();
+        }// resolve()
+    }// nested class TurnStatesRef
+
+    private static final class TurnStateRef extends Token {
+        private static final long serialVersionUID = 1L;
+        private final int turn;
+
+        TurnStateRef(final int turn) {
+            this.turn = turn;
+        }// TurnStateRef()
+
+        @Override
+        Object resolve(final SectionInputStream in) throws IOException {
+            return in.getTurn(turn);
+        }// resolve()
+    }// nested class TurnStateRef
+
+    private static final class PositionRef extends Token {
+        private static final long serialVersionUID = 1L;
+        private final int turn;
+
+        PositionRef(final int turn) {
+            this.turn = turn;
+        }// PositionRef()
+
+        @Override
+        Object resolve(final SectionInputStream in) throws IOException {
+            return in.getTurn(turn).getPosition();
+        }// resolve()
+    }// nested class PositionRef
+
+    private static final class OrderRef extends Token {
+        private static final long serialVersionUID = 1L;
+        private final int turn;
+        private final int power;
+        private final int idx;
+
+        OrderRef(final int turn, final int power, final int idx) {
+            this.turn = turn;
+            this.power = power;
+            this.idx = idx;
+        }// OrderRef()
+
+        @Override
+        Object resolve(final SectionInputStream in) throws IOException {
+            final List<Orderable> orders = in.getTurn(turn).getOrderMap().get(in.map.getPowers()[power]);
+            if (orders == null || idx >= orders.size()) {
+                throw new StreamCorruptedException("invalid order reference");
+            }
+            return orders.get(idx);
+        }// resolve()
+    }// nested class OrderRef
+
+    private static final class HistoryRef extends Token {
+        private static final long serialVersionUID = 1L;
+        private final int turn;
+
+        HistoryRef(final int turn) {
+            this.turn = turn;
+        }// HistoryRef()
+
+        @Override
+        Object resolve(final SectionInputStream in) throws IOException {
+            if (in.history == null || turn >= in.history.size() || !in.history.hasPosition(turn)) {
+                throw new StreamCorruptedException("invalid history reference: " + turn);
+            }
+            return in.history.getPosition(turn);
+        }// resolve()
+    }// nested class HistoryRef
+
+    /**
+     * A Position stored as a CompactPosition; converted back to a plain
+     * Position when read, unless it was a CompactPosition originally.
+     */
+    private static final class PositionRecord extends Token {
+        private static final long serialVersionUID = 1L;
+        private final boolean isCompact;
+        private final CompactPosition data;
+
+        PositionRecord(final boolean isCompact, final CompactPosition data) {
+            this.isCompact = isCompact;
+            this.data = data;
+        }// PositionRecord()
+
+        @Override
+        Object resolve(final SectionInputStream in) {
+            if (isCompact) {
+                return data;
+            }
+
+            return data.toPosition();
+        }// resolve()
+    }// nested class PositionRecord
+}// class BinaryWorldFormat
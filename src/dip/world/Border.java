@@ -102,6 +102,8 @@ import dip.order.Order;
  */
 public class Border implements Serializable {
 
+    private static final long serialVersionUID = 1L;
+
     /** Constant indicating year was omitted */
     private static final int YEAR_NOT_SPECIFIED = 0;
     /** Constant indicating year is ranged */
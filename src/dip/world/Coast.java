@@ -23,8 +23,6 @@
 package dip.world;
 
 import java.io.InvalidObjectException;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
 
 import dip.order.OrderException;
 /**
@@ -48,9 +46,6 @@ public final class Coast implements java.io.Serializable
 	 */
 	private static final long serialVersionUID = 1L;
 
-	// transient data
-	transient static private Pattern[] patterns = null;
-	
 	// internal constants
 	// TODO: these need to be properly internationalized.
 	// To do that, we need internationlization support for coast 
@@ -321,115 +316,266 @@ public final class Coast implements java.io.Serializable
 	*	the invalid coast text only.
 	*	<p>
 	*	Bug note: the following "xxx-n.c." will be converted to "xxx-nc ." Note the extra period.
+	*	<p>
+	*	This is a hand-written scanner rather than a set of regular expressions; 
+	*	the input is scanned once, and parenthetical coasts (if there are any
+	*	parentheses) are then rewritten in the same buffer.
 	*	
 	*/
 	public static String normalize(String input)
 	throws OrderException
 	{
-		// create patterns, if we have none.
-		// these are threadsafe
-		if(patterns == null)
+		final int len = input.length();
+		
+		// quick check: most input has no coast at all
+		boolean hasSeparator = false;
+		boolean hasParen = false;
+		for(int i=0; i<len; i++)
 		{
-			patterns = new Pattern[2];
-			
-			// match /xx, -xx, \xx coasts; also takes care of periods.
-			// also matches /x; will not match /xxx (or -xxx) 
-			patterns[0] = Pattern.compile("\\s*[\\-\\\\/](\\p{Alnum}\\.?)(\\p{Alnum}\\.?)\\b");
-			//
-			// match parenthetical coasts. 
-			//patterns[1] = Pattern.compile("\\s*\\([^\\p{Alnum}]*(\\p{Alnum})[^\\p{Alnum}]*(\\p{Alnum})[^)]*\\)");
-			patterns[1] = Pattern.compile("\\s*\\(([.[^)]]*)(\\))\\s*");
+			final char c = input.charAt(i);
+			if(c == '-' || c == '/' || c == '\\')
+			{
+				hasSeparator = true;
+			}
+			else if(c == '(')
+			{
+				hasParen = true;
+			}
 		}
 		
-		// start matching.
-		String matchInput = input;
-		for(int i=0; i<patterns.length; i++)
+		if(!hasSeparator && !hasParen)
+		{
+			return input.trim();
+		}
+		
+		final StringBuffer sb = new StringBuffer(len + 8);
+		if(hasSeparator)
+		{
+			normalizeSeparated(input, sb);
+		}
+		else
+		{
+			sb.append(input);
+		}
+		
+		if(hasParen)
+		{
+			normalizeParenthetical(sb);
+		}
+		
+		return sb.toString().trim();
+	}// normalize()
+	
+	
+	/**
+	*	Appends input to sb, with separated coasts ("/xx", "-xx", "\xx", with
+	*	optional periods after each coast character) normalized to "/xx ". 
+	*	Whitespace before the separator is removed. The coast must be followed 
+	*	by a word boundary.
+	*/
+	private static void normalizeSeparated(String input, StringBuffer sb)
+	throws OrderException
+	{
+		final int len = input.length();
+		int from = 0;		// start of text not yet appended
+		
+		for(int j=0; j<len; j++)
 		{
-			Matcher m = patterns[i].matcher(matchInput);
-			StringBuffer sb = new StringBuffer(matchInput.length());
+			final char sep = input.charAt(j);
+			if(sep != '-' && sep != '/' && sep != '\\')
+			{
+				continue;
+			}
+			
+			// first coast character, and an optional period
+			int k = j + 1;
+			if(k >= len || !isAlnum(input.charAt(k)))
+			{
+				continue;
+			}
 			
-			boolean result = m.find();
-			while(result) 
+			final char c1 = input.charAt(k++);
+			if(k < len && input.charAt(k) == '.')
 			{
-				if(m.groupCount() == 2)
-				{
-					final char c1 = m.group(1).charAt(0);
-					final char c2 = m.group(2).charAt(0);
-					
-					//System.out.println("1: "+m.group(1)+";  2: "+m.group(2));
-					
-					if(c2 == ')')
-					{
-						String group1 = superTrim(m.group(1));
-						
-						// test 'full name' and abbreviated coasts inside parentheses
-						if(group1.startsWith("north") || "nc".equals(group1))
-						{
-							m.appendReplacement(sb, "/nc ");
-						}
-						else if(group1.startsWith("south") || "sc".equals(group1))
-						{
-							m.appendReplacement(sb, "/sc ");
-						}
-						else if(group1.startsWith("west") || "wc".equals(group1))
-						{
-							m.appendReplacement(sb, "/wc ");
-						}
-						else if(group1.startsWith("east") || "ec".equals(group1))
-						{
-							m.appendReplacement(sb, "/ec ");
-						}
-						else if("mv".equals(group1))
-						{
-							m.appendReplacement(sb, "/mv ");
-						}
-						else if("xc".equals(group1))
-						{
-							m.appendReplacement(sb, "/xc ");
-						}
-					}
-					else if( (c2 == 'c' && (c1 == 'n' || c1 == 's' || c1 == 'w' || c1 == 'e' || c1 == 'x'))
-						|| (c1 == 'm' && c2 == 'v') )
-					{
-						StringBuffer rep = new StringBuffer(4);
-						rep.append('/');
-						rep.append(c1);
-						rep.append(c2);
-						rep.append(' ');    // space added afterwards--essential!
-						m.appendReplacement(sb, rep.toString());
-					}
-					else
-					{
-						throw new OrderException(m.group(0));
-					}
-				}
-				else
-				{
-					throw new OrderException(m.group(0));
-				}
-				
-				result = m.find();
+				k++;
 			}
 			
-			m.appendTail(sb);
-			matchInput = sb.toString();
+			// second coast character
+			if(k >= len || !isAlnum(input.charAt(k)))
+			{
+				continue;
+			}
+			
+			final char c2 = input.charAt(k++);
+			
+			// an optional period, then a word boundary
+			int end;
+			if(k < len && input.charAt(k) == '.' && isWordBoundary(input, k+1))
+			{
+				end = k + 1;
+			}
+			else if(isWordBoundary(input, k))
+			{
+				end = k;
+			}
+			else
+			{
+				continue;
+			}
+			
+			// include preceding whitespace (not previously matched)
+			int start = j;
+			while(start > from && isSpace(input.charAt(start-1)))
+			{
+				start--;
+			}
+			
+			if( (c2 == 'c' && (c1 == 'n' || c1 == 's' || c1 == 'w' || c1 == 'e' || c1 == 'x'))
+				|| (c1 == 'm' && c2 == 'v') )
+			{
+				sb.append(input, from, start);
+				sb.append('/');
+				sb.append(c1);
+				sb.append(c2);
+				sb.append(' ');    // space added afterwards--essential!
+			}
+			else
+			{
+				throw new OrderException(input.substring(start, end));
+			}
+			
+			from = end;
+			j = end - 1;
 		}
 		
-		return matchInput.trim();
-	}// normalize()
+		sb.append(input, from, len);
+	}// normalizeSeparated()
+	
 	
 	/**
-	*	Trims the following characters before, within, and after a given string.
-	*	<br>
-	*	space, tab, '.'
-	*
+	*	Replaces recognized parenthetical coasts in sb with "/xx ". Whitespace
+	*	before and after the parentheses is removed. Unrecognized parenthetical
+	*	text is left unchanged.
 	*/
-	private static String superTrim(String in)
+	private static void normalizeParenthetical(StringBuffer sb)
 	{
-		return in.replaceAll("\\.*\\s*\\t*", "");
+		int from = 0;		// start of text that may be matched
+		int j = sb.indexOf("(", from);
+		while(j >= 0)
+		{
+			final int close = sb.indexOf(")", j+1);
+			if(close < 0)
+			{
+				// no later '(' can be closed, either.
+				return;
+			}
+			
+			// extend over whitespace before and after
+			int start = j;
+			while(start > from && isSpace(sb.charAt(start-1)))
+			{
+				start--;
+			}
+			
+			int end = close + 1;
+			while(end < sb.length() && isSpace(sb.charAt(end)))
+			{
+				end++;
+			}
+			
+			// test 'full name' and abbreviated coasts inside parentheses
+			final String coast = superTrim(sb, j+1, close);
+			String replacement = null;
+			if(coast.startsWith("north") || "nc".equals(coast))
+			{
+				replacement = "/nc ";
+			}
+			else if(coast.startsWith("south") || "sc".equals(coast))
+			{
+				replacement = "/sc ";
+			}
+			else if(coast.startsWith("west") || "wc".equals(coast))
+			{
+				replacement = "/wc ";
+			}
+			else if(coast.startsWith("east") || "ec".equals(coast))
+			{
+				replacement = "/ec ";
+			}
+			else if("mv".equals(coast))
+			{
+				replacement = "/mv ";
+			}
+			else if("xc".equals(coast))
+			{
+				replacement = "/xc ";
+			}
+			
+			if(replacement != null)
+			{
+				sb.replace(start, end, replacement);
+				from = start + replacement.length();
+			}
+			else
+			{
+				from = end;
+			}
+			
+			j = sb.indexOf("(", from);
+		}
+	}// normalizeParenthetical()
+	
+	
+	/**
+	*	Returns the given range, without any periods or whitespace
+	*	(before, within, or after).
+	*/
+	private static String superTrim(StringBuffer sb, int start, int end)
+	{
+		final StringBuffer out = new StringBuffer(end - start);
+		for(int i=start; i<end; i++)
+		{
+			final char c = sb.charAt(i);
+			if(c != '.' && !isSpace(c))
+			{
+				out.append(c);
+			}
+		}
+		
+		return out.toString();
 	}// superTrim()
 	
 	
+	/** True for the (ASCII) whitespace characters: space, tab, newline, vertical tab, form feed, carriage return. */
+	private static boolean isSpace(char c)
+	{
+		return (c == ' ' || c == '\t' || c == '\n' || c == '\u000B' || c == '\f' || c == '\r');
+	}// isSpace()
+	
+	
+	/** True for ASCII letters and digits. */
+	private static boolean isAlnum(char c)
+	{
+		return ((c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9'));
+	}// isAlnum()
+	
+	
+	/** True if there is a word boundary before the given index. */
+	private static boolean isWordBoundary(String s, int idx)
+	{
+		final boolean before = (idx > 0 && isWordChar(s.charAt(idx-1)));
+		final boolean after = (idx < s.length() && isWordChar(s.charAt(idx)));
+		return (before != after);
+	}// isWordBoundary()
+	
+	
+	/** Word characters, as for a regular expression word boundary. */
+	private static boolean isWordChar(char c)
+	{
+		return (c == '_' || Character.isLetterOrDigit(c));
+	}// isWordChar()
+	
+	
 	/**
 	* Returns <code>true</code> if coast is one of 
 	* Coast.NORTH, Coast.SOUTH, Coast.WEST, or Coast.EAST
@@ -0,0 +1,664 @@
+//
+//  @(#)CompactPosition.java	1.00	10/2004
+//
+//  Copyright 2004 the jDip development team. All rights reserved.
+//  Use is subject to license terms.
+//
+//
+//  This program is free software; you can redistribute it and/or modify
+//  it under the terms of the GNU General Public License as published by
+//  the Free Software Foundation; either version 2 of the License, or
+//  (at your option) any later version.
+//
+//  This program is distributed in the hope that it will be useful,
+//  but WITHOUT ANY WARRANTY; without even the implied warranty of
+//  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+//  GNU General Public License for more details.
+//
+//  You should have received a copy of the GNU General Public License
+//  along with this program; if not, write to the Free Software
+//  Foundation, Inc., 675 Mass Ave, Cambridge, MA 02139, USA.
+//  Or from http://www.gnu.org/
+//
+package dip.world;
+
+/**
+*
+*	A Position that stores all state in parallel primitive arrays, indexed
+*	by Province index (see Province.getIndex()) and Power index (the 
+*	position of the Power in Map.getPowers()).
+*	<p>
+*	This has the same public API as Position, but has a much smaller memory 
+*	footprint, which is useful when keeping long game histories in memory.
+*	Cloning is a few System.arraycopy() calls. All clone methods return
+*	a CompactPosition, so a game that starts with a CompactPosition will
+*	continue to use CompactPositions after adjudication.
+*	<p>
+*	Units are not stored as objects. Therefore, getUnit() and getDislodgedUnit()
+*	return a new Unit for each call; modifying that Unit does not modify
+*	this Position (setUnit() must be called). Only the standard unit types 
+*	(Army, Fleet, and Wing) are supported.
+*	<p>
+*	WARNING: this code is not MT (Multithread) safe!
+*/
+public class CompactPosition extends Position
+{
+	/**
+	 * 
+	 */
+	private static final long serialVersionUID = 1L;
+	
+	// unit encoding: bits 0-1: type; bits 2-4: coast index; bits 5-12: power index + 1
+	private static final int TYPE_MASK = 0x03;
+	private static final int COAST_SHIFT = 2;
+	private static final int COAST_MASK = 0x07;
+	private static final int POWER_SHIFT = 5;
+	private static final int MAX_POWERS = 254;
+	
+	// unit type codes; 0 == no unit
+	private static final Unit.Type[] TYPES = { null, Unit.Type.ARMY, Unit.Type.FLEET, Unit.Type.WING };
+	
+	// coasts, indexed by Coast.getIndex()
+	private static final Coast[] COASTS = { Coast.UNDEFINED, Coast.WING, Coast.NONE, 
+		Coast.SINGLE, Coast.NORTH, Coast.SOUTH, Coast.WEST, Coast.EAST };
+	
+	// instance variables
+	// power values are power index + 1; 0 == null
+	// package-private: PositionHistory reads and writes these directly
+	final short[] units;
+	final short[] dislodged;
+	final byte[] scOwner;
+	final byte[] scHome;
+	final byte[] lastOccupier;
+	final boolean[] eliminated;
+	private transient Province[] tmpProvArray = null;
+	
+	
+	/** Creates an empty CompactPosition */
+	public CompactPosition(dip.world.Map map)
+	{
+		super(map, true);
+		
+		final int nProv = map.getProvinces().length;
+		final int nPowers = map.getPowers().length;
+		if(nPowers > MAX_POWERS)
+		{
+			throw new IllegalArgumentException("too many powers: "+nPowers);
+		}
+		
+		units = new short[nProv];
+		dislodged = new short[nProv];
+		scOwner = new byte[nProv];
+		scHome = new byte[nProv];
+		lastOccupier = new byte[nProv];
+		eliminated = new boolean[nPowers];
+	}// CompactPosition()
+	
+	
+	/** 
+	*	Creates a CompactPosition with the same contents as the given Position. 
+	*	This may be used to compact existing Positions.
+	*/
+	public CompactPosition(Position position)
+	{
+		this(position.map);
+		
+		final Province[] provinces = map.getProvinces();
+		for(int i=0; i<provinces.length; i++)
+		{
+			final Province province = provinces[i];
+			units[i] = encodeUnit(position.getUnit(province));
+			dislodged[i] = encodeUnit(position.getDislodgedUnit(province));
+			scOwner[i] = encodePower(position.getSupplyCenterOwner(province));
+			scHome[i] = encodePower(position.getSupplyCenterHomePower(province));
+			lastOccupier[i] = encodePower(position.getLastOccupier(province));
+		}
+		
+		final Power[] powers = map.getPowers();
+		for(int i=0; i<powers.length; i++)
+		{
+			eliminated[i] = position.isEliminated(powers[i]);
+		}
+	}// CompactPosition()
+	
+	
+	/** Returns true if this Power has been eliminated. False by default. */
+	@Override
+	public boolean isEliminated(Power power)
+	{
+		final int idx = getPowerIndex(power);
+		return (idx >= 0 && eliminated[idx]);
+	}// isEliminated()
+	
+	
+	/** Set whether this Power has been eliminated. */
+	@Override
+	public void setEliminated(Power power, boolean value)
+	{
+		eliminated[encodePower(power) - 1] = value;
+		incrementVersion();
+	}// setEliminated()
+	
+	
+	/** 
+	*	Scans the Position; sets/unsets elimination depending upon if a given
+	* 	Power has any units (including dislodged units) or supply centers on the map 
+	*/
+	@Override
+	public void setEliminationStatus(final Power[] powers)
+	{
+		final boolean[] present = new boolean[eliminated.length + 1];
+		for(int i=0; i<units.length; i++)
+		{
+			present[units[i] >>> POWER_SHIFT] = true;
+			present[dislodged[i] >>> POWER_SHIFT] = true;
+			present[scOwner[i] & 0xFF] = true;
+		}
+		
+		for(final Power power: powers)
+		{
+			setEliminated(power, !present[encodePower(power)]);
+		}
+	}// setEliminationStatus()
+	
+	
+	/** Set the owner of the supply center. */
+	@Override
+	public void setSupplyCenterOwner(Province province, Power power)
+	{
+		scOwner[province.getIndex()] = encodePower(power);
+		incrementVersion();
+	}// setSupplyCenterOwner()
+	
+	
+	/** Set the owner of a home supply center. */
+	@Override
+	public void setSupplyCenterHomePower(Province province, Power power)
+	{
+		scHome[province.getIndex()] = encodePower(power);
+		incrementVersion();
+	}// setSupplyCenterHomePower()
+	
+	
+	/** Determine if this Province contains a supply center */
+	@Override
+	public boolean hasSupplyCenterOwner(Province province)
+	{
+		return (scOwner[province.getIndex()] != 0);
+	}// hasSupplyCenterOwner()
+	
+	
+	/** Determine if this Province contains a Home supply center */
+	@Override
+	public boolean isSupplyCenterAHome(Province province)
+	{
+		return (scHome[province.getIndex()] != 0);
+	}// isSupplyCenterAHome()
+	
+	
+	/** Get the home power of the supply center; null if no supply center or home power */
+	@Override
+	public Power getSupplyCenterHomePower(Province province)
+	{
+		return decodePower(scHome[province.getIndex()]);
+	}// getSupplyCenterHomePower()
+	
+	
+	/** Get the owner of the supply center; null if no owner or no supply center. */
+	@Override
+	public Power getSupplyCenterOwner(Province province)
+	{
+		return decodePower(scOwner[province.getIndex()]);
+	}// getSupplyCenterOwner()
+	
+	
+	/** Set the unit contained in this province; null to eliminate an existing unit. */
+	@Override
+	public void setUnit(Province province, Unit unit)
+	{
+		units[province.getIndex()] = encodeUnit(unit);
+		incrementVersion();
+	}// setUnit()
+	
+	
+	/** Determines if there is a unit present in this province. */
+	@Override
+	public boolean hasUnit(Province province)
+	{
+		return (units[province.getIndex()] != 0);
+	}// hasUnit()
+	
+	
+	/** 
+	*	Get the unit contained in this Province. Returns null if no unit exists. 
+	*	A new Unit object is returned for each call.
+	*/
+	@Override
+	public Unit getUnit(Province province)
+	{
+		return decodeUnit(units[province.getIndex()]);
+	}// getUnit()
+	
+	
+	/** Test if the given type of unit is contained in this Province. */
+	@Override
+	public boolean hasUnit(Province province, Unit.Type unitType)
+	{
+		final int code = units[province.getIndex()];
+		return (code != 0 && TYPES[code & TYPE_MASK].equals(unitType));
+	}// hasUnit()
+	
+	
+	/** Test if the given type of unit is contained in this Province. */
+	@Override
+	public boolean hasDislodgedUnit(Province province, Unit.Type unitType)
+	{
+		final int code = dislodged[province.getIndex()];
+		return (code != 0 && TYPES[code & TYPE_MASK].equals(unitType));
+	}// hasDislodgedUnit()
+	
+	
+	/** Set the dislodged unit contained in this province; null to eliminate an existing unit. */
+	@Override
+	public void setDislodgedUnit(Province province, Unit unit)
+	{
+		dislodged[province.getIndex()] = encodeUnit(unit);
+		incrementVersion();
+	}// setDislodgedUnit()
+	
+	
+	/** 
+	*	Get the dislodged unit in this Province. Returns null if no dislodged unit exists. 
+	*	A new Unit object is returned for each call.
+	*/
+	@Override
+	public Unit getDislodgedUnit(Province province)
+	{
+		return decodeUnit(dislodged[province.getIndex()]);
+	}// getDislodgedUnit()
+	
+	
+	/** Sets the Power that last occupied a given space. */
+	@Override
+	public void setLastOccupier(Province province, Power power)
+	{
+		lastOccupier[province.getIndex()] = encodePower(power);
+		incrementVersion();
+	}// setLastOccupier()
+	
+	
+	/** Returns the Power that last occupied a given space. */
+	@Override
+	public Power getLastOccupier(Province province)
+	{
+		return decodePower(lastOccupier[province.getIndex()]);
+	}// getLastOccupier()
+	
+	
+	/** Determines if there is a dislodged unit present in this province. */
+	@Override
+	public boolean hasDislodgedUnit(Province province)
+	{
+		return (dislodged[province.getIndex()] != 0);
+	}// hasDislodgedUnit()
+	
+	
+	/** Returns an array of provinces with non-dislodged units */
+	@Override
+	public Province[] getUnitProvinces()
+	{
+		return getProvincesWithUnits(units, 0);
+	}// getUnitProvinces()
+	
+	
+	/** Returns an array of provinces with dislodged units */
+	@Override
+	public Province[] getDislodgedUnitProvinces()
+	{
+		return getProvincesWithUnits(dislodged, 0);
+	}// getDislodgedUnitProvinces()
+	
+	
+	/** Gets all the Provinces with non-dislodged Units for a particular power. */
+	@Override
+	public Province[] getUnitProvinces(Power power)
+	{
+		return getProvincesWithUnits(units, getPowerCode(power));
+	}// getUnitProvinces()
+	
+	
+	/** Gets all the Provinces with dislodged Units for a particular power. */
+	@Override
+	public Province[] getDislodgedUnitProvinces(Power power)
+	{
+		return getProvincesWithUnits(dislodged, getPowerCode(power));
+	}// getDislodgedUnitProvinces()
+	
+	
+	/** Returns the number of provinces with non-dislodged units */
+	@Override
+	public int getUnitCount()
+	{
+		return countNonZero(units);
+	}// getUnitCount()
+	
+	
+	/** Returns the number of provinces with dislodged units */
+	@Override
+	public int getDislodgedUnitCount()
+	{
+		return countNonZero(dislodged);
+	}// getDislodgedUnitCount()
+	
+	
+	/** Returns an array of provinces with home supply centers */
+	@Override
+	public Province[] getHomeSupplyCenters()
+	{
+		return getProvincesWithPower(scHome, 0);
+	}// getHomeSupplyCenters()
+	
+	
+	/** Returns an Array of the Home Supply Centers for a given power (whether or not they are owned by that power) */
+	@Override
+	public Province[] getHomeSupplyCenters(Power power)
+	{
+		return getProvincesWithPower(scHome, getPowerCode(power));
+	}// getHomeSupplyCenters()
+	
+	
+	/** 
+	*	Determines if a Power has at least one owned Home Supply Center. 
+	*	<p>
+	*	An owned home supply center need not have a unit present.
+	*/
+	@Override
+	public boolean hasAnOwnedHomeSC(Power power)
+	{
+		final int code = getPowerCode(power);
+		for(int i=0; i<scHome.length; i++)
+		{
+			if((scHome[i] & 0xFF) == code && (scOwner[i] & 0xFF) == code)
+			{
+				return true;
+			}
+		}
+		
+		return false;
+	}// hasAnOwnedHomeSC()
+	
+	
+	/** Returns an Array of the owned Supply Centers for a given Power (whether or not they are home supply centers) */
+	@Override
+	public Province[] getOwnedSupplyCenters(Power power)
+	{
+		return getProvincesWithPower(scOwner, getPowerCode(power));
+	}// getOwnedSupplyCenters()
+	
+	
+	/** Returns an array of provinces with owned supply centers */
+	@Override
+	public Province[] getOwnedSupplyCenters()
+	{
+		return getProvincesWithPower(scOwner, 0);
+	}// getOwnedSupplyCenters()
+	
+	
+	/** Deep clone of the contents of this Position. */
+	@Override
+	public Object clone()
+	{
+		final CompactPosition pos = cloneExceptUnits();
+		System.arraycopy(units, 0, pos.units, 0, units.length);
+		System.arraycopy(dislodged, 0, pos.dislodged, 0, dislodged.length);
+		return pos;
+	}// clone()
+	
+	
+	/** 
+	*	Deep clone of everything *except* dislodged & non-dislodged units;
+	*	(e.g., SC ownership, Power Info, etc.)
+	*/
+	@Override
+	public CompactPosition cloneExceptUnits()
+	{
+		final CompactPosition pos = new CompactPosition(map);
+		System.arraycopy(scOwner, 0, pos.scOwner, 0, scOwner.length);
+		System.arraycopy(scHome, 0, pos.scHome, 0, scHome.length);
+		System.arraycopy(lastOccupier, 0, pos.lastOccupier, 0, lastOccupier.length);
+		System.arraycopy(eliminated, 0, pos.eliminated, 0, eliminated.length);
+		return pos;
+	}// cloneExceptUnits()
+	
+	
+	/** Deep clone of everything <b>except</b> dislodged units. */
+	@Override
+	public CompactPosition cloneExceptDislodged()
+	{
+		final CompactPosition pos = cloneExceptUnits();
+		System.arraycopy(units, 0, pos.units, 0, units.length);
+		return pos;
+	}// cloneExceptDislodged()
+	
+	
+	/** Creates a (non-compact) Position with the same contents. */
+	Position toPosition()
+	{
+		final Position position = new Position(map);
+		final Province[] provinces = map.getProvinces();
+		for(int i=0; i<provinces.length; i++)
+		{
+			final Province province = provinces[i];
+			if(units[i] != 0)
+			{
+				position.setUnit(province, decodeUnit(units[i]));
+			}
+			if(dislodged[i] != 0)
+			{
+				position.setDislodgedUnit(province, decodeUnit(dislodged[i]));
+			}
+			if(scOwner[i] != 0)
+			{
+				position.setSupplyCenterOwner(province, decodePower(scOwner[i]));
+			}
+			if(scHome[i] != 0)
+			{
+				position.setSupplyCenterHomePower(province, decodePower(scHome[i]));
+			}
+			if(lastOccupier[i] != 0)
+			{
+				position.setLastOccupier(province, decodePower(lastOccupier[i]));
+			}
+		}
+		
+		final Power[] powers = map.getPowers();
+		for(int i=0; i<powers.length; i++)
+		{
+			if(eliminated[i])
+			{
+				position.setEliminated(powers[i], true);
+			}
+		}
+		
+		return position;
+	}// toPosition()
+	
+	
+	/** 
+	*	Returns the index of the given Power in Map.getPowers(), or -1 if
+	*	the Power is null or not found. There are few Powers, so a linear
+	*	search is used.
+	*/
+	private int getPowerIndex(Power power)
+	{
+		if(power != null)
+		{
+			final Power[] powers = map.getPowers();
+			for(int i=0; i<powers.length; i++)
+			{
+				if(powers[i] == power)
+				{
+					return i;
+				}
+			}
+		}
+		
+		return -1;
+	}// getPowerIndex()
+	
+	
+	/** 
+	*	Power code used for queries; -1 (which matches nothing) if 
+	*	the Power is null or not found.
+	*/
+	private int getPowerCode(Power power)
+	{
+		final int idx = getPowerIndex(power);
+		return (idx < 0) ? -1 : (idx + 1);
+	}// getPowerCode()
+	
+	
+	/** Encodes a Power; 0 is returned for null. */
+	private byte encodePower(Power power)
+	{
+		if(power == null)
+		{
+			return 0;
+		}
+		
+		final int idx = getPowerIndex(power);
+		if(idx < 0)
+		{
+			throw new IllegalArgumentException("power not in map: "+power);
+		}
+		
+		return (byte) (idx + 1);
+	}// encodePower()
+	
+	
+	/** Decodes a Power; 0 returns null. */
+	private Power decodePower(int code)
+	{
+		code &= 0xFF;
+		return (code == 0) ? null : map.getPowers()[code - 1];
+	}// decodePower()
+	
+	
+	/** Encodes a Unit; 0 is returned for null. */
+	private short encodeUnit(Unit unit)
+	{
+		if(unit == null)
+		{
+			return 0;
+		}
+		
+		int typeCode = 0;
+		for(int i=1; i<TYPES.length; i++)
+		{
+			if(TYPES[i] == unit.getType())
+			{
+				typeCode = i;
+				break;
+			}
+		}
+		
+		if(typeCode == 0)
+		{
+			throw new IllegalArgumentException("unsupported unit type: "+unit.getType());
+		}
+		
+		return (short) (typeCode 
+			| (unit.getCoast().getIndex() << COAST_SHIFT)
+			| ((encodePower(unit.getPower()) & 0xFF) << POWER_SHIFT));
+	}// encodeUnit()
+	
+	
+	/** Decodes a Unit; 0 returns null. */
+	private Unit decodeUnit(int code)
+	{
+		if(code == 0)
+		{
+			return null;
+		}
+		
+		final Unit unit = new Unit(decodePower(code >>> POWER_SHIFT), TYPES[code & TYPE_MASK]);
+		unit.setCoast(COASTS[(code >>> COAST_SHIFT) & COAST_MASK]);
+		return unit;
+	}// decodeUnit()
+	
+	
+	/** Count of non-zero (unit present) entries. */
+	private static int countNonZero(short[] unitArray)
+	{
+		int count = 0;
+		for(int i=0; i<unitArray.length; i++)
+		{
+			if(unitArray[i] != 0)
+			{
+				count++;
+			}
+		}
+		
+		return count;
+	}// countNonZero()
+	
+	
+	/** 
+	*	Provinces with a unit in the given array; if powerCode is nonzero, 
+	*	only units of that power are included.
+	*/
+	private Province[] getProvincesWithUnits(short[] unitArray, int powerCode)
+	{
+		makeTmpProvArray();
+		
+		int arrSize = 0;
+		for(int i=0; i<unitArray.length; i++)
+		{
+			final int code = unitArray[i];
+			if(code != 0 && (powerCode == 0 || (code >>> POWER_SHIFT) == powerCode))
+			{
+				tmpProvArray[arrSize] = map.reverseIndex(i);
+				arrSize++;
+			}
+		}
+		
+		Province[] p = new Province[arrSize];
+		System.arraycopy(tmpProvArray, 0, p, 0, arrSize);
+		return p;
+	}// getProvincesWithUnits()
+	
+	
+	/** 
+	*	Provinces with a power in the given array; if powerCode is nonzero, 
+	*	only that power is matched, otherwise any power matches.
+	*/
+	private Province[] getProvincesWithPower(byte[] powerArray, int powerCode)
+	{
+		makeTmpProvArray();
+		
+		int arrSize = 0;
+		for(int i=0; i<powerArray.length; i++)
+		{
+			final int code = powerArray[i] & 0xFF;
+			if((powerCode == 0) ? (code != 0) : (code == powerCode))
+			{
+				tmpProvArray[arrSize] = map.reverseIndex(i);
+				arrSize++;
+			}
+		}
+		
+		Province[] p = new Province[arrSize];
+		System.arraycopy(tmpProvArray, 0, p, 0, arrSize);
+		return p;
+	}// getProvincesWithPower()
+	
+	
+	/** See Position.makeTmpProvArray() */
+	private final void makeTmpProvArray()
+	{
+		if(tmpProvArray == null)
+		{
+			tmpProvArray = new Province[units.length];
+		}
+	}// makeTmpProvArray()
+}// class CompactPosition
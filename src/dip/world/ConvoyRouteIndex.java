@@ -0,0 +1,340 @@
+//
+//  @(#)ConvoyRouteIndex.java	1.00	10/2004
+//
+//  Copyright 2004 the jDip development team. All rights reserved.
+//  Use is subject to license terms.
+//
+//
+//  This program is free software; you can redistribute it and/or modify
+//  it under the terms of the GNU General Public License as published by
+//  the Free Software Foundation; either version 2 of the License, or
+//  (at your option) any later version.
+//
+//  This program is distributed in the hope that it will be useful,
+//  but WITHOUT ANY WARRANTY; without even the implied warranty of
+//  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+//  GNU General Public License for more details.
+//
+//  You should have received a copy of the GNU General Public License
+//  along with this program; if not, write to the Free Software
+//  Foundation, Inc., 675 Mass Ave, Cambridge, MA 02139, USA.
+//  Or from http://www.gnu.org/
+//
+package dip.world;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ *	An index of the sea paths between pairs of land Provinces on a Map, 
+ *	used by Path.findAllSeaPaths().
+ *	<p>
+ *	The simple sea paths between two Provinces (via sea or convoyable 
+ *	coastal provinces, excluding the source and destination) are computed 
+ *	once, when first requested, shortest first, and retained as 
+ *	province-index arrays: all paths of up to 1, 2, ... sea provinces, for 
+ *	the greatest length (at most {@link #setMaxPathLength(int)}) at which 
+ *	there are no more than a fixed number of paths. 
+ *	<p>
+ *	A search then only filters the retained paths with its FAPEvaluator, 
+ *	if no accepted path can be longer than the indexed length: that is, 
+ *	if no more sea provinces than that length are accepted, and reachable 
+ *	from the source through accepted provinces (for example, a chain of 
+ *	at most 6 fleets). Otherwise, the Provinces are searched directly. Thus
+ *	results are always complete, and are in the same order as the 
+ *	tree-based search in Path. Each Province is evaluated at most once per 
+ *	search.
+ *	<p>
+ *	This class is MT safe. An index is created per Map; see Map.getConvoyRouteIndex().
+ */
+public final class ConvoyRouteIndex {
+
+    /** Default maximum number of sea provinces in an indexed path. */
+    public static final int DEFAULT_MAX_PATH_LENGTH = 6;
+    // maximum number of paths indexed for a pair of provinces
+    private static final int MAX_PATHS = 1024;
+    // indexed length, when all paths are indexed
+    private static final int ALL_LENGTHS = Integer.MAX_VALUE;
+    // evaluation memo values
+    private static final byte UNKNOWN = 0;
+    private static final byte ACCEPTED = 1;
+    private static final byte REJECTED = 2;
+    private static volatile int maxPathLength = DEFAULT_MAX_PATH_LENGTH;
+    // lookups answered by an index, and by a search (for all Maps)
+    private static final AtomicLong indexedLookups = new AtomicLong();
+    private static final AtomicLong searchedLookups = new AtomicLong();
+    // shorter paths first; otherwise search order
+    private static final Comparator<int[]> LENGTH_COMPARATOR = new Comparator<int[]>() {
+
+        @Override
+        public int compare(int[] p1, int[] p2) {
+            return p1.length - p2.length;
+        }
+    };
+    // instance fields
+    private final Province[] provinces;
+    private final int[][] adjacent;		// touching adjacency, by index
+    private final boolean[] isConvoyable;	// sea or convoyable coast
+    private final int maxLength;
+    private final java.util.Map<Integer, Routes> routes = new ConcurrentHashMap<Integer, Routes>();
+
+    /** Creates a ConvoyRouteIndex for the given Map. */
+    ConvoyRouteIndex(dip.world.Map map) {
+        provinces = map.getProvinces();
+        adjacent = new int[provinces.length][];
+        isConvoyable = new boolean[provinces.length];
+        maxLength = maxPathLength;
+
+        for (int i = 0; i < provinces.length; i++) {
+            final List<Location> locs = provinces[i].getAdjacentLocations(Coast.TOUCHING);
+            adjacent[i] = new int[locs.size()];
+            for (int j = 0; j < adjacent[i].length; j++) {
+                adjacent[i][j] = locs.get(j).getProvince().getIndex();
+            }
+
+            isConvoyable[i] = (provinces[i].isConvoyableCoast() || provinces[i].isSea());
+        }
+    }// ConvoyRouteIndex()
+
+    /** 
+     *	Sets the maximum number of sea provinces in an indexed path. This 
+     *	affects indices created after this is set. Must be at least 1.
+     */
+    public static void setMaxPathLength(int value) {
+        if (value < 1) {
+            throw new IllegalArgumentException("bad length: " + value);
+        }
+
+        maxPathLength = value;
+    }// setMaxPathLength()
+
+    /** Gets the maximum number of sea provinces in an indexed path. */
+    public static int getMaxPathLength() {
+        return maxPathLength;
+    }// getMaxPathLength()
+
+    /** Number of searches (for all Maps) answered from an index. */
+    public static long getIndexedLookups() {
+        return indexedLookups.get();
+    }// getIndexedLookups()
+
+    /** Number of searches (for all Maps) that could not use an index. */
+    public static long getSearchedLookups() {
+        return searchedLookups.get();
+    }// getSearchedLookups()
+
+    /** Resets the lookup counts. */
+    public static void resetLookupCounts() {
+        indexedLookups.set(0L);
+        searchedLookups.set(0L);
+    }// resetLookupCounts()
+
+    /** 
+     *	Finds all sea paths from src to dest, subject to the given evaluator. 
+     *	See Path.findAllSeaPaths(); src and dest must be different Provinces.
+     */
+    Province[][] findAllSeaPaths(Path.FAPEvaluator evaluator, Province src, Province dest) {
+        final int srcIdx = src.getIndex();
+        final int destIdx = dest.getIndex();
+        final byte[] memo = new byte[provinces.length];
+
+        final Integer key = Integer.valueOf(srcIdx * provinces.length + destIdx);
+        Routes r = routes.get(key);
+        if (r == null) {
+            r = index(srcIdx, destIdx);
+            routes.put(key, r);
+        }
+
+        final List<int[]> paths;
+        if (r.paths != null && (r.length == ALL_LENGTHS || isWithin(evaluator, memo, srcIdx, destIdx, r.length))) {
+            indexedLookups.incrementAndGet();
+            paths = new ArrayList<int[]>(r.paths.length);
+            for (final int[] path : r.paths) {
+                if (isAccepted(evaluator, memo, path)) {
+                    paths.add(path);
+                }
+            }
+        } else {
+            searchedLookups.incrementAndGet();
+            paths = search(evaluator, memo, srcIdx, destIdx, Integer.MAX_VALUE, Integer.MAX_VALUE).found;
+        }
+
+        final Province[][] result = new Province[paths.size()][];
+        for (int i = 0; i < result.length; i++) {
+            final int[] path = paths.get(i);
+            result[i] = new Province[path.length];
+            for (int j = 0; j < path.length; j++) {
+                result[i][j] = provinces[path[j]];
+            }
+        }
+
+        return result;
+    }// findAllSeaPaths()
+
+    /** 
+     *	Index the paths from src to dest: all paths of up to 1, 2, ... 
+     *	maxLength sea provinces, while there are at most MAX_PATHS.
+     */
+    private Routes index(int src, int dest) {
+        Routes indexed = new Routes(null, -1);
+        for (int len = 1; len <= maxLength; len++) {
+            final Search s = search(null, null, src, dest, len, MAX_PATHS);
+            if (s.isOverflow) {
+                break;
+            }
+
+            indexed = new Routes(s.found, s.isTruncated ? len : ALL_LENGTHS);
+            if (!s.isTruncated) {
+                // there are no longer paths
+                break;
+            }
+        }
+
+        return indexed;
+    }// index()
+
+    /** 
+     *	True if at most limit sea provinces, accepted by the evaluator, can 
+     *	be reached from src through accepted sea provinces (not through 
+     *	dest); no accepted path is then longer than limit.
+     */
+    private boolean isWithin(Path.FAPEvaluator evaluator, byte[] memo, int src, int dest, int limit) {
+        final boolean[] isSeen = new boolean[provinces.length];
+        final int[] queue = new int[provinces.length];
+        int head = 0;
+        int tail = 0;
+        isSeen[src] = true;
+        isSeen[dest] = true;
+        queue[tail++] = src;
+
+        while (head < tail) {
+            for (final int adj : adjacent[queue[head++]]) {
+                if (!isSeen[adj] && isConvoyable[adj] && evaluate(evaluator, memo, adj)) {
+                    if (tail > limit) {
+                        // src and limit provinces are in the queue
+                        return false;
+                    }
+
+                    isSeen[adj] = true;
+                    queue[tail++] = adj;
+                }
+            }
+        }
+
+        return true;
+    }// isWithin()
+
+    /** True if the evaluator accepts all sea provinces on the path */
+    private boolean isAccepted(Path.FAPEvaluator evaluator, byte[] memo, int[] path) {
+        for (int i = 1; i < path.length - 1; i++) {
+            if (!evaluate(evaluator, memo, path[i])) {
+                return false;
+            }
+        }
+
+        return true;
+    }// isAccepted()
+
+    /** Evaluate a province, at most once per search. A null evaluator accepts all. */
+    private boolean evaluate(Path.FAPEvaluator evaluator, byte[] memo, int idx) {
+        if (evaluator == null) {
+            return true;
+        }
+
+        if (memo[idx] == UNKNOWN) {
+            memo[idx] = evaluator.evaluate(provinces[idx]) ? ACCEPTED : REJECTED;
+        }
+
+        return (memo[idx] == ACCEPTED);
+    }// evaluate()
+
+    /**
+     *	Depth-first search for all simple paths from src to dest, via at most
+     *	maxLen sea provinces accepted by the evaluator. The search is abandoned 
+     *	if more than maxCount paths are found. Paths are sorted by length.
+     */
+    private Search search(Path.FAPEvaluator evaluator, byte[] memo,
+            int src, int dest, int maxLen, int maxCount) {
+        final Search s = new Search(evaluator, memo, dest, maxLen, maxCount);
+        s.path[0] = src;
+        s.onPath[src] = true;
+        s.visit(0);
+
+        // depth-first search finds paths in lexical order; a stable
+        // sort by length gives the breadth-first order of the tree search.
+        Collections.sort(s.found, LENGTH_COMPARATOR);
+        return s;
+    }// search()
+
+    /** State of a single search. */
+    private final class Search {
+
+        private final Path.FAPEvaluator evaluator;
+        private final byte[] memo;
+        private final int dest;
+        private final int maxLen;
+        private final int maxCount;
+        private final int[] path = new int[provinces.length + 1];
+        private final boolean[] onPath = new boolean[provinces.length];
+        private final List<int[]> found = new ArrayList<int[]>();
+        private boolean isTruncated = false;	// longer paths may exist
+        private boolean isOverflow = false;		// more than maxCount paths
+
+        private Search(Path.FAPEvaluator evaluator, byte[] memo, int dest, int maxLen, int maxCount) {
+            this.evaluator = evaluator;
+            this.memo = memo;
+            this.dest = dest;
+            this.maxLen = maxLen;
+            this.maxCount = maxCount;
+        }// Search()
+
+        /** Visit the node at path[depth]; returns false if the search was abandoned */
+        private boolean visit(int depth) {
+            for (final int adj : adjacent[path[depth]]) {
+                if (adj == dest) {
+                    final int[] p = new int[depth + 2];
+                    System.arraycopy(path, 0, p, 0, depth + 1);
+                    p[depth + 1] = dest;
+                    found.add(p);
+
+                    if (found.size() > maxCount) {
+                        isOverflow = true;
+                        return false;
+                    }
+                } else if (isConvoyable[adj] && !onPath[adj] && evaluate(evaluator, memo, adj)) {
+                    if (depth >= maxLen) {
+                        isTruncated = true;
+                    } else {
+                        path[depth + 1] = adj;
+                        onPath[adj] = true;
+                        final boolean isOk = visit(depth + 1);
+                        onPath[adj] = false;
+
+                        if (!isOk) {
+                            return false;
+                        }
+                    }
+                }
+            }
+
+            return true;
+        }// visit()
+    }// inner class Search
+
+    /** Indexed paths between two provinces */
+    private static final class Routes {
+
+        private final int[][] paths;
+        // paths with up to this many sea provinces are indexed; -1 if none
+        private final int length;
+
+        private Routes(List<int[]> pathList, int length) {
+            this.paths = (pathList == null) ? null : pathList.toArray(new int[pathList.size()][]);
+            this.length = length;
+        }// Routes()
+    }// nested class Routes
+}// class ConvoyRouteIndex
@@ -0,0 +1,402 @@
+//
+//  @(#)GameArchive.java	1.00	10/2004
+//
+//  Copyright 2004 the jDip development team. All rights reserved.
+//  Use is subject to license terms.
+//
+//
+//  This program is free software; you can redistribute it and/or modify
+//  it under the terms of the GNU General Public License as published by
+//  the Free Software Foundation; either version 2 of the License, or
+//  (at your option) any later version.
+//
+//  This program is distributed in the hope that it will be useful,
+//  but WITHOUT ANY WARRANTY; without even the implied warranty of
+//  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+//  GNU General Public License for more details.
+//
+//  You should have received a copy of the GNU General Public License
+//  along with this program; if not, write to the Free Software
+//  Foundation, Inc., 675 Mass Ave, Cambridge, MA 02139, USA.
+//  Or from http://www.gnu.org/
+//
+package dip.world;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.StreamCorruptedException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+import dip.net.message.LogPressStore;
+
+/**
+ * A single file holding many games, for bulk analysis.
+ * <p>
+ * Each game is stored in the binary game file format (see
+ * {@link BinaryWorldFormat}), one after another, followed by an index of
+ * game names, offsets and lengths, and a fixed-size footer pointing at the
+ * index. When an archive is opened, only the index is read (it is
+ * memory-mapped); a game's data is memory-mapped when the game is
+ * requested, and its Map, turns and Positions can be read from the mapped
+ * buffer individually, without building a World.
+ * <p>
+ * The press of each game is stored with it (rather than in a log next to
+ * the archive; see LogPressStore), so Worlds read from an archive have
+ * their press.
+ * <p>
+ * Archives are created with a {@link GameArchive.Writer}. GameArchive
+ * objects are thread-safe; Game objects may be used by one thread at a
+ * time.
+ */
+public final class GameArchive {
+    /** File magic number ("JDPA") */
+    static final int MAGIC = 0x4A445041;
+    /** Current archive format version */
+    public static final int VERSION = 1;
+
+    // header: magic, version. footer: index offset, index length, magic
+    private static final int HEADER_LENGTH = 8;
+    private static final int FOOTER_LENGTH = 16;
+    private static final int BUFFER_SIZE = 65536;
+
+    private final RandomAccessFile raf;
+    private final FileChannel channel;
+    private final String[] names;
+    private final long[] offsets;
+    private final long[] lengths;
+
+    private GameArchive(final RandomAccessFile raf) throws IOException {
+        this.raf = raf;
+        this.channel = raf.getChannel();
+
+        final long length = channel.size();
+        if (length < HEADER_LENGTH + FOOTER_LENGTH) {
+            throw new StreamCorruptedException("truncated game archive");
+        }
+
+        final ByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, HEADER_LENGTH);
+        if (header.getInt(0) != MAGIC) {
+            throw new StreamCorruptedException("not a game archive");
+        }
+
+        final int version = header.getInt(4);
+        if (version > VERSION) {
+            throw new IOException("unsupported game archive version: " + version);
+        }
+
+        final ByteBuffer footer = channel.map(FileChannel.MapMode.READ_ONLY, length - FOOTER_LENGTH, FOOTER_LENGTH);
+        final long indexOffset = footer.getLong(0);
+        final int indexLength = footer.getInt(8);
+        if (footer.getInt(12) != MAGIC || indexOffset < HEADER_LENGTH || indexLength < 0
+                || indexOffset + indexLength > length - FOOTER_LENGTH) {
+            throw new StreamCorruptedException("invalid game archive index");
+        }
+
+        final MappedByteBuffer index = channel.map(FileChannel.MapMode.READ_ONLY, indexOffset, indexLength);
+        final DataInputStream in = new DataInputStream(new BinaryWorldFormat.ByteBufferInputStream(index));
+        final int count = in.readInt();
+        if (count < 0) {
+            throw new StreamCorruptedException("invalid game archive index");
+        }
+
+        names = new String[count];
+        offsets = new long[count];
+        lengths = new long[count];
+        for (int i = 0; i < count; i++) {
+            names[i] = in.readUTF();
+            offsets[i] = in.readLong();
+            lengths[i] = in.readLong();
+            if (offsets[i] < HEADER_LENGTH || lengths[i] < 0 || lengths[i] > Integer.MAX_VALUE
+                    || offsets[i] + lengths[i] > indexOffset) {
+                throw new StreamCorruptedException("invalid game archive entry: " + i);
+            }
+        }
+    }// GameArchive()
+
+    /** Opens a game archive, reading its index. */
+    public static GameArchive open(final File file) throws IOException {
+        final RandomAccessFile raf = new RandomAccessFile(file, "r");
+        try {
+            return new GameArchive(raf);
+        } catch (IOException e) {
+            raf.close();
+            throw e;
+        }
+    }// open()
+
+    /** Number of games in the archive. */
+    public int size() {
+        return names.length;
+    }// size()
+
+    /** Name of the given game. */
+    public String getName(final int game) {
+        return names[game];
+    }// getName()
+
+    /** Returns the index of the first game with the given name, or -1. */
+    public int indexOf(final String name) {
+        for (int i = 0; i < names.length; i++) {
+            if (names[i].equals(name)) {
+                return i;
+            }
+        }
+
+        return -1;
+    }// indexOf()
+
+    /** Memory-maps the given game. Only the game's section index is read. */
+    public Game getGame(final int game) throws IOException {
+        final MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, offsets[game], lengths[game]);
+        return new Game(names[game], new BinaryWorldFormat.Reader(buffer));
+    }// getGame()
+
+    /**
+     * Closes the archive file. Games already obtained remain readable until
+     * their buffers are garbage collected.
+     */
+    public void close() throws IOException {
+        raf.close();
+    }// close()
+
+    /**
+     * A game in an archive. Its Map is decoded once, on first use; turns and
+     * Positions are decoded each time they are requested.
+     */
+    public static final class Game {
+        private final String name;
+        private final BinaryWorldFormat.Reader reader;
+        private dip.world.Map map = null;
+        private PositionHistory history = null;
+
+        private Game(final String name, final BinaryWorldFormat.Reader reader) {
+            this.name = name;
+            this.reader = reader;
+        }// Game()
+
+        /** Name of the game. */
+        public String getName() {
+            return name;
+        }// getName()
+
+        /** The game Map. */
+        public dip.world.Map getMap() throws IOException {
+            if (map == null) {
+                map = reader.readMap();
+            }
+            return map;
+        }// getMap()
+
+        /** Number of turns. */
+        public int getTurnCount() {
+            return reader.getTurnCount();
+        }// getTurnCount()
+
+        /** The Phase of the given turn; no data is decoded. */
+        public Phase getPhase(final int turn) {
+            return reader.getPhase(turn);
+        }// getPhase()
+
+        /**
+         * Decodes the given turn. The TurnState is not part of a World;
+         * TurnState.getWorld() returns null.
+         */
+        public TurnState getTurnState(final int turn) throws IOException {
+            return reader.readTurnState(getMap(), turn);
+        }// getTurnState()
+
+        /**
+         * The Position history of the game. Returns null for games written
+         * without one (binary format version 1).
+         */
+        public PositionHistory getPositionHistory() throws IOException {
+            if (history == null) {
+                history = reader.readHistory(getMap());
+            }
+            return history;
+        }// getPositionHistory()
+
+        /**
+         * The Position of the given turn, from the Position history if
+         * possible (without decoding the turn).
+         */
+        public Position getPosition(final int turn) throws IOException {
+            final PositionHistory ph = getPositionHistory();
+            if (ph != null && ph.hasPosition(turn)) {
+                return ph.getPosition(turn);
+            }
+
+            return getTurnState(turn).getPosition();
+        }// getPosition()
+
+        /** Decodes the complete World; its turns are decoded on demand. */
+        public World getWorld() throws IOException {
+            return reader.readWorld();
+        }// getWorld()
+    }// nested class Game
+
+    /**
+     * Creates a game archive. Games are appended with add(); the index is
+     * written by close(). The archive is written to a temporary file, which
+     * replaces the target file when closed.
+     */
+    public static final class Writer {
+        private final File file;
+        private final File temp;
+        private final FileOutputStream fos;
+        private final DataOutputStream out;
+        private final java.util.List<String> names = new java.util.ArrayList<String>();
+        private final java.util.List<long[]> entries = new java.util.ArrayList<long[]>();
+        private long offset = HEADER_LENGTH;
+        private boolean isClosed = false;
+
+        /** Creates a Writer for a new archive. */
+        public Writer(final File file) throws IOException {
+            this.file = file;
+            this.temp = BinaryWorldFormat.createTempFile(file);
+            this.fos = new FileOutputStream(temp);
+            this.out = new DataOutputStream(new BufferedOutputStream(fos, BUFFER_SIZE));
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+        }// Writer()
+
+        /** Adds a World to the archive. */
+        public void add(final String name, final World world) throws IOException {
+            checkOpen();
+            final ByteArrayOutputStream bos = new ByteArrayOutputStream(BUFFER_SIZE);
+            final DataOutputStream dos = new DataOutputStream(bos);
+            BinaryWorldFormat.Snapshot.createWithPress(world).write(dos);
+            dos.close();
+            addEntry(name, bos.toByteArray());
+        }// add()
+
+        /**
+         * Adds a game file to the archive. Binary game files without press
+         * are copied as they are; other game files are opened and converted,
+         * so that their press is included.
+         */
+        public void add(final String name, final File gameFile) throws IOException {
+            checkOpen();
+            if (!BinaryWorldFormat.isBinaryFormat(gameFile)) {
+                addAndClose(name, World.open(gameFile));
+                return;
+            }
+
+            final long length = gameFile.length();
+            if (length > Integer.MAX_VALUE) {
+                throw new IOException("game file too large: " + gameFile);
+            }
+
+            final byte[] data = new byte[(int) length];
+            final DataInputStream in = new DataInputStream(new FileInputStream(gameFile));
+            try {
+                in.readFully(data);
+            } finally {
+                in.close();
+            }
+
+            // validates; the press log, if any, is next to the game file
+            final World world = new BinaryWorldFormat.Reader(ByteBuffer.wrap(data)).readWorld();
+            LogPressStore.attach(world.getPressStore(), gameFile, world.getMap());
+            if (world.getPressStore().getAllMessages().length > 0) {
+                addAndClose(name, world);
+                return;
+            }
+
+            addEntry(name, data);
+        }// add()
+
+        /** Adds a World read from a game file, then closes its press log. */
+        private void addAndClose(final String name, final World world) throws IOException {
+            try {
+                add(name, world);
+            } finally {
+                if (world.getPressStore() instanceof LogPressStore) {
+                    ((LogPressStore) world.getPressStore()).close();
+                }
+            }
+        }// addAndClose()
+
+        /** Number of games added. */
+        public int size() {
+            return names.size();
+        }// size()
+
+        /** Writes the index, and replaces the target file with the archive. */
+        public void close() throws IOException {
+            if (isClosed) {
+                return;
+            }
+            isClosed = true;
+
+            boolean isWritten = false;
+            try {
+                final ByteArrayOutputStream bos = new ByteArrayOutputStream();
+                final DataOutputStream index = new DataOutputStream(bos);
+                index.writeInt(names.size());
+                for (int i = 0; i < names.size(); i++) {
+                    index.writeUTF(names.get(i));
+                    index.writeLong(entries.get(i)[0]);
+                    index.writeLong(entries.get(i)[1]);
+                }
+                index.close();
+                bos.writeTo(out);
+
+                out.writeLong(offset);
+                out.writeInt(bos.size());
+                out.writeInt(MAGIC);
+                out.flush();
+                fos.getFD().sync();
+                isWritten = true;
+            } finally {
+                out.close();
+                if (!isWritten) {
+                    temp.delete();
+                }
+            }
+
+            BinaryWorldFormat.replaceFile(temp, file);
+        }// close()
+
+        /** Discards the archive; the target file is not changed. */
+        public void abort() throws IOException {
+            if (!isClosed) {
+                isClosed = true;
+                out.close();
+                temp.delete();
+            }
+        }// abort()
+
+        /** Writes a game; if this fails, the Writer cannot be used further. */
+        private void addEntry(final String name, final byte[] data) throws IOException {
+            boolean isWritten = false;
+            try {
+                out.write(data);
+                isWritten = true;
+            } finally {
+                if (!isWritten) {
+                    abort();
+                }
+            }
+
+            names.add(name);
+            entries.add(new long[] { offset, data.length });
+            offset += data.length;
+        }// addEntry()
+
+        private void checkOpen() throws IOException {
+            if (isClosed) {
+                throw new IOException("archive closed");
+            }
+        }// checkOpen()
+    }// nested class Writer
+}// class GameArchive
@@ -0,0 +1,431 @@
+//
+//  @(#)LazyTurnStateMap.java	1.00	10/2004
+//
+//  Copyright 2004 the jDip development team. All rights reserved.
+//  Use is subject to license terms.
+//
+//
+//  This program is free software; you can redistribute it and/or modify
+//  it under the terms of the GNU General Public License as published by
+//  the Free Software Foundation; either version 2 of the License, or
+//  (at your option) any later version.
+//
+//  This program is distributed in the hope that it will be useful,
+//  but WITHOUT ANY WARRANTY; without even the implied warranty of
+//  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+//  GNU General Public License for more details.
+//
+//  You should have received a copy of the GNU General Public License
+//  along with this program; if not, write to the Free Software
+//  Foundation, Inc., 675 Mass Ave, Cambridge, MA 02139, USA.
+//  Or from http://www.gnu.org/
+//
+package dip.world;
+
+import java.io.IOException;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+import dip.order.Orderable;
+
+/**
+ * Phase to TurnState map for Worlds read from a binary game file, that
+ * decodes TurnStates from the file on demand.
+ * <p>
+ * Phases are known without decoding any turn, so key operations
+ * (firstKey(), lastKey(), keySet(), containsKey()) are cheap; get() decodes
+ * the turn if it is not in memory. A decoded turn is held until it is
+ * removed from the map, so the same TurnState object is always returned, and
+ * changes made to it by a holder at any later time are kept. Releasing an
+ * unchanged turn is not safe: TurnState does not report changes made to its
+ * Position or to the Lists it hands out, so a turn changed after release
+ * could be collected with its changes.
+ * <p>
+ * A turn that has been modified since it was decoded, or added with put(),
+ * is written in full by a Snapshot; other turns are copied from the game 
+ * file. Modifications are found from the TurnState modification count 
+ * (setters), the Position version, and, for the order and result Lists that
+ * TurnState hands out for in-place changes, by comparing their elements with
+ * those decoded.
+ * <p>
+ * All operations are synchronized. Iterators operate on a snapshot of the
+ * Phases. headMap(), tailMap() and subMap() return (unmodifiable) copies,
+ * which decode every turn in range.
+ */
+final class LazyTurnStateMap extends AbstractMap<Phase, TurnState>
+        implements SortedMap<Phase, TurnState>, BinaryWorldFormat.TurnSource {
+    private final BinaryWorldFormat.Reader reader;
+    private final dip.world.Map map;
+    private final TreeMap<Phase, Slot> slots = new TreeMap<Phase, Slot>();
+    private final Slot[] sections;
+
+    /** Creates a LazyTurnStateMap for all turns in the Reader. */
+    LazyTurnStateMap(final BinaryWorldFormat.Reader reader, final dip.world.Map map) {
+        this.reader = reader;
+        this.map = map;
+        this.sections = new Slot[reader.getTurnCount()];
+        for (int i = 0; i < sections.length; i++) {
+            sections[i] = new Slot(i);
+            slots.put(reader.getPhase(i), sections[i]);
+        }
+    }// LazyTurnStateMap()
+
+    /** Returns the TurnState of the given turn section of the game file. */
+    public synchronized TurnState getTurn(final int turn) throws IOException {
+        if (turn < 0 || turn >= sections.length) {
+            throw new IOException("invalid turn: " + turn);
+        }
+
+        return load(sections[turn]);
+    }// getTurn()
+
+    /** Returns this map. */
+    public SortedMap<Phase, TurnState> getTurnStateMap() {
+        return this;
+    }// getTurnStateMap()
+
+    @Override
+    public synchronized TurnState get(final Object key) {
+        final Slot slot = slots.get(key);
+        if (slot == null) {
+            return null;
+        }
+
+        try {
+            return load(slot);
+        } catch (IOException e) {
+            throw new IllegalStateException("cannot read turn " + key + ": " + e.getMessage(), e);
+        }
+    }// get()
+
+    @Override
+    public synchronized boolean containsKey(final Object key) {
+        return slots.containsKey(key);
+    }// containsKey()
+
+    @Override
+    public synchronized TurnState put(final Phase phase, final TurnState turnState) {
+        if (phase == null || turnState == null) {
+            throw new IllegalArgumentException("null phase or TurnState");
+        }
+
+        final Slot old = slots.put(phase, new Slot(turnState));
+        return (old == null) ? null : old.peek();
+    }// put()
+
+    @Override
+    public synchronized TurnState remove(final Object key) {
+        final Slot old = slots.remove(key);
+        return (old == null) ? null : old.peek();
+    }// remove()
+
+    @Override
+    public synchronized void clear() {
+        slots.clear();
+    }// clear()
+
+    @Override
+    public synchronized int size() {
+        return slots.size();
+    }// size()
+
+    @Override
+    public Set<Phase> keySet() {
+        return new AbstractSet<Phase>() {
+            @Override
+            public Iterator<Phase> iterator() {
+                return new SnapshotIterator<Phase>(getPhases()) {
+                    @Override
+                    Phase get(final Phase phase) {
+                        return phase;
+                    }// get()
+                };
+            }// iterator()
+
+            @Override
+            public boolean contains(final Object o) {
+                return containsKey(o);
+            }// contains()
+
+            @Override
+            public boolean remove(final Object o) {
+                final boolean contained = containsKey(o);
+                LazyTurnStateMap.this.remove(o);
+                return contained;
+            }// remove()
+
+            @Override
+            public int size() {
+                return LazyTurnStateMap.this.size();
+            }// size()
+        };
+    }// keySet()
+
+    @Override
+    public Set<java.util.Map.Entry<Phase, TurnState>> entrySet() {
+        return new AbstractSet<java.util.Map.Entry<Phase, TurnState>>() {
+            @Override
+            public Iterator<java.util.Map.Entry<Phase, TurnState>> iterator() {
+                return new SnapshotIterator<java.util.Map.Entry<Phase, TurnState>>(getPhases()) {
+                    @Override
+                    java.util.Map.Entry<Phase, TurnState> get(final Phase phase) {
+                        return new SimpleImmutableEntry<Phase, TurnState>(phase, LazyTurnStateMap.this.get(phase));
+                    }// get()
+                };
+            }// iterator()
+
+            @Override
+            public int size() {
+                return LazyTurnStateMap.this.size();
+            }// size()
+        };
+    }// entrySet()
+
+    public Comparator<? super Phase> comparator() {
+        return null;
+    }// comparator()
+
+    public synchronized Phase firstKey() {
+        return slots.firstKey();
+    }// firstKey()
+
+    public synchronized Phase lastKey() {
+        return slots.lastKey();
+    }// lastKey()
+
+    public SortedMap<Phase, TurnState> headMap(final Phase toKey) {
+        return copy().headMap(toKey);
+    }// headMap()
+
+    public SortedMap<Phase, TurnState> tailMap(final Phase fromKey) {
+        return copy().tailMap(fromKey);
+    }// tailMap()
+
+    public SortedMap<Phase, TurnState> subMap(final Phase fromKey, final Phase toKey) {
+        return copy().subMap(fromKey, toKey);
+    }// subMap()
+
+    /** Returns an unmodifiable copy of this map; all turns are decoded. */
+    private synchronized SortedMap<Phase, TurnState> copy() {
+        return java.util.Collections.unmodifiableSortedMap(new TreeMap<Phase, TurnState>(this));
+    }// copy()
+
+    /**
+     * Returns the PositionHistory of all turns, using the history stored in
+     * the game file if it is still valid: turns read from the file have not
+     * been modified, replaced or removed, and turns added since come after
+     * them. Returns null if the history cannot be used; no turns are decoded
+     * in that case.
+     */
+    synchronized PositionHistory getPositionHistory() throws IOException {
+        final Phase lastFilePhase = (sections.length == 0) ? null : reader.getPhase(sections.length - 1);
+        for (int i = 0; i < sections.length; i++) {
+            final Slot slot = slots.get(reader.getPhase(i));
+            if (slot != sections[i]) {
+                return null;
+            }
+
+            final TurnState ts = slot.peek();
+            if (ts != null && slot.checkModified(ts)) {
+                return null;
+            }
+        }
+
+        final PositionHistory history = reader.readHistory(map);
+        if (history == null || history.size() != sections.length) {
+            return null;
+        }
+
+        for (final java.util.Map.Entry<Phase, Slot> entry : slots.entrySet()) {
+            final Slot slot = entry.getValue();
+            if (slot.section < 0) {
+                if (lastFilePhase != null && entry.getKey().compareTo(lastFilePhase) <= 0) {
+                    return null;
+                }
+                history.add(entry.getKey(), slot.pinned.getPosition());
+            }
+        }
+
+        return history;
+    }// getPositionHistory()
+
+    /** The Reader that turns are decoded from. */
+    BinaryWorldFormat.Reader getReader() {
+        return reader;
+    }// getReader()
+
+    /**
+     * Returns the turns, in Phase order, for a Snapshot. A turn that has not
+     * been modified, and is at the index of its section in the game file (so
+     * that its reference into the Position history is unchanged) is written
+     * by copying the section; it is not decoded, and its Position is read
+     * from the history of the file. Other turns are decoded if needed.
+     */
+    synchronized List<BinaryWorldFormat.TurnEntry> getTurnEntries() throws IOException {
+        final PositionHistory history = reader.getHistory(map);
+        final List<BinaryWorldFormat.TurnEntry> entries = new ArrayList<BinaryWorldFormat.TurnEntry>(slots.size());
+        int index = 0;
+        for (final java.util.Map.Entry<Phase, Slot> entry : slots.entrySet()) {
+            final Phase phase = entry.getKey();
+            final Slot slot = entry.getValue();
+            final TurnState ts = slot.peek();
+            if (slot.section == index && history != null && history.hasPosition(index)
+                    && (ts == null || !slot.checkModified(ts))) {
+                entries.add(new BinaryWorldFormat.TurnEntry(phase, ts, index, history.getPosition(index)));
+            } else {
+                entries.add(new BinaryWorldFormat.TurnEntry(phase, load(slot), -1, null));
+            }
+
+            index++;
+        }
+
+        return entries;
+    }// getTurnEntries()
+
+    private synchronized List<Phase> getPhases() {
+        return new ArrayList<Phase>(slots.keySet());
+    }// getPhases()
+
+    /** Returns the TurnState of the slot, decoding it if required. */
+    private TurnState load(final Slot slot) throws IOException {
+        TurnState ts = slot.peek();
+        if (ts == null) {
+            ts = reader.readTurnState(map, slot.section);
+            slot.decoded = ts;
+            slot.record(ts);
+        }
+
+        return ts;
+    }// load()
+
+    /** 
+     * A turn; either held by this map (pinned), or decoded from a turn section.
+     * A decoded turn becomes pinned when it is found to be modified.
+     */
+    private static final class Slot {
+        final int section;
+        TurnState pinned = null;
+        TurnState decoded = null;
+        // state of the decoded TurnState
+        int modCount = 0;
+        int positionVersion = 0;
+        Object[] results = null;
+        final java.util.Map<Power, Object[]> orders = new java.util.HashMap<Power, Object[]>();
+
+        Slot(final int section) {
+            this.section = section;
+        }// Slot()
+
+        Slot(final TurnState turnState) {
+            this.section = -1;
+            this.pinned = turnState;
+        }// Slot()
+
+        /** The TurnState, if it has been decoded or put; otherwise null. */
+        TurnState peek() {
+            return (pinned != null) ? pinned : decoded;
+        }// peek()
+
+        /** Records the state of a just-decoded TurnState. */
+        void record(final TurnState ts) {
+            modCount = ts.getModCount();
+            positionVersion = (ts.getPosition() == null) ? 0 : ts.getPosition().getVersion();
+            results = (ts.getResultList() == null) ? null : ts.getResultList().toArray();
+            orders.clear();
+            for (final java.util.Map.Entry<Power, List<Orderable>> entry : ts.getOrderMap().entrySet()) {
+                final List<Orderable> list = entry.getValue();
+                orders.put(entry.getKey(), (list == null) ? null : list.toArray());
+            }
+        }// record()
+
+        /** Pins the (decoded) TurnState if it has been modified; returns true if pinned. */
+        boolean checkModified(final TurnState ts) {
+            if (pinned == null && isModified(ts)) {
+                pinned = ts;
+                decoded = null;
+                results = null;
+                orders.clear();
+            }
+            return (pinned != null);
+        }// checkModified()
+
+        private boolean isModified(final TurnState ts) {
+            if (ts.getModCount() != modCount
+                    || ((ts.getPosition() == null) ? 0 : ts.getPosition().getVersion()) != positionVersion
+                    || !isSame(ts.getResultList(), results)) {
+                return true;
+            }
+
+            // Lists from getOrders() are changed in place. getOrders() adds an
+            // (empty) List for a Power without orders; that is not a change.
+            // Lists are only removed by clearAllOrders(), which is counted.
+            for (final java.util.Map.Entry<Power, List<Orderable>> entry : ts.getOrderMap().entrySet()) {
+                final List<Orderable> list = entry.getValue();
+                if (orders.containsKey(entry.getKey())) {
+                    if (!isSame(list, orders.get(entry.getKey()))) {
+                        return true;
+                    }
+                } else if (list == null || !list.isEmpty()) {
+                    return true;
+                }
+            }
+
+            return false;
+        }// isModified()
+
+        /** True if the List holds the same objects, in order, as the array. */
+        private static boolean isSame(final List<?> list, final Object[] elements) {
+            if (list == null || elements == null) {
+                return (list == null && elements == null);
+            }
+
+            if (list.size() != elements.length) {
+                return false;
+            }
+
+            for (int i = 0; i < elements.length; i++) {
+                if (list.get(i) != elements[i]) {
+                    return false;
+                }
+            }
+
+            return true;
+        }// isSame()
+    }// nested class Slot
+
+    /** Iterator over a snapshot of Phases; remove() removes from the map. */
+    private abstract class SnapshotIterator<T> implements Iterator<T> {
+        private final Iterator<Phase> iter;
+        private Phase last = null;
+
+        SnapshotIterator(final List<Phase> phases) {
+            this.iter = phases.iterator();
+        }// SnapshotIterator()
+
+        abstract T get(Phase phase);
+
+        public boolean hasNext() {
+            return iter.hasNext();
+        }// hasNext()
+
+        public T next() {
+            last = iter.next();
+            return get(last);
+        }// next()
+
+        public void remove() {
+            if (last == null) {
+                throw new IllegalStateException();
+            }
+            LazyTurnStateMap.this.remove(last);
+            last = null;
+        }// remove()
+    }// nested class SnapshotIterator
+}// class LazyTurnStateMap
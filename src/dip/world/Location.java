@@ -22,6 +22,7 @@
 //
 package dip.world;
 
+import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -43,8 +44,10 @@ import dip.order.OrderException;
 *
 *
 */
-public class Location implements Cloneable
+public class Location implements Cloneable, Serializable
 {
+	private static final long serialVersionUID = 1L;
+	
 	/** Constant defining an empty array of Location() objects */
 	public static final List<Location> EMPTY = new ArrayList<Location>(0);
 	
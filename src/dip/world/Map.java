@@ -72,7 +72,10 @@ public class Map implements Serializable
 	
 	// fields created on first-use (by a method)
 	private transient String[] lcPowerNames = null;		// lower case power names & adjectives
-	private transient String[] wsNames = null;			// list of all province names that contain whitespace, "-", or " "
+	private transient volatile NameMatcher nameMatcher = null;	// province & power name matcher; created on first use
+	private transient volatile NameIndex nameIndex = null;		// fuzzy province name index; created on first use
+	private transient volatile short[][] distances = null;	// [src][dest] province touching-distances; see getTouchingDistance()
+	private transient volatile ConvoyRouteIndex convoyRouteIndex = null;	// created on first use
 	
 	
 	
@@ -236,11 +239,12 @@ public class Map implements Serializable
 		// 
 		int bestMatch = Integer.MAX_VALUE;
 		matchPower = null;
+		final int[] row = new int[getMaxPowerNameLength() + 1];
 		for(int i=0; i<lcPowerNames.length; i++)
 		{
 			String name = lcPowerNames[i];
 			
-			final int distance = Distance.getLD(powerName, name);
+			final int distance = NameIndex.getDistance(powerName, name, Integer.MAX_VALUE, row);
 			if(distance < bestMatch)
 			{
 				matchPower = getPower(name);
@@ -308,11 +312,12 @@ public class Map implements Serializable
 		// 
 		int bestMatch = Integer.MAX_VALUE;
 		String bestMatchPowerName = null;
+		final int[] row = new int[getMaxPowerNameLength() + 1];
 		for(int i=0; i<lcPowerNames.length; i++)
 		{
 			String name = lcPowerNames[i];
 			
-			final int distance = Distance.getLD(powerName, name);
+			final int distance = NameIndex.getDistance(powerName, name, Integer.MAX_VALUE, row);
 			if(distance < bestMatch)
 			{
 				bestMatchPowerName = name;
@@ -403,39 +408,21 @@ public class Map implements Serializable
 			return list.get(0);
 		}
 		
+		// find the closest names by Levenshtein distance. If the absolute 
+		// error rate is too high, there is no match; so only names within
+		// that distance are searched. If there are ties, keep them.. for now
+		final List<String> closest = new ArrayList<String>(4);
+		final int bestDist = getNameIndex().findClosest(input, (input.length() / 2), closest);
+		
 		// tie list. Use a Set so that we get no dupes
 		final Set<Province> ties = new HashSet<Province>();
-		
-		// compute Levenshteins on the match
-		// if there are ties, keep them.. for now
-		ties.clear();
-		int bestDist = Integer.MAX_VALUE;
-		for(final String name: names)
+		for(final String name: closest)
 		{
-			// check closeness. Smaller is better.
-			final int distance = Distance.getLD(input, name);
-			if(distance < bestDist)
-			{
-				ties.clear();
-				ties.add( getProvince(name) );
-				bestDist = distance;
-			}
-			else if(distance == bestDist)
-			{
-				ties.add( getProvince(name) );
-			}	
-		}	
-		
-		/*
-		System.out.println("LD input: "+input);
-		System.out.println("   ties: "+ties);
-		System.out.println("   bestDist: "+bestDist);
-		System.out.println("   maxbest: "+((int) (input.length() / 2)));
-		*/
+			ties.add( getProvince(name) );
+		}
 		
-		// if absolute error rate is too high, discard.
 		// if we have >1 unique ties, (or none at all) no match
-		if(bestDist <= (input.length() / 2) && ties.size() == 1)
+		if(bestDist >= 0 && ties.size() == 1)
 		{
 			// there is but one
 			return ties.iterator().next(); 
@@ -494,28 +481,19 @@ public class Map implements Serializable
 			// which can return some very odd results.
 			// for short strings...
 			//
-			for(final String name: names) {
-				if(name.startsWith(input))
-				{
-					ties.add(getProvince(name));
-				}
+			final List<String> matches = new ArrayList<String>(8);
+			getNameIndex().findPrefix(input, matches);
+			for(final String name: matches) {
+				ties.add(getProvince(name));
 			}
 		} else {
 			// compute Levenshteins on the match
 			// if there are ties, keep them.. for now
-			int bestDist = Integer.MAX_VALUE;
-			for(final String name: names) {
-				// check closeness. Smaller is better.
-				final int distance = Distance.getLD(input, name);
-				
-				if(distance < bestDist) {
-					ties.clear();
-					ties.add( getProvince(name) );
-					bestDist = distance;
-				} else if(distance == bestDist) {
-					ties.add( getProvince(name) );
-				}	
-			}	
+			final List<String> matches = new ArrayList<String>(4);
+			getNameIndex().findClosest(input, Integer.MAX_VALUE, matches);
+			for(final String name: matches) {
+				ties.add(getProvince(name));
+			}
 		}
 		
 		return ties;
@@ -564,96 +542,283 @@ public class Map implements Serializable
 	*/
 	public void replaceProvinceNames(StringBuffer sb)
 	{
-		// create the whitespace list, if it doesn't exist.
-		if(wsNames == null)
+		replaceNames(sb, true, false);
+	}// replaceProvinceNames()
+	
+	
+	
+	/**
+	*	Eliminates any Power Names (e.g., "France") after the first whitespace
+	*	character or colon(this is done to prevent elimination of the first power, 
+	*	which is required). 
+	*	<p>
+	*	<b>NOTE: assumes StringBuffer is all lower-case.</b>
+	*	<p>
+	*	This is a special-purpose method for Order parsing.
+	*/
+	public void filterPowerNames(StringBuffer sb)
+	{
+		replaceNames(sb, false, true);
+	}// filterPowerNames()
+	
+	
+	/**
+	*	Equivalent to replaceProvinceNames() followed by filterPowerNames(),
+	*	but both are done in a single scan of the input.
+	*	<p>
+	*	<b>NOTE: assumes StringBuffer is all lower-case.</b>
+	*	<p>
+	*	This is a special-purpose method for Order parsing.
+	*/
+	public void replaceNames(StringBuffer sb)
+	{
+		replaceNames(sb, true, true);
+	}// replaceNames()
+	
+	
+	/**
+	*	Replaces multi-word province names and/or filters power names.
+	*	<p>
+	*	All names are found in one pass by the NameMatcher. Province names 
+	*	are replaced in the same order as by the former search-and-replace 
+	*	loop: longest names first (names of equal length in Map order), each
+	*	at every occurrence that does not overlap a name already replaced. 
+	*	When no province names overlap (the usual case), every occurrence is
+	*	replaced, and no sorting is needed. A power name is deleted only at
+	*	its first occurrence after the first whitespace or colon, and only if 
+	*	that occurrence is preceded by whitespace; longer names are tried first
+	*	(thus "russian" is deleted rather than "russia").
+	*/
+	private void replaceNames(StringBuffer sb, boolean replaceProvinces, boolean filterPowers)
+	{
+		final NameMatcher matcher = getNameMatcher();
+		final int[] matches = matcher.find(sb);
+		final int nMatches = matches.length / 2;
+		if(nMatches == 0)
 		{
-			final List<String> list = new ArrayList<String>(50);
-			for(final String name: names)
+			return;
+		}
+		
+		// select province name replacements first; province names are
+		// replaced before power names are filtered.
+		final boolean[] replace = new boolean[nMatches];
+		final int[] nextReplace = new int[nMatches];	// start of next selected replacement at/after each match
+		if(replaceProvinces)
+		{
+			int end = 0;
+			boolean isOverlapped = false;
+			for(int i=0; i<nMatches; i++)
 			{
-				if(name.indexOf(' ') != -1 || name.indexOf('-') != -1)
+				final int start = matches[2*i];
+				final int id = matches[2*i+1];
+				if(matcher.isProvinceName(id))
 				{
-					list.add(name.toLowerCase());
+					if(start >= end)
+					{
+						replace[i] = true;
+						end = start + matcher.getLength(id);
+					}
+					else
+					{
+						isOverlapped = true;
+					}
 				}
 			}
-			wsNames = list.toArray(new String[list.size()]);
-			
-			// sort array from longest entries to shortest. This 
-			// eliminates errors in partial replacements.
-			Arrays.sort(wsNames, new Comparator<String>() {
-				// longer strings are more negative, thus rise to top
-				@Override
-				public int compare(final String o1, final String o2)
-				{
-					return (o2.length() - o1.length());
-				}// compare()
-				
-				@Override
-				public boolean equals(Object obj) { return false; }
-			});
 			
+			if(isOverlapped)
+			{
+				selectLongestFirst(matcher, matches, replace);
+			}
+		}
+		
+		int next = Integer.MAX_VALUE;
+		for(int i=nMatches-1; i>=0; i--)
+		{
+			if(replace[i])
+			{
+				next = matches[2*i];
+			}
+			nextReplace[i] = next;
 		}
 		
-		// search & replace.
-		for(final String currentName: wsNames) {
-			int idx = 0;
-			int start = sb.indexOf(currentName, idx);
+		// build output
+		final StringBuffer out = new StringBuffer(sb.length());
+		final boolean[] seen = new boolean[matcher.getNameCount()];
+		int breakIdx = -1;	// index (in out) of first whitespace or colon
+		int pos = 0;		// next position (in sb) to copy
+		for(int i=0; i<nMatches; i++)
+		{
+			final int start = matches[2*i];
+			final int id = matches[2*i+1];
+			final int end = start + matcher.getLength(id);
+			
+			if(start < pos)
+			{
+				// overlaps a replaced or deleted name
+				continue;
+			}
 			
-			while(start != -1)
+			if(replace[i])
 			{
-				int end = start + currentName.length();				
-				sb.replace(start, end, getProvince(currentName).getShortName());
-				// repeat search
-				idx = start + currentName.length();
-				start = sb.indexOf(currentName, idx);
+				breakIdx = append(out, sb, pos, start, breakIdx);
+				final String shortName = matcher.getShortName(id);
+				breakIdx = append(out, shortName, 0, shortName.length(), breakIdx);
+				pos = end;
+			}
+			else if(filterPowers && !matcher.isProvinceName(id) && end <= nextReplace[i])
+			{
+				breakIdx = append(out, sb, pos, start, breakIdx);
+				pos = start;
+				
+				if(breakIdx >= 0 && !seen[id])
+				{
+					seen[id] = true;
+					if(out.length() > 0 && Character.isWhitespace(out.charAt(out.length()-1)))
+					{
+						pos = end;
+					}
+				}
 			}
 		}
-	}// replaceProvinceNames()
-	
+		
+		if(pos > 0)
+		{
+			append(out, sb, pos, sb.length(), breakIdx);
+			sb.setLength(0);
+			sb.append(out);
+		}
+	}// replaceNames()
 	
 	
 	/**
-	*	Eliminates any Power Names (e.g., "France") after the first whitespace
-	*	character or colon(this is done to prevent elimination of the first power, 
-	*	which is required). 
-	*	<p>
-	*	<b>NOTE: assumes StringBuffer is all lower-case.</b>
-	*	<p>
-	*	This is a special-purpose method for Order parsing.
+	*	Selects the province name matches to replace when some overlap: 
+	*	longest names first, then by name order, then by position; a match 
+	*	is selected if it does not overlap a match already selected.
 	*/
-	public void filterPowerNames(StringBuffer sb)
+	private static void selectLongestFirst(final NameMatcher matcher, final int[] matches, boolean[] replace)
 	{
-		// find first white space or colon
-		int wsIdx = -1;
-		for(int i=0; i<sb.length(); i++)
+		final List<Integer> order = new ArrayList<Integer>();
+		for(int i=0; i<replace.length; i++)
 		{
-			final char c = sb.charAt(i);
-			if(c == ':' || Character.isWhitespace(c))
+			replace[i] = false;
+			if(matcher.isProvinceName(matches[2*i+1]))
 			{
-				wsIdx = i;
-				break;
+				order.add(Integer.valueOf(i));
 			}
 		}
+		
+		Collections.sort(order, new Comparator<Integer>()
+		{
+			@Override
+			public int compare(final Integer o1, final Integer o2)
+			{
+				final int id1 = matches[2*o1.intValue()+1];
+				final int id2 = matches[2*o2.intValue()+1];
+				if(matcher.getLength(id1) != matcher.getLength(id2))
+				{
+					return matcher.getLength(id2) - matcher.getLength(id1);
+				}
 				
-		// search / delete all names.
-		// just looks for a single power name.
-		// 
-		// preceding character MUST be a whitespace character.
-		// thus "prussia" would not become "p"
-		if(wsIdx >= 0)
+				// then name order; then position (match order)
+				return (id1 != id2) ? (id1 - id2) : (o1.intValue() - o2.intValue());
+			}// compare()
+		});
+		
+		for(final Integer idx : order)
 		{
-			for(int i=0; i<lcPowerNames.length; i++)
+			final int i = idx.intValue();
+			final int start = matches[2*i];
+			final int end = start + matcher.getLength(matches[2*i+1]);
+			
+			boolean isFree = true;
+			for(int j=0; j<replace.length && isFree; j++)
 			{
-				final int idx = sb.indexOf(lcPowerNames[i], wsIdx);
-				if(idx >= 0)
+				if(replace[j])
 				{
-					if(idx != 0 && Character.isWhitespace(sb.charAt(idx-1)))
-					{
-						sb.delete(idx, (idx + lcPowerNames[i].length()));				
-					}
+					final int jStart = matches[2*j];
+					final int jEnd = jStart + matcher.getLength(matches[2*j+1]);
+					isFree = (end <= jStart || start >= jEnd);
 				}
 			}
+			
+			replace[i] = isFree;
 		}
-	}// filterPowerNames()
+	}// selectLongestFirst()
+	
+	
+	/** 
+	*	Appends the given range of text to out. Returns the index of the 
+	*	first whitespace or colon in out, or -1 if none.
+	*/
+	private static int append(StringBuffer out, CharSequence text, int from, int to, int breakIdx)
+	{
+		for(int i=from; i<to; i++)
+		{
+			final char c = text.charAt(i);
+			if(breakIdx < 0 && (c == ':' || Character.isWhitespace(c)))
+			{
+				breakIdx = out.length();
+			}
+			out.append(c);
+		}
+		
+		return breakIdx;
+	}// append()
+	
+	
+	/** Gets the province NameIndex; created on first use. */
+	private NameIndex getNameIndex()
+	{
+		NameIndex index = nameIndex;
+		if(index == null)
+		{
+			// as with getConvoyRouteIndex(), a duplicate index is harmless
+			index = new NameIndex(names);
+			nameIndex = index;
+		}
+		
+		return index;
+	}// getNameIndex()
+	
+	
+	/** Gets the length of the longest lower-case power name or adjective. */
+	private int getMaxPowerNameLength()
+	{
+		int max = 0;
+		for(final String name: lcPowerNames)
+		{
+			max = Math.max(max, name.length());
+		}
+		
+		return max;
+	}// getMaxPowerNameLength()
+	
+	
+	/** Gets the NameMatcher; created on first use. */
+	private NameMatcher getNameMatcher()
+	{
+		NameMatcher matcher = nameMatcher;
+		if(matcher == null)
+		{
+			// province names that contain whitespace or a hyphen
+			final List<String> wsNames = new ArrayList<String>(50);
+			final List<String> shortNames = new ArrayList<String>(50);
+			for(final String name: names)
+			{
+				if(name.indexOf(' ') != -1 || name.indexOf('-') != -1)
+				{
+					wsNames.add(name);
+					shortNames.add(getProvince(name).getShortName());
+				}
+			}
+			
+			matcher = new NameMatcher(wsNames.toArray(new String[wsNames.size()]),
+				shortNames.toArray(new String[shortNames.size()]), lcPowerNames);
+			nameMatcher = matcher;
+		}
+		
+		return matcher;
+	}// getNameMatcher()
 	
 	
 	/**
@@ -812,6 +977,96 @@ public class Map implements Serializable
 	}// reverseIndex()
 	
 	
+	/** 
+	*	Returns the minimum number of moves between two Provinces, using
+	*	'touching' adjacency, or -1 if they are not connected.
+	*	<p>
+	*	The distances between all Provinces are computed upon first use 
+	*	(via a breadth-first search from each Province) and then retained,
+	*	since adjacency never changes once the Map has been created.
+	*/
+	int getTouchingDistance(Province src, Province dest)
+	{
+		short[][] table = distances;
+		if(table == null)
+		{
+			// if multiple threads compute this simultaneously, the result
+			// is the same; only the first assignment is ever used by a caller.
+			table = createDistanceTable();
+			distances = table;
+		}
+		
+		return table[src.getIndex()][dest.getIndex()];
+	}// getTouchingDistance()
+	
+	
+	/** 
+	*	Returns the ConvoyRouteIndex for this Map, which is created
+	*	upon first use.
+	*/
+	ConvoyRouteIndex getConvoyRouteIndex()
+	{
+		ConvoyRouteIndex index = convoyRouteIndex;
+		if(index == null)
+		{
+			// as with getTouchingDistance(), a duplicate index is harmless
+			index = new ConvoyRouteIndex(this);
+			convoyRouteIndex = index;
+		}
+		
+		return index;
+	}// getConvoyRouteIndex()
+	
+	
+	/** Creates the all-pairs touching-distance table. */
+	private short[][] createDistanceTable()
+	{
+		final int len = provinces.length;
+		
+		// adjacency, by index, so that each BFS avoids List iteration
+		final int[][] adjacent = new int[len][];
+		for(int i=0; i<len; i++)
+		{
+			final List<Location> locs = provinces[i].getAdjacentLocations(Coast.TOUCHING);
+			adjacent[i] = new int[locs.size()];
+			for(int j=0; j<adjacent[i].length; j++)
+			{
+				adjacent[i][j] = locs.get(j).getProvince().getIndex();
+			}
+		}
+		
+		final short[][] table = new short[len][];
+		final int[] queue = new int[len];
+		for(int src=0; src<len; src++)
+		{
+			final short[] dist = new short[len];
+			Arrays.fill(dist, (short) -1);
+			dist[src] = 0;
+			
+			int head = 0;
+			int tail = 0;
+			queue[tail++] = src;
+			while(head < tail)
+			{
+				final int p = queue[head++];
+				final short nextDist = (short) (dist[p] + 1);
+				for(final int adj: adjacent[p])
+				{
+					if(dist[adj] < 0)
+					{
+						dist[adj] = nextDist;
+						queue[tail++] = adj;
+					}
+				}
+			}
+			
+			table[src] = dist;
+		}
+		
+		return table;
+	}// createDistanceTable()
+	
+	
 	/** 
 	*	Creats the reverse-sorted power name list required by 
 	*	getFirstPowerToken(), filterPowerNames(), and other methods.
@@ -908,11 +1163,10 @@ public class Map implements Serializable
 	{
 		final HashSet<Province> ties = new HashSet<Province>(41);
 		
-		for(final String provName: names) {
-			if(provName.startsWith(input))
-			{
-				ties.add( getProvince(provName) );	// should NEVER be null
-			}
+		final List<String> matches = new ArrayList<String>(8);
+		getNameIndex().findPrefix(input, matches);
+		for(final String provName: matches) {
+			ties.add( getProvince(provName) );	// should NEVER be null
 		}
 		
 		final ArrayList<Province> al = new ArrayList<Province>(ties.size());
@@ -944,96 +1198,6 @@ public class Map implements Serializable
 	
 	
 	
-	/**
-	*	Gets a Levenshtein Edit Distance
-	*	Code by Michael Gilleland, Merriam Park Software
-	*
-	*/
-	private static class Distance
-	{
-		/** Get minimum of three values */
-		private static int getMin(int a, int b, int c)
-		{
-			int mi;
-			
-			mi = a;
-			if (b < mi) 
-			{
-				mi = b;
-			}
-			
-			if (c < mi)
-			{
-				mi = c;
-			}
-			
-			return mi;
-		}// getMin()
-		
-		/** Compute Levenshtein distance */
-		public static int getLD(String s, String t)
-		{
-			int d[][]; // matrix
-			int n; // length of s
-			int m; // length of t
-			int i; // iterates through s
-			int j; // iterates through t
-			char s_i; // ith character of s
-			char t_j; // jth character of t
-			int cost; // cost
-			
-			// Step 1
-			n = s.length ();
-			m = t.length ();
-			if(n == 0)
-			{
-				return m;
-			}
-			
-			if(m == 0)
-			{
-				return n;
-			}
-			
-			d = new int[n+1][m+1];
-			
-			// Step 2
-			
-			for(i = 0; i <= n; i++)
-			{
-				d[i][0] = i;
-			}
-			
-			for(j = 0; j <= m; j++)
-			{
-				d[0][j] = j;
-			}
-			
-			// Step 3
-			for(i = 1; i <= n; i++)
-			{
-				s_i = s.charAt(i - 1);
-	
-				// Step 4
-				for(j = 1; j <= m; j++)
-				{
-					t_j = t.charAt(j - 1);
-					
-					// Step 5
-					cost = (s_i == t_j) ? 0 : 1;
-					
-					// Step 6
-					d[i][j] = getMin(d[i-1][j]+1, d[i][j-1]+1, d[i-1][j-1] + cost);
-				}// for(j)
-			}// for(i)
-			
-			// Step 7
-			return d[n][m];
-		}// getLD()
-	}// inner class Distance
-	
-	
-	
 	// reserialization: re-create mappings
 	private void readObject(java.io.ObjectInputStream in)
 	throws IOException, ClassNotFoundException
@@ -0,0 +1,266 @@
+//
+//  @(#)NameIndex.java	1.00	10/2004
+//
+//  Copyright 2004 the jDip development team. All rights reserved.
+//  Use is subject to license terms.
+//
+//
+//  This program is free software; you can redistribute it and/or modify
+//  it under the terms of the GNU General Public License as published by
+//  the Free Software Foundation; either version 2 of the License, or
+//  (at your option) any later version.
+//
+//  This program is distributed in the hope that it will be useful,
+//  but WITHOUT ANY WARRANTY; without even the implied warranty of
+//  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+//  GNU General Public License for more details.
+//
+//  You should have received a copy of the GNU General Public License
+//  along with this program; if not, write to the Free Software
+//  Foundation, Inc., 675 Mass Ave, Cambridge, MA 02139, USA.
+//  Or from http://www.gnu.org/
+//
+package dip.world;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ *	A fuzzy-lookup index of (lower case) names, used by Map for matching 
+ *	province names.
+ *	<p>
+ *	Names are held in a BK-tree keyed by Levenshtein distance, so that 
+ *	a closest-name search only computes distances to a fraction of the 
+ *	names. Distances are computed with a single-row, bounded Levenshtein 
+ *	algorithm that stops as soon as the bound is exceeded. A sorted copy 
+ *	of the names is used for prefix matching.
+ *	<p>
+ *	This class is immutable, and thus MT safe. An index is created per Map;
+ *	see Map.getProvinceMatching().
+ */
+final class NameIndex {
+
+    // sorted names, for prefix search
+    private final String[] sorted;
+    // BK-tree; node 0 is the root
+    private final String[] nodeNames;
+    private final int[][] childDistances;	// edge distances, per node
+    private final int[][] childNodes;		// edge targets, parallel to childDistances
+    private final int[] maxChildDistance;	// largest edge distance, per node; 0 if leaf
+    private final int maxNameLength;
+
+
+    /** Creates a NameIndex. Names must be lower case; duplicates are ignored. */
+    NameIndex(Collection<String> names) {
+        sorted = names.toArray(new String[names.size()]);
+        Arrays.sort(sorted);
+
+        final List<String> nn = new ArrayList<String>(sorted.length);
+        final List<List<int[]>> edges = new ArrayList<List<int[]>>(sorted.length);
+        int maxLen = 0;
+        int[] row = new int[1];
+
+        for (final String name : names) {
+            maxLen = Math.max(maxLen, name.length());
+            if (nn.isEmpty()) {
+                nn.add(name);
+                edges.add(new ArrayList<int[]>(4));
+                continue;
+            }
+
+            int node = 0;
+            while (true) {
+                final String nodeName = nn.get(node);
+                if (row.length <= nodeName.length()) {
+                    row = new int[nodeName.length() + 1];
+                }
+
+                final int d = getDistance(name, nodeName, Integer.MAX_VALUE, row);
+                if (d == 0) {
+                    break;	// duplicate
+                }
+
+                int child = -1;
+                for (final int[] edge : edges.get(node)) {
+                    if (edge[0] == d) {
+                        child = edge[1];
+                        break;
+                    }
+                }
+
+                if (child < 0) {
+                    edges.get(node).add(new int[]{d, nn.size()});
+                    nn.add(name);
+                    edges.add(new ArrayList<int[]>(4));
+                    break;
+                }
+
+                node = child;
+            }
+        }
+
+        // flatten
+        final int count = nn.size();
+        nodeNames = nn.toArray(new String[count]);
+        childDistances = new int[count][];
+        childNodes = new int[count][];
+        maxChildDistance = new int[count];
+        for (int n = 0; n < count; n++) {
+            final List<int[]> list = edges.get(n);
+            childDistances[n] = new int[list.size()];
+            childNodes[n] = new int[list.size()];
+            for (int i = 0; i < list.size(); i++) {
+                childDistances[n][i] = list.get(i)[0];
+                childNodes[n][i] = list.get(i)[1];
+                maxChildDistance[n] = Math.max(maxChildDistance[n], childDistances[n][i]);
+            }
+        }
+
+        maxNameLength = maxLen;
+    }// NameIndex()
+
+
+    /**
+     *	Finds the names closest to the input (which must be lower case), by 
+     *	Levenshtein distance. Only names within maxDistance are considered; 
+     *	use Integer.MAX_VALUE for no limit. 
+     *	<p>
+     *	All names at the smallest distance (ties) are added to matches. 
+     *	Returns the smallest distance, or -1 if no name is within maxDistance.
+     */
+    int findClosest(String input, int maxDistance, Collection<String> matches) {
+        if (nodeNames.length == 0 || maxDistance < 0) {
+            return -1;
+        }
+
+        // no distance can exceed the longer of the two strings
+        int best = Math.min(maxDistance, Math.max(input.length(), maxNameLength));
+        boolean found = false;
+        final List<String> ties = new ArrayList<String>(4);
+
+        final int[] row = new int[maxNameLength + 1];
+        final int[] stack = new int[nodeNames.length];
+        int top = 0;
+        stack[top++] = 0;
+
+        while (top > 0) {
+            final int node = stack[--top];
+
+            // a distance beyond (best + largest edge) can neither match nor 
+            // reach a child that matches
+            final int limit = best + maxChildDistance[node];
+            final int d = getDistance(input, nodeNames[node], limit, row);
+
+            if (d <= best) {
+                if (d < best || !found) {
+                    ties.clear();
+                    best = d;
+                    found = true;
+                }
+                ties.add(nodeNames[node]);
+            }
+
+            // triangle inequality: only children with |k - d| <= best can match
+            final int[] keys = childDistances[node];
+            for (int i = 0; i < keys.length; i++) {
+                if (keys[i] >= d - best && keys[i] <= d + best) {
+                    stack[top++] = childNodes[node][i];
+                }
+            }
+        }
+
+        if (!found) {
+            return -1;
+        }
+
+        matches.addAll(ties);
+        return best;
+    }// findClosest()
+
+
+    /**
+     *	Adds all names that start with the given prefix (which must be 
+     *	lower case) to matches.
+     */
+    void findPrefix(String prefix, Collection<String> matches) {
+        int idx = Arrays.binarySearch(sorted, prefix);
+        if (idx < 0) {
+            idx = -(idx + 1);
+        }
+
+        while (idx < sorted.length && sorted[idx].startsWith(prefix)) {
+            matches.add(sorted[idx]);
+            idx++;
+        }
+    }// findPrefix()
+
+
+    /** Returns the Levenshtein distance between two Strings. */
+    static int getDistance(String s, String t) {
+        return getDistance(s, t, Integer.MAX_VALUE, new int[t.length() + 1]);
+    }// getDistance()
+
+
+    /**
+     *	Returns the Levenshtein distance between two Strings, if it is 
+     *	no greater than limit; otherwise, returns a value greater than limit.
+     *	<p>
+     *	row is working storage, and must have at least t.length()+1 elements;
+     *	nothing is allocated.
+     */
+    static int getDistance(String s, String t, int limit, int[] row) {
+        final int n = s.length();
+        final int m = t.length();
+
+        // the distance is never greater than the longer length
+        limit = Math.min(limit, Math.max(n, m));
+
+        if (Math.abs(n - m) > limit) {
+            return limit + 1;
+        }
+
+        if (n == 0 || m == 0) {
+            return Math.max(n, m);
+        }
+
+        for (int j = 0; j <= m; j++) {
+            row[j] = j;
+        }
+
+        for (int i = 1; i <= n; i++) {
+            final char sc = s.charAt(i - 1);
+            int diagonal = row[0];	// d[i-1][j-1]
+            row[0] = i;
+            int rowMin = i;
+
+            for (int j = 1; j <= m; j++) {
+                final int above = row[j];	// d[i-1][j]
+                final int cost = (sc == t.charAt(j - 1)) ? 0 : 1;
+
+                int value = diagonal + cost;
+                if (above + 1 < value) {
+                    value = above + 1;
+                }
+                if (row[j - 1] + 1 < value) {
+                    value = row[j - 1] + 1;
+                }
+
+                diagonal = above;
+                row[j] = value;
+                if (value < rowMin) {
+                    rowMin = value;
+                }
+            }
+
+            // distances never decrease from one row to the next
+            if (rowMin > limit) {
+                return limit + 1;
+            }
+        }
+
+        return (row[m] > limit) ? limit + 1 : row[m];
+    }// getDistance()
+
+}// class NameIndex
@@ -0,0 +1,251 @@
+//
+//  @(#)NameMatcher.java	1.00	10/2004
+//
+//  Copyright 2004 the jDip development team. All rights reserved.
+//  Use is subject to license terms.
+//
+//
+//  This program is free software; you can redistribute it and/or modify
+//  it under the terms of the GNU General Public License as published by
+//  the Free Software Foundation; either version 2 of the License, or
+//  (at your option) any later version.
+//
+//  This program is distributed in the hope that it will be useful,
+//  but WITHOUT ANY WARRANTY; without even the implied warranty of
+//  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+//  GNU General Public License for more details.
+//
+//  You should have received a copy of the GNU General Public License
+//  along with this program; if not, write to the Free Software
+//  Foundation, Inc., 675 Mass Ave, Cambridge, MA 02139, USA.
+//  Or from http://www.gnu.org/
+//
+package dip.world;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.TreeMap;
+
+/**
+ *	An Aho-Corasick automaton over the multi-word province names and the 
+ *	power names (and adjectives) of a Map, used for order parsing. All 
+ *	occurrences of all names in a String are found in a single scan.
+ *	<p>
+ *	Names are identified by an integer id. Province names have the lowest 
+ *	ids, and are replaced by their short names; power names follow. If the 
+ *	same text is both a province and a power name, it is a province name.
+ *	<p>
+ *	This class is immutable, and thus MT safe. A matcher is created per Map; 
+ *	see Map.replaceNames().
+ */
+final class NameMatcher {
+
+    private static final int[] NO_MATCHES = new int[0];
+    private static final int MAX_LENGTH = 0xFFFF;
+    private static final int MAX_NAMES = 0xFFFF;
+
+    // names, by id
+    private final int provinceNameCount;
+    private final int[] lengths;
+    private final String[] shortNames;
+    // automaton; node 0 is the root
+    private final char[][] labels;		// sorted edge labels, per node
+    private final int[][] targets;		// edge targets, parallel to labels
+    private final int[] fail;			// failure link, per node
+    private final int[] terminal;		// id of the name ending at a node, or -1
+    private final int[] output;			// nearest terminal node along the failure links, or -1
+
+
+    /**
+     *	Creates a NameMatcher. Province names are replaced by the short name 
+     *	at the same index. All names must be lower case.
+     */
+    NameMatcher(String[] provinceNames, String[] provinceShortNames, String[] powerNames) {
+        if (provinceNames.length != provinceShortNames.length) {
+            throw new IllegalArgumentException("province name / short name length mismatch");
+        }
+
+        final int count = provinceNames.length + powerNames.length;
+        if (count > MAX_NAMES) {
+            throw new IllegalArgumentException("too many names: " + count);
+        }
+
+        this.provinceNameCount = provinceNames.length;
+        this.shortNames = provinceShortNames.clone();
+        this.lengths = new int[count];
+
+        // build the trie
+        final List<TreeMap<Character, Integer>> edges = new ArrayList<TreeMap<Character, Integer>>(256);
+        final List<Integer> terminals = new ArrayList<Integer>(256);
+        edges.add(new TreeMap<Character, Integer>());
+        terminals.add(Integer.valueOf(-1));
+
+        for (int id = 0; id < count; id++) {
+            final String name = (id < provinceNameCount) ? provinceNames[id] : powerNames[id - provinceNameCount];
+            if (name.length() == 0 || name.length() > MAX_LENGTH) {
+                throw new IllegalArgumentException("bad name: \"" + name + "\"");
+            }
+
+            lengths[id] = name.length();
+
+            int node = 0;
+            for (int i = 0; i < name.length(); i++) {
+                final Character c = Character.valueOf(name.charAt(i));
+                Integer next = edges.get(node).get(c);
+                if (next == null) {
+                    next = Integer.valueOf(edges.size());
+                    edges.get(node).put(c, next);
+                    edges.add(new TreeMap<Character, Integer>());
+                    terminals.add(Integer.valueOf(-1));
+                }
+
+                node = next.intValue();
+            }
+
+            // the first name added wins; provinces are added first.
+            if (terminals.get(node).intValue() < 0) {
+                terminals.set(node, Integer.valueOf(id));
+            }
+        }
+
+        // flatten
+        final int nodeCount = edges.size();
+        labels = new char[nodeCount][];
+        targets = new int[nodeCount][];
+        terminal = new int[nodeCount];
+        for (int n = 0; n < nodeCount; n++) {
+            final TreeMap<Character, Integer> tm = edges.get(n);
+            labels[n] = new char[tm.size()];
+            targets[n] = new int[tm.size()];
+
+            int i = 0;
+            for (final java.util.Map.Entry<Character, Integer> entry : tm.entrySet()) {
+                labels[n][i] = entry.getKey().charValue();
+                targets[n][i] = entry.getValue().intValue();
+                i++;
+            }
+
+            terminal[n] = terminals.get(n).intValue();
+        }
+
+        // failure and output links, breadth-first
+        fail = new int[nodeCount];
+        output = new int[nodeCount];
+        output[0] = -1;
+
+        final int[] queue = new int[nodeCount];
+        int head = 0;
+        int tail = 0;
+        for (final int child : targets[0]) {
+            fail[child] = 0;
+            output[child] = -1;
+            queue[tail++] = child;
+        }
+
+        while (head < tail) {
+            final int node = queue[head++];
+            for (int i = 0; i < labels[node].length; i++) {
+                final char c = labels[node][i];
+                final int child = targets[node][i];
+
+                int f = fail[node];
+                int next = step(f, c);
+                while (next < 0 && f != 0) {
+                    f = fail[f];
+                    next = step(f, c);
+                }
+
+                fail[child] = (next < 0) ? 0 : next;
+                output[child] = (terminal[fail[child]] >= 0) ? fail[child] : output[fail[child]];
+                queue[tail++] = child;
+            }
+        }
+    }// NameMatcher()
+
+
+    /** Returns if the given name id is a province name. */
+    boolean isProvinceName(int id) {
+        return (id < provinceNameCount);
+    }// isProvinceName()
+
+
+    /** Returns the short name that replaces the given province name id. */
+    String getShortName(int id) {
+        return shortNames[id];
+    }// getShortName()
+
+
+    /** Returns the length of the name with the given id. */
+    int getLength(int id) {
+        return lengths[id];
+    }// getLength()
+
+
+    /** Returns the total number of names. */
+    int getNameCount() {
+        return lengths.length;
+    }// getNameCount()
+
+
+    /**
+     *	Finds all occurrences of all names in the given text, which is 
+     *	assumed to be lower case. Matches may overlap. 
+     *	<p>
+     *	Returns (start index, name id) pairs, sorted by start index; for 
+     *	the same start index, longer names come first.
+     */
+    int[] find(CharSequence text) {
+        long[] found = null;
+        int count = 0;
+
+        int node = 0;
+        final int len = text.length();
+        for (int i = 0; i < len; i++) {
+            final char c = text.charAt(i);
+
+            int next = step(node, c);
+            while (next < 0 && node != 0) {
+                node = fail[node];
+                next = step(node, c);
+            }
+            node = (next < 0) ? 0 : next;
+
+            for (int n = (terminal[node] >= 0) ? node : output[node]; n >= 0; n = output[n]) {
+                final int id = terminal[n];
+                final int start = i + 1 - lengths[id];
+
+                if (found == null) {
+                    found = new long[8];
+                } else if (count == found.length) {
+                    found = Arrays.copyOf(found, count * 2);
+                }
+
+                // sort key: start ascending, then length descending
+                found[count++] = ((long) start << 32) | ((long) (MAX_LENGTH - lengths[id]) << 16) | id;
+            }
+        }
+
+        if (count == 0) {
+            return NO_MATCHES;
+        }
+
+        Arrays.sort(found, 0, count);
+
+        final int[] matches = new int[count * 2];
+        for (int i = 0; i < count; i++) {
+            matches[2 * i] = (int) (found[i] >>> 32);
+            matches[2 * i + 1] = (int) (found[i] & MAX_NAMES);
+        }
+
+        return matches;
+    }// find()
+
+
+    /** Follows the edge from node for c; returns -1 if there is none. */
+    private int step(int node, char c) {
+        final int idx = Arrays.binarySearch(labels[node], c);
+        return (idx < 0) ? -1 : targets[node][idx];
+    }// step()
+
+}// class NameMatcher
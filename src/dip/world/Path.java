@@ -23,7 +23,6 @@
 package dip.world;
 
 import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
@@ -762,67 +761,11 @@ public class Path {
             return 0;
         }
 
-        int dist = 0;
-
-        final java.util.Map<Province, Boolean> visited = new HashMap<Province, Boolean>(119);
-        visited.put(src, Boolean.TRUE);
-
-        List<Province> toCheck = new ArrayList<Province>(32);
-        List<Province> nextToCheck = new ArrayList<Province>(32);
-        List<Province> swapTmp = null;
-        toCheck.add(src);
-
-        while (true) {
-            // inc dist
-            dist++;
-
-            // iterate toCheck, create nextToCheck list
-            for (final Province p : toCheck) {
-                if (p == dest) {
-                    return dist;
-                }
-
-                /* OLD CODE: before Coast.WING (TOUCHING) available
-                for(int i=0; i<Coast.ALL_COASTS.length; i++)
-                {
-                Location[] locs = p.getAdjacentLocations(Coast.ALL_COASTS[i]);
-                for(int j=0; j<locs.length; j++)
-                {
-                Province ckp = locs[j].getProvince();
-                
-                if(visited.get(ckp) == null)
-                {
-                nextToCheck.add(ckp);
-                visited.put(ckp, Boolean.TRUE);
-                }
-                }
-                }
-                 */
-
-                // NEW CODE: using Coast.TOUCHING
-                final List<Location> locs = p.getAdjacentLocations(Coast.TOUCHING);
-                for (final Location location : locs) {
-                    final Province ckp = location.getProvince();
-
-                    if (visited.get(ckp) == null) {
-                        nextToCheck.add(ckp);
-                        visited.put(ckp, Boolean.TRUE);
-                    }
-                }
-                // END NEW CODE
-            }
-
-            // swap lists
-            toCheck.clear();
-            swapTmp = toCheck;
-            toCheck = nextToCheck;
-            nextToCheck = swapTmp;
-
-            // test for unconnectedness (remember, we are swapped)
-            if (toCheck.isEmpty()) {
-                return -1;
-            }
-        }
+        // distances are precomputed by the Map. Note that the previous
+        // (per-call) search returned the number of moves + 1 for distinct
+        // provinces; this is retained so that results are unchanged.
+        final int dist = position.map.getTouchingDistance(src, dest);
+        return (dist < 0) ? -1 : (dist + 1);
     }// getMinDistance()
 
     //// NEW path finding stuff below here....
@@ -860,6 +803,12 @@ public class Path {
             return new Province[0][];
         }
 
+        // use the Map's route index, if the Map is known
+        final dip.world.Map map = evaluator.getMap();
+        if (map != null && src != dest) {
+            return map.getConvoyRouteIndex().findAllSeaPaths(evaluator, src, dest);
+        }
+
         // create the tree.
         final TreeNode root = new TreeNode(null, src);
 
@@ -913,6 +862,17 @@ public class Path {
         public boolean evaluate(Province province) {
             return true;
         }// evaluate()
+
+        /** 
+         *	The Map being searched, or null if unknown. If the Map is known,
+         *	findAllSeaPaths() will use the Map's ConvoyRouteIndex.
+         *	<p>
+         *	The index evaluates each Province at most once per search, so 
+         *	evaluate() should not depend upon the path being searched.
+         */
+        protected dip.world.Map getMap() {
+            return null;
+        }// getMap()
     }// inner class FAPEvaluator
 
     /**
@@ -934,6 +894,12 @@ public class Path {
 		public boolean evaluate(Province province) {
             return fapPos.hasUnit(province, Unit.Type.FLEET);
         }// evaluate()
+
+        /** The Map of the Position */
+        @Override
+        protected dip.world.Map getMap() {
+            return fapPos.map;
+        }// getMap()
     }// inner class FleetFAPEvaluator
 
     /**
@@ -981,6 +947,12 @@ public class Path {
             }
             return false;
         }// evaluate()
+
+        /** The Map of the Adjudicator's Position */
+        @Override
+        protected dip.world.Map getMap() {
+            return adj.getTurnState().getPosition().map;
+        }// getMap()
     }// inner class ConvoyFAPEvaluator
 
     /** Node of a Tree that holds a Location */
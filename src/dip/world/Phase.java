@@ -875,6 +875,8 @@ public class Phase implements java.io.Serializable, Comparable<Phase>
 	*/
 	public static class YearType implements Serializable, Comparable
 	{
+		private static final long serialVersionUID = 1L;
+		
 		// instance fields
 		protected final int year;
 		
@@ -35,6 +35,14 @@ import java.util.Map;
 *	Position based upon previous Position data. Several clone methods are
 *	available, each optimized for speed and cloning requirements.
 *	<p>
+*	Cloning is copy-on-write: a clone shares unchanged province data (and 
+*	Units) with the Position it was cloned from, and province data is only
+*	copied when it is first modified in either Position. Thus a clone costs
+*	little more than an array copy, and a history of Positions only retains
+*	the province data that changed between turns. Units that have been 
+*	placed in a Position must therefore not be modified; set a new (or 
+*	cloned) Unit instead.
+*	<p>
 *	WARNING: this code is not MT (Multithread) safe!
 *	<p>
 *	This class is heavily optimized, as adjudicator performance is highly dependent
@@ -59,6 +67,8 @@ public class Position implements java.io.Serializable, Cloneable
 	protected final ProvinceData[] provArray;
 	protected final dip.world.Map map;
 	private transient Province[] tmpProvArray = null;
+	private transient boolean[] owned = null;	// provArray entries not shared with other Positions; null if none
+	private transient int version = 0;			// incremented upon each modification
 	
 	
 	public Position(dip.world.Map map)
@@ -68,15 +78,45 @@ public class Position implements java.io.Serializable, Cloneable
 	}// Position()
 	
 	
+	/** 
+	*	For subclasses that keep their own province data (e.g., CompactPosition);
+	*	no ProvinceData storage is allocated. Subclasses using this constructor 
+	*	must override all methods that access province or power data.
+	*/
+	Position(dip.world.Map map, boolean noProvinceData)
+	{
+		this.map = map;
+		this.provArray = null;
+	}// Position()
+	
+	
 	
 	
 	/** The Number of Provinces in this Position */
 	public final int size()
 	{
-		return provArray.length;
+		return map.getProvinces().length;
 	}// size()
 	
 	
+	/** 
+	*	Returns the version of this Position, which changes whenever
+	*	this Position is modified. This may be used to determine if 
+	*	cached information derived from a Position is stale.
+	*/
+	public final int getVersion()
+	{
+		return version;
+	}// getVersion()
+	
+	
+	/** Subclasses must call this whenever the Position is modified. */
+	protected final void incrementVersion()
+	{
+		version++;
+	}// incrementVersion()
+	
+	
 	/** Convenience method: Returns an array of Provinces */
 	public final Province[] getProvinces()
 	{
@@ -534,22 +574,15 @@ public class Position implements java.io.Serializable, Cloneable
 	
 	
 	/** 
-	*	Deep clone of the contents of this Position. 
+	*	Clone of the contents of this Position. Province data is shared
+	*	(copy-on-write) with the clone.
 	*/
 	@Override
 	public Object clone()
 	{
 		Position pos = new Position(map);
-		
-		for(int i=0; i<provArray.length; i++)
-		{
-			ProvinceData pd = provArray[i];
-			
-			if(pd != null)
-			{
-				pos.provArray[i] = pd.normClone();
-			}
-		}
+		System.arraycopy(provArray, 0, pos.provArray, 0, provArray.length);
+		owned = null;	// all province data is now shared
 		
                 for(final Power power: powerMap.keySet()) {
                     final PowerData pd = powerMap.get(power);
@@ -560,8 +593,9 @@ public class Position implements java.io.Serializable, Cloneable
 	}// clone()
 	
 	/** 
-	*	Deep clone of everything *except* dislodged & non-dislodged units;
-	*	(e.g., SC ownership, Power Info, etc.)
+	*	Clone of everything *except* dislodged & non-dislodged units;
+	*	(e.g., SC ownership, Power Info, etc.). Province data without
+	*	units is shared (copy-on-write) with the clone.
 	*/
 	public Position cloneExceptUnits()
 	{
@@ -573,9 +607,17 @@ public class Position implements java.io.Serializable, Cloneable
 			
 			if(pd != null)
 			{
-				pos.provArray[i] = pd.cloneExceptUnits();
+				if(pd.hasUnit() || pd.hasDislodgedUnit())
+				{
+					pos.setOwnedProvinceData(i, pd.cloneExceptUnits());
+				}
+				else
+				{
+					pos.provArray[i] = pd;
+				}
 			}
 		}
+		owned = null;
 		
 		for(final Power key: powerMap.keySet()) {
 			PowerData pd = powerMap.get(key);
@@ -586,7 +628,10 @@ public class Position implements java.io.Serializable, Cloneable
 	}// cloneExceptUnits()
 	
 	
-	/** Deep clone of everything <b>except</b> dislodged units. */
+	/** 
+	*	Clone of everything <b>except</b> dislodged units. Province data 
+	*	without dislodged units is shared (copy-on-write) with the clone.
+	*/
 	public Position cloneExceptDislodged()
 	{
 		final Position pos = new Position(map);
@@ -596,9 +641,17 @@ public class Position implements java.io.Serializable, Cloneable
 			ProvinceData pd = provArray[i];
 			if(pd != null)
 			{
-				pos.provArray[i] = pd.cloneExceptDislodged();
+				if(pd.hasDislodgedUnit())
+				{
+					pos.setOwnedProvinceData(i, pd.cloneExceptDislodged());
+				}
+				else
+				{
+					pos.provArray[i] = pd;
+				}
 			}
 		}
+		owned = null;
 		
 		for (final Power key: powerMap.keySet()) {
 			final PowerData pd = powerMap.get(key);
@@ -672,24 +725,46 @@ public class Position implements java.io.Serializable, Cloneable
 	
 	/**
 	*	Call this method FIRST before any set(); thus if ProvinceData
-	*	does not exist, we will add one to the map.
+	*	does not exist, we will add one to the map. If the ProvinceData
+	*	is shared with another Position, it is copied first.
 	*
 	*/
 	private ProvinceData getProvinceData(Province province)
 	{
+		incrementVersion();
+		
 		int idx = province.getIndex();
 		ProvinceData pd = provArray[idx];
 		if(pd == null)
 		{
 			pd = new ProvinceData();
-			provArray[idx] = pd;
+			setOwnedProvinceData(idx, pd);
+		}
+		else if(owned == null || !owned[idx])
+		{
+			pd = pd.copy();
+			setOwnedProvinceData(idx, pd);
 		}
 		
 		return pd;
 	}// getProvinceData()
 	
+	
+	/** Sets ProvinceData that is not shared with any other Position. */
+	private void setOwnedProvinceData(int idx, ProvinceData pd)
+	{
+		if(owned == null)
+		{
+			owned = new boolean[provArray.length];
+		}
+		
+		provArray[idx] = pd;
+		owned[idx] = (pd != null);
+	}// setOwnedProvinceData()
+	
 	/** Same type of functionality as getProvinceData() but for PowerData objects */
 	private PowerData getPowerData(Power power) {
+		incrementVersion();
 		final PowerData pd = powerMap.get(power);
                 final PowerData createdPD = pd != null ? pd: new PowerData();
 		if(pd == null) {
@@ -740,21 +815,12 @@ public class Position implements java.io.Serializable, Cloneable
 		public void setLastOccupier(Power p)	{ lastOccupier = p; }
 		
 		
-		// normal clone
-		public ProvinceData normClone()
+		/** Shallow copy, for copy-on-write; Units are shared. */
+		public ProvinceData copy()
 		{
 			ProvinceData pd = new ProvinceData();
-			
-			// deep copy unit information
-			if(unit != null)
-			{
-				pd.unit = (Unit) unit.clone();
-			}
-			
-			if(dislodgedUnit != null)
-			{
-				pd.dislodgedUnit = (Unit) dislodgedUnit.clone();
-			}
+			pd.unit = this.unit;
+			pd.dislodgedUnit = this.dislodgedUnit;
 			
 			// shallow copy Powers [Power is immutable]
 			pd.SCOwner = this.SCOwner;
@@ -762,7 +828,7 @@ public class Position implements java.io.Serializable, Cloneable
 			pd.lastOccupier = this.lastOccupier;
 			
 			return pd;
-		}// normClone()
+		}// copy()
 		
 		
 		/** Returns null if no non-ownership information exists */
@@ -804,11 +870,8 @@ public class Position implements java.io.Serializable, Cloneable
 			pd.SCHomePower = this.SCHomePower;
 			pd.lastOccupier = this.lastOccupier;
 			
-			// deep copy unit
-			if(unit != null)
-			{
-				pd.unit = (Unit) unit.clone();
-			}
+			// Units are shared; see class comments
+			pd.unit = this.unit;
 			
 			return pd;
 		}// cloneExceptUnits()
@@ -0,0 +1,312 @@
+//
+//  @(#)PositionHistory.java	1.00	10/2004
+//
+//  Copyright 2004 the jDip development team. All rights reserved.
+//  Use is subject to license terms.
+//
+//
+//  This program is free software; you can redistribute it and/or modify
+//  it under the terms of the GNU General Public License as published by
+//  the Free Software Foundation; either version 2 of the License, or
+//  (at your option) any later version.
+//
+//  This program is distributed in the hope that it will be useful,
+//  but WITHOUT ANY WARRANTY; without even the implied warranty of
+//  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+//  GNU General Public License for more details.
+//
+//  You should have received a copy of the GNU General Public License
+//  along with this program; if not, write to the Free Software
+//  Foundation, Inc., 675 Mass Ave, Cambridge, MA 02139, USA.
+//  Or from http://www.gnu.org/
+//
+package dip.world;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * Compact history of the Positions of a sequence of turns.
+ * <p>
+ * Consecutive Positions differ in only a few provinces, so every
+ * <code>keyframeInterval</code>-th Position is stored in full (as a
+ * CompactPosition) and the others as the set of provinces whose units,
+ * dislodged units, supply center ownership or last occupier changed since
+ * the previous turn. Any Position can be reconstructed from the nearest
+ * preceding keyframe; {@link #positions()} applies the changes in order, to
+ * visit every Position without reconstructing each from a keyframe.
+ * <p>
+ * A turn may have no Position in the history (for example a null Position,
+ * or one that refers to Powers not in the Map); the next Position stored
+ * is then always a keyframe.
+ * <p>
+ * Positions returned are new objects, of the same class (Position or
+ * CompactPosition) as the Position that was added. PositionHistory objects
+ * are not thread-safe.
+ */
+public final class PositionHistory implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    /** Default number of turns between full (keyframe) Positions. */
+    public static final int DEFAULT_KEYFRAME_INTERVAL = 8;
+
+    private final dip.world.Map map;
+    private final int keyframeInterval;
+    private final List<Frame> frames = new ArrayList<Frame>();
+    private transient CompactPosition last = null;
+    private transient int sinceKeyframe = 0;
+
+    /** Creates an empty PositionHistory with the default keyframe interval. */
+    public PositionHistory(final dip.world.Map map) {
+        this(map, DEFAULT_KEYFRAME_INTERVAL);
+    }// PositionHistory()
+
+    /** Creates an empty PositionHistory. */
+    public PositionHistory(final dip.world.Map map, final int keyframeInterval) {
+        if (map == null || keyframeInterval < 1) {
+            throw new IllegalArgumentException();
+        }
+
+        this.map = map;
+        this.keyframeInterval = keyframeInterval;
+    }// PositionHistory()
+
+    /** Creates a PositionHistory of the Positions of the given turns, in order. */
+    public static PositionHistory create(final dip.world.Map map, final List<TurnState> turns) {
+        final PositionHistory history = new PositionHistory(map);
+        for (final TurnState ts : turns) {
+            history.add(ts.getPhase(), ts.getPosition());
+        }
+        return history;
+    }// create()
+
+    /**
+     * Adds the Position of the next turn. Returns false (and adds the turn
+     * without a Position) if the Position is null, is not a Position or
+     * CompactPosition, or cannot be represented by a CompactPosition.
+     */
+    public boolean add(final Phase phase, final Position position) {
+        CompactPosition state = null;
+        boolean isCompact = false;
+        if (position != null && position.map == map) {
+            if (position.getClass() == CompactPosition.class) {
+                state = (CompactPosition) position.clone();
+                isCompact = true;
+            } else if (position.getClass() == Position.class) {
+                try {
+                    state = new CompactPosition(position);
+                } catch (IllegalArgumentException e) {
+                    state = null;
+                }
+            }
+        }
+
+        if (state == null) {
+            frames.add(new Frame(phase, false, null, null));
+            last = null;
+            return false;
+        }
+
+        final CompactPosition previous = getLast();
+        if (previous == null || sinceKeyframe >= keyframeInterval - 1) {
+            frames.add(new Frame(phase, isCompact, state, null));
+            sinceKeyframe = 0;
+        } else {
+            frames.add(new Frame(phase, isCompact, null, new Delta(previous, state)));
+            sinceKeyframe++;
+        }
+
+        last = state;
+        return true;
+    }// add()
+
+    /** Number of turns in the history. */
+    public int size() {
+        return frames.size();
+    }// size()
+
+    /** Returns the Map. */
+    public dip.world.Map getMap() {
+        return map;
+    }// getMap()
+
+    /** Returns the Phase of the given turn. */
+    public Phase getPhase(final int turn) {
+        return frames.get(turn).phase;
+    }// getPhase()
+
+    /** Returns true if the given turn has a Position in the history. */
+    public boolean hasPosition(final int turn) {
+        final Frame frame = frames.get(turn);
+        return (frame.keyframe != null || frame.delta != null);
+    }// hasPosition()
+
+    /**
+     * Reconstructs the Position of the given turn. Returns null if the turn
+     * has no Position in the history.
+     */
+    public Position getPosition(final int turn) {
+        if (!hasPosition(turn)) {
+            return null;
+        }
+
+        final CompactPosition state = getState(turn);
+        return frames.get(turn).isCompact ? state : state.toPosition();
+    }// getPosition()
+
+    /**
+     * Iterates over the Positions of all turns, in order, applying each
+     * turn's changes to the previous Position. The Positions returned are
+     * CompactPositions (regardless of what was added), or null for turns
+     * without a Position.
+     */
+    public Iterator<CompactPosition> positions() {
+        return new Iterator<CompactPosition>() {
+            private int next = 0;
+            private CompactPosition state = null; // working copy
+
+            public boolean hasNext() {
+                return next < frames.size();
+            }// hasNext()
+
+            public CompactPosition next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+
+                final Frame frame = frames.get(next++);
+                if (frame.keyframe != null) {
+                    state = (CompactPosition) frame.keyframe.clone();
+                } else if (frame.delta != null) {
+                    frame.delta.apply(state);
+                } else {
+                    return null;
+                }
+
+                return (CompactPosition) state.clone();
+            }// next()
+
+            public void remove() {
+                throw new UnsupportedOperationException();
+            }// remove()
+        };
+    }// positions()
+
+    /** Reconstructs the state of a turn that has a Position. */
+    private CompactPosition getState(final int turn) {
+        int start = turn;
+        while (frames.get(start).keyframe == null) {
+            start--;
+        }
+
+        final CompactPosition state = (CompactPosition) frames.get(start).keyframe.clone();
+        for (int i = start + 1; i <= turn; i++) {
+            frames.get(i).delta.apply(state);
+        }
+
+        return state;
+    }// getState()
+
+    /** The last full state, for computing the next Delta; null if none. */
+    private CompactPosition getLast() {
+        if (last == null && !frames.isEmpty() && hasPosition(frames.size() - 1)) {
+            // not kept when serialized
+            last = getState(frames.size() - 1);
+            sinceKeyframe = 0;
+            for (int i = frames.size() - 1; frames.get(i).keyframe == null; i--) {
+                sinceKeyframe++;
+            }
+        }
+
+        return last;
+    }// getLast()
+
+    /** A turn: a keyframe, a delta, or neither (no Position). */
+    private static final class Frame implements Serializable {
+        private static final long serialVersionUID = 1L;
+        private final Phase phase;
+        private final boolean isCompact;
+        private final CompactPosition keyframe;
+        private final Delta delta;
+
+        Frame(final Phase phase, final boolean isCompact, final CompactPosition keyframe, final Delta delta) {
+            this.phase = phase;
+            this.isCompact = isCompact;
+            this.keyframe = keyframe;
+            this.delta = delta;
+        }// Frame()
+    }// nested class Frame
+
+    /**
+     * Changes between two CompactPositions: the new values for each
+     * province that changed, and the new elimination flags if any changed.
+     */
+    private static final class Delta implements Serializable {
+        private static final long serialVersionUID = 1L;
+        private final int[] provinces;
+        private final short[] units;
+        private final short[] dislodged;
+        private final byte[] scOwner;
+        private final byte[] scHome;
+        private final byte[] lastOccupier;
+        private final boolean[] eliminated;
+
+        Delta(final CompactPosition from, final CompactPosition to) {
+            int count = 0;
+            for (int i = 0; i < to.units.length; i++) {
+                if (isChanged(from, to, i)) {
+                    count++;
+                }
+            }
+
+            provinces = new int[count];
+            units = new short[count];
+            dislodged = new short[count];
+            scOwner = new byte[count];
+            scHome = new byte[count];
+            lastOccupier = new byte[count];
+
+            int n = 0;
+            for (int i = 0; i < to.units.length; i++) {
+                if (isChanged(from, to, i)) {
+                    provinces[n] = i;
+                    units[n] = to.units[i];
+                    dislodged[n] = to.dislodged[i];
+                    scOwner[n] = to.scOwner[i];
+                    scHome[n] = to.scHome[i];
+                    lastOccupier[n] = to.lastOccupier[i];
+                    n++;
+                }
+            }
+
+            eliminated = java.util.Arrays.equals(from.eliminated, to.eliminated) ? null : to.eliminated.clone();
+        }// Delta()
+
+        private static boolean isChanged(final CompactPosition from, final CompactPosition to, final int i) {
+            return from.units[i] != to.units[i] || from.dislodged[i] != to.dislodged[i]
+                    || from.scOwner[i] != to.scOwner[i] || from.scHome[i] != to.scHome[i]
+                    || from.lastOccupier[i] != to.lastOccupier[i];
+        }// isChanged()
+
+        /** Applies the changes to the given state. */
+        void apply(final CompactPosition state) {
+            for (int n = 0; n < provinces.length; n++) {
+                final int i = provinces[n];
+                state.units[i] = units[n];
+                state.dislodged[i] = dislodged[n];
+                state.scOwner[i] = scOwner[n];
+                state.scHome[i] = scHome[n];
+                state.lastOccupier[i] = lastOccupier[n];
+            }
+
+            if (eliminated != null) {
+                System.arraycopy(eliminated, 0, state.eliminated, 0, eliminated.length);
+            }
+
+            state.incrementVersion();
+        }// apply()
+    }// nested class Delta
+}// class PositionHistory
@@ -93,7 +93,15 @@ public class Province implements java.io.Serializable, Comparable<Province> {
      */
     protected static class Adjacency implements java.io.Serializable {
 
+        // the implicit serialVersionUID of this class before bitsets were added;
+        // declared so that serialized Provinces remain compatible.
+        private static final long serialVersionUID = -5256865235792614124L;
+        // bits per province in a location bitset; must hold all Coast indices
+        private static final int LOC_SHIFT = 3;
+        private static final int COAST_COUNT = 1 << LOC_SHIFT;
         private final HashMap<Coast, List<Location>> adjLoc;
+        // not serialized; created by createBitsets(), or upon first use
+        private transient volatile AdjacencyBits adjBits = null;
 
         /**
          * Creates a new Adjacency object.
@@ -108,6 +116,7 @@ public class Province implements java.io.Serializable, Comparable<Province> {
          */
         protected void setLocations(Coast coast, Location[] locations) {
             adjLoc.put(coast, Arrays.asList(locations));
+            adjBits = null;
         }// setLocations()
 
         /** 
@@ -146,6 +155,66 @@ public class Province implements java.io.Serializable, Comparable<Province> {
             setLocations(Coast.WING, locList.toArray(new Location[locList.size()]));
         }// createWingCoasts()
 
+        /**
+         *	Creates the adjacency bitsets from the Location data. This should
+         *	be called after all Coasts (including Wing coasts) have been set;
+         *	otherwise, bitsets are created upon first use.
+         */
+        protected void createBitsets() {
+            final long[][] provBits = new long[COAST_COUNT][];
+            final long[][] locBits = new long[COAST_COUNT][];
+
+            for (final Coast coast : adjLoc.keySet()) {
+                final List<Location> locs = adjLoc.get(coast);
+                int maxIdx = 0;
+                for (final Location location : locs) {
+                    maxIdx = Math.max(maxIdx, location.getProvince().getIndex());
+                }
+
+                final long[] pBits = new long[(maxIdx >>> 6) + 1];
+                final long[] lBits = new long[(((maxIdx + 1) << LOC_SHIFT) >>> 6) + 1];
+                for (final Location location : locs) {
+                    final int pIdx = location.getProvince().getIndex();
+                    final int lIdx = (pIdx << LOC_SHIFT) | location.getCoast().getIndex();
+                    pBits[pIdx >>> 6] |= (1L << pIdx);
+                    lBits[lIdx >>> 6] |= (1L << lIdx);
+                }
+
+                provBits[coast.getIndex()] = pBits;
+                locBits[coast.getIndex()] = lBits;
+            }
+
+            adjBits = new AdjacencyBits(provBits, locBits);
+        }// createBitsets()
+
+        /** True if the given Province is adjacent to the given coast. */
+        protected boolean isAdjacent(Coast coast, Province dest) {
+            return isSet(getBits().provinces[coast.getIndex()], dest.getIndex());
+        }// isAdjacent()
+
+        /** True if the given Location is adjacent to the given coast. */
+        protected boolean isAdjacent(Coast coast, Location dest) {
+            return isSet(getBits().locations[coast.getIndex()],
+                    (dest.getProvince().getIndex() << LOC_SHIFT) | dest.getCoast().getIndex());
+        }// isAdjacent()
+
+        /** Get the bitsets, creating them if needed (e.g., after deserialization) */
+        private AdjacencyBits getBits() {
+            AdjacencyBits bits = adjBits;
+            if (bits == null) {
+                createBitsets();
+                bits = adjBits;
+            }
+
+            return bits;
+        }// getBits()
+
+        /** Test a bit; null or short arrays are considered all-zero */
+        private static boolean isSet(long[] bits, int idx) {
+            final int word = idx >>> 6;
+            return (bits != null && word < bits.length && (bits[word] & (1L << idx)) != 0);
+        }// isSet()
+
         /** 
          *	Ensure that adjacency data is consistent, and that there are
          *	no illegal coast combinations.
@@ -202,6 +271,22 @@ public class Province implements java.io.Serializable, Comparable<Province> {
         }// validate()		
     }// inner class Adjacency()
 
+    /**
+     *	Adjacency bitsets, indexed by source Coast index. Province bitsets are
+     *	indexed by Province index; Location bitsets by (Province index * 8 
+     *	+ Coast index).
+     */
+    private static final class AdjacencyBits {
+
+        private final long[][] provinces;
+        private final long[][] locations;
+
+        private AdjacencyBits(long[][] provinces, long[][] locations) {
+            this.provinces = provinces;
+            this.locations = locations;
+        }// AdjacencyBits()
+    }// nested class AdjacencyBits
+
     /**
      *	Creates a new Province object. 
      *	<b>Unless you are a WorldFactory (or subclass), it should (almost) never be nescessary 
@@ -329,27 +414,7 @@ public class Province implements java.io.Serializable, Comparable<Province> {
      *	This now uses the "Wing" ("Touching") Coast which is equivalent.
      */
     public boolean isTouching(Province province) {
-        /* old code: prior to createWingCoasts()
-        for(int i=0; i<Coast.ALL_COASTS.length; i++)
-        {
-        Location[] locations = adjacency.getLocations(Coast.ALL_COASTS[i]);
-        for(int locIdx=0; locIdx<locations.length; locIdx++)
-        {
-        if(locations[locIdx].getProvince().equals(province))
-        {
-        return true;
-        }
-        }
-        }
-         */
-        final List<Location> locations = adjacency.getLocations(Coast.TOUCHING);
-        for (final Location location : locations) {
-            if (location.isProvinceEqual(province)) {
-                return true;
-            }
-        }
-
-        return false;
+        return adjacency.isAdjacent(Coast.TOUCHING, province);
     }// isTouching()
 
     /**
@@ -360,14 +425,7 @@ public class Province implements java.io.Serializable, Comparable<Province> {
      *	
      */
     public boolean isAdjacent(Coast sourceCoast, Province dest) {
-        final List<Location> locations = adjacency.getLocations(sourceCoast);
-        for (final Location location : locations) {
-            if (location.getProvince().equals(dest)) {
-                return true;
-            }
-        }
-
-        return false;
+        return adjacency.isAdjacent(sourceCoast, dest);
     }// isAdjacent()
 
     /**
@@ -380,14 +438,7 @@ public class Province implements java.io.Serializable, Comparable<Province> {
      *	
      */
     public boolean isAdjacent(Coast sourceCoast, Location dest) {
-        final List<Location> locations = adjacency.getLocations(sourceCoast);
-        for (final Location location : locations) {
-            if (location.equals(dest)) {
-                return true;
-            }
-        }
-
-        return false;
+        return adjacency.isAdjacent(sourceCoast, dest);
     }// isAdjacent()
 
     /** Determines if this Province is landlocked. */
@@ -30,6 +30,7 @@ import java.util.Map;
 import java.util.Map.Entry;
 
 import dip.order.Orderable;
+import dip.order.ValidationCache;
 import dip.order.result.OrderResult;
 import dip.order.result.Result;
 
@@ -72,6 +73,8 @@ public class TurnState implements Serializable
 	private boolean isEnded = false;				// true if game over (won, draw, etc.)
 	private boolean isResolved = false;				// true if phase has been adjudicated
 	private transient HashMap<Orderable, Boolean> resultMap = null;		// transient result map
+	private transient ValidationCache validationCache = null;		// created on first use
+	private transient int modCount = 0;				// incremented by setters; see getModCount()
 	
 	
 	/** Creates a TurnState object. */
@@ -129,6 +132,7 @@ public class TurnState implements Serializable
 			throw new IllegalArgumentException("null phase");
 		}
 		this.phase = phase;
+		modCount++;
 	}// setPhase()
 	
 	
@@ -148,9 +152,25 @@ public class TurnState implements Serializable
 		}
 		
 		this.position = position;
+		modCount++;
 	}// setPosition()
 	
 	
+	/** 
+	*	Returns the ValidationCache for orders of this TurnState. 
+	*	This is never null.
+	*/
+	public synchronized ValidationCache getValidationCache()
+	{
+		if(validationCache == null)
+		{
+			validationCache = new ValidationCache();
+		}
+		
+		return validationCache;
+	}// getValidationCache()
+	
+	
 	/** Returns the result list */
 	public List<Result> getResultList()
 	{
@@ -167,6 +187,7 @@ public class TurnState implements Serializable
 		}
 		
 		resultList = list;
+		modCount++;
 	}// setResultList()
 	
 	
@@ -189,6 +210,7 @@ public class TurnState implements Serializable
 	public void setSCOwnerChanged(boolean value)
 	{
 		isSCOwnerChanged = value;
+		modCount++;
 	}// setSCOwnerChanged()
 	
 	
@@ -220,6 +242,7 @@ public class TurnState implements Serializable
 	public void clearAllOrders()
 	{
 		orderMap.clear();
+		modCount++;
 	}// clearAllOrders()
 	
 	
@@ -255,16 +278,58 @@ public class TurnState implements Serializable
 		}
 		
 		orderMap.put(power, list);
+		modCount++;
 	}// setOrders()
 	
+	/**
+	*	Returns a copy of this TurnState, for writing in the background
+	*	(see BinaryWorldFormat.Snapshot). The Position is cloned (a cheap,
+	*	copy-on-write clone); order and result Lists are copied, but the
+	*	Orders and Results they contain are shared.
+	*/
+	TurnState snapshot()
+	{
+		final TurnState ts = new TurnState();
+		ts.phase = phase;
+		ts.resultList = (resultList == null) ? null : new ArrayList<Result>(resultList);
+		ts.orderMap = new HashMap<Power, List<Orderable>>();
+		for(final Entry<Power, List<Orderable>> entry : orderMap.entrySet())
+		{
+			final List<Orderable> list = entry.getValue();
+			ts.orderMap.put(entry.getKey(), (list == null) ? null : new ArrayList<Orderable>(list));
+		}
+		ts.isSCOwnerChanged = isSCOwnerChanged;
+		ts.position = (position == null) ? null : (Position) position.clone();
+		ts.isEnded = isEnded;
+		ts.isResolved = isResolved;
+		return ts;
+	}// snapshot()
+	
+	/**
+	*	The number of modifications made through the setters (and 
+	*	clearAllOrders()). Changes made to the Position, or directly to the
+	*	Lists returned by getOrders() and getResultList(), are not counted;
+	*	see Position.getVersion() and LazyTurnStateMap.
+	*/
+	int getModCount()
+	{
+		return modCount;
+	}// getModCount()
+	
+	/** Returns the (live) Power to order List map; used by BinaryWorldFormat. */
+	Map<Power, List<Orderable>> getOrderMap()
+	{
+		return orderMap;
+	}// getOrderMap()
+	
 	/** Set if game has ended for any reason */
-	public void setEnded(boolean value)		{ isEnded = value; }
+	public void setEnded(boolean value)		{ isEnded = value; modCount++; }
 	
 	/** Returns <code>true</code> if game has ended */
 	public boolean isEnded()				{ return isEnded; }
 		
 	/** Set if the turn has been adjudicated. */
-	public void setResolved(boolean value)		{ isResolved = value; }
+	public void setResolved(boolean value)		{ isResolved = value; modCount++; }
 	
 	/** Returns the turn has been adjudicated */
 	public boolean isResolved()					{ return isResolved; }
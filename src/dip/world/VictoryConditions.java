@@ -39,6 +39,7 @@ import dip.world.Phase.SeasonType;
 */
 public class VictoryConditions implements java.io.Serializable
 {
+	private static final long serialVersionUID = 1L;
 	// il8n
 	private static final String VC_MAX_GAME_TIME = "VC_MAX_GAME_TIME";
 	private static final String VC_DRAW = "VC_DRAW";
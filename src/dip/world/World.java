@@ -27,6 +27,7 @@ import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.NotSerializableException;
 import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.Collection;
@@ -42,7 +43,8 @@ import java.util.zip.GZIPInputStream;
 import java.util.zip.GZIPOutputStream;
 
 import dip.gui.undo.UndoRedoManager;
-import dip.net.message.DefaultPressStore;
+import dip.misc.Log;
+import dip.net.message.LogPressStore;
 import dip.net.message.PressStore;
 import dip.world.metadata.GameMetadata;
 import dip.world.metadata.PlayerMetadata;
@@ -77,14 +79,31 @@ public class World implements Serializable
         private final Map<Power, PlayerMetadata> playerMetadataMap = new HashMap<Power, PlayerMetadata>();
         private UndoRedoManager urm;
         private GameSetup gs;
-        private final PressStore ps = new DefaultPressStore();
+        private final PressStore ps;
         private VariantInfo vi;
 	
 	/**
 	*	Reads a World object from a file.
+	*	<p>
+	*	Both the binary format (see BinaryWorldFormat) and the older 
+	*	JSX-serialized (gzipped XML) format are read.
 	*/
 	public static World open(File file)
 	throws IOException
+	{
+		final World w = BinaryWorldFormat.isBinaryFormat(file) ? BinaryWorldFormat.read(file) : openLegacy(file);
+		
+		// press is kept in a log next to the game file
+		LogPressStore.attach(w.ps, file, w.getMap());
+		return w;
+	}// open()
+	
+	
+	/**
+	*	Reads a World object from a JSX-serialized file.
+	*/
+	private static World openLegacy(File file)
+	throws IOException
 	{
 		JSX.ObjectReader in = null;
 		
@@ -113,25 +132,63 @@ public class World implements Serializable
 				in.close();
 			}	
 		}
-	}// open()
+	}// openLegacy()
 	
 	
 	/**
-	*	Saves a World object to a file.
+	*	Saves a World object to a file, in the binary format.
+	*	<p>
+	*	If the World contains objects that cannot be written in the 
+	*	binary format (non-Serializable objects), the JSX-serialized
+	*	format is written instead.
 	*/
 	public static void save(File file, World world)
 	throws IOException
 	{
+		LogPressStore.prepareSave(world.ps, file);
+		
+		try
+		{
+			BinaryWorldFormat.write(file, world);
+		}
+		catch(NotSerializableException e)
+		{
+			Log.println("World.save(): binary format not possible, using JSX: ", e.getMessage());
+			saveLegacy(file, world);
+		}
+	}// save()
+	
+	
+	/**
+	*	Saves a World object to a file, using JSX serialization. As with the
+	*	binary format, a temporary file is written and then renamed.
+	*	This is also used by BinaryWorldFormat.Snapshot, on its writing thread.
+	*/
+	static void saveLegacy(File file, World world)
+	throws IOException
+	{
+		// turns read lazily from a binary file cannot be written by JSX
+		if(world.turnStates instanceof LazyTurnStateMap)
+		{
+			world.turnStates = Collections.<Phase, TurnState>synchronizedSortedMap(
+				new TreeMap<Phase, TurnState>(world.turnStates));
+		}
+		
+		final File temp = BinaryWorldFormat.createTempFile(file);
 		GZIPOutputStream gzos = null;
+		boolean isWritten = false;
 		
 		try
 		{
-			gzos = new GZIPOutputStream(new FileOutputStream(file), 2048);
+			gzos = new GZIPOutputStream(new FileOutputStream(temp), 2048);
 			JSX.ObjectWriter out = new JSX.ObjectWriter(gzos);
 			out.setPrettyPrint(false);
 			out.writeObject(world);
 			out.close();
 			gzos.finish(); // this is key. otherwise data is not written.
+			gzos.close();
+			gzos = null;
+			isWritten = true;
 		}
 		catch(IOException ioe)
 		{
@@ -146,12 +203,19 @@ public class World implements Serializable
 		}
 		finally
 		{
-			if(gzos != null)
+			if(!isWritten)
 			{
-				gzos.close();
-			}	
+				if(gzos != null)
+				{
+					gzos.close();
+				}
+				
+				temp.delete();
+			}
 		}
-	}// save()
+		
+		BinaryWorldFormat.replaceFile(temp, file);
+	}// saveLegacy()
 	
 	
 	
@@ -164,6 +228,7 @@ public class World implements Serializable
 	protected World(dip.world.Map map)
 	{
 		this.map = map;
+		this.ps = new LogPressStore(map);
 		turnStates = 
                         Collections.<Phase, TurnState>synchronizedSortedMap(new TreeMap<Phase, TurnState>());	// synchronize on TreeMap
 	}// World()
@@ -312,6 +377,43 @@ public class World implements Serializable
 	}// getAllTurnStates()
 	
 	
+	/**
+	*	Returns the PositionHistory of all TurnStates, in Phase order. The
+	*	PositionHistory is created on each call, and is not updated when
+	*	TurnStates change.
+	*	<p>
+	*	For a World read from a binary game file, the history stored in the
+	*	file is used if possible, so TurnStates need not be read.
+	*/
+	public PositionHistory getPositionHistory()
+	{
+		if(turnStates instanceof LazyTurnStateMap)
+		{
+			try
+			{
+				final PositionHistory history = ((LazyTurnStateMap) turnStates).getPositionHistory();
+				if(history != null)
+				{
+					return history;
+				}
+			}
+			catch(IOException e)
+			{
+				Log.println("World.getPositionHistory(): ", e.getMessage());
+			}
+		}
+		
+		return PositionHistory.create(map, getAllTurnStates());
+	}// getPositionHistory()
+	
+	
+	/** Returns the (live) Phase to TurnState map; used by BinaryWorldFormat. */
+	SortedMap<Phase, TurnState> getTurnStateMap()
+	{
+		return turnStates;
+	}// getTurnStateMap()
+	
+	
 	/** Gets the TurnState that comes before the specified phase. 
 	*	<p>
 	*	Note that the previous phase may not be (due to phase skipping) the
@@ -511,8 +613,10 @@ public class World implements Serializable
 	*	Variant Info is a class which holds information about 
 	*	the variant, map, symbols, and symbol options.
 	*/
-	public static class VariantInfo
+	public static class VariantInfo implements Serializable
 	{
+		private static final long serialVersionUID = 1L;
+		
 		private String variantName;
 		private String mapName;
 		private String symbolsName;
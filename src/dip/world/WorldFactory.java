@@ -161,6 +161,9 @@ public class WorldFactory {
 
             // create wing coast
             adjacency.createWingCoasts();
+
+            // create adjacency bitsets, for fast adjacency tests
+            adjacency.createBitsets();
         }
 
         // Process BorderData. This requires the Provinces to be known and